@@ -0,0 +1,40 @@
+package hadooplab.Benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Main class of benchmarks.jar: same command line than the standard JMH runner (org.openjdk.jmh.Main)
+ * except that the results are ALWAYS saved as machine readable JSON (default file: jmh-result.json)
+ * so that the results of each release can be archived and compared to track regressions
+ *
+ * Examples:
+ *   $ java -jar target/benchmarks.jar                                  (all benchmarks)
+ *   $ java -jar target/benchmarks.jar HLYRecordParser -rff parser.json (one benchmark class)
+ *   $ java -jar target/benchmarks.jar -prof gc                         (+ allocation rate)
+ */
+public class BenchmarkRunner {
+	private static final String DEFAULT_RESULT_FILE = "jmh-result.json";
+
+	public static void main(String[] args) throws Exception {
+		CommandLineOptions cmdOptions = new CommandLineOptions(args);
+		if (cmdOptions.shouldHelp() || cmdOptions.shouldList() || cmdOptions.shouldListProfilers()
+				|| cmdOptions.shouldListResultFormats() || cmdOptions.shouldListWithParams()) {
+			// informational commands are handled by the standard JMH runner
+			org.openjdk.jmh.Main.main(args);
+			return;
+		}
+
+		ChainedOptionsBuilder options = new OptionsBuilder().parent(cmdOptions);
+		if (!cmdOptions.getResultFormat().hasValue()) {
+			options.resultFormat(ResultFormatType.JSON);
+		}
+		if (!cmdOptions.getResult().hasValue()) {
+			options.result(DEFAULT_RESULT_FILE);
+		}
+		new Runner(options.build()).run();
+	}
+}
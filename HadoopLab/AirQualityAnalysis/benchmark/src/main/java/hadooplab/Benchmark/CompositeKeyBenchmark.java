@@ -0,0 +1,126 @@
+package hadooplab.Benchmark;
+
+import org.apache.hadoop.io.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the composite key LocationMeasureCompoKey in the shuffle of CompositeKeyDriver:
+ * - serialize / deserialize: write() and readFields() of one key (map output and reduce merge)
+ * - compareObjects         : compareTo() between 2 deserialized keys
+ * - sortComparator, groupComparator, defaultComparator: compare() on the serialized bytes,
+ *   exactly what the map-side sort and the reduce-side merge call for every pair of keys
+ *
+ * LocationMeasureCompoKey and CompositeKeyDriver live in the default package which cannot be imported,
+ * the classes are therefore resolved by reflection in setUp(), the measured code only uses the Hadoop interfaces
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompositeKeyBenchmark {
+	private static final int KEY_COUNT = 4096; // power of 2
+	private static final String[] LOCATIONS = {
+		"ALBERTA\tCALGARY", "ALBERTA\tEDMONTON", "BRITISH COLUMBIA\tMETRO VAN - VANCOUVER", "BRITISH COLUMBIA\tWHISTLER",
+		"NOVA SCOTIA\tHALIFAX", "ONTARIO\tALGOMA", "ONTARIO\tTORONTO", "ONTARIO\tWINDSOR", "QUEBEC\tMONTREAL", "QUEBEC\tSUTTON"
+	};
+
+	private Writable[] _keys;
+	private WritableComparable[] _comparableKeys;
+	private Writable _readKey;
+	private RawComparator<?> _sortComparator, _groupComparator, _defaultComparator;
+	private final DataOutputBuffer _outBuffer = new DataOutputBuffer();
+	private final DataInputBuffer _inBuffer = new DataInputBuffer();
+	private byte[] _serializedKeys;
+	private int[] _offsets, _lengths;
+	private int _next = 0;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		Class<?> keyClass = Class.forName("LocationMeasureCompoKey");
+		Constructor<?> keyConstructor = keyClass.getConstructor(String.class, int.class);
+		this._readKey = (Writable) keyClass.newInstance();
+
+		Random random = new Random(2012L);
+		this._keys = new Writable[KEY_COUNT];
+		this._comparableKeys = new WritableComparable[KEY_COUNT];
+		this._offsets = new int[KEY_COUNT];
+		this._lengths = new int[KEY_COUNT];
+		DataOutputBuffer serialized = new DataOutputBuffer();
+		for (int kk = 0; kk < KEY_COUNT; kk++) {
+			Object key = keyConstructor.newInstance(LOCATIONS[random.nextInt(LOCATIONS.length)], random.nextInt(80));
+			this._keys[kk] = (Writable) key;
+			this._comparableKeys[kk] = (WritableComparable) key;
+			this._offsets[kk] = serialized.getLength();
+			this._keys[kk].write(serialized);
+			this._lengths[kk] = serialized.getLength() - this._offsets[kk];
+		}
+		this._serializedKeys = serialized.getData();
+
+		this._sortComparator = newComparator("CompositeKeyDriver$LocAvgKeyComparator");
+		this._groupComparator = newComparator("CompositeKeyDriver$GroupComparator");
+		this._defaultComparator = WritableComparator.get(keyClass.asSubclass(WritableComparable.class));
+	}
+
+	private static RawComparator<?> newComparator(String className) throws Exception {
+		Constructor<?> constructor = Class.forName(className).getDeclaredConstructor();
+		constructor.setAccessible(true); // protected constructor
+		return (RawComparator<?>) constructor.newInstance();
+	}
+
+	private int nextIndex() {
+		int index = this._next;
+		this._next = (index + 1) & (KEY_COUNT - 1);
+		return index;
+	}
+
+	@Benchmark
+	public int serialize() throws IOException {
+		this._outBuffer.reset();
+		this._keys[nextIndex()].write(this._outBuffer);
+		return this._outBuffer.getLength();
+	}
+
+	@Benchmark
+	public Writable deserialize() throws IOException {
+		int index = nextIndex();
+		this._inBuffer.reset(this._serializedKeys, this._offsets[index], this._lengths[index]);
+		this._readKey.readFields(this._inBuffer);
+		return this._readKey;
+	}
+
+	@Benchmark
+	@SuppressWarnings("unchecked")
+	public int compareObjects() {
+		int index = nextIndex();
+		return this._comparableKeys[index].compareTo(this._comparableKeys[(index + 1) & (KEY_COUNT - 1)]);
+	}
+
+	@Benchmark
+	public int sortComparator() {
+		return compareSerialized(this._sortComparator);
+	}
+
+	@Benchmark
+	public int groupComparator() {
+		return compareSerialized(this._groupComparator);
+	}
+
+	@Benchmark
+	public int defaultComparator() {
+		return compareSerialized(this._defaultComparator);
+	}
+
+	private int compareSerialized(RawComparator<?> comparator) {
+		int index1 = nextIndex();
+		int index2 = (index1 + 1) & (KEY_COUNT - 1);
+		return comparator.compare(this._serializedKeys, this._offsets[index1], this._lengths[index1],
+				this._serializedKeys, this._offsets[index2], this._lengths[index2]);
+	}
+}
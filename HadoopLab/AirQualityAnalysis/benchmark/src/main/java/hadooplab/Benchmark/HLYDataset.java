@@ -0,0 +1,112 @@
+package hadooplab.Benchmark;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * HLY records used as input by the benchmarks:
+ * - "sample"   : the records of /src/main/resources/MiniOzoneSample.txt
+ * - "synthetic": records produced by HLYRecordGenerator
+ *
+ * All the records are stored back to back in one single byte[] (like the buffer of a re-used Text)
+ * so that millions of records can be held in memory without the overhead of one object per record
+ */
+public class HLYDataset {
+	public static final String SAMPLE = "sample";
+	public static final String SYNTHETIC = "synthetic";
+	private static final String SAMPLE_RESOURCE = "/MiniOzoneSample.txt";
+
+	private final byte[] _data;
+	private final int[] _offsets;
+	private final int[] _lengths;
+
+	private HLYDataset(byte[] data, int[] offsets, int[] lengths) {
+		this._data = data;
+		this._offsets = offsets;
+		this._lengths = lengths;
+	}
+
+	/**
+	 * @param datasetName SAMPLE or SYNTHETIC
+	 * @param syntheticRecordCount number of records to generate (ignored for SAMPLE)
+	 */
+	public static HLYDataset load(String datasetName, int syntheticRecordCount) throws IOException {
+		if (SAMPLE.equals(datasetName)) {
+			return loadSample();
+		}
+		else if (SYNTHETIC.equals(datasetName)) {
+			return generate(syntheticRecordCount);
+		}
+		throw new IllegalArgumentException(String.format("Unknown dataset: %s", datasetName));
+	}
+
+	private static HLYDataset loadSample() throws IOException {
+		InputStream in = HLYDataset.class.getResourceAsStream(SAMPLE_RESOURCE);
+		if (in == null) {
+			throw new FileNotFoundException(String.format("Resource not found: %s", SAMPLE_RESOURCE));
+		}
+
+		ByteArrayOutputStream content = new ByteArrayOutputStream();
+		try {
+			byte[] buffer = new byte[8192];
+			int count;
+			while ((count = in.read(buffer)) > 0) {
+				content.write(buffer, 0, count);
+			}
+		} finally {
+			in.close();
+		}
+
+		// split on line terminators, keeping the offsets into the original buffer
+		byte[] data = content.toByteArray();
+		int[] offsets = new int[data.length / 2 + 1];
+		int[] lengths = new int[offsets.length];
+		int recordCount = 0, lineStart = 0;
+		for (int kk = 0; kk <= data.length; kk++) {
+			if (kk == data.length || data[kk] == '\n') {
+				int lineEnd = (kk > lineStart && data[kk - 1] == '\r' ? kk - 1 : kk);
+				if (lineEnd > lineStart) {
+					offsets[recordCount] = lineStart;
+					lengths[recordCount] = lineEnd - lineStart;
+					recordCount++;
+				}
+				lineStart = kk + 1;
+			}
+		}
+		return new HLYDataset(data, Arrays.copyOf(offsets, recordCount), Arrays.copyOf(lengths, recordCount));
+	}
+
+	private static HLYDataset generate(int recordCount) throws IOException {
+		HLYRecordGenerator generator = new HLYRecordGenerator(HLYRecordGenerator.loadStationIDs(), 2012L);
+		byte[] data = new byte[recordCount * HLYRecordGenerator.RECORD_LENGTH];
+		int[] offsets = new int[recordCount];
+		int[] lengths = new int[recordCount];
+		for (int kk = 0; kk < recordCount; kk++) {
+			offsets[kk] = kk * HLYRecordGenerator.RECORD_LENGTH;
+			lengths[kk] = HLYRecordGenerator.RECORD_LENGTH;
+			generator.nextRecord(data, offsets[kk]);
+		}
+		return new HLYDataset(data, offsets, lengths);
+	}
+
+	public int size() {
+		return this._offsets.length;
+	}
+
+	public byte[] getData() {
+		return this._data;
+	}
+
+	public int getOffset(int index) {
+		return this._offsets[index];
+	}
+
+	public int getLength(int index) {
+		return this._lengths[index];
+	}
+
+	public String getLine(int index) {
+		return new String(this._data, this._offsets[index], this._lengths[index], StandardCharsets.US_ASCII);
+	}
+}
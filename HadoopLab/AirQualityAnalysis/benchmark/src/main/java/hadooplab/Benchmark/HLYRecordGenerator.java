@@ -0,0 +1,169 @@
+package hadooplab.Benchmark;
+
+import hadooplab.OzoneAnalysis.HLYRecordParser;
+import hadooplab.OzoneAnalysis.NAPSStationParser;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/*
+HOW TO USE (generate a big HLY file to feed the MapReduce drivers):
+   $ java -cp benchmarks.jar hadooplab.Benchmark.HLYRecordGenerator /tmp/Synthetic5M.hly 5000000
+*/
+
+/**
+ * Generate synthetic NAPS HLY records having the exact fixed-length layout described in /src/main/resources/00_Readme.txt
+ * - StationIDs are those of the real NAPS Stations file, so that the Station lookup finds a Location
+ * - Records are sorted by StationID then Date (365 days per station) like the real *.hly files
+ * - About 5% of the hourly readings are missing (-999)
+ * The generation is deterministic for a given seed, so that benchmark results are comparable between runs
+ */
+public class HLYRecordGenerator {
+	public static final int RECORD_LENGTH = 125;
+	private static final String STATION_RESOURCE = "/Stations_v28012014.csv";
+	private static final int OZONE_POLLUTANT_CODE = 7;
+	private static final int DAYS_PER_STATION = 365;
+	private static final double MISSING_READING_RATIO = 0.05;
+
+	private final Random _random;
+	private final int[] _stationIDs;
+	private final int[] _hourReadings = new int[HLYRecordParser.HOUR_COUNT];
+	private long _recordNumber = 0;
+
+	public HLYRecordGenerator(int[] stationIDs, long seed) {
+		this._stationIDs = stationIDs;
+		this._random = new Random(seed);
+	}
+
+	/**
+	 * Write the next record (RECORD_LENGTH bytes, no line terminator) in the buffer
+	 */
+	public void nextRecord(byte[] dest, int offset) {
+		int stationID = this._stationIDs[(int) ((this._recordNumber / DAYS_PER_STATION) % this._stationIDs.length)];
+		int dayOfYear = (int) (this._recordNumber % DAYS_PER_STATION);
+		this._recordNumber++;
+
+		// a station has a base level + a daily cycle peaking in the afternoon (like Ozone)
+		int baseLevel = 10 + Math.abs(stationID % 31);
+		int sum = 0, validCount = 0, min = Integer.MAX_VALUE, max = Integer.MIN_VALUE;
+		for (int kk = 0; kk < this._hourReadings.length; kk++) {
+			if (this._random.nextDouble() < MISSING_READING_RATIO) {
+				this._hourReadings[kk] = HLYRecordParser.INVALID_MEASURE;
+				continue;
+			}
+			int reading = baseLevel + (int) (15 * Math.sin(Math.PI * (kk - 6) / 12)) + this._random.nextInt(10);
+			reading = Math.max(0, reading);
+			this._hourReadings[kk] = reading;
+			sum += reading;
+			validCount++;
+			min = Math.min(min, reading);
+			max = Math.max(max, reading);
+		}
+
+		int pos = offset;
+		pos = writeZeroPadded(dest, pos, OZONE_POLLUTANT_CODE, 3);
+		pos = writeZeroPadded(dest, pos, stationID, 6);
+		pos = writeZeroPadded(dest, pos, dateOf(dayOfYear), 8);
+		pos = writeMeasure(dest, pos, validCount > 0 ? Math.round((float) sum / validCount) : HLYRecordParser.INVALID_MEASURE);
+		pos = writeMeasure(dest, pos, validCount > 0 ? min : HLYRecordParser.INVALID_MEASURE);
+		pos = writeMeasure(dest, pos, validCount > 0 ? max : HLYRecordParser.INVALID_MEASURE);
+		for (int reading : this._hourReadings) {
+			pos = writeMeasure(dest, pos, reading);
+		}
+	}
+
+	/**
+	 * The NAPS StationIDs of the Station file packaged as resource
+	 */
+	public static int[] loadStationIDs() throws IOException {
+		InputStream in = HLYRecordGenerator.class.getResourceAsStream(STATION_RESOURCE);
+		if (in == null) {
+			throw new FileNotFoundException(String.format("Resource not found: %s", STATION_RESOURCE));
+		}
+
+		List<Integer> ids = new ArrayList<Integer>();
+		BufferedReader buffReader = new BufferedReader(new InputStreamReader(in, StandardCharsets.ISO_8859_1));
+		try {
+			NAPSStationParser parser = new NAPSStationParser();
+			String line;
+			while ((line = buffReader.readLine()) != null) {
+				if (parser.parse(line) && parser.isValidRecord()) {
+					ids.add(parser.getStationID());
+				}
+			}
+		} finally {
+			buffReader.close();
+		}
+
+		int[] stationIDs = new int[ids.size()];
+		for (int kk = 0; kk < stationIDs.length; kk++) {
+			stationIDs[kk] = ids.get(kk);
+		}
+		return stationIDs;
+	}
+
+	/**
+	 * YYYYMMDD of the Nth day of 2012
+	 */
+	private static int dateOf(int dayOfYear) {
+		final int[] DAYS_IN_MONTH = {31, 29, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31};
+		int month = 0;
+		while (dayOfYear >= DAYS_IN_MONTH[month]) {
+			dayOfYear -= DAYS_IN_MONTH[month];
+			month++;
+		}
+		return 2012 * 10000 + (month + 1) * 100 + (dayOfYear + 1);
+	}
+
+	private static int writeZeroPadded(byte[] dest, int pos, int value, int width) {
+		for (int kk = width - 1; kk >= 0; kk--) {
+			dest[pos + kk] = (byte) ('0' + value % 10);
+			value /= 10;
+		}
+		return pos + width;
+	}
+
+	/**
+	 * Right-aligned on 4 chars, like "  23" or "-999"
+	 */
+	private static int writeMeasure(byte[] dest, int pos, int value) {
+		byte[] digits = Integer.toString(value).getBytes(StandardCharsets.US_ASCII);
+		int padding = 4 - digits.length;
+		for (int kk = 0; kk < padding; kk++) {
+			dest[pos + kk] = ' ';
+		}
+		System.arraycopy(digits, 0, dest, pos + padding, digits.length);
+		return pos + 4;
+	}
+
+	/**
+	 * Write a synthetic HLY file
+	 *
+	 * @param args arg1: output file, arg2: number of records
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 2) {
+			System.err.printf("Usage: %s <outputFile> <recordCount>\n", HLYRecordGenerator.class.getSimpleName());
+			System.exit(-1);
+		}
+
+		long recordCount = Long.parseLong(args[1]);
+		HLYRecordGenerator generator = new HLYRecordGenerator(loadStationIDs(), 2012L);
+		byte[] record = new byte[RECORD_LENGTH + 1];
+		record[RECORD_LENGTH] = '\n';
+
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(args[0]), 1 << 20);
+		try {
+			for (long kk = 0; kk < recordCount; kk++) {
+				generator.nextRecord(record, 0);
+				out.write(record);
+			}
+		} finally {
+			out.close();
+		}
+		System.out.printf("%d records written in %s\n", recordCount, args[0]);
+	}
+}
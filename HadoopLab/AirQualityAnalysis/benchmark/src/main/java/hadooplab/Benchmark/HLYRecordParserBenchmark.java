@@ -0,0 +1,92 @@
+package hadooplab.Benchmark;
+
+import hadooplab.OzoneAnalysis.HLYRecordParser;
+import hadooplab.OzoneAnalysis.HourlyStats;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of parsing one HLY record, as done by the mappers for every line of the input
+ * - parseString: the former mapper path, parse(value.toString())
+ * - parseBytes : parse directly the bytes of the Text
+ * - parseBytesAndCalcStats: parse + the 3 calculated statistics (as CheckOzoneFile does)
+ * - parseBytesAndFullStats: parse + variance and hour of the peak of HourlyStats (2nd loop for the peak)
+ * - parseBytesProjected: the LocationMapper path, StationID and DayAverage projected, plus isValidRecord()
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HLYRecordParserBenchmark {
+	@Param({HLYDataset.SAMPLE, HLYDataset.SYNTHETIC})
+	public String dataset;
+
+	@Param({"100000"})
+	public int syntheticRecordCount;
+
+	private HLYDataset _records;
+	private String[] _lines;
+	private final HLYRecordParser _parser = new HLYRecordParser();
+	private final HLYRecordParser _projectedParser = new HLYRecordParser();
+	private int _next = 0;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		this._records = HLYDataset.load(this.dataset, this.syntheticRecordCount);
+		this._lines = new String[this._records.size()];
+		for (int kk = 0; kk < this._lines.length; kk++) {
+			this._lines[kk] = this._records.getLine(kk);
+		}
+		this._projectedParser.setProjection(EnumSet.of(HLYRecordParser.Field.STATION_ID, HLYRecordParser.Field.DAY_STATS));
+	}
+
+	private int nextIndex() {
+		int index = this._next;
+		this._next = (index + 1 == this._records.size() ? 0 : index + 1);
+		return index;
+	}
+
+	@Benchmark
+	public int parseString() {
+		this._parser.parse(this._lines[nextIndex()]);
+		return this._parser.getStationIDValue();
+	}
+
+	@Benchmark
+	public int parseBytes() {
+		int index = nextIndex();
+		this._parser.parse(this._records.getData(), this._records.getOffset(index), this._records.getLength(index));
+		return this._parser.getStationIDValue();
+	}
+
+	@Benchmark
+	public void parseBytesAndCalcStats(Blackhole blackhole) {
+		int index = nextIndex();
+		this._parser.parse(this._records.getData(), this._records.getOffset(index), this._records.getLength(index));
+		blackhole.consume(this._parser.getCalcDayAverage());
+		blackhole.consume(this._parser.getCalcDayMin());
+		blackhole.consume(this._parser.getCalcDayMax());
+	}
+
+	@Benchmark
+	public void parseBytesAndFullStats(Blackhole blackhole) {
+		int index = nextIndex();
+		this._parser.parse(this._records.getData(), this._records.getOffset(index), this._records.getLength(index));
+		HourlyStats stats = this._parser.getHourlyStats();
+		blackhole.consume(stats.getVariance());
+		blackhole.consume(stats.getPeakHour());
+	}
+
+	@Benchmark
+	public int parseBytesProjected() {
+		int index = nextIndex();
+		this._projectedParser.parse(this._records.getData(), this._records.getOffset(index), this._records.getLength(index));
+		return (this._projectedParser.isValidRecord() ? this._projectedParser.getDayAverageValue() : this._projectedParser.getStationIDValue());
+	}
+}
@@ -0,0 +1,128 @@
+package hadooplab.Benchmark;
+
+import hadooplab.HiveUtil.*;
+import hadooplab.OzoneAnalysis.HLYRecordParser;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDF;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorFactory;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory;
+import org.apache.hadoop.io.IntWritable;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the Hive UDF evaluate() on the 24 hours readings of one row (array<int>, NULL for -999)
+ * - avg, min, max: one UDF
+ * - avgMinMax    : the 3 UDF on the same row, as the Hive queries do
+ * - genericAvgMinMax: the 3 GenericUDF on the same row, array of IntWritable read by its ObjectInspector
+ * - arrayStats   : array_stats, the 3 values in 1 pass
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HiveUDFBenchmark {
+	@Param({HLYDataset.SAMPLE, HLYDataset.SYNTHETIC})
+	public String dataset;
+
+	@Param({"100000"})
+	public int syntheticRecordCount;
+
+	private final IntegerArrayAvg _avgUDF = new IntegerArrayAvg();
+	private final IntegerArrayMin _minUDF = new IntegerArrayMin();
+	private final IntegerArrayMax _maxUDF = new IntegerArrayMax();
+	private final GenericIntegerArrayAvg _genericAvgUDF = new GenericIntegerArrayAvg();
+	private final GenericIntegerArrayMin _genericMinUDF = new GenericIntegerArrayMin();
+	private final GenericIntegerArrayMax _genericMaxUDF = new GenericIntegerArrayMax();
+	private final GenericIntegerArrayStats _arrayStatsUDF = new GenericIntegerArrayStats();
+	private ArrayList<Integer>[] _rows;
+	private GenericUDF.DeferredObject[][] _writableRows; // argument array<int> as stored in a SequenceFile table
+	private int _next = 0;
+
+	@Setup(Level.Trial)
+	@SuppressWarnings("unchecked")
+	public void setUp() throws IOException, HiveException {
+		HLYDataset records = HLYDataset.load(this.dataset, this.syntheticRecordCount);
+		HLYRecordParser parser = new HLYRecordParser();
+		this._rows = new ArrayList[records.size()];
+		this._writableRows = new GenericUDF.DeferredObject[records.size()][];
+		for (int kk = 0; kk < this._rows.length; kk++) {
+			parser.parse(records.getData(), records.getOffset(kk), records.getLength(kk));
+			ArrayList<Integer> hourReadings = new ArrayList<Integer>(HLYRecordParser.HOUR_COUNT);
+			for (int hh = 0; hh < HLYRecordParser.HOUR_COUNT; hh++) {
+				int reading = parser.getHourReadingValue(hh);
+				hourReadings.add(reading == HLYRecordParser.INVALID_MEASURE ? null : reading);
+			}
+			this._rows[kk] = hourReadings;
+
+			List<IntWritable> writableReadings = new ArrayList<IntWritable>(HLYRecordParser.HOUR_COUNT);
+			for (Integer reading : hourReadings) {
+				writableReadings.add(reading == null ? null : new IntWritable(reading));
+			}
+			this._writableRows[kk] = new GenericUDF.DeferredObject[] {new GenericUDF.DeferredJavaObject(writableReadings)};
+		}
+
+		ObjectInspector[] argumentOIs = {
+				ObjectInspectorFactory.getStandardListObjectInspector(PrimitiveObjectInspectorFactory.writableIntObjectInspector)};
+		this._genericAvgUDF.initialize(argumentOIs);
+		this._genericMinUDF.initialize(argumentOIs);
+		this._genericMaxUDF.initialize(argumentOIs);
+		this._arrayStatsUDF.initialize(argumentOIs);
+	}
+
+	private ArrayList<Integer> nextRow() {
+		int index = this._next;
+		this._next = (index + 1 == this._rows.length ? 0 : index + 1);
+		return this._rows[index];
+	}
+
+	private GenericUDF.DeferredObject[] nextWritableRow() {
+		int index = this._next;
+		this._next = (index + 1 == this._writableRows.length ? 0 : index + 1);
+		return this._writableRows[index];
+	}
+
+	@Benchmark
+	public Object avg() {
+		return this._avgUDF.evaluate(nextRow());
+	}
+
+	@Benchmark
+	public Object min() {
+		return this._minUDF.evaluate(nextRow());
+	}
+
+	@Benchmark
+	public Object max() {
+		return this._maxUDF.evaluate(nextRow());
+	}
+
+	@Benchmark
+	public void avgMinMax(Blackhole blackhole) {
+		ArrayList<Integer> row = nextRow();
+		blackhole.consume(this._avgUDF.evaluate(row));
+		blackhole.consume(this._minUDF.evaluate(row));
+		blackhole.consume(this._maxUDF.evaluate(row));
+	}
+
+	@Benchmark
+	public void genericAvgMinMax(Blackhole blackhole) throws HiveException {
+		GenericUDF.DeferredObject[] row = nextWritableRow();
+		blackhole.consume(this._genericAvgUDF.evaluate(row));
+		blackhole.consume(this._genericMinUDF.evaluate(row));
+		blackhole.consume(this._genericMaxUDF.evaluate(row));
+	}
+
+	@Benchmark
+	public Object arrayStats() throws HiveException {
+		return this._arrayStatsUDF.evaluate(nextWritableRow());
+	}
+}
@@ -0,0 +1,208 @@
+package hadooplab.Benchmark;
+
+import hadooplab.OzoneAnalysis.HLYRecordParser;
+import hadooplab.OzoneAnalysis.LocationMapper;
+import hadooplab.OzoneAnalysis.NAPSStationLookup;
+import hadooplab.OzoneAnalysis.OzoneAnalysisDriver;
+import hadooplab.OzoneAnalysis.SimpleStationMapper;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.*;
+import org.apache.hadoop.mapreduce.*;
+import org.apache.hadoop.mapreduce.lib.map.WrappedMapper;
+import org.apache.hadoop.mapreduce.task.MapContextImpl;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.*;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Allocations of the map() methods, per input record: run with the GC profiler and compare gc.alloc.rate.norm (bytes/op)
+ *
+ *	$ java -jar target/benchmarks.jar MapperAllocation -prof gc
+ *
+ * The real mappers are called with a real Hadoop Mapper.Context (WrappedMapper over MapContextImpl)
+ * whose RecordWriter serializes the key and the value like the map output buffer does
+ *
+ * - simpleStationMap, locationMap, identityMap: the mappers of hadooplab.OzoneAnalysis (re-used Writables, no String)
+ * - legacySimpleStationMap, legacyIdentityMap: the same work written as before (new Text/IntWritable per record,
+ *   getStationID().toString(), split() + String.format()), kept here as the baseline of the comparison
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MapperAllocationBenchmark {
+	private static final String STATION_RESOURCE = "/Stations_v28012014.csv";
+
+	@Param({HLYDataset.SAMPLE, HLYDataset.SYNTHETIC})
+	public String dataset;
+
+	@Param({"100000"})
+	public int syntheticRecordCount;
+
+	private HLYDataset _records;
+	private Text[] _hlyLines;
+	private Text[] _locationLines; // output of the Job 1 of OzoneAnalysisDriver: "Province\tCity\tMaxAvgOzone"
+	private final LongWritable _offset = new LongWritable();
+	private int _nextRecord = 0, _nextLocation = 0;
+
+	private final SerializingRecordWriter<Text, IntWritable> _textIntSink = new SerializingRecordWriter<Text, IntWritable>();
+	private final SerializingRecordWriter<IntWritable, Text> _intTextSink = new SerializingRecordWriter<IntWritable, Text>();
+	private SimpleStationMapper _simpleStationMapper;
+	private LocationMapper _locationMapper;
+	private OzoneAnalysisDriver.IdentityMapper _identityMapper;
+	private Mapper<LongWritable, Text, Text, IntWritable>.Context _textIntContext;
+	private Mapper<LongWritable, Text, IntWritable, Text>.Context _intTextContext;
+	private final HLYRecordParser _legacyParser = new HLYRecordParser();
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		this._records = HLYDataset.load(this.dataset, this.syntheticRecordCount);
+		this._hlyLines = new Text[this._records.size()];
+		for (int kk = 0; kk < this._hlyLines.length; kk++) {
+			this._hlyLines[kk] = new Text();
+			this._hlyLines[kk].set(this._records.getData(), this._records.getOffset(kk), this._records.getLength(kk));
+		}
+
+		NAPSStationLookup lookup = loadStationLookup();
+		Random random = new Random(2012L);
+		this._locationLines = new Text[lookup.getLocationCount()];
+		for (int id = 0; id < this._locationLines.length; id++) {
+			this._locationLines[id] = new Text(String.format("%s\t%d", lookup.getLocationName(id), random.nextInt(90)));
+		}
+
+		this._simpleStationMapper = new SimpleStationMapper();
+		this._locationMapper = new LocationMapper();
+		setField(this._locationMapper, "_stationLookup", lookup); // instead of setup() which reads the Distributed Cache
+		this._identityMapper = new OzoneAnalysisDriver.IdentityMapper();
+
+		this._textIntContext = newContext(this._textIntSink);
+		this._intTextContext = newContext(this._intTextSink);
+	}
+
+	@Benchmark
+	public int simpleStationMap() throws IOException, InterruptedException {
+		this._simpleStationMapper.map(this._offset, nextHLYLine(), this._textIntContext);
+		return this._textIntSink.getLength();
+	}
+
+	@Benchmark
+	public int legacySimpleStationMap() throws IOException, InterruptedException {
+		Text value = nextHLYLine();
+		this._legacyParser.parse(value.getBytes(), 0, value.getLength());
+		if (this._legacyParser.isValidRecord() && this._legacyParser.getDayAverage() != null) {
+			this._textIntContext.write(new Text(this._legacyParser.getStationID().toString()), new IntWritable(Math.round(this._legacyParser.getDayAverage())));
+		}
+		return this._textIntSink.getLength();
+	}
+
+	@Benchmark
+	public int locationMap() throws IOException, InterruptedException {
+		this._locationMapper.map(this._offset, nextHLYLine(), this._textIntContext);
+		return this._textIntSink.getLength();
+	}
+
+	@Benchmark
+	public int identityMap() throws IOException, InterruptedException {
+		this._identityMapper.map(this._offset, nextLocationLine(), this._intTextContext);
+		return this._intTextSink.getLength();
+	}
+
+	@Benchmark
+	public int legacyIdentityMap() throws IOException, InterruptedException {
+		String[] elems = nextLocationLine().toString().split("\\t", -1);
+		this._intTextContext.write(new IntWritable(Integer.parseInt(elems[2])), new Text(String.format("%s\t%s", elems[0], elems[1])));
+		return this._intTextSink.getLength();
+	}
+
+	private Text nextHLYLine() {
+		int index = this._nextRecord;
+		this._nextRecord = (index + 1 == this._hlyLines.length ? 0 : index + 1);
+		return this._hlyLines[index];
+	}
+
+	private Text nextLocationLine() {
+		int index = this._nextLocation;
+		this._nextLocation = (index + 1 == this._locationLines.length ? 0 : index + 1);
+		return this._locationLines[index];
+	}
+
+	private NAPSStationLookup loadStationLookup() throws IOException {
+		NAPSStationLookup lookup = new NAPSStationLookup();
+		BufferedReader buffReader = new BufferedReader(new InputStreamReader(
+				getClass().getResourceAsStream(STATION_RESOURCE), StandardCharsets.ISO_8859_1));
+		try {
+			lookup.initialize(buffReader);
+		} finally {
+			buffReader.close();
+		}
+		return lookup;
+	}
+
+	private static void setField(Object target, String fieldName, Object value) throws ReflectiveOperationException {
+		Field field = target.getClass().getDeclaredField(fieldName);
+		field.setAccessible(true);
+		field.set(target, value);
+	}
+
+	/**
+	 * A Mapper.Context as the MapTask builds it, the output goes to the writer, the counters to a local Counters
+	 */
+	private static <KI, VI, KO, VO> Mapper<KI, VI, KO, VO>.Context newContext(RecordWriter<KO, VO> writer) {
+		final Counters counters = new Counters();
+		StatusReporter reporter = new StatusReporter() {
+			@Override
+			public Counter getCounter(Enum<?> name) {
+				return counters.findCounter(name);
+			}
+
+			@Override
+			public Counter getCounter(String group, String name) {
+				return counters.findCounter(group, name);
+			}
+
+			@Override
+			public void progress() {
+			}
+
+			@Override
+			public float getProgress() {
+				return 0;
+			}
+
+			@Override
+			public void setStatus(String status) {
+			}
+		};
+		MapContext<KI, VI, KO, VO> mapContext = new MapContextImpl<KI, VI, KO, VO>(
+				new Configuration(false), new TaskAttemptID(), null, writer, null, reporter, null);
+		return new WrappedMapper<KI, VI, KO, VO>().getMapContext(mapContext);
+	}
+
+	/**
+	 * Serializes the key and the value into a re-used buffer, as the map output buffer does before the spill
+	 */
+	private static class SerializingRecordWriter<K extends Writable, V extends Writable> extends RecordWriter<K, V> {
+		private final DataOutputBuffer _buffer = new DataOutputBuffer();
+
+		@Override
+		public void write(K key, V value) throws IOException {
+			this._buffer.reset();
+			key.write(this._buffer);
+			value.write(this._buffer);
+		}
+
+		@Override
+		public void close(TaskAttemptContext context) {
+		}
+
+		int getLength() {
+			return this._buffer.getLength();
+		}
+	}
+}
@@ -0,0 +1,123 @@
+package hadooplab.Benchmark;
+
+import hadooplab.OzoneAnalysis.HLYRecordParser;
+import hadooplab.OzoneAnalysis.NAPSStationLookup;
+import hadooplab.OzoneAnalysis.NAPSStationParser;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the Station side of the map-side join:
+ * - parseStation  : NAPSStationParser.parse() of one line of the Stations CSV (done by every task in setup())
+ * - initialize    : load the whole Stations file into NAPSStationLookup (fixed cost of every map task)
+ * - lookupLocation: NAPSStationLookup.getStationLocation() for the StationIDs of the HLY records (once per record)
+ * - lookupLocationID, lookupLocationIDOffHeap: the primitive lookup used by the mappers, on-heap and off-heap table
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NAPSStationBenchmark {
+	private static final String STATION_RESOURCE = "/Stations_v28012014.csv";
+
+	@Param({HLYDataset.SAMPLE, HLYDataset.SYNTHETIC})
+	public String dataset;
+
+	@Param({"100000"})
+	public int syntheticRecordCount;
+
+	private String[] _stationLines;
+	private File _stationFile;
+	private final NAPSStationParser _parser = new NAPSStationParser();
+	private final NAPSStationLookup _lookup = new NAPSStationLookup();
+	private final NAPSStationLookup _offHeapLookup = new NAPSStationLookup(true);
+	private Integer[] _lookupIDs;
+	private int[] _lookupIntIDs;
+	private int _nextLine = 0, _nextID = 0;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		// NAPSStationLookup reads a local file (like the file of the Distributed Cache): copy the resource
+		this._stationFile = File.createTempFile("Stations", ".csv");
+		this._stationFile.deleteOnExit();
+		List<String> lines = new ArrayList<String>();
+		BufferedReader buffReader = new BufferedReader(new InputStreamReader(
+				getClass().getResourceAsStream(STATION_RESOURCE), StandardCharsets.ISO_8859_1));
+		Writer writer = new OutputStreamWriter(new FileOutputStream(this._stationFile), StandardCharsets.ISO_8859_1);
+		try {
+			String line;
+			while ((line = buffReader.readLine()) != null) {
+				lines.add(line);
+				writer.write(line);
+				writer.write('\n');
+			}
+		} finally {
+			buffReader.close();
+			writer.close();
+		}
+		this._stationLines = lines.toArray(new String[lines.size()]);
+		this._lookup.initialize(this._stationFile);
+		this._offHeapLookup.initialize(this._stationFile);
+
+		// the StationIDs in the order the mapper would look them up
+		HLYDataset records = HLYDataset.load(this.dataset, this.syntheticRecordCount);
+		HLYRecordParser hlyParser = new HLYRecordParser();
+		this._lookupIDs = new Integer[records.size()];
+		this._lookupIntIDs = new int[records.size()];
+		for (int kk = 0; kk < this._lookupIDs.length; kk++) {
+			hlyParser.parse(records.getData(), records.getOffset(kk), records.getLength(kk));
+			this._lookupIDs[kk] = hlyParser.getStationID();
+			this._lookupIntIDs[kk] = hlyParser.getStationIDValue();
+		}
+	}
+
+	@Benchmark
+	public boolean parseStation() {
+		int index = this._nextLine;
+		this._nextLine = (index + 1 == this._stationLines.length ? 0 : index + 1);
+		return this._parser.parse(this._stationLines[index]);
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	@Warmup(iterations = 20)
+	@Measurement(iterations = 50)
+	public NAPSStationLookup initialize() throws IOException {
+		NAPSStationLookup lookup = new NAPSStationLookup();
+		lookup.initialize(this._stationFile);
+		return lookup;
+	}
+
+	@Benchmark
+	public String lookupLocation() {
+		int index = this._nextID;
+		this._nextID = (index + 1 == this._lookupIDs.length ? 0 : index + 1);
+		Integer stationID = this._lookupIDs[index];
+		return (stationID == null ? null : this._lookup.getStationLocation(stationID));
+	}
+
+	@Benchmark
+	public byte[] lookupLocationID() {
+		return lookupBytes(this._lookup);
+	}
+
+	@Benchmark
+	public byte[] lookupLocationIDOffHeap() {
+		return lookupBytes(this._offHeapLookup);
+	}
+
+	private byte[] lookupBytes(NAPSStationLookup lookup) {
+		int index = this._nextID;
+		this._nextID = (index + 1 == this._lookupIntIDs.length ? 0 : index + 1);
+		int locationID = lookup.getLocationID(this._lookupIntIDs[index]);
+		return (locationID == NAPSStationLookup.NO_LOCATION ? null : lookup.getLocationBytes(locationID));
+	}
+}
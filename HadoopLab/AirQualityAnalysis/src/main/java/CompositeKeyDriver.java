@@ -1,15 +1,20 @@
-import org.apache.hadoop.conf.Configured;
+import hadooplab.OzoneAnalysis.HLYRecordFilter;
+import hadooplab.OzoneAnalysis.HLYRecordParser;
+import hadooplab.OzoneAnalysis.NAPSStationLookup;
+import hadooplab.OzoneAnalysis.OzoneDriverBase;
+import hadooplab.OzoneAnalysis.TotalOrderSampling;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.*;
 import org.apache.hadoop.mapreduce.Job;
 import org.apache.hadoop.mapreduce.Partitioner;
-import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
-import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
-import org.apache.hadoop.util.Tool;
 import org.apache.hadoop.util.ToolRunner;
 
-import java.net.URI;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.HashMap;
+import java.util.Map;
 
 /*
 HOW TO TEST:
@@ -35,6 +40,20 @@ Run the Java Program (ssh and run on Hadoop node)
    --Exec on HDFS (StationInfo added to DistribCache via API in MR Code)
    # hadoop jar OzoneAnalysisJavaMR.jar CompositeKeyDriver
 
+   --Several reducers with the Locations in total order (see TotalOrderSampling): part-r-* concatenated are sorted by Location
+   # hadoop jar OzoneAnalysisJavaMR.jar CompositeKeyDriver -D hadooplab.ozone.reducers=8 -D hadooplab.ozone.totalorder=true
+
+   --Compact shuffle: (LocationID, AverageOzone) as 2 VInts instead of the Location String, same output (see LocationIDMeasureKey)
+   --hash partitioned only: rejected with hadooplab.ozone.totalorder or hadooplab.ozone.skew
+   # hadoop jar OzoneAnalysisJavaMR.jar CompositeKeyDriver -D hadooplab.ozone.compactkey=true
+
+   --Compressed shuffle (codec class name or alias, see OzoneDriverBase)
+   # hadoop jar OzoneAnalysisJavaMR.jar CompositeKeyDriver -D hadooplab.ozone.map.output.codec=snappy
+
+   --Several reducers, the big metro areas split over several reducers (see SkewAwareLocationPartitioner)
+   # hadoop jar OzoneAnalysisJavaMR.jar CompositeKeyDriver -D hadooplab.ozone.reducers=8 -D hadooplab.ozone.skew=true
+   # hdfs dfs -cat /user/tri/OzoneJavaMR/output/part-r-*    (part-r-merged: the max of the split Locations)
+
 	--VERIF:
    # hdfs dfs -cat /user/tri/OzoneJavaMR/output/part-r-00000
    # rm -f ./OzoneByCities_JavaMR.txt
@@ -57,51 +76,71 @@ Run the Java Program (ssh and run on Hadoop node)
  *
  * 2014-04-19 - Tri.Nguyen
  */
-public class CompositeKeyDriver extends Configured implements Tool {
+public class CompositeKeyDriver extends OzoneDriverBase {
+	/** Configuration property: true to shuffle the compact key LocationIDMeasureKey instead of LocationMeasureCompoKey */
+	public static final String CONF_COMPACT_KEY = "hadooplab.ozone.compactkey";
 	private static final String STATION_HDFS_FILENAME = "/user/tri/OzoneJavaMR/NAPSStation/Stations_v28012014.csv";
 	//private static final String NAPS_OZONE_INPUTFILE = "/user/tri/MiniOzoneSample.txt"; // path is on HDFS
 	private static final String NAPS_OZONE_INPUTFILE = "/user/tri/OzoneJavaMR/Ozone2012RawFL/2012O3.hly"; // path is on HDFS
 	private static final String REDUCER_OUTPUT_DIR = "/user/tri/OzoneJavaMR/output"; // path is on HDFS
 
+	public CompositeKeyDriver() {
+		super(NAPS_OZONE_INPUTFILE, REDUCER_OUTPUT_DIR, STATION_HDFS_FILENAME);
+	}
+
 	//@Override
 	public int run(String[] args) throws Exception {
-		if (args.length != 2) {
-			System.err.printf("Usage: %s [generic options] <input> <output>\n", getClass().getSimpleName());
-			ToolRunner.printGenericCommandUsage(System.err);
+		if (!parseArgs(args)) {
+			return -1;
+		}
+		boolean compactKey = getConf().getBoolean(CONF_COMPACT_KEY, false);
+		if (compactKey && (TotalOrderSampling.isEnabled(getConf()) || SkewAwareLocationPartitioner.isEnabled(getConf()))) {
+			// the split points and the skew sample are Location Strings, LocationIDMeasureKey is hash partitioned only
+			System.err.printf("%s cannot be combined with %s or %s: the compact key is hash partitioned only\n",
+					CONF_COMPACT_KEY, TotalOrderSampling.CONF_ENABLED, SkewAwareLocationPartitioner.CONF_ENABLED);
 			return -1;
 		}
 
-		Job job = org.apache.hadoop.mapreduce.Job.getInstance(getConf()); // getConf() comes from inherited parent class Configured
-		job.setJobName("Most Polluted Cities by Ozone");
-		job.setJarByClass(getClass());
+		boolean filtered = configureRecordFilter(); // predicates on the HLY records, see HLYRecordFilter
+
+		// reducers, split size and output codec of the Configuration (see OzoneDriverBase)
+		Job job = newJob("Most Polluted Cities by Ozone");
 
 		// Delete automatically the output dir if its already exists
 		// Equivalent of doing manually:
 		// # hdfs dfs -rm -R -skipTrash /user/tri/OzoneJavaMR/output/
-		System.out.printf("Delete Output Directory: %s\n", args[1]);
-		Path outputPath = new Path(args[1]);
-		FileSystem fs = FileSystem.get(new URI(args[1]), getConf());
-		fs.delete(outputPath, true); // true=recursive
-
-		FileInputFormat.addInputPath(job, new Path(args[0])); // input file for mapper
-		FileOutputFormat.setOutputPath(job, outputPath); // output directory (contain reducer results)
-
-		job.setMapperClass(CompositeKeyMapper.class);
-		job.setMapOutputKeyClass(LocationMeasureCompoKey.class);
-		job.setMapOutputValueClass(NullWritable.class);
-
-		// The "simple" Reducer just computes max() which is an associative operator, therefore compatible as Combiner
-		//job.setCombinerClass(SimpleMaxAvgReducer.class);
+		setInput(job); // input files for mapper
+		setOutput(job, getOutputPath()); // output directory (contain reducer results)
+		if (filtered) {
+			// the samples of the total order / skew split are still drawn from all the lines: valid ranges, only less even
+			job.setInputFormatClass(HLYRecordFilter.FilteringTextInputFormat.class);
+		}
 
-		job.setReducerClass(CompositeKeyReducer.class);
-		job.setOutputKeyClass(LocationMeasureCompoKey.class);
-		job.setOutputValueClass(NullWritable.class);
+		if (compactKey) {
+			// (LocationID, AverageOzone) as 2 VInts instead of the Location String (see LocationIDMeasureKey)
+			job.setMapperClass(LocationIDKeyMapper.class);
+			job.setMapOutputKeyClass(LocationIDMeasureKey.class);
+			job.setMapOutputValueClass(NullWritable.class);
+			job.setReducerClass(LocationIDKeyReducer.class);
+			job.setOutputKeyClass(Text.class);
+			job.setOutputValueClass(IntWritable.class);
+		} else {
+			job.setMapperClass(CompositeKeyMapper.class);
+			job.setMapOutputKeyClass(LocationMeasureCompoKey.class);
+			job.setMapOutputValueClass(NullWritable.class);
+
+			// The "simple" Reducer just computes max() which is an associative operator, therefore compatible as Combiner
+			//job.setCombinerClass(SimpleMaxAvgReducer.class);
+
+			job.setReducerClass(CompositeKeyReducer.class);
+			job.setOutputKeyClass(LocationMeasureCompoKey.class);
+			job.setOutputValueClass(NullWritable.class);
+		}
 
 		// Send the Station Info to Hadoop Distributed Cache via API
 		// equivalence of cmdline option -file hdfsFilename. Example:
 		// # hadoop jar OzoneAnalysisJavaMR.jar CompositeKeyDriver -files /root/HadoopExo/Hive/Data/Stations_v28012014.csv
-		java.net.URI stationFileURI = java.net.URI.create(STATION_HDFS_FILENAME);
-		job.addCacheFile(stationFileURI);
+		job.addCacheFile(getStationCacheURI());
 
 		//Create a symlink to make the file available in the task working dir
 		//Ex: the file specified by the URI hdfs://namenode/foo/bar#MyFile is symlinked as MyFile in the task’s working directory
@@ -109,20 +148,89 @@ public class CompositeKeyDriver extends Configured implements Tool {
 		job.createSymlink();
 
 		//Settings for Secondary Sort (to sort Reducer reesults by value instead of by Key)
-		job.setPartitionerClass(LocationPartitioner.class);
+		boolean skewAware = false;
+		if (compactKey) {
+			// same Secondary Sort on the LocationIDs, hash partitioning only (total order and skew split rejected above)
+			job.setSortComparatorClass(LocationIDMeasureKey.SortComparator.class);
+			job.setGroupingComparatorClass(LocationIDMeasureKey.GroupComparator.class);
+			job.setPartitionerClass(LocationIDMeasureKey.LocationIDPartitioner.class);
+			return job.waitForCompletion(true) ? 0 : 1;
+		}
 		job.setSortComparatorClass(LocAvgKeyComparator.class);
 		job.setGroupingComparatorClass(GroupComparator.class);
+		if (TotalOrderSampling.isEnabled(getConf())) {
+			// contiguous ranges of Locations instead of hashing: the split points are Locations (see LocationKeyExtractor)
+			// so a Location is never split between 2 reducers, as with LocationPartitioner
+			TotalOrderSampling.configure(job, new LocationKeyExtractor(loadStationLookup()),
+					new Path(getOutputPath().getParent(), "_" + getOutputPath().getName() + "_partitions"));
+		} else if (SkewAwareLocationPartitioner.isEnabled(getConf()) && job.getNumReduceTasks() > 1) {
+			// the heavy Locations of a sample are spread over several reducers (see SkewAwareLocationPartitioner)
+			skewAware = configureSkewAware(job);
+		} else {
+			job.setPartitionerClass(LocationPartitioner.class);
+		}
+
+		if (!job.waitForCompletion(true)) {
+			return 1;
+		}
+		if (skewAware) {
+			int merged = SkewAwareLocationPartitioner.mergePartials(job, getOutputPath());
+			System.out.printf("===^^^ Skew: partial max of %d split Locations merged in %s ^^^===\n", merged, SkewAwareLocationPartitioner.MERGED_FILENAME);
+		}
+		return 0;
+	}
+
+	/**
+	 * Count the records of each Location in a sample of the input, set SkewAwareLocationPartitioner with the heavy ones
+	 *
+	 * @return true when at least 1 Location is split (its partial max must be merged after the job)
+	 */
+	private boolean configureSkewAware(Job job) throws IOException, InterruptedException {
+		Object[] samples = TotalOrderSampling.sample(job, new LocationKeyExtractor(loadStationLookup()));
+		Map<String, Integer> sampleCounts = new HashMap<String, Integer>();
+		for (Object sample : samples) {
+			String location = ((LocationMeasureCompoKey) sample).getLocation();
+			Integer count = sampleCounts.get(location);
+			sampleCounts.put(location, count == null ? 1 : count + 1);
+		}
+
+		Map<String, Integer> splits = SkewAwareLocationPartitioner.computeSplits(sampleCounts, job.getNumReduceTasks(),
+				getConf().getDouble(SkewAwareLocationPartitioner.CONF_THRESHOLD, SkewAwareLocationPartitioner.DEFAULT_THRESHOLD));
+		System.out.printf("===^^^ Skew: %d sampled records, split Locations: %s ^^^===\n", samples.length, splits);
+		SkewAwareLocationPartitioner.setSplits(job.getConfiguration(), splits);
+		job.setPartitionerClass(SkewAwareLocationPartitioner.class);
+		if (splits.isEmpty()) {
+			return false;
+		}
+		SkewAwareLocationPartitioner.addPartialOutput(job);
+		return true;
+	}
 
-		return job.waitForCompletion(true) ? 0 : 1;
+	/**
+	 * The Station file read by the driver itself (the tasks read it from the Distributed Cache) for the sampling
+	 */
+	private NAPSStationLookup loadStationLookup() throws IOException {
+		Path stationPath = new Path(getStationFileURI());
+		FileSystem fs = stationPath.getFileSystem(getConf());
+		// default charset, as the FileReader of NAPSStationLookup.initialize(File) in the tasks
+		BufferedReader buffReader = new BufferedReader(new InputStreamReader(fs.open(stationPath)));
+		try {
+			NAPSStationLookup stationLookup = new NAPSStationLookup();
+			stationLookup.initialize(buffReader);
+			return stationLookup;
+		} finally {
+			buffReader.close();
+		}
 	}
 
 	/**
 	 * Start Driver using Tool Runner allowing to pass args[] and custom Hadoop config and/or properties at the command line
 	 *
-	 * @param args arg1: HDFS path of the Ozone HLY File, arg2: HDFS path of directory where the Reducer will save output file
+	 * @param args arg1: HDFS path(s) of the Ozone HLY Files, arg2: HDFS path of directory where the Reducer will save output file
+	 *             (hadooplab.ozone.input / hadooplab.ozone.output or the default paths when not given, see OzoneDriverBase)
 	 */
 	public static void main(String[] args) throws Exception {
-		int exitCode = ToolRunner.run(new CompositeKeyDriver(), new String[] {NAPS_OZONE_INPUTFILE, REDUCER_OUTPUT_DIR});
+		int exitCode = ToolRunner.run(new CompositeKeyDriver(), args);
 		System.exit(exitCode);
 	}
 
@@ -134,10 +242,26 @@ public class CompositeKeyDriver extends Configured implements Tool {
 	 * Compare2 AverageOzoneValue (descending), the value within the grouping key
 	 * This sorting is used by the shuffle on the output of the map
 	 * NOTE: this class is used in  job.setSortComparatorClass()
+	 *
+	 * The shuffle only calls the raw compare(byte[]...), which compares the serialized keys
+	 * without deserializing them (no readUTF() for each of the millions of comparisons of the sort)
 	 */
 	public static class LocAvgKeyComparator extends WritableComparator {
 		protected LocAvgKeyComparator() {
-			super(LocationMeasureCompoKey.class, true);
+			super(LocationMeasureCompoKey.class);
+		}
+
+		@Override
+		public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+			//==1==: Compare the grouping Key (Location)
+			int compare = LocationMeasureCompoKey.compareLocationBytes(b1, s1, b2, s2);
+			if (compare == 0) {
+				//==2== if group key was identical, Compare the value (Descending Order)
+				return LocationMeasureCompoKey.compareIntDescending(
+						LocationMeasureCompoKey.readAverageOzone(b1, s1), LocationMeasureCompoKey.readAverageOzone(b2, s2));
+			}
+
+			return compare;
 		}
 
 		@Override
@@ -167,7 +291,8 @@ public class CompositeKeyDriver extends Configured implements Tool {
 	public static class LocationPartitioner extends Partitioner<LocationMeasureCompoKey, NullWritable> {
 		@Override
 		public int getPartition(LocationMeasureCompoKey key, NullWritable value, int numReduceTasks) {
-			int partitionNum = Math.abs(key.getLocation().hashCode()) % numReduceTasks;
+			// & MAX_VALUE instead of Math.abs(): Math.abs(Integer.MIN_VALUE) is negative, an invalid partition
+			int partitionNum = (key.getLocation().hashCode() & Integer.MAX_VALUE) % numReduceTasks;
 
 			//System.out.printf("===^^^===Partitioner, Location:%s, ParitionNumber: %d\n", key.getLocation(), partitionNum);
 			return partitionNum;
@@ -175,6 +300,39 @@ public class CompositeKeyDriver extends Configured implements Tool {
 	}
 
 
+	/**
+	 * The map output key of CompositeKeyMapper for the sampling, with Integer.MAX_VALUE as AverageOzone:
+	 * the ozone is sorted descending, (Location, MAX_VALUE) is the 1st key of its Location
+	 * and every key of a Location is in the same range than its split point
+	 */
+	static class LocationKeyExtractor implements TotalOrderSampling.KeyExtractor<LocationMeasureCompoKey> {
+		private final HLYRecordParser _hlyParser = new HLYRecordParser();
+		private final NAPSStationLookup _stationLookup;
+
+		LocationKeyExtractor(NAPSStationLookup stationLookup) {
+			this._stationLookup = stationLookup;
+		}
+
+		@Override
+		public boolean extract(Text line, LocationMeasureCompoKey key) {
+			try {
+				this._hlyParser.parse(line.getBytes(), 0, line.getLength());
+				if (!this._hlyParser.isValidRecord()) {
+					return false;
+				}
+			} catch (RuntimeException ex) {
+				return false; // counted and skipped by CompositeKeyMapper
+			}
+			// same Location than CompositeKeyMapper, the StationID when the Station has no Location
+			int stationID = this._hlyParser.getStationIDValue();
+			int locationID = this._stationLookup.getLocationID(stationID);
+			key.set(locationID == NAPSStationLookup.NO_LOCATION ? Integer.toString(stationID)
+					: this._stationLookup.getLocationName(locationID), Integer.MAX_VALUE);
+			return true;
+		}
+	}
+
+
 	/**
 	 * Custom GROUP Comparator to group keys by the Location field of the composite key
 	 * This class change the grouping of the keys in the reducer
@@ -187,10 +345,16 @@ public class CompositeKeyDriver extends Configured implements Tool {
 	 * thanks to the implmentation of LocationMeasureCompoKey.compareTo()
 	 *
 	 * NOTE: this class is used in  job.setGroupingComparatorClass()
+	 * Like the sort comparator, the reduce-side merge calls the raw compare(byte[]...) on the serialized keys
 	 */
 	public static class GroupComparator extends WritableComparator {
 		protected GroupComparator() {
-			super(LocationMeasureCompoKey.class, true);
+			super(LocationMeasureCompoKey.class);
+		}
+
+		@Override
+		public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+			return LocationMeasureCompoKey.compareLocationBytes(b1, s1, b2, s2);
 		}
 
 		@Override
@@ -29,6 +29,7 @@ public class CompositeKeyMapper extends Mapper<LongWritable, Text, LocationMeasu
 	private static final String STATION_LOCAL_RELATIVE_FILENAME = "Stations_v28012014.csv";
 	private HLYRecordParser _hlyParser = new HLYRecordParser();
 	private NAPSStationLookup _stationLookup;
+	private LocationMeasureCompoKey _compositeKey = new LocationMeasureCompoKey(); // re-used for every output record
 
 	// Example where this Enum is fully used: htdg.Ch05_MRDev.MaxTempMapperRobust
 	enum NAPS_HLYRecordQuality {
@@ -44,7 +45,6 @@ public class CompositeKeyMapper extends Mapper<LongWritable, Text, LocationMeasu
 	 */
 	@Override
 	protected void setup(Context context) throws IOException, InterruptedException {
-		_stationLookup = new NAPSStationLookup();
 		// Version1: The Station Info file was sent to the Distributed Cache via the cmdline using GenericOptionsParser (-file argument)
 		// # hadoop jar TorPASSApril2014.jar CompositeKeyDriver -files /root/HadoopExo/Hive/Data/Stations_v28012014.csv
 		//_stationLookup.initialize(new File(STATION_LOCAL_RELATIVE_FILENAME));
@@ -56,7 +56,7 @@ public class CompositeKeyMapper extends Mapper<LongWritable, Text, LocationMeasu
 		}
 
 		File stationInfoLocalFile = new File(localPaths[0].toString());
-		_stationLookup.initialize(stationInfoLocalFile);
+		_stationLookup = NAPSStationLookup.load(context.getConfiguration(), stationInfoLocalFile);
 	}
 
 	/**
@@ -72,20 +72,27 @@ public class CompositeKeyMapper extends Mapper<LongWritable, Text, LocationMeasu
 			throws IOException, InterruptedException {
 
 		try {
-			this._hlyParser.parse(value.toString());
+			this._hlyParser.parse(value.getBytes(), 0, value.getLength()); // no String decoding of the Text bytes
 
 			if (this._hlyParser.isValidRecord()) {
-				String stationLocation = _stationLookup.getStationLocation(this._hlyParser.getStationID());
+				int stationID = this._hlyParser.getStationIDValue();
+				int locationID = _stationLookup.getLocationID(stationID);
+				String stationLocation;
 
-				if (stationLocation == null) {
+				if (locationID == NAPSStationLookup.NO_LOCATION) {
+					// no match: fall back to the StationID (same as NAPSStationLookup.getStationLocation())
 					context.getCounter(NAPS_HLYRecordQuality.MissingLocation).increment(1);
+					stationLocation = Integer.toString(stationID);
 				} else {
-					int avgOzone = Math.round(this._hlyParser.getCalcDayAverage());
-					LocationMeasureCompoKey compositeKey = new LocationMeasureCompoKey(stationLocation, avgOzone);
-					context.write(compositeKey, NullWritable.get());
-					//context.write(compositeKey, new IntWritable(avgOzone));
-					//System.out.printf("===^^^===Mapper, CompositeKey: %s\n", compositeKey.toString());
+					stationLocation = _stationLookup.getLocationName(locationID); // shared instance, no allocation
 				}
+
+				int avgOzone = Math.round(this._hlyParser.getCalcDayAverage());
+				// context.write() serializes the key immediately: the same object can be re-used for the next record
+				this._compositeKey.set(stationLocation, avgOzone);
+				context.write(this._compositeKey, NullWritable.get());
+				//context.write(compositeKey, new IntWritable(avgOzone));
+				//System.out.printf("===^^^===Mapper, CompositeKey: %s\n", compositeKey.toString());
 			}
 			else {
 				context.getCounter(NAPS_HLYRecordQuality.INVALID).increment(1);
@@ -1,15 +1,31 @@
 import org.apache.hadoop.io.*;
 import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
+
 import java.io.IOException;
+import java.util.Map;
 
 /**
  * Reducer outputing outputing (compositeKey, Null). The compositeKey contains (Location, AverageOzoneValue)
  * NOTE: this Reducer makes NO calculation of max(AverageOzoneValue)
  * The magic happens in the custom Partitioner, GroupComparer, SortComparator configured in the Driver class
  *
+ * + With SkewAwareLocationPartitioner, a split Location is only partly seen by this reducer:
+ *   its max is a partial max, written in the named output "partial" and merged by the driver
+ *
  * 2014-04-20 - Tri.Nguyen
  */
 public class CompositeKeyReducer extends Reducer<LocationMeasureCompoKey, NullWritable, LocationMeasureCompoKey, NullWritable> {
+	private Map<String, Integer> _splitLocations; // empty when the heavy Locations are not split
+	private MultipleOutputs<LocationMeasureCompoKey, NullWritable> _partialOutputs; // null when there is no split Location
+
+	@Override
+	protected void setup(Context context) throws IOException, InterruptedException {
+		this._splitLocations = SkewAwareLocationPartitioner.getSplits(context.getConfiguration());
+		if (!this._splitLocations.isEmpty()) {
+			this._partialOutputs = new MultipleOutputs<LocationMeasureCompoKey, NullWritable>(context);
+		}
+	}
 
 	/**
 	 * Simple Reducer + just an excep handler to improve robustness
@@ -29,7 +45,11 @@ public class CompositeKeyReducer extends Reducer<LocationMeasureCompoKey, NullWr
 //				maxValue = Math.max(maxValue, value.get());
 //			}
 //			context.write(compoKey, new IntWritable(maxValue));
-			context.write(compoKey, NullWritable.get());
+			if (this._partialOutputs != null && this._splitLocations.containsKey(compoKey.getLocation())) {
+				this._partialOutputs.write(SkewAwareLocationPartitioner.PARTIAL_OUTPUT, compoKey, NullWritable.get());
+			} else {
+				context.write(compoKey, NullWritable.get());
+			}
 		}
 		catch (Exception ex) {
 			// Display the error msg in the Console as a Map Status Msg, which will be displayed
@@ -45,5 +65,10 @@ public class CompositeKeyReducer extends Reducer<LocationMeasureCompoKey, NullWr
 		}
 	}
 
-
+	@Override
+	protected void cleanup(Context context) throws IOException, InterruptedException {
+		if (this._partialOutputs != null) {
+			this._partialOutputs.close();
+		}
+	}
 }
@@ -0,0 +1,77 @@
+import hadooplab.OzoneAnalysis.HLYRecordParser;
+import hadooplab.OzoneAnalysis.NAPSStationLookup;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.Mapper;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.URI;
+
+/**
+ * Same as CompositeKeyMapper with the compact key LocationIDMeasureKey: outputing ((LocationID, AverageOzoneValue), Null)
+ * The map-side join stops at the LocationID, the Location name is only written by LocationIDKeyReducer
+ */
+public class LocationIDKeyMapper extends Mapper<LongWritable, Text, LocationIDMeasureKey, NullWritable> {
+	private HLYRecordParser _hlyParser = new HLYRecordParser();
+	private NAPSStationLookup _stationLookup;
+	private LocationIDMeasureKey _compactKey = new LocationIDMeasureKey(); // re-used for every output record
+
+	enum NAPS_HLYRecordQuality {
+		INVALID, // record too short, unreadable or contained corrupted data
+		MissingLocation // cannot resolve the LocationName via the StationID
+	}
+
+	@Override
+	protected void setup(Context context) throws IOException, InterruptedException {
+		_stationLookup = loadStationLookup(context);
+	}
+
+	/**
+	 * The Station file added by the Driver to the Distributed Cache: the dictionary of the LocationIDs
+	 * (the mappers and the reducers must read the same file to get the same LocationIDs)
+	 */
+	static NAPSStationLookup loadStationLookup(JobContext context) throws IOException {
+		URI[] cacheFileURIs = context.getCacheFiles();
+		if (cacheFileURIs == null || cacheFileURIs.length == 0) {
+			throw new FileNotFoundException("Distributed cache file for NAPS StationInfo not found");
+		}
+		// as LocationMapper: the cached file is linked in the working folder of the task under its own name
+		File stationFile = new File(FilenameUtils.getName(cacheFileURIs[0].getPath()));
+		return NAPSStationLookup.load(context.getConfiguration(), stationFile);
+	}
+
+	@Override
+	public void map(LongWritable key, Text value, Context context)
+			throws IOException, InterruptedException {
+
+		try {
+			this._hlyParser.parse(value.getBytes(), 0, value.getLength()); // no String decoding of the Text bytes
+
+			if (this._hlyParser.isValidRecord()) {
+				int stationID = this._hlyParser.getStationIDValue();
+				int locationID = _stationLookup.getLocationID(stationID);
+				if (locationID == NAPSStationLookup.NO_LOCATION) {
+					context.getCounter(NAPS_HLYRecordQuality.MissingLocation).increment(1);
+					locationID = LocationIDMeasureKey.stationKeyID(stationID);
+				}
+
+				this._compactKey.set(locationID, Math.round(this._hlyParser.getCalcDayAverage()));
+				context.write(this._compactKey, NullWritable.get());
+			}
+			else {
+				context.getCounter(NAPS_HLYRecordQuality.INVALID).increment(1);
+			}
+		}
+		catch (Exception ex) {
+			// same handling as CompositeKeyMapper: Map Status Msg + dynamic counter named after the exception
+			context.setStatus(String.format("FAILED Parsing Input Record, ERROR: %s, InputLength:%d, InputRecord: %s",
+					ex.getMessage(), value.toString().length(), value.toString()));
+			context.getCounter(getClass().getSimpleName(), ex.getClass().getSimpleName()).increment(1);
+		}
+	}
+}
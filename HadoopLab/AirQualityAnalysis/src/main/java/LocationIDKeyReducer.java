@@ -0,0 +1,36 @@
+import hadooplab.OzoneAnalysis.NAPSStationLookup;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Reducer;
+
+import java.io.IOException;
+
+/**
+ * Same as CompositeKeyReducer for the compact key LocationIDMeasureKey:
+ * the 1st key of each group is the max (AverageOzone sorted descending), its LocationID is replaced by the Location name
+ * Output: "Province\tCity\tMaxAvgOzone", the same lines than CompositeKeyReducer
+ */
+public class LocationIDKeyReducer extends Reducer<LocationIDMeasureKey, NullWritable, Text, IntWritable> {
+	private NAPSStationLookup _stationLookup;
+	private Text _location = new Text(); // re-used for every key
+	private IntWritable _maxAvgOzone = new IntWritable(); // re-used for every key
+
+	@Override
+	protected void setup(Context context) throws IOException, InterruptedException {
+		_stationLookup = LocationIDKeyMapper.loadStationLookup(context);
+	}
+
+	@Override
+	public void reduce(LocationIDMeasureKey compactKey, Iterable<NullWritable> values, Context context)
+			throws IOException, InterruptedException {
+
+		if (compactKey.hasLocation()) {
+			this._location.set(_stationLookup.getLocationBytes(compactKey.getLocationID()));
+		} else {
+			this._location.set(Integer.toString(compactKey.getStationID()));
+		}
+		this._maxAvgOzone.set(compactKey.getAverageOzone());
+		context.write(this._location, this._maxAvgOzone);
+	}
+}
@@ -0,0 +1,217 @@
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.hadoop.mapreduce.Partitioner;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Compact version of LocationMeasureCompoKey for the Secondary Sort: (LocationID, Average Ozone Value)
+ *
+ * The Location is the LocationID of NAPSStationLookup instead of the "Province\tCity" String:
+ * the mappers and the reducers build the same dictionary from the same Station file of the Distributed Cache
+ * (LocationIDs are assigned in the alphabetical order of the Locations), the reducer writes the name back
+ *
+ * Both fields are written as VInt: 2-3 bytes per key instead of 2 + ~20 + 4 with writeUTF() + writeInt()
+ * A Station without Location (the StationID is the Location of LocationMeasureCompoKey) has a negative ID: -1 - StationID
+ * (those keys come first, by StationID descending, instead of the text order of the StationIDs)
+ *
+ * Sorting by LocationID is sorting by Location name, the comparators below compare the VInts on the serialized bytes
+ */
+public class LocationIDMeasureKey implements WritableComparable<LocationIDMeasureKey> {
+	private int _locationID;
+	private int _averageOzone;
+
+	static {
+		// default comparator of the key class, used by WritableComparator.get(LocationIDMeasureKey.class)
+		WritableComparator.define(LocationIDMeasureKey.class, new Comparator());
+	}
+
+	public LocationIDMeasureKey() {
+	}
+
+	public LocationIDMeasureKey(int locationID, int avgOzoneValue) {
+		set(locationID, avgOzoneValue);
+	}
+
+	public void set(int locationID, int avgOzoneValue) {
+		this._locationID = locationID;
+		this._averageOzone = avgOzoneValue;
+	}
+
+	/**
+	 * @return the key of a Station without Location (NAPSStationLookup.NO_LOCATION), negative
+	 */
+	public static int stationKeyID(int stationID) {
+		return -1 - stationID;
+	}
+
+	public int getLocationID() {
+		return this._locationID;
+	}
+
+	public int getAverageOzone() {
+		return this._averageOzone;
+	}
+
+	/**
+	 * @return true when getLocationID() is a LocationID of NAPSStationLookup, false when it is a StationID (see getStationID())
+	 */
+	public boolean hasLocation() {
+		return this._locationID >= 0;
+	}
+
+	public int getStationID() {
+		return -1 - this._locationID;
+	}
+
+	@Override
+	public void write(DataOutput out) throws IOException {
+		WritableUtils.writeVInt(out, this._locationID);
+		WritableUtils.writeVInt(out, this._averageOzone);
+	}
+
+	@Override
+	public void readFields(DataInput in) throws IOException {
+		this._locationID = WritableUtils.readVInt(in);
+		this._averageOzone = WritableUtils.readVInt(in);
+	}
+
+	@Override
+	public int hashCode() {
+		// the LocationID itself: stable between JVMs and nothing to compute
+		return this._locationID;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (o instanceof LocationIDMeasureKey) {
+			LocationIDMeasureKey key = (LocationIDMeasureKey) o;
+			return this._locationID == key._locationID && this._averageOzone == key._averageOzone;
+		}
+		return false;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d\t%d", this._locationID, this._averageOzone);
+	}
+
+	/**
+	 * LocationID then AverageOzone, both ascending
+	 */
+	@Override
+	public int compareTo(LocationIDMeasureKey key) {
+		int cmp = LocationMeasureCompoKey.compareInt(this._locationID, key._locationID);
+		if (cmp == 0) {
+			cmp = LocationMeasureCompoKey.compareInt(this._averageOzone, key._averageOzone);
+		}
+		return cmp;
+	}
+
+
+	/**
+	 * Raw comparator, same order than compareTo() but decoding the 2 VInts of the serialized keys
+	 */
+	public static class Comparator extends WritableComparator {
+		public Comparator() {
+			super(LocationIDMeasureKey.class);
+		}
+
+		@Override
+		public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+			try {
+				int cmp = compareInt(readVInt(b1, s1), readVInt(b2, s2));
+				if (cmp == 0) {
+					cmp = compareInt(readAverageOzone(b1, s1), readAverageOzone(b2, s2));
+				}
+				return cmp;
+			} catch (IOException ex) {
+				throw new IllegalArgumentException(ex);
+			}
+		}
+	}
+
+	/**
+	 * SORT comparator of the Secondary Sort: LocationID, then AverageOzone DESCENDING
+	 * (same order than CompositeKeyDriver.LocAvgKeyComparator)
+	 */
+	public static class SortComparator extends WritableComparator {
+		public SortComparator() {
+			super(LocationIDMeasureKey.class);
+		}
+
+		@Override
+		public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+			try {
+				int cmp = compareInt(readVInt(b1, s1), readVInt(b2, s2));
+				if (cmp == 0) {
+					cmp = LocationMeasureCompoKey.compareIntDescending(readAverageOzone(b1, s1), readAverageOzone(b2, s2));
+				}
+				return cmp;
+			} catch (IOException ex) {
+				throw new IllegalArgumentException(ex);
+			}
+		}
+
+		@Override
+		@SuppressWarnings("rawtypes")
+		public int compare(WritableComparable w1, WritableComparable w2) {
+			LocationIDMeasureKey k1 = (LocationIDMeasureKey) w1;
+			LocationIDMeasureKey k2 = (LocationIDMeasureKey) w2;
+			int cmp = compareInt(k1._locationID, k2._locationID);
+			if (cmp == 0) {
+				cmp = LocationMeasureCompoKey.compareIntDescending(k1._averageOzone, k2._averageOzone);
+			}
+			return cmp;
+		}
+	}
+
+	/**
+	 * GROUP comparator of the Secondary Sort: the LocationID only, the 1st VInt of the serialized keys
+	 */
+	public static class GroupComparator extends WritableComparator {
+		public GroupComparator() {
+			super(LocationIDMeasureKey.class);
+		}
+
+		@Override
+		public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+			try {
+				return compareInt(readVInt(b1, s1), readVInt(b2, s2));
+			} catch (IOException ex) {
+				throw new IllegalArgumentException(ex);
+			}
+		}
+
+		@Override
+		@SuppressWarnings("rawtypes")
+		public int compare(WritableComparable w1, WritableComparable w2) {
+			return compareInt(((LocationIDMeasureKey) w1)._locationID, ((LocationIDMeasureKey) w2)._locationID);
+		}
+	}
+
+	/**
+	 * PARTITION by LocationID: all the records of a Location go to the same reducer, no String hashing
+	 */
+	public static class LocationIDPartitioner extends Partitioner<LocationIDMeasureKey, NullWritable> {
+		@Override
+		public int getPartition(LocationIDMeasureKey key, NullWritable value, int numReduceTasks) {
+			return (key.hashCode() & Integer.MAX_VALUE) % numReduceTasks;
+		}
+	}
+
+	/**
+	 * Read the AverageOzone of a serialized key: the VInt after the LocationID
+	 */
+	static int readAverageOzone(byte[] bytes, int start) throws IOException {
+		return WritableComparator.readVInt(bytes, start + WritableUtils.decodeVIntSize(bytes[start]));
+	}
+
+	private static int compareInt(int a, int b) {
+		return LocationMeasureCompoKey.compareInt(a, b);
+	}
+}
@@ -18,6 +18,11 @@ public class LocationMeasureCompoKey implements WritableComparable<LocationMeasu
 	private String _K1location; // = new Text();
 	private int _K2averageOzone;
 
+	static {
+		// default comparator of the key class, used by WritableComparator.get(LocationMeasureCompoKey.class)
+		WritableComparator.define(LocationMeasureCompoKey.class, new Comparator());
+	}
+
 	public LocationMeasureCompoKey() {
 	}
 
@@ -58,7 +63,8 @@ public class LocationMeasureCompoKey implements WritableComparable<LocationMeasu
 
 	@Override
 	public int hashCode() {
-		return String.format("%s%d", this._K1location, this._K2averageOzone).hashCode();
+		// no String.format(): hashCode() may be called for every record (HashPartitioner)
+		return 31 * this._K1location.hashCode() + this._K2averageOzone;
 	}
 
 	@Override
@@ -83,7 +89,7 @@ public class LocationMeasureCompoKey implements WritableComparable<LocationMeasu
 	public int compareTo(LocationMeasureCompoKey lmck) {
 		// Priority1: Compare on Primary Member (the principal key of the composite key
 		int cmp = this._K1location.compareTo(lmck._K1location);
-		if (cmp != 0) {
+		if (cmp == 0) {
 			// Priority2: in case the Primary Member is identical, compare on 2nd key
 			//cmp = (this._K2averageOzone < lmck._K2averageOzone ? -1 : (this._K2averageOzone == lmck._K2averageOzone ? 0 : 1));
 			cmp = this.compareInt(this._K2averageOzone, lmck._K2averageOzone);
@@ -102,4 +108,43 @@ public class LocationMeasureCompoKey implements WritableComparable<LocationMeasu
 	public static int compareIntDescending(int a, int b) {
 		return (a < b ? 1 : (a == b ? 0 : -1));
 	}
+
+
+	/**
+	 * Compare the Location of 2 serialized keys, directly on the bytes written by write()
+	 * writeUTF() = 2 bytes length + the chars in modified UTF-8. The byte order of modified UTF-8 is the same
+	 * than String.compareTo() for all the chars found in Location names (any char except \u0000 and the surrogates)
+	 */
+	public static int compareLocationBytes(byte[] b1, int s1, byte[] b2, int s2) {
+		int utfLength1 = WritableComparator.readUnsignedShort(b1, s1);
+		int utfLength2 = WritableComparator.readUnsignedShort(b2, s2);
+		return WritableComparator.compareBytes(b1, s1 + 2, utfLength1, b2, s2 + 2, utfLength2);
+	}
+
+	/**
+	 * Read the AverageOzone of a serialized key (the int written after the Location)
+	 */
+	public static int readAverageOzone(byte[] bytes, int start) {
+		int utfLength = WritableComparator.readUnsignedShort(bytes, start);
+		return WritableComparator.readInt(bytes, start + 2 + utfLength);
+	}
+
+	/**
+	 * Raw comparator, same order than compareTo() (Location, then AverageOzone ascending)
+	 * but comparing the serialized bytes without deserializing the keys
+	 */
+	public static class Comparator extends WritableComparator {
+		public Comparator() {
+			super(LocationMeasureCompoKey.class);
+		}
+
+		@Override
+		public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+			int cmp = compareLocationBytes(b1, s1, b2, s2);
+			if (cmp == 0) {
+				cmp = compareInt(readAverageOzone(b1, s1), readAverageOzone(b2, s2));
+			}
+			return cmp;
+		}
+	}
 }
@@ -0,0 +1,202 @@
+import org.apache.hadoop.conf.Configurable;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.io.compress.GzipCodec;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.Partitioner;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
+import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
+import org.apache.hadoop.util.ReflectionUtils;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Skew-aware replacement of CompositeKeyDriver.LocationPartitioner
+ *
+ * With a partition by hash of the Location, the big metro areas (many Stations: TORONTO, METRO VAN ...)
+ * all go to 1 reducer which finishes long after the others. Here the heavy Locations are SPLIT:
+ * - the driver counts the records of each Location in a sample of the input (see TotalOrderSampling.sample())
+ * - a Location with more records than a slice of the sample (1/reducers of the sample, x hadooplab.ozone.skew.threshold)
+ *   is spread over N consecutive reducers, N = its records / slice (rounded up, at most the number of reducers)
+ * - the records of a split Location are dealt by AverageOzone % N, the other Locations are hashed as before
+ *
+ * A split Location is reduced in several reducers, each one writing its partial max in the named output "partial"
+ * (CompositeKeyReducer), the driver merges the partial max of every split Location afterwards (mergePartials()):
+ * a few lines per split Location, no second MapReduce job
+ *
+ * Enabled by hadooplab.ozone.skew=true, the split Locations are passed to the tasks in hadooplab.ozone.skew.splits
+ */
+public class SkewAwareLocationPartitioner extends Partitioner<LocationMeasureCompoKey, NullWritable> implements Configurable {
+	/** Configuration property: true to split the heavy Locations over several reducers */
+	public static final String CONF_ENABLED = "hadooplab.ozone.skew";
+	/** Configuration property: a Location is split in slices of threshold x (1/reducers) of the sampled records */
+	public static final String CONF_THRESHOLD = "hadooplab.ozone.skew.threshold";
+	/** Configuration property: the split Locations, set by the driver: 1 line "N\tLocation" per Location */
+	public static final String CONF_SPLITS = "hadooplab.ozone.skew.splits";
+	public static final double DEFAULT_THRESHOLD = 1.0;
+	/** named output of the partial max of the split Locations, merged in MERGED_FILENAME */
+	public static final String PARTIAL_OUTPUT = "partial";
+	public static final String MERGED_FILENAME = "part-r-merged";
+
+	private Configuration _conf;
+	private Map<String, Integer> _splits = Collections.emptyMap();
+
+	@Override
+	public void setConf(Configuration conf) {
+		this._conf = conf;
+		this._splits = getSplits(conf);
+	}
+
+	@Override
+	public Configuration getConf() {
+		return this._conf;
+	}
+
+	@Override
+	public int getPartition(LocationMeasureCompoKey key, NullWritable value, int numReduceTasks) {
+		// & MAX_VALUE instead of Math.abs(): Math.abs(Integer.MIN_VALUE) is negative
+		int partition = (key.getLocation().hashCode() & Integer.MAX_VALUE) % numReduceTasks;
+		Integer splitCount = this._splits.get(key.getLocation());
+		if (splitCount != null) {
+			// the next reducers, the 1st one being the reducer of the hash
+			partition = (partition + (key.getAverageOzone() & Integer.MAX_VALUE) % splitCount) % numReduceTasks;
+		}
+		return partition;
+	}
+
+	public static boolean isEnabled(Configuration conf) {
+		return conf.getBoolean(CONF_ENABLED, false);
+	}
+
+	/**
+	 * The heavy Locations of a sample and the number of reducers of each one
+	 *
+	 * @param sampleCounts number of sampled records per Location
+	 * @return Location -> number of reducers (2 .. reducers), only the Locations to split
+	 */
+	public static Map<String, Integer> computeSplits(Map<String, Integer> sampleCounts, int reducers, double threshold) {
+		Map<String, Integer> splits = new TreeMap<String, Integer>();
+		long total = 0;
+		for (Integer count : sampleCounts.values()) {
+			total += count;
+		}
+		if (reducers < 2 || total == 0) {
+			return splits;
+		}
+
+		double sliceSize = (double) total / reducers * threshold;
+		for (Map.Entry<String, Integer> entry : sampleCounts.entrySet()) {
+			if (entry.getValue() > sliceSize) {
+				int splitCount = (int) Math.min(reducers, Math.ceil(entry.getValue() / sliceSize));
+				if (splitCount > 1) {
+					splits.put(entry.getKey(), splitCount);
+				}
+			}
+		}
+		return splits;
+	}
+
+	public static void setSplits(Configuration conf, Map<String, Integer> splits) {
+		// the Locations contain a tab ("Province\tCity") but no line break
+		StringBuilder sb = new StringBuilder();
+		for (Map.Entry<String, Integer> entry : splits.entrySet()) {
+			sb.append(entry.getValue()).append('\t').append(entry.getKey()).append('\n');
+		}
+		conf.set(CONF_SPLITS, sb.toString());
+	}
+
+	/**
+	 * @return Location -> number of reducers of the split Locations, empty when there is none
+	 */
+	public static Map<String, Integer> getSplits(Configuration conf) {
+		String splitsStr = conf.get(CONF_SPLITS, "");
+		if (splitsStr.length() == 0) {
+			return Collections.emptyMap();
+		}
+		Map<String, Integer> splits = new HashMap<String, Integer>();
+		for (String line : splitsStr.split("\n")) {
+			int tab = line.indexOf('\t');
+			if (tab > 0) {
+				splits.put(line.substring(tab + 1), Integer.valueOf(line.substring(0, tab)));
+			}
+		}
+		return splits;
+	}
+
+	/**
+	 * Declare the named output of the partial max, written by CompositeKeyReducer for the split Locations
+	 */
+	public static void addPartialOutput(Job job) {
+		MultipleOutputs.addNamedOutput(job, PARTIAL_OUTPUT, TextOutputFormat.class, LocationMeasureCompoKey.class, NullWritable.class);
+	}
+
+	/**
+	 * Merge the partial max of the split Locations (partial-r-NNNNN, "Location\tmax") in 1 file of the output directory,
+	 * same format than the part-r-NNNNN files, then delete the partial files
+	 *
+	 * @return the number of merged Locations
+	 */
+	public static int mergePartials(Job job, Path outputDir) throws IOException {
+		Configuration conf = job.getConfiguration();
+		FileSystem fs = outputDir.getFileSystem(conf);
+		CompressionCodecFactory codecFactory = new CompressionCodecFactory(conf);
+		FileStatus[] partialFiles = fs.globStatus(new Path(outputDir, PARTIAL_OUTPUT + "-r-*"));
+		if (partialFiles == null || partialFiles.length == 0) {
+			return 0;
+		}
+
+		Map<String, Integer> maxByLocation = new TreeMap<String, Integer>(); // sorted by Location, as a part file
+		for (FileStatus partialFile : partialFiles) {
+			CompressionCodec codec = codecFactory.getCodec(partialFile.getPath());
+			InputStream in = fs.open(partialFile.getPath());
+			BufferedReader buffReader = new BufferedReader(new InputStreamReader(
+					codec == null ? in : codec.createInputStream(in), StandardCharsets.UTF_8));
+			try {
+				String line;
+				while ((line = buffReader.readLine()) != null) {
+					int tab = line.lastIndexOf('\t'); // the Location contains a tab too
+					String location = line.substring(0, tab);
+					int partialMax = Integer.parseInt(line.substring(tab + 1));
+					Integer max = maxByLocation.get(location);
+					if (max == null || partialMax > max) {
+						maxByLocation.put(location, partialMax);
+					}
+				}
+			} finally {
+				buffReader.close();
+			}
+		}
+
+		// compressed as the part files of the job (see TextOutputFormat)
+		CompressionCodec outputCodec = (!FileOutputFormat.getCompressOutput(job) ? null
+				: ReflectionUtils.newInstance(FileOutputFormat.getOutputCompressorClass(job, GzipCodec.class), conf));
+		OutputStream out;
+		if (outputCodec == null) {
+			out = fs.create(new Path(outputDir, MERGED_FILENAME), true);
+		} else {
+			out = outputCodec.createOutputStream(fs.create(new Path(outputDir, MERGED_FILENAME + outputCodec.getDefaultExtension()), true));
+		}
+		Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+		try {
+			for (Map.Entry<String, Integer> entry : maxByLocation.entrySet()) {
+				writer.write(new LocationMeasureCompoKey(entry.getKey(), entry.getValue()).toString());
+				writer.write('\n');
+			}
+		} finally {
+			writer.close();
+		}
+
+		for (FileStatus partialFile : partialFiles) {
+			fs.delete(partialFile.getPath(), false);
+		}
+		return maxByLocation.size();
+	}
+}
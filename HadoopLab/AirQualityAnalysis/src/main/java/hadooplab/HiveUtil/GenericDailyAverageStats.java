@@ -0,0 +1,194 @@
+package hadooplab.HiveUtil;
+
+import org.apache.hadoop.hive.ql.exec.Description;
+import org.apache.hadoop.hive.ql.exec.UDFArgumentLengthException;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.parse.SemanticException;
+import org.apache.hadoop.hive.ql.udf.generic.AbstractGenericUDAFResolver;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFEvaluator;
+import org.apache.hadoop.hive.ql.util.JavaDataModel;
+import org.apache.hadoop.hive.serde2.io.DoubleWritable;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorFactory;
+import org.apache.hadoop.hive.serde2.objectinspector.StructField;
+import org.apache.hadoop.hive.serde2.objectinspector.StructObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.DoubleObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.LongObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfo;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoUtils;
+import org.apache.hadoop.io.LongWritable;
+
+import java.util.Arrays;
+
+/**
+ * daily_avg_stats(array<int>): aggregate of the DAILY AVERAGE of the hour readings, per group (ex: per City)
+ * Returns STRUCT<max_avg:double, avg_avg:double, day_count:bigint>
+ * - max_avg  : Max(daily average), the YearMaxOzone of 3_Analysis.hiveql
+ * - avg_avg  : Avg(daily average), the YearAvgOzone of 3_Analysis.hiveql
+ * - day_count: number of days with at least 1 reading (the days without reading, AVGCalc = NaN, are ignored)
+ *
+ * Before, the daily average was computed by AvgArrayUDF() into the table Ozone2012 (tempOzone2012 -> Ozone2012),
+ * then aggregated by the built-in max() and avg(). Here the UDAF takes the array of the readings directly:
+ * the analysis runs on tempOzone2012 and Ozone2012 does not need to be written
+ * NOTE: the daily average is not rounded to 2 decimals as in Ozone2012.AVGCalc, YearAvgOzone can differ in the 2nd decimal
+ *
+ * Map-side aggregation: the partial state of a group is (max of the daily averages, sum of the daily averages, count)
+ * which merges by max / + / +, the combiner-like PARTIAL2 mode and the FINAL mode only see these 3 numbers
+ *
+ * Usage (see 3_Analysis.hiveql):
+ *   CREATE TEMPORARY FUNCTION daily_avg_stats AS 'hadooplab.HiveUtil.GenericDailyAverageStats';
+ */
+@Description(name = "daily_avg_stats",
+		value = "_FUNC_(array<int>) - struct<max_avg,avg_avg,day_count> of the averages of the arrays (1 array per day)")
+public class GenericDailyAverageStats extends AbstractGenericUDAFResolver {
+	public static final String[] PARTIAL_FIELD_NAMES = {"max_avg", "sum_avg", "day_count"};
+	public static final String[] RESULT_FIELD_NAMES = {"max_avg", "avg_avg", "day_count"};
+	private static final int MAX_AVG = 0, SUM_AVG = 1, DAY_COUNT = 2;
+
+	@Override
+	public GenericUDAFEvaluator getEvaluator(TypeInfo[] parameters) throws SemanticException {
+		if (parameters.length != 1) {
+			throw new UDFArgumentLengthException("daily_avg_stats() takes exactly 1 argument: ARRAY<int>");
+		}
+		// same check than the GenericUDF on ARRAY<int>
+		IntegerArrayReader.create(TypeInfoUtils.getStandardJavaObjectInspectorFromTypeInfo(parameters[0]), 0);
+		return new Evaluator();
+	}
+
+
+	/**
+	 * State of a group: only primitives, the daily arrays are not kept
+	 * Estimable: its fixed size lets Hive account for the hash aggregation memory of the map side
+	 */
+	@GenericUDAFEvaluator.AggregationType(estimable = true)
+	static class DailyAverageBuffer extends GenericUDAFEvaluator.AbstractAggregationBuffer {
+		double maxAverage;
+		double sumAverage;
+		long dayCount;
+
+		@Override
+		public int estimate() {
+			return 3 * JavaDataModel.PRIMITIVES2; // 2 doubles and 1 long
+		}
+
+		void reset() {
+			this.maxAverage = Double.NEGATIVE_INFINITY;
+			this.sumAverage = 0;
+			this.dayCount = 0;
+		}
+
+		void add(double maxAverage, double sumAverage, long dayCount) {
+			if (dayCount > 0) {
+				this.maxAverage = Math.max(this.maxAverage, maxAverage);
+				this.sumAverage += sumAverage;
+				this.dayCount += dayCount;
+			}
+		}
+	}
+
+
+	// the abstract methods of GenericUDAFEvaluator (Hive 0.13) still take the deprecated AggregationBuffer:
+	// the overrides cannot avoid it, the buffer itself is an AbstractAggregationBuffer
+	@SuppressWarnings("deprecation")
+	public static class Evaluator extends GenericUDAFEvaluator {
+		// PARTIAL1 and COMPLETE: input = the array of the readings of 1 day
+		private transient IntegerArrayReader _arrayReader;
+		// PARTIAL2 and FINAL: input = the partial struct
+		private transient StructObjectInspector _partialOI;
+		private transient StructField _maxField, _sumField, _countField;
+
+		// output re-used from one group to the next
+		private transient Object[] _output;
+		private transient DoubleWritable _maxValue, _avgOrSumValue;
+		private transient LongWritable _countValue;
+
+		@Override
+		public ObjectInspector init(Mode mode, ObjectInspector[] parameters) throws HiveException {
+			super.init(mode, parameters);
+
+			if (mode == Mode.PARTIAL1 || mode == Mode.COMPLETE) {
+				this._arrayReader = IntegerArrayReader.create(parameters[0], 0);
+			} else {
+				this._partialOI = (StructObjectInspector) parameters[0];
+				this._maxField = this._partialOI.getStructFieldRef(PARTIAL_FIELD_NAMES[MAX_AVG]);
+				this._sumField = this._partialOI.getStructFieldRef(PARTIAL_FIELD_NAMES[SUM_AVG]);
+				this._countField = this._partialOI.getStructFieldRef(PARTIAL_FIELD_NAMES[DAY_COUNT]);
+			}
+
+			this._maxValue = new DoubleWritable();
+			this._avgOrSumValue = new DoubleWritable();
+			this._countValue = new LongWritable();
+			this._output = new Object[] {this._maxValue, this._avgOrSumValue, this._countValue};
+
+			// the partial and the final results have the same types, only the 2nd field differs: sum vs. average
+			boolean partial = (mode == Mode.PARTIAL1 || mode == Mode.PARTIAL2);
+			return ObjectInspectorFactory.getStandardStructObjectInspector(
+					Arrays.asList(partial ? PARTIAL_FIELD_NAMES : RESULT_FIELD_NAMES), Arrays.<ObjectInspector>asList(
+							PrimitiveObjectInspectorFactory.writableDoubleObjectInspector,
+							PrimitiveObjectInspectorFactory.writableDoubleObjectInspector,
+							PrimitiveObjectInspectorFactory.writableLongObjectInspector));
+		}
+
+		@Override
+		public AggregationBuffer getNewAggregationBuffer() throws HiveException {
+			DailyAverageBuffer buffer = new DailyAverageBuffer();
+			buffer.reset();
+			return buffer;
+		}
+
+		@Override
+		public void reset(AggregationBuffer agg) throws HiveException {
+			((DailyAverageBuffer) agg).reset();
+		}
+
+		/**
+		 * 1 row = 1 day: its average is computed in 1 pass over the array, the days without reading are ignored
+		 */
+		@Override
+		public void iterate(AggregationBuffer agg, Object[] parameters) throws HiveException {
+			if (this._arrayReader.read(parameters[0]) && this._arrayReader.getCount() > 0) {
+				double dailyAverage = this._arrayReader.getAverage();
+				((DailyAverageBuffer) agg).add(dailyAverage, dailyAverage, 1);
+			}
+		}
+
+		@Override
+		public Object terminatePartial(AggregationBuffer agg) throws HiveException {
+			DailyAverageBuffer buffer = (DailyAverageBuffer) agg;
+			this._maxValue.set(buffer.maxAverage);
+			this._avgOrSumValue.set(buffer.sumAverage);
+			this._countValue.set(buffer.dayCount);
+			return this._output;
+		}
+
+		@Override
+		public void merge(AggregationBuffer agg, Object partial) throws HiveException {
+			if (partial == null) {
+				return;
+			}
+			double maxAverage = ((DoubleObjectInspector) this._maxField.getFieldObjectInspector())
+					.get(this._partialOI.getStructFieldData(partial, this._maxField));
+			double sumAverage = ((DoubleObjectInspector) this._sumField.getFieldObjectInspector())
+					.get(this._partialOI.getStructFieldData(partial, this._sumField));
+			long dayCount = ((LongObjectInspector) this._countField.getFieldObjectInspector())
+					.get(this._partialOI.getStructFieldData(partial, this._countField));
+			((DailyAverageBuffer) agg).add(maxAverage, sumAverage, dayCount);
+		}
+
+		/**
+		 * @return NULL for a group without any reading, as max() and avg() of the former query
+		 */
+		@Override
+		public Object terminate(AggregationBuffer agg) throws HiveException {
+			DailyAverageBuffer buffer = (DailyAverageBuffer) agg;
+			if (buffer.dayCount == 0) {
+				return null;
+			}
+			this._maxValue.set(buffer.maxAverage);
+			this._avgOrSumValue.set(buffer.sumAverage / buffer.dayCount);
+			this._countValue.set(buffer.dayCount);
+			return this._output;
+		}
+	}
+}
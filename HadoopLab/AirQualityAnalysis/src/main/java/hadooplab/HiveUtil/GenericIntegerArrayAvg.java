@@ -0,0 +1,33 @@
+package hadooplab.HiveUtil;
+
+import org.apache.hadoop.hive.ql.exec.Description;
+import org.apache.hadoop.hive.serde2.io.DoubleWritable;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory;
+
+/**
+ * GenericUDF version of IntegerArrayAvg: Average value of a Hive Array<int>, same results
+ * (NULL for a NULL or empty array, NaN when all the elements are NULL)
+ */
+@Description(name = "avg_array", value = "_FUNC_(array<int>) - average of the elements which are not NULL")
+public class GenericIntegerArrayAvg extends GenericIntegerArrayUDF {
+	// created by initialize(): the UDF object is serialized in the query plan, transient fields are not
+	private transient DoubleWritable _avgValue;
+
+	@Override
+	protected ObjectInspector initializeResult() {
+		this._avgValue = new DoubleWritable();
+		return PrimitiveObjectInspectorFactory.writableDoubleObjectInspector;
+	}
+
+	@Override
+	protected Object evaluate(IntegerArrayReader array) {
+		this._avgValue.set(array.getAverage());
+		return this._avgValue;
+	}
+
+	@Override
+	protected String getFunctionName() {
+		return "avg_array";
+	}
+}
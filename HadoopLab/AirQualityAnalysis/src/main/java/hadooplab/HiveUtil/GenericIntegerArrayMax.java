@@ -0,0 +1,36 @@
+package hadooplab.HiveUtil;
+
+import org.apache.hadoop.hive.ql.exec.Description;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory;
+import org.apache.hadoop.io.IntWritable;
+
+/**
+ * GenericUDF version of IntegerArrayMax: Max value of a Hive Array<int>, same results
+ * (NULL for a NULL or empty array and when all the elements are NULL)
+ */
+@Description(name = "max_array", value = "_FUNC_(array<int>) - maximum of the elements which are not NULL")
+public class GenericIntegerArrayMax extends GenericIntegerArrayUDF {
+	// created by initialize(): the UDF object is serialized in the query plan, transient fields are not
+	private transient IntWritable _maxValue;
+
+	@Override
+	protected ObjectInspector initializeResult() {
+		this._maxValue = new IntWritable();
+		return PrimitiveObjectInspectorFactory.writableIntObjectInspector;
+	}
+
+	@Override
+	protected Object evaluate(IntegerArrayReader array) {
+		if (array.getCount() == 0) {
+			return null;
+		}
+		this._maxValue.set(array.getMax());
+		return this._maxValue;
+	}
+
+	@Override
+	protected String getFunctionName() {
+		return "max_array";
+	}
+}
@@ -0,0 +1,36 @@
+package hadooplab.HiveUtil;
+
+import org.apache.hadoop.hive.ql.exec.Description;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory;
+import org.apache.hadoop.io.IntWritable;
+
+/**
+ * GenericUDF version of IntegerArrayMin: Min value of a Hive Array<int>, same results
+ * (NULL for a NULL or empty array and when all the elements are NULL)
+ */
+@Description(name = "min_array", value = "_FUNC_(array<int>) - minimum of the elements which are not NULL")
+public class GenericIntegerArrayMin extends GenericIntegerArrayUDF {
+	// created by initialize(): the UDF object is serialized in the query plan, transient fields are not
+	private transient IntWritable _minValue;
+
+	@Override
+	protected ObjectInspector initializeResult() {
+		this._minValue = new IntWritable();
+		return PrimitiveObjectInspectorFactory.writableIntObjectInspector;
+	}
+
+	@Override
+	protected Object evaluate(IntegerArrayReader array) {
+		if (array.getCount() == 0) {
+			return null;
+		}
+		this._minValue.set(array.getMin());
+		return this._minValue;
+	}
+
+	@Override
+	protected String getFunctionName() {
+		return "min_array";
+	}
+}
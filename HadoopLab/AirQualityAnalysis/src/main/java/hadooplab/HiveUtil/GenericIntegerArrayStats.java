@@ -0,0 +1,72 @@
+package hadooplab.HiveUtil;
+
+import org.apache.hadoop.hive.ql.exec.Description;
+import org.apache.hadoop.hive.serde2.io.DoubleWritable;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorFactory;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory;
+import org.apache.hadoop.io.IntWritable;
+
+import java.util.Arrays;
+
+/**
+ * array_stats(array<int>): avg, min, max and count of a Hive Array<int> in ONE pass,
+ * instead of AvgArrayUDF() + MinArrayUDF() + MaxArrayUDF() reading the same array 3 times
+ *
+ * Returns STRUCT<avg:double, min:int, max:int, count:int>, each field with the semantic of the single UDF:
+ * - NULL struct for a NULL or empty array
+ * - all the elements NULL: avg = NaN, min = max = NULL, count = 0
+ *
+ * Usage (see 2_Ozone2012.hiveql):
+ *   CREATE TEMPORARY FUNCTION array_stats AS 'hadooplab.HiveUtil.GenericIntegerArrayStats';
+ *   SELECT S.avg, S.min, S.max FROM (SELECT array_stats(HourReadings) AS S FROM tempOzone2012) T;
+ */
+@Description(name = "array_stats", value = "_FUNC_(array<int>) - struct<avg,min,max,count> of the elements which are not NULL")
+public class GenericIntegerArrayStats extends GenericIntegerArrayUDF {
+	public static final String[] FIELD_NAMES = {"avg", "min", "max", "count"};
+	private static final int AVG = 0, MIN = 1, MAX = 2, COUNT = 3;
+
+	// created by initialize(): the UDF object is serialized in the query plan, transient fields are not
+	private transient DoubleWritable _avgValue;
+	private transient IntWritable _minValue, _maxValue, _countValue;
+	private transient Object[] _result;
+
+	@Override
+	protected ObjectInspector initializeResult() {
+		this._avgValue = new DoubleWritable();
+		this._minValue = new IntWritable();
+		this._maxValue = new IntWritable();
+		this._countValue = new IntWritable();
+		this._result = new Object[FIELD_NAMES.length];
+
+		// a struct is an Object[] for the standard struct inspector, the fields are Writables
+		return ObjectInspectorFactory.getStandardStructObjectInspector(Arrays.asList(FIELD_NAMES), Arrays.<ObjectInspector>asList(
+				PrimitiveObjectInspectorFactory.writableDoubleObjectInspector,
+				PrimitiveObjectInspectorFactory.writableIntObjectInspector,
+				PrimitiveObjectInspectorFactory.writableIntObjectInspector,
+				PrimitiveObjectInspectorFactory.writableIntObjectInspector));
+	}
+
+	@Override
+	protected Object evaluate(IntegerArrayReader array) {
+		this._avgValue.set(array.getAverage());
+		this._countValue.set(array.getCount());
+		this._result[AVG] = this._avgValue;
+		this._result[COUNT] = this._countValue;
+
+		if (array.getCount() > 0) {
+			this._minValue.set(array.getMin());
+			this._maxValue.set(array.getMax());
+			this._result[MIN] = this._minValue;
+			this._result[MAX] = this._maxValue;
+		} else {
+			this._result[MIN] = this._result[MAX] = null;
+		}
+		return this._result;
+	}
+
+	@Override
+	protected String getFunctionName() {
+		return "array_stats";
+	}
+}
@@ -0,0 +1,56 @@
+package hadooplab.HiveUtil;
+
+import org.apache.hadoop.hive.ql.exec.UDFArgumentException;
+import org.apache.hadoop.hive.ql.exec.UDFArgumentLengthException;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDF;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+
+/**
+ * Base of the GenericUDF taking 1 ARRAY<int>: the array is read through its ObjectInspector (IntegerArrayReader),
+ * the subclass only declares its result type and builds its result from the statistics of the array
+ *
+ * Deploy & register as the reflective UDF (see the header of IntegerArrayAvg and 2_Ozone2012.hiveql):
+ *   CREATE TEMPORARY FUNCTION AvgArrayUDF AS 'hadooplab.HiveUtil.GenericIntegerArrayAvg';
+ */
+public abstract class GenericIntegerArrayUDF extends GenericUDF {
+	private transient IntegerArrayReader _arrayReader;
+
+	@Override
+	public ObjectInspector initialize(ObjectInspector[] arguments) throws UDFArgumentException {
+		if (arguments.length != 1) {
+			throw new UDFArgumentLengthException(getFunctionName() + "() takes exactly 1 argument: ARRAY<int>");
+		}
+		this._arrayReader = IntegerArrayReader.create(arguments[0], 0);
+		return initializeResult();
+	}
+
+	@Override
+	public Object evaluate(DeferredObject[] arguments) throws HiveException {
+		if (!this._arrayReader.read(arguments[0].get())) {
+			return null; // NULL or empty array
+		}
+		return evaluate(this._arrayReader);
+	}
+
+	@Override
+	public String getDisplayString(String[] children) {
+		return getFunctionName() + "(" + children[0] + ")";
+	}
+
+	/**
+	 * @return the ObjectInspector of the result, called once by initialize()
+	 */
+	protected abstract ObjectInspector initializeResult();
+
+	/**
+	 * @param array statistics of the array of the row, which has at least 1 element (maybe NULL)
+	 * @return the result, re-used from one row to the next
+	 */
+	protected abstract Object evaluate(IntegerArrayReader array);
+
+	/**
+	 * Name in the error messages and the EXPLAIN plan
+	 */
+	protected abstract String getFunctionName();
+}
@@ -0,0 +1,123 @@
+package hadooplab.HiveUtil;
+
+import org.apache.hadoop.hive.ql.exec.UDFArgumentTypeException;
+import org.apache.hadoop.hive.serde2.objectinspector.ListObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.IntObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorUtils;
+
+/**
+ * Read a Hive ARRAY<int> through its ObjectInspectors and compute count, sum, min, max in one pass
+ * Shared by the GenericUDF (GenericIntegerArrayUDF) and the UDAF of the hour readings
+ *
+ * Contrary to the reflective UDF (IntegerArrayAvg & co) which receive an ArrayList<Integer>
+ * converted by Hive for every row, the array stays in the format of the table (Lazy, LazyBinary, Writable ...):
+ * the elements are read one by one by the ListObjectInspector, no list nor Integer is created
+ * - fast path for array<int>: IntObjectInspector.get() (no boxing for the Writable and Lazy inspectors)
+ * - array<tinyint> and array<smallint>: PrimitiveObjectInspectorUtils.getInt()
+ *
+ * NULL elements (-999 in the HLY file) do not participate, as in IntegerArrayAvg
+ */
+public final class IntegerArrayReader {
+	private final ListObjectInspector _listOI;
+	private final PrimitiveObjectInspector _elementOI;
+	private final IntObjectInspector _intOI; // null when the elements are not int
+
+	private int _count, _min, _max;
+	private long _sum;
+
+	private IntegerArrayReader(ListObjectInspector listOI, PrimitiveObjectInspector elementOI) {
+		this._listOI = listOI;
+		this._elementOI = elementOI;
+		this._intOI = (elementOI.getPrimitiveCategory() == PrimitiveObjectInspector.PrimitiveCategory.INT
+				? (IntObjectInspector) elementOI : null);
+	}
+
+	/**
+	 * @param argumentOI inspector of the argument, must be an array of tinyint, smallint or int
+	 * @param argumentIndex position of the argument, for the error message
+	 * @throws UDFArgumentTypeException when the argument is not an array of integers
+	 */
+	public static IntegerArrayReader create(ObjectInspector argumentOI, int argumentIndex) throws UDFArgumentTypeException {
+		if (argumentOI.getCategory() != ObjectInspector.Category.LIST) {
+			throw new UDFArgumentTypeException(argumentIndex, "ARRAY<int> is expected but " + argumentOI.getTypeName() + " is passed");
+		}
+		ListObjectInspector listOI = (ListObjectInspector) argumentOI;
+		ObjectInspector elementOI = listOI.getListElementObjectInspector();
+		if (elementOI.getCategory() == ObjectInspector.Category.PRIMITIVE) {
+			switch (((PrimitiveObjectInspector) elementOI).getPrimitiveCategory()) {
+				case BYTE:
+				case SHORT:
+				case INT:
+					return new IntegerArrayReader(listOI, (PrimitiveObjectInspector) elementOI);
+				default:
+					break;
+			}
+		}
+		throw new UDFArgumentTypeException(argumentIndex, "ARRAY<int> is expected but " + argumentOI.getTypeName() + " is passed");
+	}
+
+	/**
+	 * One pass over the array
+	 *
+	 * @param list the array, as given by the DeferredObject or the UDAF parameter
+	 * @return false when the array is NULL or empty (nothing computed), true otherwise even if all the elements are NULL
+	 */
+	public boolean read(Object list) {
+		this._count = 0;
+		this._sum = 0;
+		this._min = Integer.MAX_VALUE;
+		this._max = Integer.MIN_VALUE;
+
+		int length = (list == null ? 0 : this._listOI.getListLength(list));
+		if (length < 1) {
+			return false;
+		}
+
+		for (int kk = 0; kk < length; kk++) {
+			Object element = this._listOI.getListElement(list, kk);
+			if (element != null) {
+				int value = (this._intOI != null ? this._intOI.get(element) : PrimitiveObjectInspectorUtils.getInt(element, this._elementOI));
+				this._count++;
+				this._sum += value;
+				if (this._min > value) this._min = value;
+				if (this._max < value) this._max = value;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Number of elements which are not NULL
+	 */
+	public int getCount() {
+		return this._count;
+	}
+
+	public long getSum() {
+		return this._sum;
+	}
+
+	/**
+	 * @return the minimum, meaningless when getCount() is 0
+	 */
+	public int getMin() {
+		return this._min;
+	}
+
+	/**
+	 * @return the maximum, meaningless when getCount() is 0
+	 */
+	public int getMax() {
+		return this._max;
+	}
+
+	/**
+	 * The NULL elements are NOT in the denominator, same as IntegerArrayAvg
+	 * @return the average, NaN when all the elements are NULL (the queries of 2_Ozone2012.hiveql test AVGCalc == 'NaN')
+	 */
+	public double getAverage() {
+		return (double) this._sum / this._count;
+	}
+}
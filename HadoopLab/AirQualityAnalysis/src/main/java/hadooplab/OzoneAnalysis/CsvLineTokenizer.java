@@ -0,0 +1,232 @@
+package hadooplab.OzoneAnalysis;
+
+import java.util.Arrays;
+
+/**
+ * Comma separated line split in 1 pass, without regex: tokenize() only finds the boundaries of the fields,
+ * a field is decoded (String, int, float) only when it is requested
+ *
+ * Same fields as line.split("\\s*,\\s*", -1), the former parsing of NAPSStationParser:
+ * - the whitespaces around the commas are not part of the fields (those before the 1st field and after the last one are)
+ * - the empty fields are kept, an empty line is 1 empty field
+ * plus the quoted fields: "MONTREAL, QC" is 1 field (without the quotes), "" inside the quotes is a "
+ *
+ * The numbers are parsed on the chars of the line, an invalid number is a return value, never an exception
+ *
+ * The tokenizer is re-used from one line to the next (no allocation once the arrays fit the widest line)
+ */
+public final class CsvLineTokenizer {
+	/** returned by parseInt() when the field is not an int */
+	public static final long NOT_AN_INT = Long.MIN_VALUE;
+	private static final char DELIMITER = ',';
+	private static final char QUOTE = '"';
+
+	private CharSequence _line = "";
+	private int _fieldCount;
+	// field kk is _line[_starts[kk], _ends[kk]), without the quotes when _quoted[kk]
+	private int[] _starts = new int[64];
+	private int[] _ends = new int[64];
+	private boolean[] _quoted = new boolean[64];
+
+	/**
+	 * Find the fields of a line, the line is kept (not copied) until the next call
+	 *
+	 * @return the number of fields, at least 1
+	 */
+	public int tokenize(CharSequence line) {
+		this._line = line;
+		this._fieldCount = 0;
+		int length = line.length();
+		int pos = 0;
+		while (true) {
+			int start = pos;
+			if (this._fieldCount > 0) {
+				while (start < length && isWhitespace(line.charAt(start))) {
+					start++; // after a comma
+				}
+			}
+
+			int end;
+			boolean quoted = (start < length && line.charAt(start) == QUOTE);
+			if (quoted) {
+				start++;
+				end = start;
+				while (end < length) {
+					if (line.charAt(end) == QUOTE) {
+						if (end + 1 < length && line.charAt(end + 1) == QUOTE) {
+							end += 2; // "" escaped quote
+							continue;
+						}
+						break;
+					}
+					end++;
+				}
+				// the end of the field: after the closing quote (an unterminated quote runs to the end of the line)
+				pos = Math.min(end + 1, length);
+				while (pos < length && line.charAt(pos) != DELIMITER) {
+					pos++;
+				}
+			} else {
+				pos = start;
+				while (pos < length && line.charAt(pos) != DELIMITER) {
+					pos++;
+				}
+				end = pos;
+				if (pos < length) {
+					while (end > start && isWhitespace(line.charAt(end - 1))) {
+						end--; // before a comma
+					}
+				}
+			}
+			addField(start, end, quoted);
+
+			if (pos >= length) {
+				return this._fieldCount;
+			}
+			pos++; // the comma
+		}
+	}
+
+	public int getFieldCount() {
+		return this._fieldCount;
+	}
+
+	/**
+	 * @return the position of the 1st char of the field in the line (after the opening quote of a quoted field)
+	 */
+	public int getFieldStart(int field) {
+		return this._starts[field];
+	}
+
+	/**
+	 * @return the position after the last char of the field in the line (before the closing quote of a quoted field)
+	 */
+	public int getFieldEnd(int field) {
+		return this._ends[field];
+	}
+
+	public boolean isQuoted(int field) {
+		return this._quoted[field];
+	}
+
+	public boolean isEmpty(int field) {
+		return this._starts[field] == this._ends[field];
+	}
+
+	/**
+	 * Decode a field as a String, the escaped quotes of a quoted field are unescaped
+	 */
+	public String getString(int field) {
+		int start = this._starts[field];
+		int end = this._ends[field];
+		if (!this._quoted[field]) {
+			return this._line.subSequence(start, end).toString();
+		}
+		StringBuilder builder = new StringBuilder(end - start);
+		for (int pos = start; pos < end; pos++) {
+			char ch = this._line.charAt(pos);
+			builder.append(ch);
+			if (ch == QUOTE) {
+				pos++; // "" -> "
+			}
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Same result as Integer.parseInt(field.replaceAll("[ \\+]+", "")), the former NAPSStationParser.safeIntegerConverter():
+	 * the spaces and the '+' are ignored anywhere in the field
+	 *
+	 * @return the int value, NOT_AN_INT when the field is not an int (empty, other chars, overflow)
+	 */
+	public long parseInt(int field) {
+		int end = this._ends[field];
+		boolean negative = false;
+		boolean hasDigit = false;
+		long value = 0;
+		for (int pos = this._starts[field]; pos < end; pos++) {
+			char ch = this._line.charAt(pos);
+			if (ch == ' ' || ch == '+') {
+				continue;
+			}
+			if (ch == '-' && !negative && !hasDigit) {
+				negative = true;
+			} else if (ch >= '0' && ch <= '9') {
+				hasDigit = true;
+				value = value * 10 + (ch - '0');
+				if (value > (long) Integer.MAX_VALUE + 1) {
+					return NOT_AN_INT;
+				}
+			} else {
+				return NOT_AN_INT;
+			}
+		}
+		if (!hasDigit) {
+			return NOT_AN_INT;
+		}
+		value = (negative ? -value : value);
+		return (value > Integer.MAX_VALUE ? NOT_AN_INT : value);
+	}
+
+	/**
+	 * The validation of the former NAPSStationParser.safeFloatConverter(): digits, at most 1 decimal point between
+	 * 2 digits ("5" and "5." are not accepted, "12" is), an optional sign, spaces around the number
+	 * The fields which passed the regex of safeFloatConverter() but made Float.parseFloat() throw are not floats
+	 *
+	 * @return the value as Float.parseFloat() of the field, NaN when the field is not a float
+	 */
+	public float parseFloat(int field) {
+		int start = this._starts[field];
+		int end = this._ends[field];
+		while (start < end && this._line.charAt(start) == ' ') {
+			start++;
+		}
+		while (end > start && this._line.charAt(end - 1) == ' ') {
+			end--;
+		}
+
+		int pos = start;
+		if (pos < end && (this._line.charAt(pos) == '-' || this._line.charAt(pos) == '+')) {
+			pos++;
+		}
+		int digitsBefore = 0, digitsAfter = 0;
+		boolean decimalPoint = false;
+		for (; pos < end; pos++) {
+			char ch = this._line.charAt(pos);
+			if (ch >= '0' && ch <= '9') {
+				if (decimalPoint) {
+					digitsAfter++;
+				} else {
+					digitsBefore++;
+				}
+			} else if (ch == '.' && !decimalPoint) {
+				decimalPoint = true;
+			} else {
+				return Float.NaN;
+			}
+		}
+		boolean valid = (decimalPoint ? digitsBefore > 0 && digitsAfter > 0 : digitsBefore > 1);
+		// only the validated chars: parseFloat() cannot throw
+		return (valid ? Float.parseFloat(this._line.subSequence(start, end).toString()) : Float.NaN);
+	}
+
+	private void addField(int start, int end, boolean quoted) {
+		if (this._fieldCount == this._starts.length) {
+			int capacity = 2 * this._starts.length;
+			this._starts = Arrays.copyOf(this._starts, capacity);
+			this._ends = Arrays.copyOf(this._ends, capacity);
+			this._quoted = Arrays.copyOf(this._quoted, capacity);
+		}
+		this._starts[this._fieldCount] = start;
+		this._ends[this._fieldCount] = end;
+		this._quoted[this._fieldCount] = quoted;
+		this._fieldCount++;
+	}
+
+	/**
+	 * Same chars as \s in a regex
+	 */
+	private static boolean isWhitespace(char ch) {
+		return ch == ' ' || ch == '\t' || ch == '\n' || ch == '\u000B' || ch == '\f' || ch == '\r';
+	}
+}
@@ -0,0 +1,90 @@
+package hadooplab.OzoneAnalysis;
+
+import org.apache.hadoop.io.Text;
+
+/**
+ * int <-> decimal digits directly on the bytes of a Text, without the String round-trip of
+ * text.set(Integer.toString(n)) and Integer.parseInt(text.toString())
+ * For the mappers and reducers which read or write numbers as text (StationID keys, MaxAvgOzone fields)
+ */
+public final class DecimalText {
+	/** enough for "-2147483648" */
+	public static final int MAX_INT_DIGITS = 11;
+	private static final byte[] MIN_VALUE_DIGITS = {'-', '2', '1', '4', '7', '4', '8', '3', '6', '4', '8'};
+
+	private DecimalText() {
+	}
+
+	/**
+	 * Same as text.set(Integer.toString(value))
+	 *
+	 * @param scratch at least MAX_INT_DIGITS bytes, re-used by the caller
+	 */
+	public static void set(Text text, int value, byte[] scratch) {
+		text.set(scratch, 0, format(value, scratch));
+	}
+
+	/**
+	 * Write the digits of value at the beginning of buffer
+	 *
+	 * @return the number of bytes written
+	 */
+	public static int format(int value, byte[] buffer) {
+		if (value == Integer.MIN_VALUE) {
+			System.arraycopy(MIN_VALUE_DIGITS, 0, buffer, 0, MIN_VALUE_DIGITS.length); // -value overflows
+			return MIN_VALUE_DIGITS.length;
+		}
+
+		int length = 0;
+		if (value < 0) {
+			buffer[length++] = '-';
+			value = -value;
+		}
+		int digitCount = 1;
+		for (int rest = value / 10; rest > 0; rest /= 10) {
+			digitCount++;
+		}
+		length += digitCount;
+		for (int pos = length - 1; digitCount > 0; digitCount--, pos--) {
+			buffer[pos] = (byte) ('0' + value % 10);
+			value /= 10;
+		}
+		return length;
+	}
+
+	/**
+	 * Same as Integer.parseInt() of the ASCII bytes [start, end)
+	 *
+	 * @throws NumberFormatException when the bytes are not an optional sign followed by digits, or overflow an int
+	 */
+	public static int parse(byte[] bytes, int start, int end) {
+		if (start >= end) {
+			throw new NumberFormatException("Empty number");
+		}
+		boolean negative = false;
+		int pos = start;
+		if (bytes[pos] == '-' || bytes[pos] == '+') {
+			negative = (bytes[pos] == '-');
+			if (++pos == end) {
+				throw new NumberFormatException("Sign without digits");
+			}
+		}
+
+		long value = 0;
+		for (; pos < end; pos++) {
+			int digit = bytes[pos] - '0';
+			if (digit < 0 || digit > 9) {
+				throw new NumberFormatException(String.format("Not a digit at position %d", pos - start));
+			}
+			value = value * 10 + digit;
+			if (value > (long) Integer.MAX_VALUE + 1) {
+				throw new NumberFormatException("Out of the int range");
+			}
+		}
+		value = (negative ? -value : value);
+		if (value > Integer.MAX_VALUE) {
+			throw new NumberFormatException("Out of the int range");
+		}
+		return (int) value;
+	}
+}
@@ -0,0 +1,63 @@
+package hadooplab.OzoneAnalysis;
+
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.util.ToolRunner;
+
+/*
+HOW TO TEST:
+
+Convert once the HLY text file (see LocationDriver for the Data Preparation)
+   # yarn jar OzoneMR.jar hadooplab.OzoneAnalysis.HLYColumnarDriver
+
+   --Smaller blocks, other codec
+   # yarn jar OzoneMR.jar hadooplab.OzoneAnalysis.HLYColumnarDriver -D hadooplab.ozone.columnar.block.records=4096 -D hadooplab.ozone.columnar.codec=org.apache.hadoop.io.compress.SnappyCodec
+
+Then run the analysis on the columnar files
+   # yarn jar OzoneMR.jar hadooplab.OzoneAnalysis.LocationDriver -D hadooplab.ozone.input.columnar=true /user/tri/AirAnalysis/Ozone2012Columnar /user/tri/AirAnalysis/output
+
+	--VERIF:
+   # hdfs dfs -ls /user/tri/AirAnalysis/Ozone2012Columnar/
+*/
+
+/**
+ * One-time conversion of the NAPS HLY text file to HLY columnar files (see HLYColumnarFile)
+ * Map-only job: the records stay in the order of the input (sorted by Station and Date)
+ * which keeps the delta-encoded StationID and Date columns tiny
+ */
+public class HLYColumnarDriver extends OzoneDriverBase {
+	private static final String NAPS_OZONE_INPUTFILE = "/user/tri/AirAnalysis/Ozone2012RawFL/2012O3.hly"; // path is on HDFS
+	private static final String COLUMNAR_OUTPUT_DIR = "/user/tri/AirAnalysis/Ozone2012Columnar"; // path is on HDFS
+
+	public HLYColumnarDriver() {
+		super(NAPS_OZONE_INPUTFILE, COLUMNAR_OUTPUT_DIR, null);
+	}
+
+	@Override
+	public int run(String[] args) throws Exception {
+		if (!parseArgs(args)) {
+			return -1;
+		}
+
+		// split size of the Configuration (see OzoneDriverBase), the output codec is hadooplab.ozone.columnar.codec
+		Job job = newJob("hadooplab.OzoneAnalysis.HLYColumnarDriver");
+		setInput(job);
+		setOutput(job, getOutputPath());
+
+		job.setMapperClass(HLYColumnarMapper.class);
+		job.setNumReduceTasks(0); // map-only
+		job.setOutputFormatClass(HLYColumnarOutputFormat.class);
+		job.setOutputKeyClass(NullWritable.class);
+		job.setOutputValueClass(HLYRecordWritable.class);
+
+		return job.waitForCompletion(true) ? 0 : 1;
+	}
+
+	/**
+	 * @param args [generic options] [input output], hadooplab.ozone.input / hadooplab.ozone.output or the default paths when not given
+	 */
+	public static void main(String[] args) throws Exception {
+		int exitCode = ToolRunner.run(new HLYColumnarDriver(), args);
+		System.exit(exitCode);
+	}
+}
@@ -0,0 +1,386 @@
+package hadooplab.OzoneAnalysis;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.io.*;
+import org.apache.hadoop.io.compress.*;
+import org.apache.hadoop.util.ReflectionUtils;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.EnumSet;
+
+/**
+ * Binary columnar file of parsed HLY records (HLYRecordWritable), written once by HLYColumnarDriver
+ * so that the analytic jobs do not parse the fixed-width text file again and again
+ *
+ * Layout (same principle as SequenceFile: a header, then blocks separated by a sync marker):
+ *
+ *   Header: "HLYC" | version (byte) | codec class name (Text) | sync marker (16 bytes)
+ *   Block : sync marker (16 bytes) | record count (int) | 6 column chunks, in the order of Column
+ *   Chunk : uncompressed length (int) | compressed length (int) | compressed bytes
+ *
+ * Column encodings (before compression):
+ * - STATION_ID, DATE: VInt delta with the previous record (the HLY file is sorted by Station then Date: tiny deltas)
+ * - DAY_AVERAGE, DAY_MIN, DAY_MAX: VInt (-999 when missing)
+ * - HOUR_READINGS: per record a bitmap of the missing hours (int) then a short for each hour present
+ *
+ * Splittable: a reader starting in the middle of the file scans for the next sync marker,
+ * a split processes the blocks whose sync marker starts before the end of the split.
+ * Each chunk is compressed on its own so a reader decompresses only the columns it needs, the others are skipped.
+ */
+public class HLYColumnarFile {
+	/** Configuration property: number of records per block */
+	public static final String CONF_BLOCK_RECORDS = "hadooplab.ozone.columnar.block.records";
+	public static final int DEFAULT_BLOCK_RECORDS = 8192;
+	/** Configuration property: class name of the CompressionCodec of the column chunks */
+	public static final String CONF_CODEC = "hadooplab.ozone.columnar.codec";
+	public static final String FILE_EXTENSION = ".hlyc";
+
+	private static final byte[] MAGIC = {'H', 'L', 'Y', 'C'};
+	private static final byte VERSION = 1;
+	private static final int SYNC_SIZE = 16;
+
+	public enum Column {
+		STATION_ID, DATE, DAY_AVERAGE, DAY_MIN, DAY_MAX, HOUR_READINGS
+	}
+
+	private static final Column[] COLUMNS = Column.values();
+
+	private HLYColumnarFile() {
+	}
+
+	/**
+	 * Accumulates the records of a block column by column, compresses and writes the block when it is full
+	 */
+	public static class Writer implements Closeable {
+		private final FSDataOutputStream _out;
+		private final CompressionCodec _codec;
+		private final Compressor _compressor;
+		private final byte[] _sync;
+		private final int _blockRecords;
+
+		private final DataOutputBuffer[] _columnBuffers = new DataOutputBuffer[COLUMNS.length];
+		private final DataOutputBuffer _compressedBuffer = new DataOutputBuffer();
+		private int _recordCount;
+		private int _previousStationID, _previousDate;
+
+		/**
+		 * @param out the stream is closed by close()
+		 */
+		public Writer(Configuration conf, FSDataOutputStream out) throws IOException {
+			this._out = out;
+			this._blockRecords = conf.getInt(CONF_BLOCK_RECORDS, DEFAULT_BLOCK_RECORDS);
+			Class<? extends CompressionCodec> codecClass = conf.getClass(CONF_CODEC, DefaultCodec.class, CompressionCodec.class);
+			this._codec = ReflectionUtils.newInstance(codecClass, conf);
+			this._compressor = CodecPool.getCompressor(this._codec);
+			this._sync = newSyncMarker();
+			for (int col = 0; col < COLUMNS.length; col++) {
+				this._columnBuffers[col] = new DataOutputBuffer();
+			}
+
+			out.write(MAGIC);
+			out.writeByte(VERSION);
+			Text.writeString(out, codecClass.getName());
+			out.write(this._sync);
+		}
+
+		public void append(HLYRecordWritable record) throws IOException {
+			WritableUtils.writeVInt(this._columnBuffers[Column.STATION_ID.ordinal()], record.getStationIDValue() - this._previousStationID);
+			WritableUtils.writeVInt(this._columnBuffers[Column.DATE.ordinal()], record.getDateValue() - this._previousDate);
+			WritableUtils.writeVInt(this._columnBuffers[Column.DAY_AVERAGE.ordinal()], record.getDayAverageValue());
+			WritableUtils.writeVInt(this._columnBuffers[Column.DAY_MIN.ordinal()], record.getDayMinValue());
+			WritableUtils.writeVInt(this._columnBuffers[Column.DAY_MAX.ordinal()], record.getDayMaxValue());
+			record.writeHourReadings(this._columnBuffers[Column.HOUR_READINGS.ordinal()]);
+			this._previousStationID = record.getStationIDValue();
+			this._previousDate = record.getDateValue();
+
+			if (++this._recordCount >= this._blockRecords) {
+				writeBlock();
+			}
+		}
+
+		/**
+		 * Position in the output stream, the pending block not included
+		 */
+		public long getPosition() throws IOException {
+			return this._out.getPos();
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				writeBlock();
+			} finally {
+				CodecPool.returnCompressor(this._compressor);
+				this._out.close();
+			}
+		}
+
+		private void writeBlock() throws IOException {
+			if (this._recordCount == 0) {
+				return;
+			}
+
+			this._out.write(this._sync);
+			this._out.writeInt(this._recordCount);
+			for (DataOutputBuffer columnBuffer : this._columnBuffers) {
+				this._compressedBuffer.reset();
+				if (this._compressor != null) {
+					this._compressor.reset();
+				}
+				CompressionOutputStream compressedOut = this._codec.createOutputStream(this._compressedBuffer, this._compressor);
+				compressedOut.write(columnBuffer.getData(), 0, columnBuffer.getLength());
+				compressedOut.finish();
+
+				this._out.writeInt(columnBuffer.getLength());
+				this._out.writeInt(this._compressedBuffer.getLength());
+				this._out.write(this._compressedBuffer.getData(), 0, this._compressedBuffer.getLength());
+				columnBuffer.reset();
+			}
+
+			// the deltas restart at each block: a block can be decoded without the previous ones
+			this._recordCount = 0;
+			this._previousStationID = 0;
+			this._previousDate = 0;
+		}
+
+		private static byte[] newSyncMarker() {
+			try {
+				MessageDigest digester = MessageDigest.getInstance("MD5");
+				long time = System.currentTimeMillis();
+				digester.update((new java.rmi.server.UID() + "@" + time).getBytes("UTF-8"));
+				return digester.digest(); // 16 bytes, same recipe as SequenceFile
+			} catch (Exception ex) {
+				throw new RuntimeException(ex);
+			}
+		}
+	}
+
+	/**
+	 * Reads the blocks of a file (or of a split of a file), decompressing only the requested columns
+	 * The columns which are not requested are left cleared in the record (see HLYRecordWritable.clear())
+	 */
+	public static class Reader implements Closeable {
+		private final FSDataInputStream _in;
+		private final long _fileLength;
+		private final boolean[] _selected = new boolean[COLUMNS.length];
+		private final CompressionCodec _codec;
+		private final Decompressor _decompressor;
+		private final byte[] _sync = new byte[SYNC_SIZE];
+		private final byte[] _syncCheck = new byte[SYNC_SIZE];
+		private final long _headerEnd;
+
+		private final DataInputBuffer[] _columnInputs = new DataInputBuffer[COLUMNS.length];
+		private final byte[][] _columnData = new byte[COLUMNS.length][];
+		private final DataInputBuffer _compressedInput = new DataInputBuffer();
+		private byte[] _compressedData = new byte[0];
+		private boolean _syncConsumed; // true when sync() stopped just after the sync marker of _blockStart
+		private long _blockStart;
+		private int _remainingRecords;
+		private int _previousStationID, _previousDate;
+
+		/**
+		 * @param in the stream is closed by close()
+		 * @param columns the columns to decode, all the other columns are skipped
+		 */
+		public Reader(Configuration conf, FSDataInputStream in, long fileLength, EnumSet<Column> columns) throws IOException {
+			this._in = in;
+			this._fileLength = fileLength;
+			for (Column column : columns) {
+				this._selected[column.ordinal()] = true;
+			}
+			for (int col = 0; col < COLUMNS.length; col++) {
+				this._columnInputs[col] = new DataInputBuffer();
+				this._columnData[col] = new byte[0];
+			}
+
+			in.seek(0);
+			byte[] magic = new byte[MAGIC.length];
+			in.readFully(magic);
+			if (!Arrays.equals(magic, MAGIC)) {
+				throw new IOException("Not a HLY columnar file (wrong magic number)");
+			}
+			byte version = in.readByte();
+			if (version != VERSION) {
+				throw new IOException(String.format("Unsupported HLY columnar file version: %d", version));
+			}
+			String codecClassName = Text.readString(in);
+			try {
+				Class<? extends CompressionCodec> codecClass = conf.getClassByName(codecClassName).asSubclass(CompressionCodec.class);
+				this._codec = ReflectionUtils.newInstance(codecClass, conf);
+			} catch (ClassNotFoundException ex) {
+				throw new IOException(String.format("Unknown compression codec: %s", codecClassName), ex);
+			}
+			this._decompressor = CodecPool.getDecompressor(this._codec);
+			in.readFully(this._sync);
+			this._headerEnd = in.getPos();
+			this._syncConsumed = false;
+		}
+
+		/**
+		 * Position the reader on the first block starting at or after the position
+		 * Must be called before reading a split which does not start at the beginning of the file
+		 */
+		public void sync(long position) throws IOException {
+			this._remainingRecords = 0;
+			long syncPosition = Math.max(position, this._headerEnd); // the header contains a copy of the sync marker
+			if (syncPosition + SYNC_SIZE > this._fileLength) {
+				this._in.seek(this._fileLength);
+				this._syncConsumed = false;
+				return;
+			}
+
+			// rolling window of the last SYNC_SIZE bytes read
+			this._in.seek(syncPosition);
+			byte[] window = new byte[SYNC_SIZE];
+			this._in.readFully(window);
+			int head = 0; // index in the window of the oldest byte
+			while (!matchesSync(window, head)) {
+				int b = this._in.read();
+				if (b < 0) { // no more block
+					this._syncConsumed = false;
+					return;
+				}
+				window[head] = (byte) b;
+				head = (head + 1) % SYNC_SIZE;
+				syncPosition++;
+			}
+			this._syncConsumed = true; // the stream is just after the sync marker
+			this._blockStart = syncPosition;
+		}
+
+		/**
+		 * Read the next block if its sync marker starts before end
+		 *
+		 * @param end exclusive end of the split, Long.MAX_VALUE to read until the end of the file
+		 * @return false when there is no more block in the split
+		 */
+		public boolean nextBlock(long end) throws IOException {
+			if (!this._syncConsumed) {
+				this._blockStart = this._in.getPos();
+				if (this._blockStart >= this._fileLength || this._blockStart >= end) {
+					return false;
+				}
+				this._in.readFully(this._syncCheck);
+				if (!Arrays.equals(this._syncCheck, this._sync)) {
+					throw new IOException(String.format("Corrupted HLY columnar file: sync marker expected at position %d", this._blockStart));
+				}
+			} else if (this._blockStart >= end) {
+				return false;
+			}
+			this._syncConsumed = false;
+
+			this._remainingRecords = this._in.readInt();
+			for (int col = 0; col < COLUMNS.length; col++) {
+				int uncompressedLength = this._in.readInt();
+				int compressedLength = this._in.readInt();
+				if (this._selected[col]) {
+					readColumn(col, uncompressedLength, compressedLength);
+				} else {
+					this._in.seek(this._in.getPos() + compressedLength); // column not needed: not even read
+				}
+			}
+			this._previousStationID = 0;
+			this._previousDate = 0;
+			return true;
+		}
+
+		/**
+		 * Decode the next record of the current block
+		 *
+		 * @return false when the current block is exhausted, call nextBlock() then
+		 */
+		public boolean next(HLYRecordWritable record) throws IOException {
+			if (this._remainingRecords == 0) {
+				return false;
+			}
+			this._remainingRecords--;
+
+			record.clear();
+			if (this._selected[Column.STATION_ID.ordinal()]) {
+				this._previousStationID += WritableUtils.readVInt(this._columnInputs[Column.STATION_ID.ordinal()]);
+				record.setStationIDValue(this._previousStationID);
+			}
+			if (this._selected[Column.DATE.ordinal()]) {
+				this._previousDate += WritableUtils.readVInt(this._columnInputs[Column.DATE.ordinal()]);
+				record.setDateValue(this._previousDate);
+			}
+			record.setMeasures(
+					readMeasure(Column.DAY_AVERAGE),
+					readMeasure(Column.DAY_MIN),
+					readMeasure(Column.DAY_MAX));
+			if (this._selected[Column.HOUR_READINGS.ordinal()]) {
+				record.readHourReadings(this._columnInputs[Column.HOUR_READINGS.ordinal()]);
+			}
+			return true;
+		}
+
+		/**
+		 * Read all the records until the end of the split
+		 */
+		public boolean next(HLYRecordWritable record, long end) throws IOException {
+			while (!next(record)) {
+				if (!nextBlock(end)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		public long getPosition() throws IOException {
+			return this._in.getPos();
+		}
+
+		@Override
+		public void close() throws IOException {
+			CodecPool.returnDecompressor(this._decompressor);
+			this._in.close();
+		}
+
+		private int readMeasure(Column column) throws IOException {
+			if (!this._selected[column.ordinal()]) {
+				return HLYRecordParser.INVALID_MEASURE;
+			}
+			return WritableUtils.readVInt(this._columnInputs[column.ordinal()]);
+		}
+
+		private void readColumn(int col, int uncompressedLength, int compressedLength) throws IOException {
+			if (this._compressedData.length < compressedLength) {
+				this._compressedData = new byte[compressedLength];
+			}
+			this._in.readFully(this._compressedData, 0, compressedLength);
+			if (this._columnData[col].length < uncompressedLength) {
+				this._columnData[col] = new byte[uncompressedLength];
+			}
+
+			this._compressedInput.reset(this._compressedData, compressedLength);
+			if (this._decompressor != null) {
+				this._decompressor.reset();
+			}
+			CompressionInputStream decompressedIn = this._codec.createInputStream(this._compressedInput, this._decompressor);
+			int read = 0;
+			while (read < uncompressedLength) {
+				int n = decompressedIn.read(this._columnData[col], read, uncompressedLength - read);
+				if (n < 0) {
+					throw new EOFException(String.format("Corrupted HLY columnar file: column %s truncated", COLUMNS[col]));
+				}
+				read += n;
+			}
+			this._columnInputs[col].reset(this._columnData[col], uncompressedLength);
+		}
+
+		private boolean matchesSync(byte[] window, int head) {
+			for (int i = 0; i < SYNC_SIZE; i++) {
+				if (window[(head + i) % SYNC_SIZE] != this._sync[i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+}
@@ -0,0 +1,52 @@
+package hadooplab.OzoneAnalysis;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+
+import java.io.IOException;
+import java.util.EnumSet;
+
+/**
+ * Read HLY columnar files (see HLYColumnarFile) as (NullWritable, HLYRecordWritable)
+ * The files are splittable (sync markers), by default FileInputFormat cuts splits of the size of the HDFS block
+ *
+ * Only the columns set by setColumns() are decompressed and decoded, the other fields of the record stay cleared
+ * Example, the LocationDriver only needs the StationID and the DayAverage:
+ *   job.setInputFormatClass(HLYColumnarInputFormat.class);
+ *   HLYColumnarInputFormat.setColumns(job.getConfiguration(), Column.STATION_ID, Column.DAY_AVERAGE);
+ */
+public class HLYColumnarInputFormat extends FileInputFormat<NullWritable, HLYRecordWritable> {
+	/** Configuration property: comma separated names of HLYColumnarFile.Column, all the columns when not set */
+	public static final String CONF_COLUMNS = "hadooplab.ozone.columnar.columns";
+
+	public static void setColumns(Configuration conf, HLYColumnarFile.Column first, HLYColumnarFile.Column... others) {
+		StringBuilder sb = new StringBuilder(first.name());
+		for (HLYColumnarFile.Column column : others) {
+			sb.append(',').append(column.name());
+		}
+		conf.set(CONF_COLUMNS, sb.toString());
+	}
+
+	public static EnumSet<HLYColumnarFile.Column> getColumns(Configuration conf) {
+		String[] names = conf.getTrimmedStrings(CONF_COLUMNS);
+		if (names.length == 0) {
+			return EnumSet.allOf(HLYColumnarFile.Column.class);
+		}
+
+		EnumSet<HLYColumnarFile.Column> columns = EnumSet.noneOf(HLYColumnarFile.Column.class);
+		for (String name : names) {
+			columns.add(HLYColumnarFile.Column.valueOf(name));
+		}
+		return columns;
+	}
+
+	@Override
+	public RecordReader<NullWritable, HLYRecordWritable> createRecordReader(InputSplit split, TaskAttemptContext context)
+			throws IOException, InterruptedException {
+		return new HLYColumnarRecordReader();
+	}
+}
@@ -0,0 +1,35 @@
+package hadooplab.OzoneAnalysis;
+
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Mapper;
+
+import java.io.IOException;
+
+/**
+ * Map-only conversion of the NAPS HLY text file to the HLY columnar format (see HLYColumnarDriver)
+ * Only the valid records are kept: the analytic mappers drop the invalid records anyway
+ */
+public class HLYColumnarMapper extends Mapper<LongWritable, Text, NullWritable, HLYRecordWritable> {
+	private HLYRecordParser _hlyParser = new HLYRecordParser();
+	private HLYRecordWritable _record = new HLYRecordWritable(); // re-used for every output record
+
+	enum NAPS_HLYRecordQuality {
+		INVALID // record too short, unreadable or contained corrupted data
+	}
+
+	@Override
+	public void map(LongWritable key, Text value, Context context)
+			throws IOException, InterruptedException {
+		this._hlyParser.parse(value.getBytes(), 0, value.getLength());
+
+		if (this._hlyParser.isValidRecord()) {
+			this._record.setFrom(this._hlyParser);
+			context.write(NullWritable.get(), this._record);
+		}
+		else {
+			context.getCounter(NAPS_HLYRecordQuality.INVALID).increment(1);
+		}
+	}
+}
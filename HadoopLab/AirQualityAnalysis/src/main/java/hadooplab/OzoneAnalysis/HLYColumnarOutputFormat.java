@@ -0,0 +1,39 @@
+package hadooplab.OzoneAnalysis;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+
+import java.io.IOException;
+
+/**
+ * Write the HLYRecordWritable values in HLY columnar files (see HLYColumnarFile), the keys are ignored
+ * Each task writes its own file: part-m-00000.hlyc, ...
+ */
+public class HLYColumnarOutputFormat extends FileOutputFormat<NullWritable, HLYRecordWritable> {
+
+	@Override
+	public RecordWriter<NullWritable, HLYRecordWritable> getRecordWriter(TaskAttemptContext context)
+			throws IOException, InterruptedException {
+		Configuration conf = context.getConfiguration();
+		Path file = getDefaultWorkFile(context, HLYColumnarFile.FILE_EXTENSION);
+		FileSystem fs = file.getFileSystem(conf);
+		final HLYColumnarFile.Writer writer = new HLYColumnarFile.Writer(conf, fs.create(file, false));
+
+		return new RecordWriter<NullWritable, HLYRecordWritable>() {
+			@Override
+			public void write(NullWritable key, HLYRecordWritable value) throws IOException {
+				writer.append(value);
+			}
+
+			@Override
+			public void close(TaskAttemptContext context) throws IOException {
+				writer.close();
+			}
+		};
+	}
+}
@@ -0,0 +1,85 @@
+package hadooplab.OzoneAnalysis;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+
+import java.io.IOException;
+import java.util.EnumSet;
+
+/**
+ * RecordReader of HLYColumnarInputFormat: reads the blocks of the split whose sync marker starts in the split
+ * The same HLYRecordWritable is returned for all the records
+ * The records which do not match the predicates of HLYRecordFilter are dropped (the DATE column must be read for a date range)
+ */
+public class HLYColumnarRecordReader extends RecordReader<NullWritable, HLYRecordWritable> {
+	private HLYColumnarFile.Reader _reader;
+	private final HLYRecordWritable _record = new HLYRecordWritable();
+	private long _start, _end;
+	private HLYRecordFilter _filter; // null when there is no predicate
+	private Counter _filteredCounter;
+
+	@Override
+	public void initialize(InputSplit genericSplit, TaskAttemptContext context) throws IOException, InterruptedException {
+		FileSplit split = (FileSplit) genericSplit;
+		Configuration conf = context.getConfiguration();
+		Path file = split.getPath();
+		FileSystem fs = file.getFileSystem(conf);
+
+		this._start = split.getStart();
+		this._end = this._start + split.getLength();
+		EnumSet<HLYColumnarFile.Column> columns = HLYColumnarInputFormat.getColumns(conf);
+		this._filter = HLYRecordFilter.get(conf);
+		if (this._filter != null && ((this._filter.hasStationSet() && !columns.contains(HLYColumnarFile.Column.STATION_ID))
+				|| (this._filter.hasDateRange() && !columns.contains(HLYColumnarFile.Column.DATE)))) {
+			throw new IOException(String.format("%s: the columns read by the filter are missing", HLYColumnarInputFormat.CONF_COLUMNS));
+		}
+		this._reader = new HLYColumnarFile.Reader(conf, fs.open(file), fs.getFileStatus(file).getLen(), columns);
+		this._reader.sync(this._start);
+		this._filteredCounter = context.getCounter(HLYRecordFilter.NAPS_HLYRecordQuality.FILTERED);
+	}
+
+	@Override
+	public boolean nextKeyValue() throws IOException, InterruptedException {
+		while (this._reader.next(this._record, this._end)) {
+			if (this._filter == null || this._filter.accept(this._record.getStationIDValue(), this._record.getDateValue())) {
+				return true;
+			}
+			if (this._filteredCounter != null) {
+				this._filteredCounter.increment(1);
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public NullWritable getCurrentKey() {
+		return NullWritable.get();
+	}
+
+	@Override
+	public HLYRecordWritable getCurrentValue() {
+		return this._record;
+	}
+
+	@Override
+	public float getProgress() throws IOException {
+		if (this._end == this._start) {
+			return 0.0f;
+		}
+		return Math.min(1.0f, (this._reader.getPosition() - this._start) / (float) (this._end - this._start));
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (this._reader != null) {
+			this._reader.close();
+		}
+	}
+}
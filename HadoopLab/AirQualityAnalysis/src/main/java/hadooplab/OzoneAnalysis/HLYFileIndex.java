@@ -0,0 +1,325 @@
+package hadooplab.OzoneAnalysis;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.EnumSet;
+
+/**
+ * Sparse index of an HLY file sorted by (StationID, Date): 1 entry every "interval" records,
+ * the (StationID, Date) of the record and its byte offset in the file. Written next to the HLY file ("2012O3.hly.idx")
+ * A query for a Station (and a date range) reads only the bytes between 2 entries around the range (see HLYIndexedReader)
+ *
+ * File format (big-endian, as DataOutputStream):
+ *   Header  : MAGIC "HLIX" (int) | VERSION (int) | length (long) and modification time (long) of the HLY file
+ *             | entryCount (int) | interval (int)
+ *   Entries : stationIDs int[entryCount] | dates int[entryCount] | offsets long[entryCount], in the order of the file
+ *
+ * The records whose StationID or Date cannot be decoded are not indexed (they are still in the file between 2 entries)
+ * The builder checks the order: an HLY file which is not sorted by (StationID, Date) cannot be indexed
+ * Compressed HLY files cannot be indexed either, their offsets are not the offsets of the records
+ *
+ * Build the indexes of HLY files (HDFS or local, globs accepted), skipped when the index is up to date:
+ *   # hadoop jar OzoneMR.jar hadooplab.OzoneAnalysis.HLYFileIndex "/user/tri/AirAnalysis/OzoneRawFL/20*O3.hly"
+ */
+public final class HLYFileIndex {
+	public static final int MAGIC = 0x484C4958; // "HLIX"
+	public static final int VERSION = 1;
+	/** Extension of the index file, added to the name of the HLY file */
+	public static final String FILE_EXTENSION = ".idx";
+	/** Configuration property: number of records between 2 entries of the index */
+	public static final String CONF_INTERVAL = "hadooplab.ozone.hlyindex.interval";
+	/** 1024 records = 126 KB at most read before / after the range of a query, 16 bytes per 1024 records in the index */
+	public static final int DEFAULT_INTERVAL = 1024;
+	private static final int HEADER_LENGTH = 32;
+
+	private final long _sourceLength, _sourceModificationTime;
+	private final int _entryCount, _interval;
+	private final IntBuffer _stationIDs, _dates;
+	private final LongBuffer _offsets;
+
+	private HLYFileIndex(ByteBuffer buffer) throws IOException {
+		if (buffer.limit() < HEADER_LENGTH || buffer.getInt(0) != MAGIC) {
+			throw new IOException("Not an HLY index");
+		}
+		if (buffer.getInt(4) != VERSION) {
+			throw new IOException(String.format("Unsupported HLY index version: %d", buffer.getInt(4)));
+		}
+		this._sourceLength = buffer.getLong(8);
+		this._sourceModificationTime = buffer.getLong(16);
+		this._entryCount = buffer.getInt(24);
+		this._interval = buffer.getInt(28);
+		if (this._entryCount < 0 || HEADER_LENGTH + 16L * this._entryCount > buffer.limit()) {
+			throw new IOException("Corrupted HLY index: truncated");
+		}
+		int arrayLength = 4 * this._entryCount;
+		this._stationIDs = slice(buffer, HEADER_LENGTH, arrayLength).asIntBuffer();
+		this._dates = slice(buffer, HEADER_LENGTH + arrayLength, arrayLength).asIntBuffer();
+		this._offsets = slice(buffer, HEADER_LENGTH + 2 * arrayLength, 2 * arrayLength).asLongBuffer();
+	}
+
+	/**
+	 * Memory-map an index file
+	 */
+	public static HLYFileIndex open(File indexFile) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(indexFile, "r");
+		try {
+			// the mapping stays valid after the file is closed
+			return new HLYFileIndex(file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length()));
+		} finally {
+			file.close();
+		}
+	}
+
+	/**
+	 * @return the index file of an HLY file: the same name + FILE_EXTENSION, in the same directory
+	 */
+	public static Path getIndexPath(Path hlyPath) {
+		return new Path(hlyPath.getParent(), hlyPath.getName() + FILE_EXTENSION);
+	}
+
+	/**
+	 * Index the records of an HLY file
+	 *
+	 * @param hlyIn the HLY file from its first byte
+	 * @param sourceLength, sourceModificationTime of the HLY file, written in the header
+	 * @throws IOException when the records are not sorted by (StationID, Date)
+	 */
+	public static void build(InputStream hlyIn, long sourceLength, long sourceModificationTime, int interval, DataOutputStream out)
+			throws IOException {
+		if (interval <= 0) {
+			throw new IllegalArgumentException(String.format("%s must be > 0: %d", CONF_INTERVAL, interval));
+		}
+		HLYRecordParser parser = new HLYRecordParser();
+		parser.setProjection(EnumSet.of(HLYRecordParser.Field.STATION_ID, HLYRecordParser.Field.DATE)); // only the key
+
+		int entryCount = 0;
+		int[] stationIDs = new int[1024], dates = new int[1024];
+		long[] offsets = new long[1024];
+		long previousKey = Long.MIN_VALUE;
+		int recordsSinceEntry = interval; // the first readable record is an entry
+
+		InputStream in = new BufferedInputStream(hlyIn, 1 << 16);
+		byte[] line = new byte[HLYRecordParser.MINIMUM_RECORD_LENGTH + 2];
+		long offset = 0;
+		while (true) {
+			// 1 line, the bytes after the 127th are not needed (not a part of the key)
+			int length = 0;
+			long lineOffset = offset;
+			int b;
+			while ((b = in.read()) >= 0 && b != '\n') {
+				if (length < line.length) {
+					line[length] = (byte) b;
+				}
+				length++;
+			}
+			if (b < 0 && length == 0) {
+				break;
+			}
+			offset += length + (b < 0 ? 0 : 1);
+			if (length > 0 && length <= line.length && line[length - 1] == '\r') {
+				length--;
+			}
+
+			parser.parse(line, 0, Math.min(length, line.length));
+			int stationID = parser.getStationIDValue();
+			int date = parser.getDateValue();
+			if (stationID == HLYRecordParser.UNREADABLE_MEASURE || date == HLYRecordParser.UNREADABLE_MEASURE) {
+				continue; // not indexed
+			}
+			long key = key(stationID, date);
+			if (key < previousKey) {
+				throw new IOException(String.format("HLY file not sorted by (StationID, Date) at offset %d: %d %d", lineOffset, stationID, date));
+			}
+			previousKey = key;
+
+			if (recordsSinceEntry >= interval) {
+				if (entryCount == stationIDs.length) {
+					stationIDs = Arrays.copyOf(stationIDs, 2 * entryCount);
+					dates = Arrays.copyOf(dates, 2 * entryCount);
+					offsets = Arrays.copyOf(offsets, 2 * entryCount);
+				}
+				stationIDs[entryCount] = stationID;
+				dates[entryCount] = date;
+				offsets[entryCount] = lineOffset;
+				entryCount++;
+				recordsSinceEntry = 0;
+			}
+			recordsSinceEntry++;
+		}
+
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeLong(sourceLength);
+		out.writeLong(sourceModificationTime);
+		out.writeInt(entryCount);
+		out.writeInt(interval);
+		for (int kk = 0; kk < entryCount; kk++) {
+			out.writeInt(stationIDs[kk]);
+		}
+		for (int kk = 0; kk < entryCount; kk++) {
+			out.writeInt(dates[kk]);
+		}
+		for (int kk = 0; kk < entryCount; kk++) {
+			out.writeLong(offsets[kk]);
+		}
+	}
+
+	/**
+	 * Build the index of an HLY file next to it, unless the index already there was built from the same version
+	 * of the file (same length and modification time)
+	 *
+	 * @return true when the index was (re)written
+	 */
+	public static boolean buildIfStale(Configuration conf, Path hlyPath) throws IOException {
+		FileSystem fs = hlyPath.getFileSystem(conf);
+		if (new CompressionCodecFactory(conf).getCodec(hlyPath) != null) {
+			throw new IOException(String.format("Compressed HLY file, cannot be indexed: %s", hlyPath));
+		}
+		FileStatus hlyStatus = fs.getFileStatus(hlyPath);
+		Path indexPath = getIndexPath(hlyPath);
+		if (fs.exists(indexPath)) {
+			DataInputStream in = fs.open(indexPath);
+			try {
+				if (in.readInt() == MAGIC && in.readInt() == VERSION
+						&& in.readLong() == hlyStatus.getLen() && in.readLong() == hlyStatus.getModificationTime()) {
+					return false;
+				}
+			} catch (EOFException ex) {
+				// truncated: built again
+			} finally {
+				in.close();
+			}
+		}
+
+		// written aside then renamed: a reader never sees a partial index
+		Path tempPath = new Path(indexPath.getParent(), "_" + indexPath.getName() + ".tmp");
+		InputStream hlyIn = fs.open(hlyPath);
+		try {
+			FSDataOutputStream out = fs.create(tempPath, true);
+			try {
+				build(hlyIn, hlyStatus.getLen(), hlyStatus.getModificationTime(), conf.getInt(CONF_INTERVAL, DEFAULT_INTERVAL), out);
+			} finally {
+				out.close();
+			}
+		} catch (IOException ex) {
+			fs.delete(tempPath, false);
+			throw ex;
+		} finally {
+			hlyIn.close();
+		}
+		fs.delete(indexPath, false);
+		if (!fs.rename(tempPath, indexPath)) {
+			throw new IOException(String.format("Cannot rename %s to %s", tempPath, indexPath));
+		}
+		return true;
+	}
+
+	/**
+	 * (StationID, Date) as 1 long, in the order of the HLY file
+	 */
+	static long key(int stationID, int date) {
+		return ((long) stationID << 32) | (date & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * @return the offset of a line at or before the first record whose key is >= fromKey
+	 *         (the entry before the first entry >= fromKey: the records equal to an entry may start before the entry)
+	 */
+	public long getStartOffset(long fromKey) {
+		int entry = firstEntryNotBefore(fromKey) - 1;
+		return (entry < 0 ? 0L : this._offsets.get(entry));
+	}
+
+	/**
+	 * @return the offset of a line after the last record whose key is <= toKey (the first entry > toKey), the end of the file when there is none
+	 */
+	public long getEndOffset(long toKey) {
+		int entry = (toKey == Long.MAX_VALUE ? this._entryCount : firstEntryNotBefore(toKey + 1));
+		return (entry < this._entryCount ? this._offsets.get(entry) : this._sourceLength);
+	}
+
+	public long getSourceLength() {
+		return this._sourceLength;
+	}
+
+	public long getSourceModificationTime() {
+		return this._sourceModificationTime;
+	}
+
+	public int getEntryCount() {
+		return this._entryCount;
+	}
+
+	public int getInterval() {
+		return this._interval;
+	}
+
+	public int getStationID(int entry) {
+		return this._stationIDs.get(entry);
+	}
+
+	public int getDate(int entry) {
+		return this._dates.get(entry);
+	}
+
+	public long getOffset(int entry) {
+		return this._offsets.get(entry);
+	}
+
+	/**
+	 * Binary search of the first entry whose key is >= key
+	 *
+	 * @return the entry, getEntryCount() when all the entries are before the key
+	 */
+	private int firstEntryNotBefore(long key) {
+		int low = 0;
+		int high = this._entryCount;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (key(this._stationIDs.get(middle), this._dates.get(middle)) < key) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	private static ByteBuffer slice(ByteBuffer buffer, int position, int length) {
+		ByteBuffer slice = buffer.duplicate();
+		slice.position(position);
+		slice.limit(position + length);
+		return slice.slice();
+	}
+
+	/**
+	 * @param args HLY files (comma separated list and/or globs, as the input of the drivers), hadooplab.ozone.hlyindex.interval as -D option
+	 */
+	public static void main(String[] args) throws Exception {
+		Configuration conf = new Configuration();
+		for (String arg : new org.apache.hadoop.util.GenericOptionsParser(conf, args).getRemainingArgs()) {
+			for (String input : arg.split(",")) {
+				Path pattern = new Path(input);
+				FileStatus[] statuses = pattern.getFileSystem(conf).globStatus(pattern);
+				if (statuses == null || statuses.length == 0) {
+					throw new FileNotFoundException(String.format("No HLY file: %s", input));
+				}
+				for (FileStatus status : statuses) {
+					boolean built = buildIfStale(conf, status.getPath());
+					System.out.printf("%s: %s\n", getIndexPath(status.getPath()), (built ? "built" : "up to date"));
+				}
+			}
+		}
+	}
+}
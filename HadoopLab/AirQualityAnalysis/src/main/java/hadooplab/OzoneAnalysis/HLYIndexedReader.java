@@ -0,0 +1,195 @@
+package hadooplab.OzoneAnalysis;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
+
+/**
+ * Point and range queries on a local HLY file sorted by (StationID, Date), with its HLYFileIndex:
+ * the index gives the byte range of the file which can hold the records of the query, only this range
+ * is read (positioned reads into a buffer re-used by the queries) and parsed (the key only) with HLYRecordParser,
+ * the records of the query are given to a RecordVisitor
+ *
+ * A query for 1 Station reads its records plus at most 2 intervals of the index, instead of the whole file
+ * The index must be built from the same version of the file (same length and modification time, checked)
+ * by HLYFileIndex.buildIfStale()
+ *
+ * Ad-hoc query, the records of the Station 060419 in July 2012 (the index is built when missing or stale):
+ *   # hadoop jar OzoneMR.jar hadooplab.OzoneAnalysis.HLYIndexedReader /data/naps/2012O3.hly 60419 201207
+ *   Dates: YYYYMMDD, YYYYMM (the whole month) or YYYY (the whole year), from and to both included
+ */
+public final class HLYIndexedReader implements Closeable {
+	/**
+	 * Receives the records of a query, in the order of the file
+	 */
+	public interface RecordVisitor {
+		/**
+		 * @param record the parser positioned on the record (re-used for the next record)
+		 * @param bytes, offset, length the line of the record, without the line terminator (the buffer is re-used as well)
+		 */
+		void visit(HLYRecordParser record, byte[] bytes, int offset, int length) throws IOException;
+	}
+
+	private final FileInputStream _file;
+	private final FileChannel _channel;
+	private final HLYFileIndex _index;
+	private final HLYRecordParser _parser = new HLYRecordParser();
+	private byte[] _buffer = new byte[1 << 16];
+
+	public HLYIndexedReader(File hlyFile, HLYFileIndex index) throws IOException {
+		// same check as HLYFileIndex.buildIfStale(): a file rewritten with the same length has other offsets
+		if (hlyFile.length() != index.getSourceLength() || hlyFile.lastModified() != index.getSourceModificationTime()) {
+			throw new IOException(String.format("Stale HLY index: %s is %d bytes long modified at %d, indexed at %d bytes modified at %d",
+					hlyFile, hlyFile.length(), hlyFile.lastModified(), index.getSourceLength(), index.getSourceModificationTime()));
+		}
+		this._file = new FileInputStream(hlyFile);
+		this._channel = this._file.getChannel();
+		this._index = index;
+		// the key is enough to select the records, the visitor decodes the other columns on demand
+		this._parser.setProjection(EnumSet.of(HLYRecordParser.Field.STATION_ID, HLYRecordParser.Field.DATE));
+	}
+
+	/**
+	 * Open a local HLY file with the index next to it
+	 */
+	public static HLYIndexedReader open(File hlyFile) throws IOException {
+		File indexFile = new File(hlyFile.getParentFile(), hlyFile.getName() + HLYFileIndex.FILE_EXTENSION);
+		return new HLYIndexedReader(hlyFile, HLYFileIndex.open(indexFile));
+	}
+
+	/**
+	 * All the records of a Station
+	 *
+	 * @return the number of records visited
+	 */
+	public int query(int stationID, RecordVisitor visitor) throws IOException {
+		return query(stationID, 0, Integer.MAX_VALUE, visitor);
+	}
+
+	/**
+	 * The records of a Station from dateFrom to dateTo (YYYYMMDD, both included)
+	 *
+	 * @return the number of records visited
+	 */
+	public int query(int stationID, int dateFrom, int dateTo, RecordVisitor visitor) throws IOException {
+		long fromKey = HLYFileIndex.key(stationID, dateFrom);
+		long toKey = HLYFileIndex.key(stationID, dateTo);
+		if (fromKey > toKey) {
+			return 0;
+		}
+		long start = this._index.getStartOffset(fromKey);
+		long end = this._index.getEndOffset(toKey);
+		if (end - start > Integer.MAX_VALUE) {
+			throw new IOException(String.format("Range too large for 1 buffer: %d bytes, rebuild the index with a smaller %s", end - start, HLYFileIndex.CONF_INTERVAL));
+		}
+		int length = (int) (end - start);
+		if (length <= 0) {
+			return 0;
+		}
+
+		if (this._buffer.length < length) {
+			this._buffer = new byte[Math.max(length, 2 * this._buffer.length)];
+		}
+		byte[] bytes = this._buffer;
+		// only the range of the query is read, straight into the byte[] of the parser
+		ByteBuffer target = ByteBuffer.wrap(bytes, 0, length);
+		while (target.hasRemaining()) {
+			if (this._channel.read(target, start + target.position()) < 0) {
+				throw new EOFException(String.format("HLY file shorter than its index: %d bytes read from %d", target.position(), start));
+			}
+		}
+
+		int count = 0;
+		int lineStart = 0;
+		while (lineStart < length) {
+			int lineEnd = lineStart;
+			while (lineEnd < length && bytes[lineEnd] != '\n') {
+				lineEnd++;
+			}
+			int next = lineEnd + 1;
+			if (lineEnd > lineStart && bytes[lineEnd - 1] == '\r') {
+				lineEnd--;
+			}
+
+			this._parser.parse(bytes, lineStart, lineEnd - lineStart);
+			int recordStationID = this._parser.getStationIDValue();
+			int date = this._parser.getDateValue();
+			if (recordStationID != HLYRecordParser.UNREADABLE_MEASURE && date != HLYRecordParser.UNREADABLE_MEASURE) {
+				long key = HLYFileIndex.key(recordStationID, date);
+				if (key > toKey) {
+					break; // sorted: no more record of the query
+				}
+				if (key >= fromKey) {
+					visitor.visit(this._parser, bytes, lineStart, lineEnd - lineStart);
+					count++;
+				}
+			}
+			lineStart = next;
+		}
+		return count;
+	}
+
+	public HLYFileIndex getIndex() {
+		return this._index;
+	}
+
+	@Override
+	public void close() throws IOException {
+		this._file.close();
+	}
+
+	/**
+	 * A date bound of the command line: YYYYMMDD as is, YYYYMM and YYYY extended to the first / last day
+	 */
+	static int parseDateBound(String value, boolean upper) {
+		if (!value.matches("\\d{4}|\\d{6}|\\d{8}")) {
+			throw new IllegalArgumentException(String.format("Not a date YYYYMMDD, YYYYMM or YYYY: %s", value));
+		}
+		int date = Integer.parseInt(value);
+		for (int digits = value.length(); digits < 8; digits += 2) {
+			date = date * 100 + (upper ? 99 : 0); // 99 and 00: no need to know the number of days of the month
+		}
+		return date;
+	}
+
+	/**
+	 * @param args local HLY file, StationID, [dateFrom [dateTo]] (dateTo = dateFrom by default: "201207" is July)
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length < 2 || args.length > 4) {
+			System.err.println("Usage: HLYIndexedReader <local HLY file> <StationID> [<dateFrom> [<dateTo>]]");
+			System.exit(2);
+		}
+		File hlyFile = new File(args[0]);
+		int stationID = Integer.parseInt(args[1]);
+		int dateFrom = (args.length > 2 ? parseDateBound(args[2], false) : 0);
+		int dateTo = (args.length > 3 ? parseDateBound(args[3], true) : args.length > 2 ? parseDateBound(args[2], true) : Integer.MAX_VALUE);
+
+		Configuration conf = new Configuration();
+		if (HLYFileIndex.buildIfStale(conf, new Path(hlyFile.getAbsoluteFile().toURI()))) {
+			System.err.printf("Index built: %s%s\n", hlyFile, HLYFileIndex.FILE_EXTENSION);
+		}
+
+		final PrintStream out = new PrintStream(new BufferedOutputStream(System.out), false, "US-ASCII");
+		HLYIndexedReader reader = open(hlyFile);
+		try {
+			long startTime = System.currentTimeMillis();
+			int count = reader.query(stationID, dateFrom, dateTo, new RecordVisitor() {
+				@Override
+				public void visit(HLYRecordParser record, byte[] bytes, int offset, int length) {
+					out.println(new String(bytes, offset, length, StandardCharsets.US_ASCII));
+				}
+			});
+			out.flush();
+			System.err.printf("===^^^ %d records of Station %d from %d to %d, %d ms ^^^===\n",
+					count, stationID, dateFrom, dateTo, System.currentTimeMillis() - startTime);
+		} finally {
+			reader.close();
+		}
+	}
+}
@@ -0,0 +1,125 @@
+package hadooplab.OzoneAnalysis;
+
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read the HLY text files as (NullWritable, HLYRecordWritable): the records are already parsed for the mapper,
+ * the same mappers than for HLYColumnarInputFormat can be used (ex. LocationColumnarMapper)
+ *
+ * An HLY record is fixed length: 125 chars + the line terminator, so a record starts every 126 bytes (127 with CR-LF)
+ * - the split boundaries are moved to a multiple of this stride: every split starts exactly on a record
+ * - the RecordReader reads big chunks and parses the records in place in the chunk (HLYRecordReader):
+ *   no search of the line terminator, no Text, no LongWritable offset
+ * - the invalid records are counted and dropped by the reader, like HLYColumnarMapper does
+ *
+ * The stride is detected on the first record of each file (LF or CR-LF). A line which is not 125 chars
+ * (corrupted record) is still read correctly, the reader falls back to the search of the LF for this line only
+ * Compressed files are not splittable and read sequentially, as with TextInputFormat
+ *
+ * Example, the LocationDriver on the HLY text files:
+ *   job.setInputFormatClass(HLYInputFormat.class);
+ *   job.setMapperClass(LocationColumnarMapper.class);
+ */
+public class HLYInputFormat extends FileInputFormat<NullWritable, HLYRecordWritable> {
+	/** Configuration property: size in bytes of the chunks read by the RecordReader */
+	public static final String CONF_BUFFER_SIZE = "hadooplab.ozone.hlyinput.buffersize";
+	public static final int DEFAULT_BUFFER_SIZE = 256 * 1024;
+
+	/** Bytes from the start of a record to the start of the next one, LF terminator */
+	public static final int RECORD_STRIDE = HLYRecordParser.MINIMUM_RECORD_LENGTH + 1;
+
+	@Override
+	protected boolean isSplitable(JobContext context, Path file) {
+		return new CompressionCodecFactory(context.getConfiguration()).getCodec(file) == null;
+	}
+
+	/**
+	 * The splits of FileInputFormat (block size, min/max split size), then the boundaries moved to the next record
+	 */
+	@Override
+	public List<InputSplit> getSplits(JobContext job) throws IOException {
+		List<InputSplit> splits = super.getSplits(job);
+		List<InputSplit> alignedSplits = new ArrayList<InputSplit>(splits.size());
+		Map<Path, Integer> strides = new HashMap<Path, Integer>();
+
+		for (InputSplit genericSplit : splits) {
+			FileSplit split = (FileSplit) genericSplit;
+			Path file = split.getPath();
+			if (!isSplitable(job, file)) {
+				alignedSplits.add(split);
+				continue;
+			}
+
+			FileSystem fs = file.getFileSystem(job.getConfiguration());
+			long fileLength = fs.getFileStatus(file).getLen();
+			Integer stride = strides.get(file);
+			if (stride == null) {
+				stride = detectRecordStride(fs, file);
+				strides.put(file, stride);
+			}
+
+			long end = split.getStart() + split.getLength();
+			long alignedStart = alignToRecord(split.getStart(), stride);
+			long alignedEnd = (end >= fileLength ? fileLength : Math.min(fileLength, alignToRecord(end, stride)));
+			if (alignedEnd > alignedStart) {
+				alignedSplits.add(new FileSplit(file, alignedStart, alignedEnd - alignedStart, split.getLocations()));
+			}
+		}
+		return alignedSplits;
+	}
+
+	@Override
+	public RecordReader<NullWritable, HLYRecordWritable> createRecordReader(InputSplit split, TaskAttemptContext context)
+			throws IOException, InterruptedException {
+		return new HLYRecordReader();
+	}
+
+	/**
+	 * @return the first multiple of the stride >= position
+	 */
+	static long alignToRecord(long position, int stride) {
+		return (position + stride - 1) / stride * stride;
+	}
+
+	/**
+	 * Stride of the records of a file: RECORD_STRIDE (LF), RECORD_STRIDE + 1 (CR-LF)
+	 * RECORD_STRIDE as well when the first line is not a 125 chars record, the reader will find the LF itself
+	 */
+	static int detectRecordStride(FileSystem fs, Path file) throws IOException {
+		byte[] head = new byte[RECORD_STRIDE + 1];
+		FSDataInputStream in = fs.open(file);
+		try {
+			in.readFully(0, head);
+		} catch (EOFException ex) {
+			return RECORD_STRIDE; // 1 record or less
+		} finally {
+			in.close();
+		}
+		return detectRecordStride(head, 0, head.length);
+	}
+
+	static int detectRecordStride(byte[] bytes, int offset, int length) {
+		int terminator = offset + HLYRecordParser.MINIMUM_RECORD_LENGTH;
+		if (length > HLYRecordParser.MINIMUM_RECORD_LENGTH + 1 && bytes[terminator] == '\r' && bytes[terminator + 1] == '\n') {
+			return RECORD_STRIDE + 1;
+		}
+		return RECORD_STRIDE;
+	}
+}
@@ -0,0 +1,311 @@
+package hadooplab.OzoneAnalysis;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.input.TextInputFormat;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Predicates on the HLY records, checked by the input (RecordReader, local engine) on the raw bytes of the record,
+ * before any parsing: the records which cannot match never reach the mapper
+ * - hadooplab.ozone.filter.stations : comma separated StationIDs
+ * - hadooplab.ozone.filter.provinces: comma separated Province names of the Station file (case ignored), ex. ONTARIO,QUEBEC
+ * - hadooplab.ozone.filter.date.from / hadooplab.ozone.filter.date.to: YYYYMMDD, both included
+ * The predicates are AND-ed, a record with a column which cannot be decoded never matches
+ *
+ * The StationIDs are 6 digits at most: the set of StationIDs is an exact bitmap (BitSet) indexed by StationID,
+ * 1 bit per possible StationID (125 KB at most), no false positive as with a bloom filter
+ * The provinces are resolved into StationIDs by the driver (configure()), with the NAPSStationLookup of the Station file
+ * Applied by all the text input drivers: LocationDriver and OzoneAnalysisDriver (job and local engine), SimpleDriver,
+ * PollutantLocationDriver and CompositeKeyDriver (the job). Rejected by the incremental mode of LocationDriver
+ * (the driver stops with an error): its aggregates are merged run after run, they must cover all the records
+ *
+ * Example, the Locations of Ontario and Quebec in July 2012:
+ *   # yarn jar OzoneMR.jar hadooplab.OzoneAnalysis.LocationDriver -D hadooplab.ozone.filter.provinces=ONTARIO,QUEBEC
+ *        -D hadooplab.ozone.filter.date.from=20120701 -D hadooplab.ozone.filter.date.to=20120731
+ */
+public final class HLYRecordFilter {
+	/** Configuration property: comma separated StationIDs, all the Stations when not set */
+	public static final String CONF_STATIONS = "hadooplab.ozone.filter.stations";
+	/** Configuration property: comma separated Province names, all the Provinces when not set */
+	public static final String CONF_PROVINCES = "hadooplab.ozone.filter.provinces";
+	/** Configuration property: first date YYYYMMDD */
+	public static final String CONF_DATE_FROM = "hadooplab.ozone.filter.date.from";
+	/** Configuration property: last date YYYYMMDD */
+	public static final String CONF_DATE_TO = "hadooplab.ozone.filter.date.to";
+	// StationIDs of the stations and provinces, set by configure() for the tasks
+	static final String CONF_RESOLVED_STATIONS = "hadooplab.ozone.filter.stations.resolved";
+
+	private static final int MAX_STATION_ID = 999999; // 6 digits
+	private static final int STATION_OFFSET = 3;
+	private static final int STATION_WIDTH = 6;
+	private static final int DATE_OFFSET = 9;
+	private static final int DATE_WIDTH = 8;
+	private static final int NOT_A_NUMBER = -1;
+
+	enum NAPS_HLYRecordQuality {
+		FILTERED // cannot match the predicates (includes the invalid records which cannot match)
+	}
+
+	private final BitSet _stations; // null: all the Stations
+	private final int _dateFrom, _dateTo;
+
+	private HLYRecordFilter(BitSet stations, int dateFrom, int dateTo) {
+		this._stations = stations;
+		this._dateFrom = dateFrom;
+		this._dateTo = dateTo;
+	}
+
+	/**
+	 * @return true when at least 1 predicate is set
+	 */
+	public static boolean isEnabled(Configuration conf) {
+		return (conf.get(CONF_STATIONS) != null || conf.get(CONF_PROVINCES) != null
+				|| conf.get(CONF_DATE_FROM) != null || conf.get(CONF_DATE_TO) != null);
+	}
+
+	/**
+	 * Driver side: resolve the provinces into the StationIDs of the Station file (intersected with the StationIDs
+	 * when both are set), for the tasks. Must be called before the Job is created (the Job copies the Configuration)
+	 */
+	public static void configure(Configuration conf, URI stationFileURI) throws IOException {
+		String[] provinces = conf.getTrimmedStrings(CONF_PROVINCES);
+		if (provinces.length == 0) {
+			return; // the tasks use the StationIDs as they are
+		}
+		Set<String> provinceSet = new HashSet<String>();
+		for (String province : provinces) {
+			provinceSet.add(province.toUpperCase());
+		}
+		BitSet stations = parseStationIDs(conf, CONF_STATIONS);
+
+		NAPSStationLookup lookup = new NAPSStationLookup();
+		Path stationPath = new Path(stationFileURI);
+		FileSystem fs = stationPath.getFileSystem(conf);
+		BufferedReader reader = new BufferedReader(new InputStreamReader(fs.open(stationPath)));
+		try {
+			lookup.initialize(reader);
+		} finally {
+			reader.close();
+		}
+
+		StringBuilder resolved = new StringBuilder();
+		for (Map.Entry<Integer, String> station : lookup.getStationIDToLocationMap().entrySet()) {
+			int stationID = station.getKey();
+			String province = station.getValue().substring(0, station.getValue().indexOf('\t')); // "Province\tCity"
+			if (provinceSet.contains(province.toUpperCase()) && (stations == null || stations.get(stationID))) {
+				resolved.append(resolved.length() == 0 ? "" : ",").append(stationID);
+			}
+		}
+		// no Station in these provinces: an empty set, nothing matches
+		conf.set(CONF_RESOLVED_STATIONS, resolved.toString());
+	}
+
+	/**
+	 * Task side: the predicates of the Configuration
+	 *
+	 * @return null when no predicate is set
+	 */
+	public static HLYRecordFilter get(Configuration conf) throws IOException {
+		if (!isEnabled(conf)) {
+			return null;
+		}
+		BitSet stations;
+		if (conf.get(CONF_PROVINCES) != null) {
+			if (conf.get(CONF_RESOLVED_STATIONS) == null) {
+				throw new IOException(String.format("%s not resolved into StationIDs: HLYRecordFilter.configure() must be called by the driver", CONF_PROVINCES));
+			}
+			stations = parseStationIDs(conf, CONF_RESOLVED_STATIONS);
+			if (stations == null) {
+				stations = new BitSet(); // empty
+			}
+		} else {
+			stations = parseStationIDs(conf, CONF_STATIONS);
+		}
+		return new HLYRecordFilter(stations, parseDate(conf, CONF_DATE_FROM, 0), parseDate(conf, CONF_DATE_TO, Integer.MAX_VALUE));
+	}
+
+	/**
+	 * @return true when the Stations are filtered (StationIDs or provinces): the STATION_ID column is needed
+	 */
+	public boolean hasStationSet() {
+		return (this._stations != null);
+	}
+
+	/**
+	 * @return true when a date predicate is set: the DATE column is needed
+	 */
+	public boolean hasDateRange() {
+		return (this._dateFrom > 0 || this._dateTo < Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Check the StationID and the Date columns of an HLY record, without parsing the rest
+	 *
+	 * @param length of the line (a line too short to hold the StationID and the Date never matches)
+	 */
+	public boolean accept(byte[] bytes, int offset, int length) {
+		if (length < DATE_OFFSET + DATE_WIDTH) {
+			return false;
+		}
+		if (this._stations != null) {
+			int stationID = decodeDigits(bytes, offset + STATION_OFFSET, STATION_WIDTH);
+			if (stationID == NOT_A_NUMBER || !this._stations.get(stationID)) {
+				return false;
+			}
+		}
+		if (hasDateRange()) {
+			int date = decodeDigits(bytes, offset + DATE_OFFSET, DATE_WIDTH);
+			return (date != NOT_A_NUMBER && date >= this._dateFrom && date <= this._dateTo);
+		}
+		return true;
+	}
+
+	/**
+	 * Same predicates on a parsed record (HLYRecordWritable of the columnar files)
+	 */
+	public boolean accept(int stationID, int date) {
+		if (this._stations != null && (stationID < 0 || !this._stations.get(stationID))) {
+			return false;
+		}
+		return (!hasDateRange() || (date >= this._dateFrom && date <= this._dateTo));
+	}
+
+	/**
+	 * Decode a fixed width column of digits, the spaces and '+' are ignored as by HLYRecordParser
+	 * A minus sign makes the column NOT_A_NUMBER: a negative StationID or date never matches anyway
+	 */
+	private static int decodeDigits(byte[] bytes, int start, int width) {
+		int value = 0;
+		boolean hasDigit = false;
+		for (int kk = start; kk < start + width; kk++) {
+			byte b = bytes[kk];
+			if (b >= '0' && b <= '9') {
+				value = value * 10 + (b - '0');
+				hasDigit = true;
+			} else if (b != ' ' && b != '+') {
+				return NOT_A_NUMBER;
+			}
+		}
+		return (hasDigit ? value : NOT_A_NUMBER);
+	}
+
+	/**
+	 * @return the bitmap of the StationIDs of the property, null when it is not set
+	 */
+	private static BitSet parseStationIDs(Configuration conf, String key) {
+		String value = conf.get(key);
+		if (value == null) {
+			return null;
+		}
+		BitSet stations = new BitSet();
+		for (String stationID : conf.getTrimmedStrings(key)) {
+			int id;
+			try {
+				id = Integer.parseInt(stationID);
+			} catch (NumberFormatException ex) {
+				throw new IllegalArgumentException(String.format("%s: not a StationID: %s", key, stationID));
+			}
+			if (id < 0 || id > MAX_STATION_ID) {
+				throw new IllegalArgumentException(String.format("%s: StationID out of range: %s", key, stationID));
+			}
+			stations.set(id);
+		}
+		return stations;
+	}
+
+	private static int parseDate(Configuration conf, String key, int defaultValue) {
+		String value = conf.getTrimmed(key);
+		if (value == null) {
+			return defaultValue;
+		}
+		if (!value.matches("\\d{8}")) {
+			throw new IllegalArgumentException(String.format("%s: not a date YYYYMMDD: %s", key, value));
+		}
+		return Integer.parseInt(value);
+	}
+
+	/**
+	 * TextInputFormat whose RecordReader drops the lines which cannot match the predicates of the Configuration
+	 * (the plain LineRecordReader when there is no predicate): the mapper only receives the lines to process
+	 */
+	public static class FilteringTextInputFormat extends TextInputFormat {
+		@Override
+		public RecordReader<LongWritable, Text> createRecordReader(InputSplit split, TaskAttemptContext context) {
+			RecordReader<LongWritable, Text> reader = super.createRecordReader(split, context);
+			HLYRecordFilter filter;
+			try {
+				filter = get(context.getConfiguration());
+			} catch (IOException ex) {
+				throw new IllegalStateException(ex.getMessage(), ex);
+			}
+			return (filter == null ? reader : new FilteringLineRecordReader(reader, filter));
+		}
+	}
+
+	private static class FilteringLineRecordReader extends RecordReader<LongWritable, Text> {
+		private final RecordReader<LongWritable, Text> _reader;
+		private final HLYRecordFilter _filter;
+		private Counter _filteredCounter;
+
+		private FilteringLineRecordReader(RecordReader<LongWritable, Text> reader, HLYRecordFilter filter) {
+			this._reader = reader;
+			this._filter = filter;
+		}
+
+		@Override
+		public void initialize(InputSplit split, TaskAttemptContext context) throws IOException, InterruptedException {
+			this._reader.initialize(split, context);
+			this._filteredCounter = context.getCounter(NAPS_HLYRecordQuality.FILTERED);
+		}
+
+		@Override
+		public boolean nextKeyValue() throws IOException, InterruptedException {
+			while (this._reader.nextKeyValue()) {
+				Text line = this._reader.getCurrentValue();
+				if (this._filter.accept(line.getBytes(), 0, line.getLength())) {
+					return true;
+				}
+				if (this._filteredCounter != null) {
+					this._filteredCounter.increment(1);
+				}
+			}
+			return false;
+		}
+
+		@Override
+		public LongWritable getCurrentKey() throws IOException, InterruptedException {
+			return this._reader.getCurrentKey();
+		}
+
+		@Override
+		public Text getCurrentValue() throws IOException, InterruptedException {
+			return this._reader.getCurrentValue();
+		}
+
+		@Override
+		public float getProgress() throws IOException, InterruptedException {
+			return this._reader.getProgress();
+		}
+
+		@Override
+		public void close() throws IOException {
+			this._reader.close();
+		}
+	}
+}
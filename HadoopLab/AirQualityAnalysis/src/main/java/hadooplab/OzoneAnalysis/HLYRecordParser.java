@@ -1,22 +1,114 @@
 package hadooplab.OzoneAnalysis;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.EnumSet;
+
 /**
  * Parse a fixed length record of a *.hly file from
  * Canadian National Air Pollution Surveillance Program (NAPS)
  * http://maps-cartes.ec.gc.ca/rnspa-naps/data.aspx?lang=en
  * The file format is descibed in /src/main/resources/00_Readme.txt
  *
+ * The columns are decoded on demand: parse() decodes only the fields of the projection (setProjection(), all by default),
+ * any other field is decoded by its getter the first time it is called, from the bytes given to parse()
+ * ATTENTION: with a projection, those bytes must not be modified before the getters are called
+ * (the mappers read the fields of the Text value in map(), before the next record is read)
+ *
+ * Early reject (setKeyFilter()): the PollutantCode and the StationID (the first 9 chars) are checked first,
+ * a rejected record is not decoded any further and is not valid
+ *
  *
  * 2014-04-18 - Tri Nguyen
  */
 public class HLYRecordParser {
-	private static final int INVALID_MEASURE = -999;
-	private static final int MINIMUM_RECORD_LENGTH = 125;
+	/** value written by NAPS in the record for a missing measure */
+	public static final int INVALID_MEASURE = -999;
+	/** sentinel for a field which cannot be decoded as a number (corrupted data), never found in a NAPS record */
+	public static final int UNREADABLE_MEASURE = Integer.MIN_VALUE;
+	public static final int HOUR_COUNT = 24;
 
-	private String _strDate;
-	private Integer _stationID, _dayAverage, _dayMin, _dayMax;
-	private Integer[] _hourReadings = new Integer[24];
+	/** length of a record without the line terminator: 17 chars of key + 27 columns of 4 chars */
+	public static final int MINIMUM_RECORD_LENGTH = 125;
+	private static final int MEASURE_WIDTH = 4;
+	private static final int FIRST_HOUR_OFFSET = 29;
+
+	/**
+	 * The groups of columns which can be projected
+	 * DAY_STATS: the pre-calculated AVG, MIN, MAX of the day
+	 * HOUR_READINGS: the 24 readings and their statistics (getHourlyStats(), getCalcDay*())
+	 */
+	public enum Field {
+		POLLUTANT_CODE, STATION_ID, DATE, DAY_STATS, HOUR_READINGS
+	}
+
+	/**
+	 * Early reject of the records on their key, before the rest of the record is decoded
+	 */
+	public interface KeyFilter {
+		/**
+		 * @param pollutantCode, stationID decoded from the record, UNREADABLE_MEASURE when the column is not a number
+		 * @return false to reject the record
+		 */
+		boolean accept(int pollutantCode, int stationID);
+	}
+
+	// bits of _decoded: 1 << Field.ordinal(), plus the statistics of the readings
+	private static final int POLLUTANT_CODE_BIT = 1 << Field.POLLUTANT_CODE.ordinal();
+	private static final int STATION_ID_BIT = 1 << Field.STATION_ID.ordinal();
+	private static final int DATE_BIT = 1 << Field.DATE.ordinal();
+	private static final int DAY_STATS_BIT = 1 << Field.DAY_STATS.ordinal();
+	private static final int HOUR_READINGS_BIT = 1 << Field.HOUR_READINGS.ordinal();
+	private static final int HOURLY_STATS_BIT = 1 << Field.values().length;
+	private static final int ALL_FIELDS = (HOURLY_STATS_BIT << 1) - 1;
+
+	// Every field is decoded into primitives which are re-used from one record to the next
+	// so that parsing a record does not allocate any object (the mapper parses millions of them)
+	private int _pollutantCode, _stationID, _date, _dayAverage, _dayMin, _dayMax;
+	private final byte[] _dateChars = new byte[8];
+	private final int[] _hourReadings = new int[HOUR_COUNT];
 	private boolean _metRequiredLength = false;
+	// counted when the 24 readings are decoded, isValidRecord() does not need the statistics
+	private int _validHourCount, _unreadableHourCount;
+
+	// statistics of the 24 hours readings, computed in one single branch-free pass after the readings are decoded
+	private final HourlyStats _hourlyStats = new HourlyStats();
+
+	// the record being parsed: the fields not decoded yet are decoded from there
+	private byte[] _bytes;
+	private int _offset;
+	private int _decoded; // bits of the decoded fields
+	private int _decodedHours; // bit kk: _hourReadings[kk] decoded alone by getHourReadingValue()
+	private int _projection = ALL_FIELDS;
+	private KeyFilter _keyFilter;
+	private boolean _rejected;
+
+	// parse(String) copies the chars here to share the same decoding code than parse(byte[])
+	private final byte[] _lineBuffer = new byte[MINIMUM_RECORD_LENGTH];
+
+	/**
+	 * Declare the fields the caller needs: only those are decoded by parse(), the other ones are decoded on demand
+	 * Example, LocationMapper only needs the StationID and the DayAverage:
+	 *   parser.setProjection(EnumSet.of(Field.STATION_ID, Field.DAY_STATS));
+	 * isValidRecord() still checks the 24 readings, without computing their statistics
+	 */
+	public void setProjection(EnumSet<Field> fields) {
+		int projection = 0;
+		for (Field field : fields) {
+			projection |= 1 << field.ordinal();
+		}
+		if (fields.contains(Field.HOUR_READINGS)) {
+			projection |= HOURLY_STATS_BIT;
+		}
+		this._projection = projection;
+	}
+
+	/**
+	 * @param keyFilter checked by parse() on the PollutantCode and StationID of every record, null to accept all the records
+	 */
+	public void setKeyFilter(KeyFilter keyFilter) {
+		this._keyFilter = keyFilter;
+	}
 
 	/**
 	 * Parse a Fixed-Length NAPS HLY record
@@ -29,45 +121,73 @@ public class HLYRecordParser {
 PC Stat  YYYYMMDD AVG MIN MAX H01 H02 H03 H04 H05 H06 H07 H08 H09 H10 H11 H12 H13 H14 H15 H16 H17 H18 H19 H20 H21 H22 H23 H24
 00701010220120105  23   5  29  26  25  25  28  28  27  29  28  26  26  26  27-999-999-999-999  23  26  24  22  16  10   8   5
 00701010220120106  25  17  31  19  31  29  29  29  30  31  30  26  20  17-999  24  24  24  24  24  21  23  24  26  23  23  27
-   ssssss
+pppssssss
 
+p: PollutantCode (007 = O3, see NAPSPollutantCodes)
 s: StationID
 
 */
 		// an HLY record is always fixed length = 125 chars
-		this._metRequiredLength = (line.length() >= MINIMUM_RECORD_LENGTH);
-
-		if (this._metRequiredLength) {
-			this._stationID = safeIntegerConverter(line.substring(3, 9));
-			this._strDate = line.substring(9, 17);
-			this._dayAverage = safeIntegerConverter(line.substring(17, 21));
-			this._dayMin = safeIntegerConverter(line.substring(21, 25));
-			this._dayMax = safeIntegerConverter(line.substring(25, 29));
-
-			this._hourReadings[0] = safeIntegerConverter(line.substring(29, 33));
-			this._hourReadings[1] = safeIntegerConverter(line.substring(33, 37));
-			this._hourReadings[2] = safeIntegerConverter(line.substring(37, 41));
-			this._hourReadings[3] = safeIntegerConverter(line.substring(41, 45));
-			this._hourReadings[4] = safeIntegerConverter(line.substring(45, 49));
-			this._hourReadings[5] = safeIntegerConverter(line.substring(49, 53));
-			this._hourReadings[6] = safeIntegerConverter(line.substring(53, 57));
-			this._hourReadings[7] = safeIntegerConverter(line.substring(57, 61));
-			this._hourReadings[8] = safeIntegerConverter(line.substring(61, 65));
-			this._hourReadings[9] = safeIntegerConverter(line.substring(65, 69));
-			this._hourReadings[10] = safeIntegerConverter(line.substring(69, 73));
-			this._hourReadings[11] = safeIntegerConverter(line.substring(73, 77));
-			this._hourReadings[12] = safeIntegerConverter(line.substring(77, 81));
-			this._hourReadings[13] = safeIntegerConverter(line.substring(81, 85));
-			this._hourReadings[14] = safeIntegerConverter(line.substring(85, 89));
-			this._hourReadings[15] = safeIntegerConverter(line.substring(89, 93));
-			this._hourReadings[16] = safeIntegerConverter(line.substring(93, 97));
-			this._hourReadings[17] = safeIntegerConverter(line.substring(97, 101));
-			this._hourReadings[18] = safeIntegerConverter(line.substring(101, 105));
-			this._hourReadings[19] = safeIntegerConverter(line.substring(105, 109));
-			this._hourReadings[20] = safeIntegerConverter(line.substring(109, 113));
-			this._hourReadings[21] = safeIntegerConverter(line.substring(113, 117));
-			this._hourReadings[22] = safeIntegerConverter(line.substring(117, 121));
-			this._hourReadings[23] = safeIntegerConverter(line.substring(121, 125));
+		boolean metRequiredLength = (line.length() >= MINIMUM_RECORD_LENGTH);
+
+		if (metRequiredLength) {
+			// HLY files are pure ASCII, any other char is turned into a byte which can never be decoded as a number
+			for (int kk = 0; kk < MINIMUM_RECORD_LENGTH; kk++) {
+				char ch = line.charAt(kk);
+				this._lineBuffer[kk] = (ch < 0x80 ? (byte) ch : (byte) '?');
+			}
+		}
+		decodeRecord(this._lineBuffer, 0, metRequiredLength);
+	}
+
+	/**
+	 * Parse a Fixed-Length NAPS HLY record directly from its bytes, without creating any String
+	 * This is the mapper hot path: parse(value.getBytes(), 0, value.getLength()) where value is the Text fed by TextInputFormat
+	 * ATTENTION: Text.getBytes() returns the internal buffer which is only valid up to Text.getLength()
+	 *
+	 * @param bytes buffer containing the record (ASCII)
+	 * @param offset position of the first char of the record in the buffer
+	 * @param length length of the record, without the line terminator
+	 */
+	public void parse(byte[] bytes, int offset, int length) {
+		decodeRecord(bytes, offset, length >= MINIMUM_RECORD_LENGTH);
+	}
+
+	/**
+	 * Decode the fields of the projection (all the fixed 4-chars columns by default) into the primitive fields,
+	 * after the early reject of the key filter
+	 */
+	private void decodeRecord(byte[] bytes, int offset, boolean metRequiredLength) {
+		this._metRequiredLength = metRequiredLength;
+		this._bytes = bytes;
+		this._offset = offset;
+		this._rejected = false;
+
+		if (!metRequiredLength) {
+			this._pollutantCode = this._stationID = this._date = UNREADABLE_MEASURE;
+			this._dayAverage = this._dayMin = this._dayMax = UNREADABLE_MEASURE;
+			Arrays.fill(this._hourReadings, UNREADABLE_MEASURE);
+			this._validHourCount = this._unreadableHourCount = 0;
+			this._hourlyStats.clear();
+			this._decoded = ALL_FIELDS; // nothing to decode
+			return;
+		}
+		this._decoded = this._decodedHours = 0;
+
+		if (this._keyFilter != null && !this._keyFilter.accept(getPollutantCodeValue(), getStationIDValue())) {
+			this._rejected = true;
+			return;
+		}
+
+		int projection = this._projection;
+		if ((projection & POLLUTANT_CODE_BIT) != 0) decodePollutantCode();
+		if ((projection & STATION_ID_BIT) != 0) decodeStationID();
+		if ((projection & DATE_BIT) != 0) decodeDate();
+		if ((projection & DAY_STATS_BIT) != 0) decodeDayStats();
+		if ((projection & HOUR_READINGS_BIT) != 0) {
+			decodeHourReadings();
+			// decoding and statistics in 2 loops: the decoding is branchy, the statistics kernel is not
+			computeHourlyStats();
 		}
 	}
 
@@ -76,17 +196,86 @@ s: StationID
 	 * - Record length must meet minimum record length
 	 * - At least 1 valid values among the 24 Hours Readings
 	 *   (which means at least any og the Calculated Average, Min, Max must be not null)
+	 * - None of the 24 Hours Readings contains corrupted (non numerical) data
+	 * - The record was not rejected by the key filter
 	 */
 	public boolean isValidRecord() {
-		return (this._metRequiredLength && this._stationID != null && this.getCalcDayAverage() != null);
+		if (!this._metRequiredLength || this._rejected || getStationIDValue() == UNREADABLE_MEASURE) {
+			return false;
+		}
+		if ((this._decoded & HOUR_READINGS_BIT) == 0) {
+			decodeHourReadings();
+		}
+		return (this._unreadableHourCount == 0 && this._validHourCount > 0);
+	}
+
+	/**
+	 * True when the record was rejected by the key filter (see setKeyFilter()), nothing else than its key was decoded
+	 */
+	public boolean isRejected() {
+		return this._rejected;
+	}
+
+	/**
+	 * True when one of the 30 columns of the record (the 125 chars) is not a number, the record may still be valid:
+	 * isValidRecord() ignores the pollutant code, the date and the pre-calculated day values
+	 * HLYRecordReader relies on it: a line terminator inside the 125 chars always makes a column unreadable
+	 */
+	public boolean hasUnreadableColumn() {
+		if (!this._metRequiredLength) {
+			return true;
+		}
+		if ((this._decoded & HOUR_READINGS_BIT) == 0) {
+			decodeHourReadings();
+		}
+		return (this._unreadableHourCount > 0
+				|| getPollutantCodeValue() == UNREADABLE_MEASURE || getStationIDValue() == UNREADABLE_MEASURE || getDateValue() == UNREADABLE_MEASURE
+				|| getDayAverageValue() == UNREADABLE_MEASURE || getDayMinValue() == UNREADABLE_MEASURE || getDayMaxValue() == UNREADABLE_MEASURE);
+	}
+
+	/**
+	 * The NAPS pollutant code of the record (the same for all the records of a .hly file), ex. 7 for O3
+	 * The code is described in NAPS-pollutant-codesV2014.csv, see NAPSPollutantCodes
+	 */
+	public Integer getPollutantCode() {
+		return toNullable(getPollutantCodeValue());
+	}
+
+	/**
+	 * Primitive version of getPollutantCode(), no boxing
+	 * @return the pollutant code or UNREADABLE_MEASURE
+	 */
+	public int getPollutantCodeValue() {
+		if ((this._decoded & POLLUTANT_CODE_BIT) == 0) decodePollutantCode();
+		return this._pollutantCode;
 	}
 
 	public Integer getStationID() {
+		return toNullable(getStationIDValue());
+	}
+
+	/**
+	 * Primitive version of getStationID(), no boxing
+	 * @return the StationID or UNREADABLE_MEASURE
+	 */
+	public int getStationIDValue() {
+		if ((this._decoded & STATION_ID_BIT) == 0) decodeStationID();
 		return this._stationID;
 	}
 
 	public String getDateString() {
-		return this._strDate;
+		if (!this._metRequiredLength) return null;
+		if ((this._decoded & DATE_BIT) == 0) decodeDate();
+		return new String(this._dateChars, StandardCharsets.US_ASCII); // same as line.substring(9, 17)
+	}
+
+	/**
+	 * The date of the record as a primitive int YYYYMMDD (ex: 20120413)
+	 * @return the date or UNREADABLE_MEASURE
+	 */
+	public int getDateValue() {
+		if ((this._decoded & DATE_BIT) == 0) decodeDate();
+		return this._date;
 	}
 
 	/**
@@ -95,7 +284,16 @@ s: StationID
 	 * NOTE: value = -999 should be considered as NULL (to be ignored)
 	 */
 	public Integer getDayAverage() {
-		return (this._dayAverage == INVALID_MEASURE ? null : this._dayAverage);
+		return toNullable(getDayAverageValue());
+	}
+
+	/**
+	 * Primitive version of getDayAverage(), no boxing
+	 * @return the raw value, which can be INVALID_MEASURE or UNREADABLE_MEASURE
+	 */
+	public int getDayAverageValue() {
+		if ((this._decoded & DAY_STATS_BIT) == 0) decodeDayStats();
+		return this._dayAverage;
 	}
 
 	/**
@@ -104,7 +302,16 @@ s: StationID
 	 * NOTE: value = -999 should be considered as NULL (to be ignored)
 	 */
 	public Integer getDayMin() {
-		return (this._dayMin == INVALID_MEASURE ? null : this._dayMin);
+		return toNullable(getDayMinValue());
+	}
+
+	/**
+	 * Primitive version of getDayMin(), no boxing
+	 * @return the raw value, which can be INVALID_MEASURE or UNREADABLE_MEASURE
+	 */
+	public int getDayMinValue() {
+		if ((this._decoded & DAY_STATS_BIT) == 0) decodeDayStats();
+		return this._dayMin;
 	}
 
 	/**
@@ -113,47 +320,83 @@ s: StationID
 	 * NOTE: value = -999 should be considered as NULL (to be ignored)
 	 */
 	public Integer getDayMax() {
-		return (this._dayMax == INVALID_MEASURE ? null : this._dayMax);
+		return toNullable(getDayMaxValue());
 	}
 
 	/**
-	 * The AVERAGE measure, Calculated from the 24 hours measures
+	 * Primitive version of getDayMax(), no boxing
+	 * @return the raw value, which can be INVALID_MEASURE or UNREADABLE_MEASURE
 	 */
-	public Float getCalcDayAverage() {
-		int sum = 0, validMeasureCount = 0;
-		for (int kk = 0; kk < this._hourReadings.length; kk++) {
-			if (this._hourReadings[kk] != INVALID_MEASURE) {
-				sum += this._hourReadings[kk];
-				validMeasureCount++;
-			}
+	public int getDayMaxValue() {
+		if ((this._decoded & DAY_STATS_BIT) == 0) decodeDayStats();
+		return this._dayMax;
+	}
+
+	/**
+	 * One of the 24 hours readings, no boxing
+	 *
+	 * @param hourIndex 0 for H01 ... 23 for H24
+	 * @return the raw value, which can be INVALID_MEASURE or UNREADABLE_MEASURE
+	 */
+	public int getHourReadingValue(int hourIndex) {
+		if ((this._decoded & HOUR_READINGS_BIT) == 0 && (this._decodedHours & (1 << hourIndex)) == 0) {
+			// only this hour: a caller which needs a few hours does not decode the 24
+			int pos = this._offset + FIRST_HOUR_OFFSET + hourIndex * MEASURE_WIDTH;
+			this._hourReadings[hourIndex] = decodeInt(this._bytes, pos, pos + MEASURE_WIDTH);
+			this._decodedHours |= 1 << hourIndex;
+		}
+		return this._hourReadings[hourIndex];
+	}
+
+	/**
+	 * Number of valid readings among the 24 hours readings
+	 */
+	public int getValidHourCount() {
+		if ((this._decoded & HOUR_READINGS_BIT) == 0) decodeHourReadings();
+		return this._validHourCount;
+	}
+
+	/**
+	 * All the statistics of the 24 hours readings of the record: count, sum, min, max, variance, hour of the peak
+	 * ATTENTION: the object is re-used, it is overwritten by the next parse()
+	 */
+	public HourlyStats getHourlyStats() {
+		if ((this._decoded & HOURLY_STATS_BIT) == 0) {
+			if ((this._decoded & HOUR_READINGS_BIT) == 0) decodeHourReadings();
+			computeHourlyStats();
 		}
+		return this._hourlyStats;
+	}
 
-		if (validMeasureCount > 0) {
-			// missing values must NOT participate in the average calculation
-			// otherwise the null value will contribute to lower the average
-			// For pollution measure for example, a station will 23 missing measures out of 24
-			// will appear as very clean because its average will 1 value / 24 if null were counted in the denominator
-			return (float) sum / validMeasureCount;
+	/**
+	 * The AVERAGE measure, Calculated from the 24 hours measures
+	 */
+	public Float getCalcDayAverage() {
+		if (getValidHourCount() > 0) {
+			return getCalcDayAverageValue();
 		}
 		else
 			return null;
 	}
 
+	/**
+	 * Primitive version of getCalcDayAverage(), no boxing
+	 * @return the average or Float.NaN when there is no valid reading
+	 */
+	public float getCalcDayAverageValue() {
+		// missing values must NOT participate in the average calculation
+		// otherwise the null value will contribute to lower the average
+		// For pollution measure for example, a station will 23 missing measures out of 24
+		// will appear as very clean because its average will 1 value / 24 if null were counted in the denominator
+		return getHourlyStats().getAverage();
+	}
+
 	/**
 	 * The MINIMUM measure, Calculated from the 24 hours measures
 	 */
 	public Integer getCalcDayMin() {
-		int min = Integer.MAX_VALUE, validMeasureCount = 0;
-		for (int kk = 0; kk < this._hourReadings.length; kk++) {
-			if (this._hourReadings[kk] != INVALID_MEASURE) {
-				if (min > this._hourReadings[kk]) {
-					min = this._hourReadings[kk];
-				}
-				validMeasureCount++;
-			}
-		}
-		if (validMeasureCount > 0)
-			return min;
+		if (getValidHourCount() > 0)
+			return getHourlyStats().getMin();
 		else
 			return null;
 	}
@@ -162,83 +405,94 @@ s: StationID
 	 * The MAXIMUM measure, Calculated from the 24 hours measures
 	 */
 	public Integer getCalcDayMax() {
-		int max = Integer.MIN_VALUE, validMeasureCount = 0;
-		for (int kk = 0; kk < this._hourReadings.length; kk++) {
-			if (this._hourReadings[kk] != INVALID_MEASURE) {
-				if (max < this._hourReadings[kk]) {
-					max = this._hourReadings[kk];
-				}
-				validMeasureCount++;
-			}
-		}
-		if (validMeasureCount > 0)
-			return max;
+		if (getValidHourCount() > 0)
+			return getHourlyStats().getMax();
 		else
 			return null;
 	}
 
 
+	private void decodePollutantCode() {
+		this._pollutantCode = decodeInt(this._bytes, this._offset, this._offset + 3);
+		this._decoded |= POLLUTANT_CODE_BIT;
+	}
+
+	private void decodeStationID() {
+		this._stationID = decodeInt(this._bytes, this._offset + 3, this._offset + 9);
+		this._decoded |= STATION_ID_BIT;
+	}
+
+	private void decodeDate() {
+		this._date = decodeInt(this._bytes, this._offset + 9, this._offset + 17);
+		System.arraycopy(this._bytes, this._offset + 9, this._dateChars, 0, this._dateChars.length);
+		this._decoded |= DATE_BIT;
+	}
+
+	private void decodeDayStats() {
+		int offset = this._offset;
+		this._dayAverage = decodeInt(this._bytes, offset + 17, offset + 21);
+		this._dayMin = decodeInt(this._bytes, offset + 21, offset + 25);
+		this._dayMax = decodeInt(this._bytes, offset + 25, offset + 29);
+		this._decoded |= DAY_STATS_BIT;
+	}
+
 	/**
-	 * Cleanup string to make it friendly to Integer.parseInt()
+	 * Decode the 24 readings and count the valid and the unreadable ones (all isValidRecord() needs)
 	 */
-	private static String cleanupNum(String origTxt) {
-/*
-		String testNum = "   ++12++   ";
-		System.out.printf("%s -> [%s]\n", testNum, cleanupNum(testNum));
-		testNum = "   +V5M 3Z8+   ";
-		System.out.printf("%s -> [%s]\n", testNum, cleanupNum(testNum));
-		testNum = "   -3.14159   ";
-		System.out.printf("%s -> [%s]\n", testNum, cleanupNum(testNum));
-		System.out.printf("-> Float = %s\n", Float.parseFloat(cleanupNum(testNum)));
-		System.out.printf("-> Int   = %d\n", safeIntegerConverter(testNum)));
-
-		testNum = "HelloABC";
-		System.out.printf("%s -> [%s]\n", testNum, cleanupNum(testNum));
-		System.out.printf("-> Int   = %d\n", safeIntegerConverter(testNum)));
-
-		testNum = "123-ABC";
-		System.out.printf("%s -> [%s]\n", testNum, cleanupNum(testNum));
-*/
-
-		//Clean #1: Remove spaces and + symbole
-		//Ex: " 12", "+12", " +12 ", "   +++12", "  ++12++  " all become "12"
-		//return origTxt.replaceAll("[ \\+]+","");
-
-		/*
-		Clean #2: (more agressive) remove all EXCEPT: digits, minus symbol, period
-		Example:
-		"   ++12++   "   -> "12"
-		"   +V5M 3Z8+  " -> "538"
-		"   -3.14159   " -> "-3.14159]"
-		"HelloABC"       -> ""
-		"123-ABC"        -> "123-"
-		*/
-		return origTxt.replaceAll("[^\\d\\.\\-]","");
-	}
-
-
-	/**
-	 * The sloppy Java JDK is too lazy to make elementaty test on a string before Integer.parseInt()
-	 * Minor format like " 12", "+12", "-3.14" will raises java.lang.NumberFormatException
-	 * Here a failure to parse will return null instead of raising runtime error
-	 */
-	private static Integer safeIntegerConverter(String candidateNumStr) {
-		try {
-			/*
-			Remove all EXCEPT: digits, minus symbol, period
-			"   ++12++   "   -> "12"
-			"   +V5M 3Z8+  " -> "538"
-			"   -3.14159   " -> "-3.14159]"
-			"HelloABC"       -> ""
-			"123-ABC"        -> "123-"
-			*/
-			//return Integer.parseInt(candidateNumStr.replaceAll("[^\\d\\.\\-]",""));
-
-			// remove spaces and +
-			return Integer.parseInt(candidateNumStr.replaceAll("[ \\+]+",""));
+	private void decodeHourReadings() {
+		int validCount = 0, unreadableCount = 0;
+		int pos = this._offset + FIRST_HOUR_OFFSET;
+		for (int kk = 0; kk < HOUR_COUNT; kk++, pos += MEASURE_WIDTH) {
+			int reading = decodeInt(this._bytes, pos, pos + MEASURE_WIDTH);
+			this._hourReadings[kk] = reading;
+			if (reading == UNREADABLE_MEASURE) {
+				unreadableCount++;
+			} else if (reading != INVALID_MEASURE) {
+				validCount++;
+			}
 		}
-		catch (NumberFormatException ex) {
-			return null;
+		this._validHourCount = validCount;
+		this._unreadableHourCount = unreadableCount;
+		this._decoded |= HOUR_READINGS_BIT;
+	}
+
+	private void computeHourlyStats() {
+		this._hourlyStats.compute(this._hourReadings, HOUR_COUNT);
+		this._decoded |= HOURLY_STATS_BIT;
+	}
+
+	/**
+	 * Decode a fixed width numerical column in place, without String nor regex:
+	 * - the spaces and '+' are ignored anywhere in the column (" 12", "+12", " +12 " are all 12)
+	 * - 1 minus sign is accepted before the first digit ("-999", " - 5" is -5)
+	 * - any other char ("3.14", "12-", "ABC"), or no digit at all (blank column), makes the column unreadable
+	 *
+	 * @return the decoded value or UNREADABLE_MEASURE when the column is not a number
+	 */
+	private static int decodeInt(byte[] bytes, int start, int end) {
+		int value = 0, digitCount = 0;
+		boolean negative = false;
+		for (int kk = start; kk < end; kk++) {
+			byte b = bytes[kk];
+			if (b >= '0' && b <= '9') {
+				value = value * 10 + (b - '0');
+				digitCount++;
+			}
+			else if (b == '-' && digitCount == 0 && !negative) {
+				negative = true;
+			}
+			else if (b != ' ' && b != '+') {
+				return UNREADABLE_MEASURE;
+			}
 		}
+		if (digitCount == 0) return UNREADABLE_MEASURE;
+		return (negative ? -value : value);
+	}
+
+	/**
+	 * Both -999 (missing) and corrupted data are returned as NULL
+	 */
+	private static Integer toNullable(int value) {
+		return (value == INVALID_MEASURE || value == UNREADABLE_MEASURE ? null : value);
 	}
 }
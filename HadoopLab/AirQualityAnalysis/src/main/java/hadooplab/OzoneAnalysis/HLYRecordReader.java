@@ -0,0 +1,265 @@
+package hadooplab.OzoneAnalysis;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.compress.CodecPool;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.io.compress.Decompressor;
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * RecordReader of HLYInputFormat: the HLY records of a split, parsed in place in a big chunk of bytes
+ *
+ * A record belongs to the split where it starts (as LineRecordReader): the reader of a split which does not start
+ * at 0 skips the bytes up to the 1st line terminator at or after (start - 1), which is (start - 1) itself
+ * when the split is aligned on the records (HLYInputFormat.getSplits()), and reads the records starting before the end
+ *
+ * Fast path: a record is 125 bytes followed by the terminator at the expected place, parsed without searching the LF.
+ * It is exact because every byte of the 125 belongs to a numerical column: an LF inside would make a column unreadable
+ * (HLYRecordParser.hasUnreadableColumn()), such a line is read again by the search of its LF (slow path)
+ *
+ * The same HLYRecordWritable is returned for all the records, the invalid records are counted and skipped
+ * With predicates (HLYRecordFilter), the StationID and Date columns are checked on the bytes before the record is parsed:
+ * a record which cannot match is skipped once the 125 bytes are known to be 1 record (no LF inside)
+ */
+public class HLYRecordReader extends RecordReader<NullWritable, HLYRecordWritable> {
+	private static final int RECORD_LENGTH = HLYRecordParser.MINIMUM_RECORD_LENGTH;
+	private static final int VALID = 0, INVALID = 1, FILTERED = 2;
+
+	enum NAPS_HLYRecordQuality {
+		INVALID // record too short, unreadable or contained corrupted data
+	}
+
+	private final HLYRecordParser _parser = new HLYRecordParser();
+	private final HLYRecordWritable _record = new HLYRecordWritable();
+	private InputStream _in;
+	private Decompressor _decompressor;
+	private Counter _invalidCounter, _filteredCounter;
+	private HLYRecordFilter _filter; // null when there is no predicate
+
+	// the bytes not consumed yet are _buffer[_bufferPos, _bufferEnd), _position is the file position of _buffer[_bufferPos]
+	private byte[] _buffer;
+	private int _bufferPos, _bufferEnd;
+	private long _position;
+	private boolean _eof;
+
+	private long _start, _end;
+	private int _stride; // RECORD_LENGTH + length of the line terminator
+
+	@Override
+	public void initialize(InputSplit genericSplit, TaskAttemptContext context) throws IOException, InterruptedException {
+		FileSplit split = (FileSplit) genericSplit;
+		Configuration conf = context.getConfiguration();
+		Path file = split.getPath();
+		FileSystem fs = file.getFileSystem(conf);
+		this._buffer = new byte[Math.max(conf.getInt(HLYInputFormat.CONF_BUFFER_SIZE, HLYInputFormat.DEFAULT_BUFFER_SIZE), 4 * HLYInputFormat.RECORD_STRIDE)];
+		// no counter with a fake context (unit tests)
+		this._invalidCounter = context.getCounter(NAPS_HLYRecordQuality.INVALID);
+		this._filteredCounter = context.getCounter(HLYRecordFilter.NAPS_HLYRecordQuality.FILTERED);
+		this._filter = HLYRecordFilter.get(conf);
+
+		FSDataInputStream fileIn = fs.open(file);
+		CompressionCodec codec = new CompressionCodecFactory(conf).getCodec(file);
+		if (codec != null) {
+			// not splittable: the whole file
+			this._decompressor = CodecPool.getDecompressor(codec);
+			this._in = codec.createInputStream(fileIn, this._decompressor);
+			this._start = this._position = 0;
+			this._end = Long.MAX_VALUE;
+			this._stride = HLYInputFormat.detectRecordStride(this._buffer, 0, fill(HLYInputFormat.RECORD_STRIDE + 1));
+			return;
+		}
+
+		this._start = split.getStart();
+		this._end = this._start + split.getLength();
+		byte[] head = new byte[HLYInputFormat.RECORD_STRIDE + 1];
+		try {
+			fileIn.readFully(0, head); // positioned read, does not move the stream
+			this._stride = HLYInputFormat.detectRecordStride(head, 0, head.length);
+		} catch (EOFException ex) {
+			this._stride = HLYInputFormat.RECORD_STRIDE; // 1 record or less
+		}
+		this._in = fileIn;
+		if (this._start > 0) {
+			this._position = this._start - 1;
+			fileIn.seek(this._position);
+			skipLine(); // the record in progress at start - 1 belongs to the previous split
+		}
+	}
+
+	@Override
+	public boolean nextKeyValue() throws IOException, InterruptedException {
+		while (this._position < this._end) {
+			int available = fill(this._stride);
+			if (available == 0) {
+				return false;
+			}
+
+			int offset = this._bufferPos;
+			int status;
+			int terminator = offset + this._stride - 1; // position of the LF when the record is 125 chars
+			if (available >= this._stride && this._buffer[terminator] == '\n'
+					&& (this._stride == HLYInputFormat.RECORD_STRIDE || this._buffer[terminator - 1] == '\r')) {
+				if (this._filter != null && !this._filter.accept(this._buffer, offset, RECORD_LENGTH) && !containsLF(offset, RECORD_LENGTH)) {
+					consume(this._stride); // 1 whole record which cannot match: not parsed
+					status = FILTERED;
+				} else {
+					this._parser.parse(this._buffer, offset, RECORD_LENGTH);
+					if (this._parser.hasUnreadableColumn()) {
+						status = readLine(); // maybe a shorter line followed by another one
+					} else {
+						consume(this._stride);
+						status = (this._parser.isValidRecord() ? VALID : INVALID);
+					}
+				}
+			} else {
+				status = readLine();
+			}
+
+			if (status == VALID) {
+				this._record.setFrom(this._parser);
+				return true;
+			}
+			Counter counter = (status == FILTERED ? this._filteredCounter : this._invalidCounter);
+			if (counter != null) {
+				counter.increment(1);
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public NullWritable getCurrentKey() {
+		return NullWritable.get();
+	}
+
+	@Override
+	public HLYRecordWritable getCurrentValue() {
+		return this._record;
+	}
+
+	@Override
+	public float getProgress() throws IOException {
+		if (this._end == Long.MAX_VALUE) {
+			return (this._eof && this._bufferPos == this._bufferEnd ? 1.0f : 0.0f);
+		}
+		if (this._end == this._start) {
+			return 0.0f;
+		}
+		return Math.min(1.0f, (this._position - this._start) / (float) (this._end - this._start));
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			if (this._in != null) {
+				this._in.close();
+			}
+		} finally {
+			if (this._decompressor != null) {
+				CodecPool.returnDecompressor(this._decompressor);
+				this._decompressor = null;
+			}
+		}
+	}
+
+	/**
+	 * Slow path: parse the line up to its LF (or the end of the file), whatever its length
+	 * @return VALID, INVALID or FILTERED
+	 */
+	private int readLine() throws IOException {
+		int lineLength = findLineLength();
+		int consumed = lineLength;
+		if (this._bufferPos + lineLength < this._bufferEnd) {
+			consumed++; // the LF
+			if (lineLength > 0 && this._buffer[this._bufferPos + lineLength - 1] == '\r') {
+				lineLength--;
+			}
+		}
+		if (this._filter != null && !this._filter.accept(this._buffer, this._bufferPos, lineLength)) {
+			consume(consumed);
+			return FILTERED;
+		}
+		this._parser.parse(this._buffer, this._bufferPos, lineLength);
+		consume(consumed);
+		return (this._parser.isValidRecord() ? VALID : INVALID);
+	}
+
+	private boolean containsLF(int offset, int length) {
+		for (int kk = offset; kk < offset + length; kk++) {
+			if (this._buffer[kk] == '\n') {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void skipLine() throws IOException {
+		int lineLength = findLineLength();
+		consume(Math.min(lineLength + 1, this._bufferEnd - this._bufferPos));
+	}
+
+	/**
+	 * Load the whole line in the buffer (grown if needed)
+	 * @return number of bytes before the LF, or up to the end of the file when there is no LF
+	 */
+	private int findLineLength() throws IOException {
+		int scanned = 0;
+		while (true) {
+			for (int kk = this._bufferPos + scanned; kk < this._bufferEnd; kk++) {
+				if (this._buffer[kk] == '\n') {
+					return kk - this._bufferPos;
+				}
+			}
+			scanned = this._bufferEnd - this._bufferPos;
+			if (fill(scanned + 1) == scanned) {
+				return scanned; // end of file
+			}
+		}
+	}
+
+	private void consume(int length) {
+		this._bufferPos += length;
+		this._position += length;
+	}
+
+	/**
+	 * Make at least needed bytes available from _bufferPos, reading as much as the buffer can hold
+	 * @return the number of available bytes, less than needed only at the end of the file
+	 */
+	private int fill(int needed) throws IOException {
+		int available = this._bufferEnd - this._bufferPos;
+		if (available >= needed || this._eof) {
+			return available;
+		}
+		if (needed > this._buffer.length) {
+			this._buffer = Arrays.copyOf(this._buffer, Math.max(needed, 2 * this._buffer.length));
+		}
+		// move the remaining bytes at the beginning, then 1 big read
+		System.arraycopy(this._buffer, this._bufferPos, this._buffer, 0, available);
+		this._bufferPos = 0;
+		this._bufferEnd = available;
+		while (this._bufferEnd < needed) {
+			int read = this._in.read(this._buffer, this._bufferEnd, this._buffer.length - this._bufferEnd);
+			if (read < 0) {
+				this._eof = true;
+				break;
+			}
+			this._bufferEnd += read;
+		}
+		return this._bufferEnd - this._bufferPos;
+	}
+}
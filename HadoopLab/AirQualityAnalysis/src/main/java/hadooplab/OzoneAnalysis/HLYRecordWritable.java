@@ -0,0 +1,215 @@
+package hadooplab.OzoneAnalysis;
+
+import org.apache.hadoop.io.Writable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A parsed HLY record: the same information than the fixed-width text line, in primitive fields
+ * Missing values (-999 in the HLY file) are kept as HLYRecordParser.INVALID_MEASURE
+ *
+ * The 24 hourly readings are stored as shorts (a reading is 4 chars wide: -999..9999)
+ * and a bitmap flags the missing hours, bit N set = hour N is missing
+ *
+ * The object is meant to be re-used: setFrom() / readFields() overwrite all the fields
+ */
+public class HLYRecordWritable implements Writable {
+	private static final int ALL_HOURS_MISSING = (1 << HLYRecordParser.HOUR_COUNT) - 1;
+
+	private int _stationID;
+	private int _date; // YYYYMMDD
+	private int _dayAverage = HLYRecordParser.INVALID_MEASURE;
+	private int _dayMin = HLYRecordParser.INVALID_MEASURE;
+	private int _dayMax = HLYRecordParser.INVALID_MEASURE;
+	private int _missingHours = ALL_HOURS_MISSING;
+	private final short[] _hourReadings = new short[HLYRecordParser.HOUR_COUNT];
+
+	/**
+	 * Copy the record currently decoded by the parser, the parser record should be valid (isValidRecord())
+	 */
+	public void setFrom(HLYRecordParser parser) {
+		this._stationID = parser.getStationIDValue();
+		this._date = parser.getDateValue();
+		this._dayAverage = toMeasure(parser.getDayAverageValue());
+		this._dayMin = toMeasure(parser.getDayMinValue());
+		this._dayMax = toMeasure(parser.getDayMaxValue());
+
+		this._missingHours = 0;
+		for (int hour = 0; hour < HLYRecordParser.HOUR_COUNT; hour++) {
+			int reading = parser.getHourReadingValue(hour);
+			if (reading == HLYRecordParser.INVALID_MEASURE || reading == HLYRecordParser.UNREADABLE_MEASURE) {
+				this._missingHours |= (1 << hour);
+				this._hourReadings[hour] = 0;
+			} else {
+				this._hourReadings[hour] = (short) reading;
+			}
+		}
+	}
+
+	/**
+	 * Reset to "nothing known": used by the columnar reader for the columns which are not read
+	 */
+	public void clear() {
+		this._stationID = 0;
+		this._date = 0;
+		clearMeasures();
+		clearHourReadings();
+	}
+
+	public int getStationIDValue() {
+		return this._stationID;
+	}
+
+	public int getDateValue() {
+		return this._date;
+	}
+
+	/**
+	 * Same semantic than HLYRecordParser.getDayAverage(): NULL when the value is missing
+	 */
+	public Integer getDayAverage() {
+		return (this._dayAverage == HLYRecordParser.INVALID_MEASURE ? null : this._dayAverage);
+	}
+
+	public int getDayAverageValue() {
+		return this._dayAverage;
+	}
+
+	public int getDayMinValue() {
+		return this._dayMin;
+	}
+
+	public int getDayMaxValue() {
+		return this._dayMax;
+	}
+
+	/**
+	 * @param hourIndex 0..23
+	 * @return the reading or HLYRecordParser.INVALID_MEASURE when the hour is missing
+	 */
+	public int getHourReadingValue(int hourIndex) {
+		return (isHourMissing(hourIndex) ? HLYRecordParser.INVALID_MEASURE : this._hourReadings[hourIndex]);
+	}
+
+	public boolean isHourMissing(int hourIndex) {
+		return (this._missingHours & (1 << hourIndex)) != 0;
+	}
+
+	public int getValidHourCount() {
+		return HLYRecordParser.HOUR_COUNT - Integer.bitCount(this._missingHours);
+	}
+
+	/**
+	 * Statistics of the hourly readings, the missing hours being masked by the bitmap (no copy of the readings)
+	 * ATTENTION: stats.getPeakHour() reads the readings of this record, ask it before the record is overwritten
+	 */
+	public void computeHourlyStats(HourlyStats stats) {
+		stats.compute(this._hourReadings, this._missingHours);
+	}
+
+	/**
+	 * Serialization: 5 ints, the missing hours bitmap then only the readings which are present
+	 */
+	@Override
+	public void write(DataOutput out) throws IOException {
+		out.writeInt(this._stationID);
+		out.writeInt(this._date);
+		out.writeInt(this._dayAverage);
+		out.writeInt(this._dayMin);
+		out.writeInt(this._dayMax);
+		writeHourReadings(out);
+	}
+
+	@Override
+	public void readFields(DataInput in) throws IOException {
+		this._stationID = in.readInt();
+		this._date = in.readInt();
+		this._dayAverage = in.readInt();
+		this._dayMin = in.readInt();
+		this._dayMax = in.readInt();
+		readHourReadings(in);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append(this._stationID).append('\t').append(this._date)
+				.append('\t').append(this._dayAverage).append('\t').append(this._dayMin).append('\t').append(this._dayMax);
+		for (int hour = 0; hour < HLYRecordParser.HOUR_COUNT; hour++) {
+			sb.append('\t').append(getHourReadingValue(hour));
+		}
+		return sb.toString();
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (!(o instanceof HLYRecordWritable)) return false;
+
+		HLYRecordWritable that = (HLYRecordWritable) o;
+		if (this._stationID != that._stationID || this._date != that._date) return false;
+		if (this._dayAverage != that._dayAverage || this._dayMin != that._dayMin || this._dayMax != that._dayMax) return false;
+		if (this._missingHours != that._missingHours) return false;
+		for (int hour = 0; hour < HLYRecordParser.HOUR_COUNT; hour++) {
+			if (!isHourMissing(hour) && this._hourReadings[hour] != that._hourReadings[hour]) return false;
+		}
+		return true;
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * this._stationID + this._date;
+	}
+
+	//------------------------------------------------
+	// Package access for the columnar format, which (de)serializes the record column by column
+
+	void setStationIDValue(int stationID) {
+		this._stationID = stationID;
+	}
+
+	void setDateValue(int date) {
+		this._date = date;
+	}
+
+	void setMeasures(int dayAverage, int dayMin, int dayMax) {
+		this._dayAverage = dayAverage;
+		this._dayMin = dayMin;
+		this._dayMax = dayMax;
+	}
+
+	void clearMeasures() {
+		setMeasures(HLYRecordParser.INVALID_MEASURE, HLYRecordParser.INVALID_MEASURE, HLYRecordParser.INVALID_MEASURE);
+	}
+
+	void clearHourReadings() {
+		this._missingHours = ALL_HOURS_MISSING;
+		Arrays.fill(this._hourReadings, (short) 0);
+	}
+
+	void writeHourReadings(DataOutput out) throws IOException {
+		out.writeInt(this._missingHours);
+		for (int hour = 0; hour < HLYRecordParser.HOUR_COUNT; hour++) {
+			if (!isHourMissing(hour)) {
+				out.writeShort(this._hourReadings[hour]);
+			}
+		}
+	}
+
+	void readHourReadings(DataInput in) throws IOException {
+		this._missingHours = in.readInt() & ALL_HOURS_MISSING;
+		for (int hour = 0; hour < HLYRecordParser.HOUR_COUNT; hour++) {
+			this._hourReadings[hour] = (isHourMissing(hour) ? 0 : in.readShort());
+		}
+	}
+
+	/**
+	 * Missing and corrupted values are both kept as missing, without boxing (HLYInputFormat calls setFrom() for every record)
+	 */
+	private static int toMeasure(int value) {
+		return (value == HLYRecordParser.UNREADABLE_MEASURE ? HLYRecordParser.INVALID_MEASURE : value);
+	}
+}
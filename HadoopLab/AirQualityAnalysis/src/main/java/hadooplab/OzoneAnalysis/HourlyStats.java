@@ -0,0 +1,195 @@
+package hadooplab.OzoneAnalysis;
+
+/**
+ * Statistics of the hourly readings of a record, computed in ONE pass over a primitive array:
+ * count, sum, min, max, sum of squares (variance), + the number of unreadable readings
+ * The hour of the peak (1st hour reaching the max) is only searched when asked, see getPeakHour()
+ *
+ * This is the innermost loop of every analytic: the kernels have no branch in the loop body,
+ * a missing reading is not skipped but masked (value & 0, count + 0, min with MAX_VALUE, max with MIN_VALUE)
+ * so the loop is straight-line arithmetic + Math.min/Math.max (intrinsics) that the JIT can unroll,
+ * compile with conditional moves, and vectorize (SuperWord) where the JVM supports reductions
+ *
+ * 2 kernels for the 2 in-memory forms of a record:
+ * - compute(int[], int): the readings decoded by HLYRecordParser, missing = INVALID_MEASURE, corrupted = UNREADABLE_MEASURE
+ * - compute(short[], int): the readings of HLYRecordWritable, missing = bit set in the missing hours bitmap
+ *
+ * The object is meant to be re-used from one record to the next, compute() overwrites everything
+ * ATTENTION: getPeakHour() reads the array given to the last compute(), which must not be modified in-between
+ */
+public final class HourlyStats {
+	private static final int PEAK_NOT_SEARCHED = -2;
+
+	private int _count, _unreadableCount, _min, _max;
+	private long _sum, _sumSquares;
+
+	// array of the last compute(), to search the peak hour only when it is asked
+	private int[] _intReadings;
+	private short[] _shortReadings;
+	private int _missingHours, _length;
+	private int _peakHour = -1;
+
+	public HourlyStats() {
+		clear();
+	}
+
+	/**
+	 * No reading at all (ex: a record which is too short to be decoded)
+	 */
+	public void clear() {
+		this._count = this._unreadableCount = 0;
+		this._sum = this._sumSquares = 0;
+		this._min = Integer.MAX_VALUE;
+		this._max = Integer.MIN_VALUE;
+		this._intReadings = null;
+		this._shortReadings = null;
+		this._peakHour = -1;
+	}
+
+	/**
+	 * Kernel of the decoded readings: INVALID_MEASURE (missing) and UNREADABLE_MEASURE (corrupted) do not participate
+	 *
+	 * @param readings raw readings, as HLYRecordParser.getHourReadingValue()
+	 * @param length number of readings to use, from index 0
+	 */
+	public void compute(int[] readings, int length) {
+		int count = 0, unreadableCount = 0;
+		int min = Integer.MAX_VALUE, max = Integer.MIN_VALUE;
+		long sum = 0, sumSquares = 0;
+
+		for (int kk = 0; kk < length; kk++) {
+			int reading = readings[kk];
+			// (x | -x) has the sign bit set for any x != 0, including the overflows of the subtraction
+			int notMissing = ((reading - HLYRecordParser.INVALID_MEASURE) | (HLYRecordParser.INVALID_MEASURE - reading)) >>> 31;
+			int unreadableDiff = reading ^ HLYRecordParser.UNREADABLE_MEASURE;
+			int notUnreadable = (unreadableDiff | -unreadableDiff) >>> 31;
+			int valid = notMissing & notUnreadable;
+			int mask = -valid; // all bits set when valid, 0 otherwise
+			int value = reading & mask;
+
+			count += valid;
+			unreadableCount += notUnreadable ^ 1;
+			sum += value;
+			sumSquares += (long) value * value;
+			min = Math.min(min, value | (~mask & Integer.MAX_VALUE));
+			max = Math.max(max, value | (~mask & Integer.MIN_VALUE));
+		}
+		set(count, unreadableCount, min, max, sum, sumSquares);
+		this._intReadings = readings;
+		this._length = length;
+	}
+
+	/**
+	 * Kernel of the readings of HLYRecordWritable: the missing hours are flagged by a bitmap (bit N set = hour N is missing)
+	 *
+	 * @param readings readings, the value of a missing hour does not matter
+	 * @param missingHours bitmap of the missing hours
+	 */
+	public void compute(short[] readings, int missingHours) {
+		int count = 0;
+		int min = Integer.MAX_VALUE, max = Integer.MIN_VALUE;
+		long sum = 0, sumSquares = 0;
+		int length = Math.min(readings.length, Integer.SIZE);
+
+		for (int kk = 0; kk < length; kk++) {
+			int valid = ((missingHours >>> kk) & 1) ^ 1;
+			int mask = -valid;
+			int value = readings[kk] & mask;
+
+			count += valid;
+			sum += value;
+			sumSquares += (long) value * value;
+			min = Math.min(min, value | (~mask & Integer.MAX_VALUE));
+			max = Math.max(max, value | (~mask & Integer.MIN_VALUE));
+		}
+		set(count, 0, min, max, sum, sumSquares);
+		this._shortReadings = readings;
+		this._missingHours = missingHours;
+		this._length = length;
+	}
+
+	private void set(int count, int unreadableCount, int min, int max, long sum, long sumSquares) {
+		this._count = count;
+		this._unreadableCount = unreadableCount;
+		this._min = min;
+		this._max = max;
+		this._sum = sum;
+		this._sumSquares = sumSquares;
+		this._intReadings = null;
+		this._shortReadings = null;
+		this._peakHour = (count > 0 ? PEAK_NOT_SEARCHED : -1);
+	}
+
+	/**
+	 * Number of valid readings
+	 */
+	public int getCount() {
+		return this._count;
+	}
+
+	/**
+	 * Number of corrupted readings (UNREADABLE_MEASURE), always 0 for the readings of HLYRecordWritable
+	 */
+	public int getUnreadableCount() {
+		return this._unreadableCount;
+	}
+
+	public long getSum() {
+		return this._sum;
+	}
+
+	/**
+	 * @return the minimum of the valid readings, Integer.MAX_VALUE when there is none
+	 */
+	public int getMin() {
+		return this._min;
+	}
+
+	/**
+	 * @return the maximum of the valid readings, Integer.MIN_VALUE when there is none
+	 */
+	public int getMax() {
+		return this._max;
+	}
+
+	/**
+	 * The missing readings are NOT in the denominator (see HLYRecordParser.getCalcDayAverageValue())
+	 * @return the average or Float.NaN when there is no valid reading
+	 */
+	public float getAverage() {
+		return (this._count > 0 ? (float) this._sum / this._count : Float.NaN);
+	}
+
+	/**
+	 * Population variance of the valid readings: E[X^2] - E[X]^2
+	 * @return the variance or Double.NaN when there is no valid reading
+	 */
+	public double getVariance() {
+		if (this._count == 0) return Double.NaN;
+		double mean = (double) this._sum / this._count;
+		// rounding can make it slightly negative when all the readings are equal
+		return Math.max(0.0, (double) this._sumSquares / this._count - mean * mean);
+	}
+
+	/**
+	 * The hour of the peak: index of the 1st valid reading equal to getMax()
+	 * Searched at the 1st call only (a 2nd short loop), most of the analytics do not need it
+	 *
+	 * @return 0..23 or -1 when there is no valid reading
+	 */
+	public int getPeakHour() {
+		if (this._peakHour == PEAK_NOT_SEARCHED) {
+			this._peakHour = -1;
+			for (int kk = 0; kk < this._length && this._peakHour < 0; kk++) {
+				if (this._intReadings != null) {
+					// the max is a valid reading: INVALID_MEASURE and UNREADABLE_MEASURE cannot be equal to it
+					if (this._intReadings[kk] == this._max) this._peakHour = kk;
+				}
+				else if ((this._missingHours & (1 << kk)) == 0 && this._shortReadings[kk] == this._max) {
+					this._peakHour = kk;
+				}
+			}
+		}
+		return this._peakHour;
+	}
+}
@@ -0,0 +1,71 @@
+package hadooplab.OzoneAnalysis;
+
+import java.io.IOException;
+
+/**
+ * In-mapper combining of max(): the mapper keeps the running max per key in memory
+ * and emits 1 record per key when the map is full and in cleanup(), instead of 1 record per HLY record
+ * The map output collapses from 1 record per day and station to a few hundred records per split:
+ * much less to serialize, spill, sort and shuffle (the Combiner still does all that work)
+ *
+ * Keys are ints (LocationID, StationID) kept with their max in a IntIntOpenHashMap: no object per key
+ * The map is bounded: add() returns true when it reaches maxEntries, the mapper must then flush()
+ *
+ * Used by LocationMapper and SimpleStationMapper when hadooplab.ozone.inmapper.combine=true
+ */
+public class InMapperMaxCombiner {
+	/** Configuration property: true to combine in the mapper */
+	public static final String CONF_ENABLED = "hadooplab.ozone.inmapper.combine";
+	/** Configuration property: number of keys kept in memory before flushing */
+	public static final String CONF_MAX_ENTRIES = "hadooplab.ozone.inmapper.maxentries";
+	public static final int DEFAULT_MAX_ENTRIES = 10000;
+
+	/**
+	 * Receives the (key, max) pairs on flush(), typically calls context.write()
+	 */
+	public interface Emitter {
+		void emit(int key, int maxValue) throws IOException, InterruptedException;
+	}
+
+	private final IntIntOpenHashMap _maxByKey;
+	private final int _maxEntries;
+
+	/**
+	 * @param maxEntries number of keys kept before add() asks for a flush
+	 */
+	public InMapperMaxCombiner(int maxEntries) {
+		if (maxEntries <= 0) {
+			throw new IllegalArgumentException(String.format("maxEntries must be > 0: %d", maxEntries));
+		}
+		this._maxEntries = maxEntries;
+		this._maxByKey = new IntIntOpenHashMap(Math.min(maxEntries, 1024), false);
+	}
+
+	/**
+	 * @param key any int except IntIntOpenHashMap.EMPTY_KEY
+	 * @return true when the map is full: flush() must be called
+	 */
+	public boolean add(int key, int value) {
+		int max = this._maxByKey.get(key, Integer.MIN_VALUE);
+		if (value > max || max == Integer.MIN_VALUE) {
+			this._maxByKey.put(key, value);
+		}
+		return this._maxByKey.size() >= this._maxEntries;
+	}
+
+	public int size() {
+		return this._maxByKey.size();
+	}
+
+	/**
+	 * Emit all the (key, max) pairs then clear the map
+	 */
+	public void flush(Emitter emitter) throws IOException, InterruptedException {
+		for (int slot = 0; slot < this._maxByKey.capacity(); slot++) {
+			if (this._maxByKey.isUsedSlot(slot)) {
+				emitter.emit(this._maxByKey.keyAt(slot), this._maxByKey.valueAt(slot));
+			}
+		}
+		this._maxByKey.clear();
+	}
+}
@@ -0,0 +1,92 @@
+package hadooplab.OzoneAnalysis;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Mapper;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.URI;
+import java.util.EnumSet;
+
+/**
+ * Mapping of the NEW HLY records of an incremental run (see IncrementalLocationMode):
+ * outputing ("Province\tCity\tPeriod", aggregate of 1 day average)
+ *
+ * Same map-side JOIN than LocationMapper (the StationID when the Station has no Location),
+ * the Period is the year (YYYY) or the month (YYYYMM) of the record, see hadooplab.ozone.incremental.period
+ */
+public class IncrementalLocationMapper extends Mapper<LongWritable, Text, Text, LocationAggregate> {
+	private static final byte[] TAB = {'\t'};
+	private HLYRecordParser _hlyParser = new HLYRecordParser();
+	private NAPSStationLookup _stationLookup;
+	private Text _locationPeriodKey = new Text(); // re-used for every output record
+	private LocationAggregate _aggregate = new LocationAggregate(); // re-used for every output record
+	private byte[] _digits = new byte[DecimalText.MAX_INT_DIGITS];
+	private int _periodDivisor; // YYYYMMDD / _periodDivisor = the Period
+
+	enum NAPS_HLYRecordQuality {
+		INVALID, // record too short, unreadable or contained corrupted data
+		MissingDayAverage, // -999 as average of the day
+		MissingLocation // cannot resolve the LocationName via the StationID
+	}
+
+	@Override
+	protected void setup(Context context) throws IOException, InterruptedException {
+		this._hlyParser.setProjection(EnumSet.of(HLYRecordParser.Field.STATION_ID, HLYRecordParser.Field.DATE, HLYRecordParser.Field.DAY_STATS));
+		_periodDivisor = IncrementalLocationMode.getPeriodDivisor(context.getConfiguration());
+
+		// same as LocationMapper: the Distributed Cache file is in the working folder of the task, under its file name
+		URI[] dcFileURIs = context.getCacheFiles();
+		if (dcFileURIs == null || dcFileURIs.length == 0) {
+			throw new FileNotFoundException("Distributed cache file for NAPS StationInfo not found");
+		}
+		_stationLookup = NAPSStationLookup.load(context.getConfiguration(), new File(FilenameUtils.getName(dcFileURIs[0].getPath())));
+	}
+
+	@Override
+	public void map(LongWritable key, Text value, Context context)
+			throws IOException, InterruptedException {
+
+		try {
+			this._hlyParser.parse(value.getBytes(), 0, value.getLength()); // no String decoding of the Text bytes
+
+			if (!this._hlyParser.isValidRecord()) {
+				context.getCounter(NAPS_HLYRecordQuality.INVALID).increment(1);
+				return;
+			}
+			Integer dayAverage = this._hlyParser.getDayAverage();
+			if (dayAverage == null) {
+				context.getCounter(NAPS_HLYRecordQuality.MissingDayAverage).increment(1);
+				return;
+			}
+			int date = this._hlyParser.getDateValue();
+			if (date == HLYRecordParser.UNREADABLE_MEASURE) {
+				context.getCounter(NAPS_HLYRecordQuality.INVALID).increment(1); // no Period
+				return;
+			}
+			int stationID = this._hlyParser.getStationIDValue();
+			int locationID = _stationLookup.getLocationID(stationID);
+			if (locationID == NAPSStationLookup.NO_LOCATION) {
+				context.getCounter(NAPS_HLYRecordQuality.MissingLocation).increment(1);
+				DecimalText.set(this._locationPeriodKey, stationID, this._digits);
+			} else {
+				this._locationPeriodKey.set(_stationLookup.getLocationBytes(locationID));
+			}
+			int length = DecimalText.format(date / this._periodDivisor, this._digits);
+			this._locationPeriodKey.append(TAB, 0, 1);
+			this._locationPeriodKey.append(this._digits, 0, length);
+
+			this._aggregate.set(dayAverage);
+			context.write(this._locationPeriodKey, this._aggregate);
+		}
+		catch (Exception ex) {
+			// same handling as LocationMapper: Map Status Msg + dynamic counter named after the exception
+			context.setStatus(String.format("FAILED Parsing Input Record, ERROR: %s, InputLength:%d, InputRecord: %s",
+					ex.getMessage(), value.toString().length(), value.toString()));
+			context.getCounter(getClass().getSimpleName(), ex.getClass().getSimpleName()).increment(1);
+		}
+	}
+}
@@ -0,0 +1,288 @@
+package hadooplab.OzoneAnalysis;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.apache.hadoop.mapreduce.lib.input.MultipleInputs;
+import org.apache.hadoop.mapreduce.lib.input.SequenceFileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.TextInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
+import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Used by LocationDriver: incremental ingestion of the HLY files (hadooplab.ozone.incremental=true)
+ *
+ * Instead of recomputing the year from all the HLY files, the output directory keeps the aggregate state
+ * of every ("Province\tCity", Period): max, min, sum, count of the day averages (see LocationAggregate)
+ * Each run only reads:
+ * - the HLY files which were not ingested yet, and the bytes appended to the files ingested before
+ * - the state of the previous run (SequenceFiles state-r-NNNNN, a few bytes per Location and Period)
+ * and writes the new state + the report, same result than a run on all the HLY files since the 1st run
+ *
+ * The output directory:
+ * - part-r-NNNNN : the report "Province\tCity\tPeriod\tMax\tMin\tAvg\tCount"
+ * - state-r-NNNNN: the state, input of the next run
+ * - _ingested    : the ingested files and their ingested length (1st line: the Period of the state)
+ * The job writes in "output.next", swapped with the output directory when it succeeds:
+ * the state of the previous run stays intact when a run fails
+ *
+ * The HLY files are expected to be appended only: a file which is shorter than its ingested length,
+ * or a compressed file whose length changed, stops the run (delete the output directory to rebuild the state)
+ * The last line of a text file is only ingested once it is complete (ends with a line break):
+ * a file still being written in a tailed directory is ingested up to its last complete line
+ */
+final class IncrementalLocationMode {
+	/** Configuration property: true to update the state of the output directory with the new HLY records only */
+	public static final String CONF_ENABLED = "hadooplab.ozone.incremental";
+	/** Configuration property: the Period of the aggregates, "year" (default) or "month" */
+	public static final String CONF_PERIOD = "hadooplab.ozone.incremental.period";
+	/** the bytes to ingest of the text files, set by run() for TailTextInputFormat: "start\tend\tpath" lines */
+	static final String CONF_RANGES = "hadooplab.ozone.incremental.ranges";
+	static final String STATE_OUTPUT = "state";
+	static final String MANIFEST_FILENAME = "_ingested";
+	private static final String PERIOD_HEADER = "#period=";
+	private static final String DEFAULT_PERIOD = "year";
+
+	private IncrementalLocationMode() {
+	}
+
+	static boolean isEnabled(Configuration conf) {
+		return conf.getBoolean(CONF_ENABLED, false);
+	}
+
+	/**
+	 * @return the divisor of the HLY date YYYYMMDD giving the Period: 10000 for the year, 100 for the month
+	 */
+	static int getPeriodDivisor(Configuration conf) {
+		String period = conf.get(CONF_PERIOD, DEFAULT_PERIOD);
+		if ("year".equals(period)) return 10000;
+		if ("month".equals(period)) return 100;
+		throw new IllegalArgumentException(String.format("%s must be year or month: %s", CONF_PERIOD, period));
+	}
+
+	static int run(LocationDriver driver) throws IOException, InterruptedException, ClassNotFoundException {
+		Configuration conf = driver.getConf();
+		String period = conf.get(CONF_PERIOD, DEFAULT_PERIOD);
+		getPeriodDivisor(conf); // fails now on an unknown Period, not in the mappers
+		Path outputDir = driver.getOutputPath();
+		FileSystem fs = outputDir.getFileSystem(conf);
+
+		// 1. What was ingested by the previous runs
+		Map<String, Long> ingested = new LinkedHashMap<String, Long>();
+		String statePeriod = readManifest(fs, new Path(outputDir, MANIFEST_FILENAME), ingested);
+		if (statePeriod != null && !statePeriod.equals(period)) {
+			System.err.printf("The state of %s has the period %s, not %s: delete it to rebuild the state\n", outputDir, statePeriod, period);
+			return -1;
+		}
+
+		// 2. The new files and the new bytes of the appended files
+		CompressionCodecFactory codecFactory = new CompressionCodecFactory(conf);
+		List<Path> newInputs = new ArrayList<Path>();
+		Map<String, long[]> ranges = new HashMap<String, long[]>();
+		for (FileStatus file : LocalOzoneMode.listInputFiles(conf, driver.getInputPaths())) {
+			String fileKey = file.getPath().toString();
+			Long ingestedLength = ingested.get(fileKey);
+			boolean compressed = (codecFactory.getCodec(file.getPath()) != null);
+			// a text file being written may end with an incomplete line: kept for the next run
+			long completeLength = (compressed ? file.getLen() : getCompleteLength(fs, file));
+			long start = (ingestedLength == null ? 0L : ingestedLength);
+			if (completeLength == start) {
+				continue; // nothing new
+			}
+			if (completeLength < start || (compressed && ingestedLength != null)) {
+				System.err.printf("%s changed since it was ingested (%d bytes, now %d): delete %s to rebuild the state\n",
+						fileKey, ingestedLength, file.getLen(), outputDir);
+				return -1;
+			}
+			newInputs.add(file.getPath());
+			if (!compressed) {
+				ranges.put(fileKey, new long[] {start, completeLength});
+			}
+			ingested.put(fileKey, completeLength);
+		}
+		if (newInputs.isEmpty()) {
+			System.out.printf("===^^^ Incremental: no new HLY record, %s is up to date ^^^===\n", outputDir);
+			return 0;
+		}
+		System.out.printf("===^^^ Incremental: %d new or appended HLY files ^^^===\n", newInputs.size());
+
+		// 3. The job: new records + previous state -> new state + report
+		Job job = driver.newJob("hadooplab.OzoneAnalysis.LocationDriver (incremental)");
+		Path nextDir = new Path(outputDir.getParent(), outputDir.getName() + ".next");
+		driver.setOutput(job, nextDir);
+		for (Path input : newInputs) {
+			MultipleInputs.addInputPath(job, input, TailTextInputFormat.class, IncrementalLocationMapper.class);
+		}
+		Path statePath = new Path(outputDir, STATE_OUTPUT + "-r-*");
+		FileStatus[] stateFiles = fs.globStatus(statePath);
+		if (stateFiles != null && stateFiles.length > 0) {
+			// the state is already (key, aggregate): the identity Mapper
+			MultipleInputs.addInputPath(job, statePath, SequenceFileInputFormat.class, Mapper.class);
+		}
+		setRanges(job.getConfiguration(), ranges);
+
+		job.setMapOutputKeyClass(Text.class);
+		job.setMapOutputValueClass(LocationAggregate.class);
+		job.setCombinerClass(LocationAggregateCombiner.class);
+		job.setReducerClass(IncrementalLocationReducer.class);
+		job.setOutputKeyClass(Text.class);
+		job.setOutputValueClass(Text.class);
+		MultipleOutputs.addNamedOutput(job, STATE_OUTPUT, SequenceFileOutputFormat.class, Text.class, LocationAggregate.class);
+		job.addCacheFile(driver.getStationCacheURI());
+
+		if (!job.waitForCompletion(true)) {
+			return 1;
+		}
+
+		// 4. The new state replaces the previous one
+		writeManifest(fs, new Path(nextDir, MANIFEST_FILENAME), period, ingested);
+		Path previousDir = new Path(outputDir.getParent(), outputDir.getName() + ".previous");
+		fs.delete(previousDir, true);
+		if (fs.exists(outputDir) && !fs.rename(outputDir, previousDir)) {
+			throw new IOException(String.format("Cannot rename %s to %s", outputDir, previousDir));
+		}
+		if (!fs.rename(nextDir, outputDir)) {
+			throw new IOException(String.format("Cannot rename %s to %s", nextDir, outputDir));
+		}
+		fs.delete(previousDir, true);
+		return 0;
+	}
+
+	/**
+	 * @param ingested receives the ingested length of every file
+	 * @return the Period of the state, NULL when there is no state yet
+	 */
+	static String readManifest(FileSystem fs, Path manifestPath, Map<String, Long> ingested) throws IOException {
+		if (!fs.exists(manifestPath)) {
+			return null;
+		}
+		String period = null;
+		BufferedReader buffReader = new BufferedReader(new InputStreamReader(fs.open(manifestPath), StandardCharsets.UTF_8));
+		try {
+			String line;
+			while ((line = buffReader.readLine()) != null) {
+				if (line.startsWith(PERIOD_HEADER)) {
+					period = line.substring(PERIOD_HEADER.length());
+					continue;
+				}
+				int tab = line.indexOf('\t');
+				if (tab > 0) {
+					ingested.put(line.substring(tab + 1), Long.valueOf(line.substring(0, tab)));
+				}
+			}
+		} finally {
+			buffReader.close();
+		}
+		return period;
+	}
+
+	static void writeManifest(FileSystem fs, Path manifestPath, String period, Map<String, Long> ingested) throws IOException {
+		Writer writer = new BufferedWriter(new OutputStreamWriter(fs.create(manifestPath, true), StandardCharsets.UTF_8));
+		try {
+			writer.write(PERIOD_HEADER + period + "\n");
+			for (Map.Entry<String, Long> entry : ingested.entrySet()) {
+				writer.write(entry.getValue() + "\t" + entry.getKey() + "\n");
+			}
+		} finally {
+			writer.close();
+		}
+	}
+
+	/**
+	 * @return the length of the complete lines of the file: the position after its last line break (0 when there is none)
+	 */
+	static long getCompleteLength(FileSystem fs, FileStatus file) throws IOException {
+		byte[] buffer = new byte[8192];
+		FSDataInputStream in = fs.open(file.getPath());
+		try {
+			long end = file.getLen();
+			while (end > 0) {
+				int length = (int) Math.min(buffer.length, end);
+				in.readFully(end - length, buffer, 0, length);
+				for (int pos = length - 1; pos >= 0; pos--) {
+					if (buffer[pos] == '\n') {
+						return end - length + pos + 1;
+					}
+				}
+				end -= length;
+			}
+			return 0L;
+		} finally {
+			in.close();
+		}
+	}
+
+	static void setRanges(Configuration conf, Map<String, long[]> ranges) {
+		StringBuilder sb = new StringBuilder();
+		for (Map.Entry<String, long[]> entry : ranges.entrySet()) {
+			sb.append(entry.getValue()[0]).append('\t').append(entry.getValue()[1]).append('\t').append(entry.getKey()).append('\n');
+		}
+		conf.set(CONF_RANGES, sb.toString());
+	}
+
+	/**
+	 * @return path -> {start, end} of the bytes to ingest
+	 */
+	static Map<String, long[]> getRanges(Configuration conf) {
+		Map<String, long[]> ranges = new HashMap<String, long[]>();
+		for (String line : conf.get(CONF_RANGES, "").split("\n")) {
+			String[] elems = line.split("\t", 3);
+			if (elems.length == 3) {
+				ranges.put(elems[2], new long[] {Long.parseLong(elems[0]), Long.parseLong(elems[1])});
+			}
+		}
+		return ranges;
+	}
+
+
+	/**
+	 * TextInputFormat reading only the lines which start in [start, end) of every file (hadooplab.ozone.incremental.ranges):
+	 * the bytes appended after the previous run, without the incomplete last line
+	 *
+	 * LineRecordReader reads the lines starting in (split start, split end], except for the split starting at 0:
+	 * - the 1st split of the range starts 1 byte BEFORE start, on the line break of the last ingested line
+	 * - the last split of the range ends on the last line break (end - 1), the next line is not complete
+	 */
+	public static class TailTextInputFormat extends TextInputFormat {
+		@Override
+		public List<InputSplit> getSplits(JobContext job) throws IOException {
+			Map<String, long[]> ranges = getRanges(job.getConfiguration());
+			List<InputSplit> splits = super.getSplits(job);
+			if (ranges.isEmpty()) {
+				return splits;
+			}
+
+			List<InputSplit> tailSplits = new ArrayList<InputSplit>();
+			for (InputSplit split : splits) {
+				FileSplit fileSplit = (FileSplit) split;
+				long[] range = ranges.get(fileSplit.getPath().toString());
+				if (range == null) {
+					tailSplits.add(split); // compressed: not splittable, read as a whole
+					continue;
+				}
+				long start = Math.max(fileSplit.getStart(), range[0] - 1);
+				long end = Math.min(fileSplit.getStart() + fileSplit.getLength(), range[1] - 1);
+				if (start < 0) {
+					start = 0; // range from the beginning of the file
+				}
+				if (end > start) {
+					tailSplits.add(new FileSplit(fileSplit.getPath(), start, end - start, fileSplit.getLocations()));
+				} // else: no line of the range starts in this split
+			}
+			return tailSplits;
+		}
+	}
+}
@@ -0,0 +1,39 @@
+package hadooplab.OzoneAnalysis;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
+
+import java.io.IOException;
+
+/**
+ * Final merge of the incremental run: the state of the previous runs + the aggregates of the new records
+ *
+ * Input : "Province\tCity\tPeriod", (aggregate1, aggregate2 ...)
+ * Output: the report "Province\tCity\tPeriod", "Max\tMin\tAvg\tCount"            (part-r-NNNNN)
+ *         + the new state "Province\tCity\tPeriod", merged aggregate (SequenceFile state-r-NNNNN, input of the next run)
+ */
+public class IncrementalLocationReducer extends Reducer<Text, LocationAggregate, Text, Text> {
+	private LocationAggregate _merged = new LocationAggregate(); // re-used for every key
+	private Text _reportValue = new Text(); // re-used for every key
+	private MultipleOutputs<Text, Text> _stateOutput;
+
+	@Override
+	protected void setup(Context context) throws IOException, InterruptedException {
+		_stateOutput = new MultipleOutputs<Text, Text>(context);
+	}
+
+	@Override
+	public void reduce(Text key, Iterable<LocationAggregate> values, Context context)
+			throws IOException, InterruptedException {
+		LocationAggregateCombiner.merge(values, this._merged);
+		this._stateOutput.write(IncrementalLocationMode.STATE_OUTPUT, key, this._merged);
+		this._reportValue.set(this._merged.toString());
+		context.write(key, this._reportValue);
+	}
+
+	@Override
+	protected void cleanup(Context context) throws IOException, InterruptedException {
+		_stateOutput.close();
+	}
+}
@@ -0,0 +1,165 @@
+package hadooplab.OzoneAnalysis;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+/**
+ * Hash Map specialized for primitive int keys and int values (no boxing, no Entry object)
+ * Open addressing with linear probing: keys and values are stored in 2 flat int buffers
+ *
+ * The buffers can live on-heap (int[] behind an IntBuffer) or off-heap (direct buffer)
+ * Off-heap keeps big tables out of the heap of the task, so they are never scanned nor copied by the GC
+ *
+ * Example: StationID -> LocationID in NAPSStationLookup, looked up once per HLY record by the mappers
+ */
+public class IntIntOpenHashMap {
+	/** marks a free slot, therefore this value cannot be used as a key */
+	public static final int EMPTY_KEY = Integer.MIN_VALUE;
+	private static final int MINIMUM_CAPACITY = 16;
+
+	private final boolean _offHeap;
+	private IntBuffer _keys, _values;
+	private int _mask, _size;
+
+	/**
+	 * @param expectedSize number of keys expected, the map grows if this number is exceeded
+	 * @param offHeap true to allocate the buffers outside of the Java heap
+	 */
+	public IntIntOpenHashMap(int expectedSize, boolean offHeap) {
+		this._offHeap = offHeap;
+		allocate(capacityFor(expectedSize));
+	}
+
+	public int size() {
+		return this._size;
+	}
+
+	public boolean isOffHeap() {
+		return this._offHeap;
+	}
+
+	/**
+	 * @return the value of the key, or missingValue when the key is not in the map
+	 */
+	public int get(int key, int missingValue) {
+		int slot = findSlot(key);
+		return (this._keys.get(slot) == EMPTY_KEY ? missingValue : this._values.get(slot));
+	}
+
+	public boolean containsKey(int key) {
+		return this._keys.get(findSlot(key)) != EMPTY_KEY;
+	}
+
+	/**
+	 * Add or replace the value of a key
+	 */
+	public void put(int key, int value) {
+		if (key == EMPTY_KEY) {
+			throw new IllegalArgumentException(String.format("Key %d is reserved to mark free slots", key));
+		}
+
+		int slot = findSlot(key);
+		this._values.put(slot, value);
+		if (this._keys.get(slot) == EMPTY_KEY) {
+			this._keys.put(slot, key);
+			this._size++;
+			if (this._size * 2 > capacity()) {
+				grow();
+			}
+		}
+	}
+
+	/**
+	 * Remove all the keys, keeping the allocated capacity
+	 */
+	public void clear() {
+		for (int slot = 0; slot < capacity(); slot++) {
+			this._keys.put(slot, EMPTY_KEY);
+		}
+		this._size = 0;
+	}
+
+	/**
+	 * Iteration without Iterator object:
+	 * for (int slot = 0; slot < map.capacity(); slot++) if (map.isUsedSlot(slot)) { map.keyAt(slot); map.valueAt(slot); }
+	 */
+	public int capacity() {
+		return this._mask + 1;
+	}
+
+	public boolean isUsedSlot(int slot) {
+		return this._keys.get(slot) != EMPTY_KEY;
+	}
+
+	public int keyAt(int slot) {
+		return this._keys.get(slot);
+	}
+
+	public int valueAt(int slot) {
+		return this._values.get(slot);
+	}
+
+	/**
+	 * The slot containing the key, or the free slot where the key would be inserted
+	 * The load factor is kept <= 0.5 so a free slot is always found after a few probes
+	 */
+	private int findSlot(int key) {
+		int slot = mix(key) & this._mask;
+		int slotKey;
+		while ((slotKey = this._keys.get(slot)) != EMPTY_KEY && slotKey != key) {
+			slot = (slot + 1) & this._mask;
+		}
+		return slot;
+	}
+
+	private void grow() {
+		IntBuffer oldKeys = this._keys, oldValues = this._values;
+		int oldCapacity = capacity();
+
+		allocate(oldCapacity * 2);
+		for (int slot = 0; slot < oldCapacity; slot++) {
+			int key = oldKeys.get(slot);
+			if (key != EMPTY_KEY) {
+				int newSlot = findSlot(key);
+				this._keys.put(newSlot, key);
+				this._values.put(newSlot, oldValues.get(slot));
+			}
+		}
+	}
+
+	private void allocate(int capacity) {
+		this._keys = allocateBuffer(capacity);
+		this._values = allocateBuffer(capacity);
+		this._mask = capacity - 1;
+		for (int slot = 0; slot < capacity; slot++) {
+			this._keys.put(slot, EMPTY_KEY);
+		}
+	}
+
+	private IntBuffer allocateBuffer(int capacity) {
+		if (this._offHeap) {
+			return ByteBuffer.allocateDirect(capacity * 4).order(ByteOrder.nativeOrder()).asIntBuffer();
+		}
+		return IntBuffer.allocate(capacity);
+	}
+
+	/**
+	 * Power of 2 big enough to keep the load factor <= 0.5
+	 */
+	private static int capacityFor(int expectedSize) {
+		int capacity = MINIMUM_CAPACITY;
+		while (capacity < expectedSize * 2) {
+			capacity <<= 1;
+		}
+		return capacity;
+	}
+
+	/**
+	 * StationIDs are consecutive numbers (10101, 10102, ...), scramble the bits to spread them over the slots
+	 */
+	private static int mix(int key) {
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+}
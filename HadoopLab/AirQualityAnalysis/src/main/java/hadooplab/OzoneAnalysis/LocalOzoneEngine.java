@@ -0,0 +1,410 @@
+package hadooplab.OzoneAnalysis;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/*
+HOW TO TEST:
+
+   $ java -cp OzoneMR.jar hadooplab.OzoneAnalysis.LocalOzoneEngine 2012O3.hly Stations_v28012014.csv OzoneByCities_Local.txt ranking
+
+   --Same output as LocationDriver
+   $ java -cp OzoneMR.jar hadooplab.OzoneAnalysis.LocalOzoneEngine 2012O3.hly Stations_v28012014.csv OzoneByLocation_Local.txt location
+
+   --Chosen automatically by LocationDriver / OzoneAnalysisDriver when the input is not bigger than 512 MB
+   # yarn jar OzoneMR.jar hadooplab.OzoneAnalysis.OzoneAnalysisDriver -D hadooplab.ozone.local.maxbytes=536870912
+*/
+
+/**
+ * The Ozone pipeline on a single node, without Hadoop: same results as LocationDriver / OzoneAnalysisDriver
+ * For the inputs which fit on one node, the MapReduce job startup costs more than the processing itself
+ *
+ * - The HLY files are memory-mapped and cut in chunks on line boundaries
+ * - The chunks are processed by a ForkJoinPool, each task parses its lines with its own HLYRecordParser (same as LocationMapper)
+ *   and keeps the max of the DayAverage in a primitive array indexed by LocationID (see NAPSStationLookup)
+ * - The partial results are merged 2 by 2 when the tasks join (same max() as SimpleMaxAvgReducer)
+ *
+ * The Stations without Location fall back to their StationID, as in LocationMapper
+ */
+public class LocalOzoneEngine {
+	/** Configuration property: size of the input (bytes) up to which the drivers run the local engine instead of MapReduce, 0 = never */
+	public static final String CONF_MAX_BYTES = "hadooplab.ozone.local.maxbytes";
+	/** Configuration property: number of threads of the local engine, default = number of cores */
+	public static final String CONF_THREADS = "hadooplab.ozone.local.threads";
+
+	private static final int CHUNK_SIZE = 8 << 20; // 8 MB
+	private static final int BOUNDARY_WINDOW = 4096;
+	private static final int NO_VALUE = Integer.MIN_VALUE;
+
+	public enum Report {
+		BY_LOCATION, // "Location\tMaxAvgOzone" ordered by Location, as LocationDriver
+		RANKING // "MaxAvgOzone\tLocation" ordered by MaxAvgOzone descending, as OzoneAnalysisDriver
+	}
+
+	private final NAPSStationLookup _stationLookup;
+	private final int _threads;
+	private HLYRecordFilter _recordFilter; // null: all the records
+
+	/**
+	 * @param stationLookup initialized lookup, shared read-only by all the threads
+	 * @param threads size of the ForkJoinPool
+	 */
+	public LocalOzoneEngine(NAPSStationLookup stationLookup, int threads) {
+		this._stationLookup = stationLookup;
+		this._threads = threads;
+	}
+
+	/**
+	 * @param recordFilter predicates checked on the bytes of every line before it is parsed, null for all the records
+	 */
+	public void setRecordFilter(HLYRecordFilter recordFilter) {
+		this._recordFilter = recordFilter;
+	}
+
+	/**
+	 * Process all the HLY files (the records of a file are never split between 2 chunks)
+	 */
+	public Result run(List<File> hlyFiles) throws IOException {
+		List<FileChannel> channels = new ArrayList<FileChannel>();
+		List<Chunk> chunks = new ArrayList<Chunk>();
+		ForkJoinPool pool = new ForkJoinPool(this._threads);
+		try {
+			for (File hlyFile : hlyFiles) {
+				FileChannel channel = new RandomAccessFile(hlyFile, "r").getChannel();
+				channels.add(channel);
+				splitOnLines(channel, chunks);
+			}
+			if (chunks.isEmpty()) {
+				return new Result(this._stationLookup);
+			}
+			return pool.invoke(new ChunkTask(chunks, 0, chunks.size()));
+		} catch (RuntimeException ex) {
+			if (ex.getCause() instanceof IOException) {
+				throw (IOException) ex.getCause();
+			}
+			throw ex;
+		} finally {
+			pool.shutdown();
+			for (FileChannel channel : channels) {
+				channel.close();
+			}
+		}
+	}
+
+	public Result run(File hlyFile) throws IOException {
+		return run(Collections.singletonList(hlyFile));
+	}
+
+	/**
+	 * Cut the file every CHUNK_SIZE bytes, moved forward just after the next end of line
+	 */
+	private static void splitOnLines(FileChannel channel, List<Chunk> chunks) throws IOException {
+		long fileLength = channel.size();
+		long start = 0;
+		while (start < fileLength) {
+			long end = Math.min(start + CHUNK_SIZE, fileLength);
+			end = nextLineStart(channel, end, fileLength);
+			chunks.add(new Chunk(channel, start, end));
+			start = end;
+		}
+	}
+
+	/**
+	 * @return the position just after the first '\n' at or after position, fileLength if there is none
+	 */
+	private static long nextLineStart(FileChannel channel, long position, long fileLength) throws IOException {
+		while (position < fileLength) {
+			int windowLength = (int) Math.min(BOUNDARY_WINDOW, fileLength - position);
+			MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, windowLength);
+			for (int i = 0; i < windowLength; i++) {
+				if (window.get(i) == '\n') {
+					return position + i + 1;
+				}
+			}
+			position += windowLength;
+		}
+		return fileLength;
+	}
+
+	private static final class Chunk {
+		private final FileChannel _channel;
+		private final long _start, _end;
+
+		private Chunk(FileChannel channel, long start, long end) {
+			this._channel = channel;
+			this._start = start;
+			this._end = end;
+		}
+	}
+
+	/**
+	 * Process the chunks [from, to): 1 chunk = parse, several chunks = fork the 2 halves and merge their results
+	 */
+	private final class ChunkTask extends RecursiveTask<Result> {
+		private static final long serialVersionUID = 1L; // Serializable by RecursiveTask, never serialized
+		private final List<Chunk> _chunks;
+		private final int _from, _to;
+
+		private ChunkTask(List<Chunk> chunks, int from, int to) {
+			this._chunks = chunks;
+			this._from = from;
+			this._to = to;
+		}
+
+		@Override
+		protected Result compute() {
+			if (this._to - this._from == 1) {
+				try {
+					return processChunk(this._chunks.get(this._from));
+				} catch (IOException ex) {
+					throw new RuntimeException(ex); // unwrapped by run()
+				}
+			}
+
+			int middle = (this._from + this._to) >>> 1;
+			ChunkTask left = new ChunkTask(this._chunks, this._from, middle);
+			left.fork();
+			Result right = new ChunkTask(this._chunks, middle, this._to).compute();
+			return left.join().merge(right);
+		}
+	}
+
+	/**
+	 * Same logic as LocationMapper.map() for every line of the chunk
+	 */
+	private Result processChunk(Chunk chunk) throws IOException {
+		int length = (int) (chunk._end - chunk._start);
+		MappedByteBuffer mapped = chunk._channel.map(FileChannel.MapMode.READ_ONLY, chunk._start, length);
+		byte[] bytes = new byte[length];
+		mapped.get(bytes); // 1 bulk copy: the parser works on byte[]
+
+		Result result = new Result(this._stationLookup);
+		HLYRecordParser hlyParser = new HLYRecordParser();
+		hlyParser.setProjection(EnumSet.of(HLYRecordParser.Field.STATION_ID, HLYRecordParser.Field.DAY_STATS)); // as LocationMapper
+		int lineStart = 0;
+		while (lineStart < length) {
+			int lineEnd = lineStart;
+			while (lineEnd < length && bytes[lineEnd] != '\n') {
+				lineEnd++;
+			}
+			int next = lineEnd + 1;
+			if (lineEnd > lineStart && bytes[lineEnd - 1] == '\r') {
+				lineEnd--; // "\r\n": same as the LineRecordReader of TextInputFormat
+			}
+
+			if (this._recordFilter != null && !this._recordFilter.accept(bytes, lineStart, lineEnd - lineStart)) {
+				result._filteredCount++;
+			} else {
+				hlyParser.parse(bytes, lineStart, lineEnd - lineStart);
+				result.add(hlyParser);
+			}
+			lineStart = next;
+		}
+		return result;
+	}
+
+	/**
+	 * Max of the DayAverage per Location (array indexed by LocationID) and per Station without Location
+	 */
+	public static class Result {
+		private final NAPSStationLookup _stationLookup;
+		private final int[] _maxByLocationID;
+		private final IntIntOpenHashMap _maxByUnknownStation = new IntIntOpenHashMap(16, false);
+		private long _recordCount, _filteredCount, _invalidCount, _missingDayAverageCount, _missingLocationCount;
+
+		private Result(NAPSStationLookup stationLookup) {
+			this._stationLookup = stationLookup;
+			this._maxByLocationID = new int[stationLookup.getLocationCount()];
+			Arrays.fill(this._maxByLocationID, NO_VALUE);
+		}
+
+		private void add(HLYRecordParser hlyParser) {
+			this._recordCount++;
+			if (!hlyParser.isValidRecord()) {
+				this._invalidCount++;
+				return;
+			}
+			int avgOzone = hlyParser.getDayAverageValue();
+			if (avgOzone == HLYRecordParser.INVALID_MEASURE) {
+				this._missingDayAverageCount++; // LocationMapper fails on this record (getDayAverage() is NULL)
+				return;
+			}
+
+			int stationID = hlyParser.getStationIDValue();
+			int locationID = this._stationLookup.getLocationID(stationID);
+			if (locationID == NAPSStationLookup.NO_LOCATION) {
+				this._missingLocationCount++;
+				int max = this._maxByUnknownStation.get(stationID, NO_VALUE);
+				this._maxByUnknownStation.put(stationID, Math.max(max, avgOzone));
+			} else if (avgOzone > this._maxByLocationID[locationID]) {
+				this._maxByLocationID[locationID] = avgOzone;
+			}
+		}
+
+		private Result merge(Result other) {
+			for (int locationID = 0; locationID < this._maxByLocationID.length; locationID++) {
+				this._maxByLocationID[locationID] = Math.max(this._maxByLocationID[locationID], other._maxByLocationID[locationID]);
+			}
+			IntIntOpenHashMap otherStations = other._maxByUnknownStation;
+			for (int slot = 0; slot < otherStations.capacity(); slot++) {
+				if (otherStations.isUsedSlot(slot)) {
+					int stationID = otherStations.keyAt(slot);
+					int max = this._maxByUnknownStation.get(stationID, NO_VALUE);
+					this._maxByUnknownStation.put(stationID, Math.max(max, otherStations.valueAt(slot)));
+				}
+			}
+			this._recordCount += other._recordCount;
+			this._filteredCount += other._filteredCount;
+			this._invalidCount += other._invalidCount;
+			this._missingDayAverageCount += other._missingDayAverageCount;
+			this._missingLocationCount += other._missingLocationCount;
+			return this;
+		}
+
+		public long getRecordCount() {
+			return this._recordCount;
+		}
+
+		/**
+		 * Lines dropped by the record filter, not counted in getRecordCount()
+		 */
+		public long getFilteredCount() {
+			return this._filteredCount;
+		}
+
+		public long getInvalidCount() {
+			return this._invalidCount;
+		}
+
+		public long getMissingDayAverageCount() {
+			return this._missingDayAverageCount;
+		}
+
+		public long getMissingLocationCount() {
+			return this._missingLocationCount;
+		}
+
+		/**
+		 * "Location\tMaxAvgOzone" lines ordered by the UTF-8 bytes of the Location, exactly as the Text keys of LocationDriver
+		 */
+		public void writeByLocation(OutputStream out) throws IOException {
+			List<LocationMax> rows = new ArrayList<LocationMax>();
+			for (int locationID = 0; locationID < this._maxByLocationID.length; locationID++) {
+				if (this._maxByLocationID[locationID] != NO_VALUE) {
+					rows.add(new LocationMax(this._stationLookup.getLocationBytes(locationID), this._maxByLocationID[locationID]));
+				}
+			}
+			for (int slot = 0; slot < this._maxByUnknownStation.capacity(); slot++) {
+				if (this._maxByUnknownStation.isUsedSlot(slot)) {
+					byte[] stationKey = Integer.toString(this._maxByUnknownStation.keyAt(slot)).getBytes(StandardCharsets.UTF_8);
+					rows.add(new LocationMax(stationKey, this._maxByUnknownStation.valueAt(slot)));
+				}
+			}
+
+			Collections.sort(rows, LocationMax.BYTES_ORDER);
+			for (LocationMax row : rows) {
+				out.write(row._location);
+				out.write(String.format("\t%d\n", row._maxOzone).getBytes(StandardCharsets.UTF_8));
+			}
+		}
+
+		/**
+		 * "MaxAvgOzone\tLocation" ranking, same as OzoneAnalysisDriver (ties ordered by Location)
+		 *
+		 * @param topN number of Locations to keep, 0 = all
+		 */
+		public OzoneRanking toRanking(int topN) {
+			OzoneRanking ranking = new OzoneRanking(topN);
+			for (int locationID = 0; locationID < this._maxByLocationID.length; locationID++) {
+				if (this._maxByLocationID[locationID] != NO_VALUE) {
+					ranking.add(this._stationLookup.getLocationName(locationID), this._maxByLocationID[locationID]);
+				}
+			}
+			for (int slot = 0; slot < this._maxByUnknownStation.capacity(); slot++) {
+				if (this._maxByUnknownStation.isUsedSlot(slot)) {
+					ranking.add(Integer.toString(this._maxByUnknownStation.keyAt(slot)), this._maxByUnknownStation.valueAt(slot));
+				}
+			}
+			return ranking;
+		}
+
+		public void writeRanking(OutputStream out, int topN) throws IOException {
+			for (OzoneRanking.Entry entry : toRanking(topN).getRanking()) {
+				out.write(entry.toString().getBytes(StandardCharsets.UTF_8));
+				out.write('\n');
+			}
+		}
+
+		public void write(OutputStream out, Report report, int topN) throws IOException {
+			if (report == Report.RANKING) {
+				writeRanking(out, topN);
+			} else {
+				writeByLocation(out);
+			}
+		}
+
+	}
+
+	private static final class LocationMax {
+		/** Unsigned lexicographic order of the Location bytes, same as WritableComparator.compareBytes() */
+		private static final Comparator<LocationMax> BYTES_ORDER = new Comparator<LocationMax>() {
+			@Override
+			public int compare(LocationMax r1, LocationMax r2) {
+				byte[] b1 = r1._location, b2 = r2._location;
+				int length = Math.min(b1.length, b2.length);
+				for (int i = 0; i < length; i++) {
+					int a = b1[i] & 0xff, b = b2[i] & 0xff;
+					if (a != b) {
+						return a - b;
+					}
+				}
+				return b1.length - b2.length;
+			}
+		};
+
+		private final byte[] _location;
+		private final int _maxOzone;
+
+		private LocationMax(byte[] location, int maxOzone) {
+			this._location = location;
+			this._maxOzone = maxOzone;
+		}
+	}
+
+	/**
+	 * @param args hlyFile stationFile outputFile [location|ranking] [threads]
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length < 3) {
+			System.err.printf("Usage: %s <hlyFile> <stationFile> <outputFile> [location|ranking] [threads]\n", LocalOzoneEngine.class.getSimpleName());
+			System.exit(-1);
+		}
+		Report report = (args.length > 3 && args[3].equalsIgnoreCase("location") ? Report.BY_LOCATION : Report.RANKING);
+		int threads = (args.length > 4 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors());
+
+		long startTime = System.currentTimeMillis();
+		NAPSStationLookup stationLookup = new NAPSStationLookup();
+		stationLookup.initialize(new File(args[1]));
+		Result result = new LocalOzoneEngine(stationLookup, threads).run(new File(args[0]));
+
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(args[2]));
+		try {
+			result.write(out, report, 0);
+		} finally {
+			out.close();
+		}
+		System.out.printf("%d records (INVALID: %d, MissingDayAverage: %d, MissingLocation: %d) processed in %d ms with %d threads\n",
+				result.getRecordCount(), result.getInvalidCount(), result.getMissingDayAverageCount(), result.getMissingLocationCount(),
+				System.currentTimeMillis() - startTime, threads);
+	}
+}
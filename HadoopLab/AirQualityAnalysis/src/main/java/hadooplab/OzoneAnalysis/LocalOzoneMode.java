@@ -0,0 +1,154 @@
+package hadooplab.OzoneAnalysis;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.*;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.util.ReflectionUtils;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Used by LocationDriver and OzoneAnalysisDriver: run the LocalOzoneEngine instead of MapReduce
+ * when the input is not bigger than hadooplab.ozone.local.maxbytes
+ *
+ * The input and the Station file are copied to a local temporary directory when they are not on the local file system
+ * The inputs are the same as the job input: files, directories or globs
+ * The output directory has the same layout as the job output: part-r-00000 + _SUCCESS
+ * (part-r-00000.gz ... when hadooplab.ozone.output.codec is set)
+ */
+final class LocalOzoneMode {
+	private static final String OUTPUT_FILENAME = "part-r-00000";
+
+	private LocalOzoneMode() {
+	}
+
+	/**
+	 * @return true when the local engine is enabled and the input is small enough
+	 *         false also for compressed input files: the engine maps the files in memory, it reads only raw text
+	 */
+	static boolean accepts(Configuration conf, Path[] inputs) throws IOException {
+		long maxBytes = conf.getLong(LocalOzoneEngine.CONF_MAX_BYTES, 0L);
+		if (maxBytes <= 0) {
+			return false;
+		}
+		CompressionCodecFactory codecFactory = new CompressionCodecFactory(conf);
+		long totalBytes = 0;
+		for (FileStatus status : listInputFiles(conf, inputs)) {
+			if (codecFactory.getCodec(status.getPath()) != null) {
+				return false;
+			}
+			totalBytes += status.getLen();
+			if (totalBytes > maxBytes) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @param outputDir deleted first, as the drivers do before their job
+	 * @return 0 as a successful Job
+	 */
+	static int run(Configuration conf, Path[] inputs, URI stationFileURI, Path outputDir, LocalOzoneEngine.Report report) throws IOException {
+		File tempDir = Files.createTempDirectory("LocalOzoneMode").toFile();
+		try {
+			List<File> hlyFiles = new ArrayList<File>();
+			for (FileStatus status : listInputFiles(conf, inputs)) {
+				hlyFiles.add(toLocalFile(conf, status.getPath(), tempDir));
+			}
+			NAPSStationLookup stationLookup = new NAPSStationLookup(conf.getBoolean(NAPSStationLookup.CONF_OFF_HEAP, false));
+			stationLookup.initialize(toLocalFile(conf, new Path(stationFileURI), tempDir));
+
+			int threads = conf.getInt(LocalOzoneEngine.CONF_THREADS, Runtime.getRuntime().availableProcessors());
+			System.out.printf("===^^^ Local engine (%d threads), no MapReduce job: %d files ^^^===\n", threads, hlyFiles.size());
+			LocalOzoneEngine engine = new LocalOzoneEngine(stationLookup, threads);
+			engine.setRecordFilter(HLYRecordFilter.get(conf)); // as the RecordReader of the job
+			LocalOzoneEngine.Result result = engine.run(hlyFiles);
+
+			FileSystem outputFs = outputDir.getFileSystem(conf);
+			outputFs.delete(outputDir, true); // true=recursive
+			Class<? extends CompressionCodec> codecClass = OzoneDriverBase.getOutputCodecClass(conf);
+			OutputStream out;
+			if (codecClass == null) {
+				out = outputFs.create(new Path(outputDir, OUTPUT_FILENAME), true);
+			} else {
+				// same file as TextOutputFormat with compressed output
+				CompressionCodec codec = ReflectionUtils.newInstance(codecClass, conf);
+				out = codec.createOutputStream(outputFs.create(new Path(outputDir, OUTPUT_FILENAME + codec.getDefaultExtension()), true));
+			}
+			try {
+				result.write(out, report, conf.getInt(OzoneRanking.CONF_TOP_N, 0));
+			} finally {
+				out.close();
+			}
+			outputFs.create(new Path(outputDir, "_SUCCESS"), true).close();
+
+			System.out.printf("===^^^ %d records, FILTERED: %d, INVALID: %d, MissingDayAverage: %d, MissingLocation: %d ^^^===\n",
+					result.getRecordCount(), result.getFilteredCount(), result.getInvalidCount(), result.getMissingDayAverageCount(), result.getMissingLocationCount());
+			return 0;
+		} finally {
+			FileUtil.fullyDelete(tempDir);
+		}
+	}
+
+	/**
+	 * The files of the inputs, like FileInputFormat: globs are expanded, directories are listed (not recursively)
+	 *
+	 * @throws FileNotFoundException when an input matches nothing
+	 */
+	static List<FileStatus> listInputFiles(Configuration conf, Path[] inputs) throws IOException {
+		List<FileStatus> files = new ArrayList<FileStatus>();
+		PathFilter hiddenFileFilter = new HiddenFileFilter();
+		for (Path input : inputs) {
+			FileSystem fs = input.getFileSystem(conf);
+			FileStatus[] matches = fs.globStatus(input, hiddenFileFilter);
+			if (matches == null || matches.length == 0) {
+				throw new FileNotFoundException(String.format("Input path does not exist: %s", input));
+			}
+			for (FileStatus match : matches) {
+				if (match.isDirectory()) {
+					for (FileStatus status : fs.listStatus(match.getPath(), hiddenFileFilter)) {
+						if (status.isFile()) {
+							files.add(status);
+						}
+					}
+				} else {
+					files.add(match);
+				}
+			}
+		}
+		return files;
+	}
+
+	/**
+	 * The file itself when it is on the local file system, otherwise a copy in tempDir
+	 */
+	private static File toLocalFile(Configuration conf, Path path, File tempDir) throws IOException {
+		FileSystem fs = path.getFileSystem(conf);
+		if (fs instanceof LocalFileSystem || fs instanceof RawLocalFileSystem) {
+			return new File(path.toUri().getPath());
+		}
+		File localFile = new File(tempDir, path.getName());
+		fs.copyToLocalFile(path, new Path(localFile.getAbsolutePath()));
+		return localFile;
+	}
+
+	/**
+	 * Same as FileInputFormat: skip the files starting with "_" or "."
+	 */
+	private static class HiddenFileFilter implements PathFilter {
+		@Override
+		public boolean accept(Path path) {
+			String name = path.getName();
+			return !name.startsWith("_") && !name.startsWith(".");
+		}
+	}
+}
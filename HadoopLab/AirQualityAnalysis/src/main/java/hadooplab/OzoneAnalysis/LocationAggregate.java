@@ -0,0 +1,87 @@
+package hadooplab.OzoneAnalysis;
+
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Aggregate state of the day averages of 1 (Location, Period): max, min, sum, count
+ * All the 4 aggregates can be merged: the state of the previous runs + the aggregate of the new records
+ * gives the same result than a run on all the records (see IncrementalLocationMode)
+ *
+ * Written as VInts / VLongs: a few bytes per (Location, Period)
+ */
+public class LocationAggregate implements Writable {
+	private int _max;
+	private int _min;
+	private long _sum;
+	private long _count;
+
+	/**
+	 * The aggregate of 1 day average
+	 */
+	public void set(int dayAverage) {
+		this._max = dayAverage;
+		this._min = dayAverage;
+		this._sum = dayAverage;
+		this._count = 1;
+	}
+
+	public void set(LocationAggregate other) {
+		this._max = other._max;
+		this._min = other._min;
+		this._sum = other._sum;
+		this._count = other._count;
+	}
+
+	/**
+	 * Add the day averages of another aggregate to this one
+	 */
+	public void merge(LocationAggregate other) {
+		this._max = Math.max(this._max, other._max);
+		this._min = Math.min(this._min, other._min);
+		this._sum += other._sum;
+		this._count += other._count;
+	}
+
+	public int getMax() { return this._max; }
+	public int getMin() { return this._min; }
+	public long getSum() { return this._sum; }
+	public long getCount() { return this._count; }
+
+	/**
+	 * @return the average of the day averages with 1 decimal (ex. "23.4")
+	 */
+	public String formatAverage() {
+		return BigDecimal.valueOf(this._sum).divide(BigDecimal.valueOf(this._count), 1, RoundingMode.HALF_UP).toPlainString();
+	}
+
+	@Override
+	public void write(DataOutput out) throws IOException {
+		WritableUtils.writeVInt(out, this._max);
+		WritableUtils.writeVInt(out, this._min);
+		WritableUtils.writeVLong(out, this._sum);
+		WritableUtils.writeVLong(out, this._count);
+	}
+
+	@Override
+	public void readFields(DataInput in) throws IOException {
+		this._max = WritableUtils.readVInt(in);
+		this._min = WritableUtils.readVInt(in);
+		this._sum = WritableUtils.readVLong(in);
+		this._count = WritableUtils.readVLong(in);
+	}
+
+	/**
+	 * "Max\tMin\tAvg\tCount", the columns of the incremental report
+	 */
+	@Override
+	public String toString() {
+		return String.format("%d\t%d\t%s\t%d", this._max, this._min, formatAverage(), this._count);
+	}
+}
@@ -0,0 +1,38 @@
+package hadooplab.OzoneAnalysis;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Reducer;
+
+import java.io.IOException;
+
+/**
+ * Merge the aggregates of the same ("Province\tCity\tPeriod"): the Combiner of the incremental run
+ *
+ * Input : key, (aggregate1, aggregate2 ...)
+ * Output: key, merged aggregate
+ */
+public class LocationAggregateCombiner extends Reducer<Text, LocationAggregate, Text, LocationAggregate> {
+	private LocationAggregate _merged = new LocationAggregate(); // re-used for every key
+
+	@Override
+	public void reduce(Text key, Iterable<LocationAggregate> values, Context context)
+			throws IOException, InterruptedException {
+		context.write(key, merge(values, this._merged));
+	}
+
+	/**
+	 * @param merged re-used, receives the merge of all the values
+	 */
+	static LocationAggregate merge(Iterable<LocationAggregate> values, LocationAggregate merged) {
+		boolean first = true;
+		for (LocationAggregate value : values) {
+			if (first) {
+				merged.set(value); // the values are re-used by the framework: copied
+				first = false;
+			} else {
+				merged.merge(value);
+			}
+		}
+		return merged;
+	}
+}
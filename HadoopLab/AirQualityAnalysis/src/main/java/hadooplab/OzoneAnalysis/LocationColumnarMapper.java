@@ -0,0 +1,69 @@
+package hadooplab.OzoneAnalysis;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Mapper;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.URI;
+
+/**
+ * Same as LocationMapper, fed by HLYColumnarInputFormat instead of the HLY text file: no parsing at all
+ * Outputing (Location, AvgOzone Value) with a Map-side JOIN StationID -> "Province City"
+ *
+ * Only the columns STATION_ID and DAY_AVERAGE are read (set by LocationDriver)
+ * The columnar file only contains valid records, a missing DayAverage is the only reason to drop a record
+ * Also fed by HLYInputFormat (hadooplab.ozone.input.hlyformat): the HLY text file parsed by the RecordReader,
+ * which drops the invalid records as well
+ */
+public class LocationColumnarMapper extends Mapper<NullWritable, HLYRecordWritable, Text, IntWritable> {
+	private NAPSStationLookup _stationLookup;
+	private Text _locationKey = new Text(); // re-used for every output record
+	private IntWritable _ozoneValue = new IntWritable(); // re-used for every output record
+	private byte[] _digits = new byte[DecimalText.MAX_INT_DIGITS]; // StationID written in _locationKey without String
+
+	enum NAPS_HLYRecordQuality {
+		MissingDayAverage, // DayAverage = -999 in the HLY file
+		MissingLocation // cannot resolve the LocationName via the StationID
+	}
+
+	/**
+	 * Same Distributed Cache file than LocationMapper (Version 3)
+	 */
+	@Override
+	protected void setup(Context context) throws IOException, InterruptedException {
+
+		URI[] dcFileURIs = context.getCacheFiles();
+		if (dcFileURIs == null || dcFileURIs.length == 0) {
+			throw new FileNotFoundException("Distributed cache file for NAPS StationInfo not found");
+		}
+		String localStationFileName = FilenameUtils.getName(dcFileURIs[0].getPath()); // "Stations_v28012014.csv"
+		_stationLookup = NAPSStationLookup.load(context.getConfiguration(), new File(localStationFileName));
+	}
+
+	@Override
+	public void map(NullWritable key, HLYRecordWritable value, Context context)
+			throws IOException, InterruptedException {
+		int avgOzone = value.getDayAverageValue();
+		if (avgOzone == HLYRecordParser.INVALID_MEASURE) {
+			context.getCounter(NAPS_HLYRecordQuality.MissingDayAverage).increment(1);
+			return;
+		}
+
+		int stationID = value.getStationIDValue();
+		int locationID = _stationLookup.getLocationID(stationID);
+		if (locationID == NAPSStationLookup.NO_LOCATION) {
+			context.getCounter(NAPS_HLYRecordQuality.MissingLocation).increment(1);
+			DecimalText.set(this._locationKey, stationID, this._digits);
+		} else {
+			this._locationKey.set(_stationLookup.getLocationBytes(locationID));
+		}
+
+		this._ozoneValue.set(avgOzone);
+		context.write(this._locationKey, this._ozoneValue);
+	}
+}
@@ -1,17 +1,9 @@
 package hadooplab.OzoneAnalysis;
 
-import org.apache.hadoop.conf.Configured;
-import org.apache.hadoop.fs.FileSystem;
-import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.*;
 import org.apache.hadoop.mapreduce.Job;
-import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
-import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
-import org.apache.hadoop.util.Tool;
 import org.apache.hadoop.util.ToolRunner;
 
-import java.net.URI;
-
 /*
 HOW TO TEST:
 
@@ -38,6 +30,30 @@ Run the Java Program (ssh and run on Hadoop node)
    --Exec on HDFS (StationInfo added to DistribCache via API in MR Code)
    # yarn jar OzoneMR.jar hadooplab.OzoneAnalysis.LocationDriver
 
+   --Exec without MapReduce when the input is not bigger than 512 MB (see LocalOzoneEngine)
+   # yarn jar OzoneMR.jar hadooplab.OzoneAnalysis.LocationDriver -D hadooplab.ozone.local.maxbytes=536870912
+
+   --Exec on several years of HLY files (comma separated list and/or globs), with 10 reducers and 64 MB splits
+   # yarn jar OzoneMR.jar hadooplab.OzoneAnalysis.LocationDriver -D hadooplab.ozone.reducers=10 -D hadooplab.ozone.split.maxsize=67108864 "/user/tri/AirAnalysis/OzoneRawFL/20*O3.hly" /user/tri/AirAnalysis/output
+
+   --Exec on the HLY columnar files made by HLYColumnarDriver (no text parsing)
+   # yarn jar OzoneMR.jar hadooplab.OzoneAnalysis.LocationDriver -D hadooplab.ozone.input.columnar=true /user/tri/AirAnalysis/Ozone2012Columnar /user/tri/AirAnalysis/output
+
+   --Station file compiled once by the driver into a binary snapshot memory-mapped by the tasks (see NAPSStationIndex),
+     the lookup shared by the tasks run in the same JVM
+   # yarn jar OzoneMR.jar hadooplab.OzoneAnalysis.LocationDriver -D hadooplab.ozone.station.index=true -D hadooplab.ozone.station.shared=true
+
+   --Exec on the HLY text files read by HLYInputFormat (fixed length records parsed by the RecordReader, no Text per line)
+   # yarn jar OzoneMR.jar hadooplab.OzoneAnalysis.LocationDriver -D hadooplab.ozone.input.hlyformat=true
+
+   --Only the records of some Stations / Provinces / dates, dropped by the RecordReader before the mapper (see HLYRecordFilter)
+   # yarn jar OzoneMR.jar hadooplab.OzoneAnalysis.LocationDriver -D hadooplab.ozone.filter.provinces=ONTARIO -D hadooplab.ozone.filter.date.from=20120701 -D hadooplab.ozone.filter.date.to=20120731
+
+   --Incremental: only the HLY files (or the bytes appended to them) which were not ingested by the previous runs,
+   --merged with the aggregates kept in the output directory (see IncrementalLocationMode). Report: Location, Period, Max, Min, Avg, Count
+   # yarn jar OzoneMR.jar hadooplab.OzoneAnalysis.LocationDriver -D hadooplab.ozone.incremental=true /user/tri/AirAnalysis/OzoneIncoming /user/tri/AirAnalysis/outputIncremental
+   # hdfs dfs -cat /user/tri/AirAnalysis/outputIncremental/_ingested
+
 	--VERIF:
    # hdfs dfs -cat /user/tri/AirAnalysis/output/part-r-00000
    # hdfs dfs -copyToLocal /user/tri/AirAnalysis/output/part-r-00000 ./OzoneByCities_JavaMR.txt
@@ -72,36 +88,72 @@ Run the Java Program (ssh and run on Hadoop node)
  *
  * 2014-04-19 - Tri Nguyen
  */
-public class LocationDriver extends Configured implements Tool {
+public class LocationDriver extends OzoneDriverBase {
+	/** Configuration property: true when the input is HLY columnar files (HLYColumnarDriver) instead of the HLY text file */
+	public static final String CONF_COLUMNAR_INPUT = "hadooplab.ozone.input.columnar";
+	/** Configuration property: true to read the HLY text file with HLYInputFormat instead of TextInputFormat */
+	public static final String CONF_HLY_INPUT = "hadooplab.ozone.input.hlyformat";
 	private static final String STATION_HDFS_FILENAME = "/user/tri/AirAnalysis/NAPSStation/Stations_v28012014.csv";
 	//private static final String NAPS_OZONE_INPUTFILE = "/user/tri/MiniOzoneSample.txt"; // path is on HDFS
 	private static final String NAPS_OZONE_INPUTFILE = "/user/tri/AirAnalysis/Ozone2012RawFL/2012O3.hly"; // path is on HDFS
 	private static final String REDUCER_OUTPUT_DIR = "/user/tri/AirAnalysis/output"; // path is on HDFS
 
+	public LocationDriver() {
+		super(NAPS_OZONE_INPUTFILE, REDUCER_OUTPUT_DIR, STATION_HDFS_FILENAME);
+	}
+
 	@Override
 	public int run(String[] args) throws Exception {
-		if (args.length != 2) {
-			System.err.printf("Usage: %s [generic options] <input> <output>\n", getClass().getSimpleName());
-			ToolRunner.printGenericCommandUsage(System.err);
+		if (!parseArgs(args)) {
 			return -1;
 		}
 
-		Job job = org.apache.hadoop.mapreduce.Job.getInstance(getConf()); // getConf() comes from inherited parent class Configured
-		job.setJobName("hadooplab.OzoneAnalysis.LocationDriver");
-		job.setJarByClass(getClass());
+		// Only the new HLY records, merged with the aggregate state of the output directory
+		if (IncrementalLocationMode.isEnabled(getConf())) {
+			if (HLYRecordFilter.isEnabled(getConf())) {
+				// the aggregates are merged run after run: they must cover all the records, a filtered run would corrupt them
+				System.err.printf("%s and hadooplab.ozone.filter.* cannot be combined: the incremental aggregates cover all the records\n",
+						IncrementalLocationMode.CONF_ENABLED);
+				return -1;
+			}
+			return IncrementalLocationMode.run(this);
+		}
 
-		// Delete automatically the output dir if its already exists
-		// Equivalent of:
-		// # hdfs dfs -rm -R -skipTrash /user/tri/AirAnalysis/output/
-		Path outputPath = new Path(args[1]); // output directory (contain reducer results)
-		System.out.printf("===^^^ Delete Output Directory: %s ^^^===\n", outputPath.toString());
-		FileSystem fs = FileSystem.get(new URI(outputPath.toString()), getConf());
-		fs.delete(outputPath, true); // true=recursive
+		boolean filtered = configureRecordFilter(); // before the local engine and the Job: both read the predicates
 
-		FileInputFormat.addInputPath(job, new Path(args[0])); // input file for mapper
-		FileOutputFormat.setOutputPath(job, outputPath); // output directory (contain reducer results)
+		// Small input: the local engine is faster than the startup of the job
+		if (!getConf().getBoolean(CONF_COLUMNAR_INPUT, false) && LocalOzoneMode.accepts(getConf(), getInputPaths())) {
+			return LocalOzoneMode.run(getConf(), getInputPaths(), getStationFileURI(), getOutputPath(),
+					LocalOzoneEngine.Report.BY_LOCATION);
+		}
+
+		// reducers, split size and output codec of the Configuration (see OzoneDriverBase)
+		Job job = newJob("hadooplab.OzoneAnalysis.LocationDriver");
 
-		job.setMapperClass(LocationMapper.class);
+		setInput(job); // input files for mapper
+		// Delete automatically the output dir if its already exists
+		setOutput(job, getOutputPath()); // output directory (contain reducer results)
+
+		if (getConf().getBoolean(CONF_COLUMNAR_INPUT, false)) {
+			// the mapper only needs 2 columns, the others are not even decompressed
+			job.setInputFormatClass(HLYColumnarInputFormat.class);
+			if (filtered && HLYRecordFilter.get(getConf()).hasDateRange()) {
+				HLYColumnarInputFormat.setColumns(job.getConfiguration(), HLYColumnarFile.Column.STATION_ID, HLYColumnarFile.Column.DAY_AVERAGE,
+						HLYColumnarFile.Column.DATE);
+			} else {
+				HLYColumnarInputFormat.setColumns(job.getConfiguration(), HLYColumnarFile.Column.STATION_ID, HLYColumnarFile.Column.DAY_AVERAGE);
+			}
+			job.setMapperClass(LocationColumnarMapper.class);
+		} else if (getConf().getBoolean(CONF_HLY_INPUT, false)) {
+			// the records arrive parsed, as HLYRecordWritable: same mapper than the columnar files
+			job.setInputFormatClass(HLYInputFormat.class);
+			job.setMapperClass(LocationColumnarMapper.class);
+		} else {
+			if (filtered) {
+				job.setInputFormatClass(HLYRecordFilter.FilteringTextInputFormat.class);
+			}
+			job.setMapperClass(LocationMapper.class);
+		}
 		job.setMapOutputKeyClass(Text.class);
 		job.setMapOutputValueClass(IntWritable.class);
 
@@ -113,8 +165,7 @@ public class LocationDriver extends Configured implements Tool {
 		// Send the Station Info to Hadoop Distributed Cache via API
 		// equivalence of cmdline option -file hdfsFilename. Example:
 		// # yarn jar OzoneMR.jar CompositeKeyDriver -files /root/HadoopExo/Hive/Data/Stations_v28012014.csv
-		java.net.URI stationFileURI = java.net.URI.create(STATION_HDFS_FILENAME);
-		job.addCacheFile(stationFileURI);
+		job.addCacheFile(getStationCacheURI());
 
 		//Create a symlink to make the file available in the task working dir
 		//Ex: the file specified by the URI hdfs://namenode/foo/bar#MyFile is symlinked as MyFile in the task’s working directory
@@ -127,10 +178,11 @@ public class LocationDriver extends Configured implements Tool {
 	/**
 	 * Start Driver using Tool Runner allowing to pass args[] and custom Hadoop config and/or properties at the command line
 	 *
-	 * @param args arg1: HDFS path of the Ozone HLY File, arg2: HDFS path of directory where the Reducer will save output file
+	 * @param args arg1: HDFS path(s) of the Ozone HLY Files, arg2: HDFS path of directory where the Reducer will save output file
+	 *             (hadooplab.ozone.input / hadooplab.ozone.output or the default paths when not given, see OzoneDriverBase)
 	 */
 	public static void main(String[] args) throws Exception {
-		int exitCode = ToolRunner.run(new LocationDriver(), new String[] {NAPS_OZONE_INPUTFILE, REDUCER_OUTPUT_DIR});
+		int exitCode = ToolRunner.run(new LocationDriver(), args);
 		System.exit(exitCode);
 	}
 
@@ -10,6 +10,7 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.net.URI;
+import java.util.EnumSet;
 
 /**
  * Mapping: outputing (Location, AvgOzone Value).
@@ -19,6 +20,9 @@ import java.net.URI;
  *
  * + Manage Custom Counter to hint about failed records
  *
+ * + Optional in-mapper combining (hadooplab.ozone.inmapper.combine=true, see InMapperMaxCombiner):
+ *   the max per Location is kept in memory and emitted in cleanup(), 1 record per Location instead of 1 per HLY record
+ *
  * NOTE: the JOIN must be at the MAP side so that the Location Keys will be "GROUP BY" by the reducer
  * if the JOIN was made at Reducer side, there will be duplicated Location in the results
  * b/c mapper emits StationID as key. The reducer will just substitute StationID by Location
@@ -30,6 +34,10 @@ public class LocationMapper extends Mapper<LongWritable, Text, Text, IntWritable
 	private static final String STATION_LOCAL_RELATIVE_FILENAME = "Stations_v28012014.csv";
 	private HLYRecordParser _hlyParser = new HLYRecordParser();
 	private NAPSStationLookup _stationLookup;
+	private Text _locationKey = new Text(); // re-used for every output record
+	private IntWritable _ozoneValue = new IntWritable(); // re-used for every output record
+	private byte[] _digits = new byte[DecimalText.MAX_INT_DIGITS]; // StationID written in _locationKey without String
+	private InMapperMaxCombiner _combiner; // null when the in-mapper combining is disabled
 
 	// Example where this Enum is fully used: htdg.Ch05_MRDev.MaxTempMapperRobust
 	enum NAPS_HLYRecordQuality {
@@ -45,7 +53,11 @@ public class LocationMapper extends Mapper<LongWritable, Text, Text, IntWritable
 	 */
 	@Override
 	protected void setup(Context context) throws IOException, InterruptedException {
-		_stationLookup = new NAPSStationLookup();
+		// the Date, PollutantCode, DayMin/DayMax and the statistics of the readings are never decoded
+		this._hlyParser.setProjection(EnumSet.of(HLYRecordParser.Field.STATION_ID, HLYRecordParser.Field.DAY_STATS));
+		if (context.getConfiguration().getBoolean(InMapperMaxCombiner.CONF_ENABLED, false)) {
+			_combiner = new InMapperMaxCombiner(context.getConfiguration().getInt(InMapperMaxCombiner.CONF_MAX_ENTRIES, InMapperMaxCombiner.DEFAULT_MAX_ENTRIES));
+		}
 		// Version1: The Station Info file was sent to the Distributed Cache via the cmdline using GenericOptionsParser (-file argument)
 		// # yarn jar OzoneMR.jar hadooplab.OzoneAnalysis.LocationDriver -files /root/HadoopExo/Stations_v28012014.csv
 		//_stationLookup.initialize(new File(STATION_LOCAL_RELATIVE_FILENAME));
@@ -75,7 +87,7 @@ public class LocationMapper extends Mapper<LongWritable, Text, Text, IntWritable
 		String localStationFileName = FilenameUtils.getName(dcFileURIs[0].getPath()); // "Stations_v28012014.csv"
 		File stationInfoLocalFile = new File(localStationFileName);
 
-		_stationLookup.initialize(stationInfoLocalFile);
+		_stationLookup = NAPSStationLookup.load(context.getConfiguration(), stationInfoLocalFile); // shared with hadooplab.ozone.station.shared=true
 	}
 
 	/**
@@ -93,18 +105,36 @@ public class LocationMapper extends Mapper<LongWritable, Text, Text, IntWritable
 			throws IOException, InterruptedException {
 
 		try {
-			this._hlyParser.parse(value.toString());
+			this._hlyParser.parse(value.getBytes(), 0, value.getLength()); // no String decoding of the Text bytes
 
 			if (this._hlyParser.isValidRecord()) {
-				String stationLocation = _stationLookup.getStationLocation(this._hlyParser.getStationID());
-
-				if (stationLocation == null) {
+				int stationID = this._hlyParser.getStationIDValue();
+				int locationID = _stationLookup.getLocationID(stationID);
+				if (locationID == NAPSStationLookup.NO_LOCATION) {
 					context.getCounter(NAPS_HLYRecordQuality.MissingLocation).increment(1);
+				}
+				int avgOzone = Math.round(this._hlyParser.getDayAverage());
+
+				if (this._combiner != null) {
+					// LocationIDs are >= 0, the Stations without Location are kept as ~StationID (< 0)
+					int combineKey = (locationID == NAPSStationLookup.NO_LOCATION ? ~stationID : locationID);
+					if (this._combiner.add(combineKey, avgOzone)) {
+						flush(context); // memory threshold reached
+					}
+					return;
+				}
+
+				if (locationID == NAPSStationLookup.NO_LOCATION) {
+					// no match: fall back to the StationID (same as NAPSStationLookup.getStationLocation())
+					DecimalText.set(this._locationKey, stationID, this._digits);
 				} else {
-					int avgOzone = Math.round(this._hlyParser.getDayAverage());
-					context.write(new Text(stationLocation), new IntWritable(avgOzone));
-					//System.out.printf("===^^^===%s, stationLocation: %s, avgOzone:%d\n", getClass().getSimpleName(), stationLocation, avgOzone);
+					// the Location bytes are pre-encoded in UTF-8: copied as is into the Text, no String, no encoding
+					this._locationKey.set(_stationLookup.getLocationBytes(locationID));
 				}
+				// context.write() serializes the key and value immediately: the same objects can be re-used for the next record
+				this._ozoneValue.set(avgOzone);
+				context.write(this._locationKey, this._ozoneValue);
+				//System.out.printf("===^^^===%s, stationLocation: %s, avgOzone:%d\n", getClass().getSimpleName(), stationLocation, avgOzone);
 			}
 			else {
 				context.getCounter(NAPS_HLYRecordQuality.INVALID).increment(1);
@@ -124,4 +154,29 @@ public class LocationMapper extends Mapper<LongWritable, Text, Text, IntWritable
 			context.getCounter(getClass().getSimpleName(), ex.getClass().getSimpleName()).increment(1);
 		}
 	}
+
+	@Override
+	protected void cleanup(Context context) throws IOException, InterruptedException {
+		if (this._combiner != null) {
+			flush(context);
+		}
+	}
+
+	/**
+	 * Emit the (Location, max) kept by the in-mapper combiner
+	 */
+	private void flush(final Context context) throws IOException, InterruptedException {
+		this._combiner.flush(new InMapperMaxCombiner.Emitter() {
+			@Override
+			public void emit(int combineKey, int maxValue) throws IOException, InterruptedException {
+				if (combineKey < 0) {
+					DecimalText.set(_locationKey, ~combineKey, _digits);
+				} else {
+					_locationKey.set(_stationLookup.getLocationBytes(combineKey));
+				}
+				_ozoneValue.set(maxValue);
+				context.write(_locationKey, _ozoneValue);
+			}
+		});
+	}
 }
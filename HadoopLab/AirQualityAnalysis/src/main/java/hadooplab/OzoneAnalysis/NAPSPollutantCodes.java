@@ -0,0 +1,137 @@
+package hadooplab.OzoneAnalysis;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The NAPS pollutant codes (NAPS-pollutant-codesV2014.csv): PollutantCode -> Formula, Description, Unit, UnitPrecision
+ *
+ *	PollutantCode,Formula,Description,Unit,UnitPrecision,NAPSCategory1,NAPSCategory2,NAPSCategory3
+ *	005,CO,CARBON MONOXIDE,ppm,0.1,HOURLY,HOURLY,HOURLY
+ *	007,O3,OZONE,ppb,1,HOURLY,HOURLY,HOURLY
+ *	015,,PM-2.5 SP (TEOM),µg/m3,1,HOURLY,HOURLY,HOURLY
+ *
+ * Only the 3-digit codes are kept, they are the codes found in the first 3 columns of the HLY records
+ * (the CAS numbers of the organic compounds, ex. 96-14-0, are not used by the HLY files)
+ * The lookup is a plain array indexed by the code: no hashing, no boxing
+ *
+ * The file is ISO-8859-1 (µg/m3 is written with the byte 0xB5)
+ */
+public class NAPSPollutantCodes {
+	/** the pollutant codes of the HLY records are 3 digits */
+	public static final int MAX_CODE = 999;
+	private static final int MINIMUM_COLUMN_COUNT = 5;
+
+	private final Pollutant[] _pollutants = new Pollutant[MAX_CODE + 1];
+
+	/**
+	 * @param fileName the LOCAL path of NAPS-pollutant-codesV2014.csv
+	 */
+	public void initialize(File fileName) throws IOException {
+		BufferedReader buffReader = null;
+		try {
+			buffReader = new BufferedReader(new InputStreamReader(new FileInputStream(fileName), StandardCharsets.ISO_8859_1));
+			initialize(buffReader);
+		} finally {
+			if (buffReader != null) buffReader.close();
+		}
+	}
+
+	/**
+	 * Same as initialize(File) from any source of the CSV lines, the reader is not closed
+	 * The header line and the lines whose code is not a 3-digit number are skipped
+	 */
+	public void initialize(BufferedReader buffReader) throws IOException {
+		String line;
+		while ((line = buffReader.readLine()) != null) {
+			String[] elems = line.split("\\s*,\\s*", -1); // KEEP empty string between delimiters
+			if (elems.length < MINIMUM_COLUMN_COUNT) {
+				continue;
+			}
+			int code = parseCode(elems[0].trim());
+			if (code < 0) {
+				continue;
+			}
+			BigDecimal unitPrecision = null;
+			if (elems[4].length() > 0) {
+				try {
+					unitPrecision = new BigDecimal(elems[4]);
+				} catch (NumberFormatException ex) {
+					unitPrecision = null; // the values are then written as read
+				}
+			}
+			this._pollutants[code] = new Pollutant(code, elems[1], elems[2], elems[3], unitPrecision);
+		}
+	}
+
+	/**
+	 * @param pollutantCode as decoded by HLYRecordParser.getPollutantCodeValue()
+	 * @return the pollutant or NULL when the code is not in the file
+	 */
+	public Pollutant getPollutant(int pollutantCode) {
+		if (pollutantCode < 0 || pollutantCode > MAX_CODE) return null;
+		return this._pollutants[pollutantCode];
+	}
+
+	/**
+	 * @return 0..999 or -1 when the code is not a 3-digit number
+	 */
+	private static int parseCode(String codeStr) {
+		if (codeStr.length() == 0 || codeStr.length() > 3) return -1;
+		int code = 0;
+		for (int kk = 0; kk < codeStr.length(); kk++) {
+			char ch = codeStr.charAt(kk);
+			if (ch < '0' || ch > '9') return -1;
+			code = code * 10 + (ch - '0');
+		}
+		return code;
+	}
+
+
+	/**
+	 * One line of the pollutant codes file
+	 */
+	public static class Pollutant {
+		private final int _code;
+		private final String _formula, _description, _unit;
+		private final BigDecimal _unitPrecision;
+
+		Pollutant(int code, String formula, String description, String unit, BigDecimal unitPrecision) {
+			this._code = code;
+			this._formula = formula;
+			this._description = description;
+			this._unit = unit;
+			this._unitPrecision = unitPrecision;
+		}
+
+		public int getCode() { return this._code; }
+		public String getFormula() { return this._formula; }
+		public String getDescription() { return this._description; }
+		public String getUnit() { return this._unit; }
+
+		/**
+		 * @return the step of the readings in Unit (ex. 0.1 ppm for CO), NULL when the file gives none
+		 */
+		public BigDecimal getUnitPrecision() { return this._unitPrecision; }
+
+		/**
+		 * @return the Formula (ex. "O3") or the Description when the pollutant has no formula (ex. "PM-2.5 SP (TEOM)")
+		 */
+		public String getName() {
+			return (this._formula.length() > 0 ? this._formula : this._description);
+		}
+
+		/**
+		 * The HLY readings are integers counted in UnitPrecision: 12 for CO (precision 0.1) is 1.2 ppm
+		 *
+		 * @return the reading in Unit, with the number of decimals of UnitPrecision (the reading as is when there is no precision)
+		 */
+		public String formatReading(int reading) {
+			if (this._unitPrecision == null) {
+				return Integer.toString(reading);
+			}
+			return BigDecimal.valueOf(reading).multiply(this._unitPrecision).toPlainString();
+		}
+	}
+}
@@ -0,0 +1,293 @@
+package hadooplab.OzoneAnalysis;
+
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+
+/**
+ * Binary snapshot of the NAPS Station file, compiled once by the driver and memory-mapped by the tasks:
+ * no CSV line to read, no regex, no String per Station in setup() (see NAPSStationLookup.initialize(File))
+ *
+ * File format (big-endian, as DataOutputStream):
+ *   Header    : MAGIC "NSIX" (int) | VERSION (int) | length (long) and modification time (long) of the source CSV
+ *               | stationCount (int) | locationCount (int)
+ *   Stations  : stationIDs int[stationCount] sorted | locationIDs int[stationCount] (NO_LOCATION for a blank Location)
+ *               | latitudes float[stationCount] | longitudes float[stationCount] (NaN when missing)
+ *   Locations : offsets int[locationCount + 1] | the UTF-8 bytes of the "Province\tCity" concatenated
+ *
+ * The StationIDs, LocationIDs and Locations are exactly the ones of NAPSStationLookup.initialize(BufferedReader):
+ * the same dictionary in the alphabetical order, the last line wins when a StationID is duplicated
+ * The length and modification time of the CSV are kept to know when the snapshot is stale (compileIfStale())
+ */
+public final class NAPSStationIndex {
+	public static final int MAGIC = 0x4E534958; // "NSIX"
+	public static final int VERSION = 1;
+	/** Extension of the index file, added to the name of the Station file by default */
+	public static final String FILE_EXTENSION = ".idx";
+	private static final int HEADER_LENGTH = 32;
+
+	private final ByteBuffer _buffer;
+	private final long _sourceLength, _sourceModificationTime;
+	private final int _stationCount, _locationCount;
+	private final IntBuffer _stationIDs, _locationIDs, _locationOffsets;
+	private final FloatBuffer _latitudes, _longitudes;
+	private final int _locationBytesStart;
+
+	private NAPSStationIndex(ByteBuffer buffer) throws IOException {
+		this._buffer = buffer;
+		if (buffer.limit() < HEADER_LENGTH || buffer.getInt(0) != MAGIC) {
+			throw new IOException("Not a NAPS Station index");
+		}
+		if (buffer.getInt(4) != VERSION) {
+			throw new IOException(String.format("Unsupported NAPS Station index version: %d", buffer.getInt(4)));
+		}
+		this._sourceLength = buffer.getLong(8);
+		this._sourceModificationTime = buffer.getLong(16);
+		this._stationCount = buffer.getInt(24);
+		this._locationCount = buffer.getInt(28);
+
+		int position = HEADER_LENGTH;
+		int arrayLength = 4 * this._stationCount;
+		this._locationBytesStart = position + 4 * arrayLength + 4 * (this._locationCount + 1);
+		if (this._stationCount < 0 || this._locationCount < 0 || this._locationBytesStart > buffer.limit()) {
+			throw new IOException("Corrupted NAPS Station index: truncated");
+		}
+		this._stationIDs = slice(position, arrayLength).asIntBuffer();
+		this._locationIDs = slice(position += arrayLength, arrayLength).asIntBuffer();
+		this._latitudes = slice(position += arrayLength, arrayLength).asFloatBuffer();
+		this._longitudes = slice(position += arrayLength, arrayLength).asFloatBuffer();
+		this._locationOffsets = slice(position + arrayLength, 4 * (this._locationCount + 1)).asIntBuffer();
+		if (this._locationBytesStart + this._locationOffsets.get(this._locationCount) > buffer.limit()) {
+			throw new IOException("Corrupted NAPS Station index: truncated dictionary");
+		}
+	}
+
+	/**
+	 * Memory-map an index file: only the header is read, the pages of the arrays are loaded when they are accessed
+	 */
+	public static NAPSStationIndex open(File indexFile) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(indexFile, "r");
+		try {
+			// the mapping stays valid after the file is closed
+			return new NAPSStationIndex(file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length()));
+		} finally {
+			file.close();
+		}
+	}
+
+	/**
+	 * @return true when the file starts with the MAGIC of an index (false for the CSV file)
+	 */
+	public static boolean isIndexFile(File file) throws IOException {
+		if (file.length() < HEADER_LENGTH) {
+			return false;
+		}
+		DataInputStream in = new DataInputStream(new FileInputStream(file));
+		try {
+			return in.readInt() == MAGIC;
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Compile the Station CSV lines into an index
+	 *
+	 * @param sourceLength, sourceModificationTime of the CSV file, written in the header
+	 */
+	public static void compile(BufferedReader csvReader, long sourceLength, long sourceModificationTime, DataOutputStream out)
+			throws IOException {
+		List<String> lines = new ArrayList<String>();
+		String line;
+		while ((line = csvReader.readLine()) != null) {
+			lines.add(line);
+		}
+
+		// the Locations and their IDs: the same lookup than the tasks which read the CSV
+		NAPSStationLookup lookup = new NAPSStationLookup();
+		lookup.initialize(new BufferedReader(new StringReader(joinLines(lines))));
+
+		// StationID -> {latitude, longitude}, sorted by StationID, the last line wins
+		SortedMap<Integer, float[]> coordinates = new TreeMap<Integer, float[]>();
+		NAPSStationParser parser = new NAPSStationParser();
+		for (String csvLine : lines) {
+			if (parser.parse(csvLine) && parser.getStationID() != null && parser.getStationID() != IntIntOpenHashMap.EMPTY_KEY) {
+				coordinates.put(parser.getStationID(), new float[] {
+						parser.getLatitude() == null ? Float.NaN : parser.getLatitude(),
+						parser.getLongitude() == null ? Float.NaN : parser.getLongitude()});
+			}
+		}
+
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeLong(sourceLength);
+		out.writeLong(sourceModificationTime);
+		out.writeInt(coordinates.size());
+		out.writeInt(lookup.getLocationCount());
+		for (int stationID : coordinates.keySet()) {
+			out.writeInt(stationID);
+		}
+		for (int stationID : coordinates.keySet()) {
+			out.writeInt(lookup.getLocationID(stationID));
+		}
+		for (float[] latLong : coordinates.values()) {
+			out.writeFloat(latLong[0]);
+		}
+		for (float[] latLong : coordinates.values()) {
+			out.writeFloat(latLong[1]);
+		}
+		int offset = 0;
+		out.writeInt(offset);
+		for (int locationID = 0; locationID < lookup.getLocationCount(); locationID++) {
+			offset += lookup.getLocationBytes(locationID).length;
+			out.writeInt(offset);
+		}
+		for (int locationID = 0; locationID < lookup.getLocationCount(); locationID++) {
+			out.write(lookup.getLocationBytes(locationID));
+		}
+	}
+
+	/**
+	 * Driver side: compile the Station file into indexPath, unless the index already there was compiled
+	 * from the same version of the Station file (same length and modification time)
+	 * The CSV is read with the default charset, as the FileReader of NAPSStationLookup.initialize(File) in the tasks
+	 *
+	 * @return true when the index was (re)written
+	 */
+	public static boolean compileIfStale(FileSystem fs, Path stationPath, Path indexPath) throws IOException {
+		FileStatus stationStatus = fs.getFileStatus(stationPath);
+		if (fs.exists(indexPath)) {
+			DataInputStream in = fs.open(indexPath);
+			try {
+				if (in.readInt() == MAGIC && in.readInt() == VERSION
+						&& in.readLong() == stationStatus.getLen() && in.readLong() == stationStatus.getModificationTime()) {
+					return false;
+				}
+			} catch (EOFException ex) {
+				// truncated: compiled again
+			} finally {
+				in.close();
+			}
+		}
+
+		// written aside then renamed: a task never sees a partial index
+		Path tempPath = new Path(indexPath.getParent(), "_" + indexPath.getName() + ".tmp");
+		BufferedReader csvReader = new BufferedReader(new InputStreamReader(fs.open(stationPath)));
+		try {
+			FSDataOutputStream out = fs.create(tempPath, true);
+			try {
+				compile(csvReader, stationStatus.getLen(), stationStatus.getModificationTime(), out);
+			} finally {
+				out.close();
+			}
+		} finally {
+			csvReader.close();
+		}
+		fs.delete(indexPath, false);
+		if (!fs.rename(tempPath, indexPath)) {
+			throw new IOException(String.format("Cannot rename %s to %s", tempPath, indexPath));
+		}
+		return true;
+	}
+
+	public long getSourceLength() {
+		return this._sourceLength;
+	}
+
+	public long getSourceModificationTime() {
+		return this._sourceModificationTime;
+	}
+
+	/**
+	 * Number of Stations, the Stations are indexed 0 .. getStationCount()-1 in the order of their IDs
+	 */
+	public int getStationCount() {
+		return this._stationCount;
+	}
+
+	public int getStationID(int index) {
+		return this._stationIDs.get(index);
+	}
+
+	/**
+	 * @return the LocationID of the Station, NAPSStationLookup.NO_LOCATION when its Location is blank
+	 */
+	public int getLocationID(int index) {
+		return this._locationIDs.get(index);
+	}
+
+	/**
+	 * @return the latitude of the Station, NaN when it is missing in the Station file
+	 */
+	public float getLatitude(int index) {
+		return this._latitudes.get(index);
+	}
+
+	public float getLongitude(int index) {
+		return this._longitudes.get(index);
+	}
+
+	/**
+	 * Binary search of a StationID
+	 *
+	 * @return the index of the Station, -1 when the StationID is not in the index
+	 */
+	public int indexOf(int stationID) {
+		int low = 0;
+		int high = this._stationCount - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int middleID = this._stationIDs.get(middle);
+			if (middleID < stationID) {
+				low = middle + 1;
+			} else if (middleID > stationID) {
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Number of distinct Locations, LocationIDs are 0 .. getLocationCount()-1
+	 */
+	public int getLocationCount() {
+		return this._locationCount;
+	}
+
+	/**
+	 * @return a copy of the UTF-8 bytes of "Province\tCity"
+	 */
+	public byte[] getLocationBytes(int locationID) {
+		int start = this._locationOffsets.get(locationID);
+		byte[] bytes = new byte[this._locationOffsets.get(locationID + 1) - start];
+		ByteBuffer location = this._buffer.duplicate();
+		location.position(this._locationBytesStart + start);
+		location.get(bytes);
+		return bytes;
+	}
+
+	private ByteBuffer slice(int position, int length) {
+		ByteBuffer slice = this._buffer.duplicate();
+		slice.position(position);
+		slice.limit(position + length);
+		return slice.slice();
+	}
+
+	private static String joinLines(List<String> lines) {
+		StringBuilder builder = new StringBuilder();
+		for (String line : lines) {
+			builder.append(line).append('\n');
+		}
+		return builder.toString();
+	}
+}
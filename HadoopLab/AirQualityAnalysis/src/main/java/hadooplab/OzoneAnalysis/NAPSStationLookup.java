@@ -1,6 +1,9 @@
 package hadooplab.OzoneAnalysis;
 
+import org.apache.hadoop.conf.Configuration;
+
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 //import org.apache.hadoop.io.IOUtils;
 
@@ -8,46 +11,200 @@ import java.util.*;
  * Build a Map (StationID, "Province Name / City")
  * To allow a lookup of StationID to get the "Province Name / City"
  *
+ * The lookup is made of:
+ * - a primitive hash table StationID -> LocationID (no boxing, optionally off-heap)
+ * - a dictionary LocationID -> Location, each distinct "Province\tCity" is stored once as String and as UTF-8 bytes
+ * The LocationIDs are assigned in the alphabetical order of the Locations: comparing 2 LocationIDs gives
+ * the same result than comparing the 2 Location names
+ *
+ * The Station file can be the CSV or its binary snapshot (NAPSStationIndex, compiled by the driver with
+ * hadooplab.ozone.station.index=true): the snapshot is memory-mapped, nothing to parse in setup()
+ * With hadooplab.ozone.station.shared=true, load() keeps the lookup in a static field: the next tasks run by
+ * the same JVM (uber tasks, local mode, MultithreadedMapper) re-use it without reading the file again
+ *
  * 2014-04-19 - Tri Nguyen
  */
 public class NAPSStationLookup {
-	private Map<Integer, String> _mapStationLocation = new HashMap<Integer, String>();
+	/** returned by getLocationID() when the StationID has no Location */
+	public static final int NO_LOCATION = -1;
+	/** Configuration property: true to keep the StationID table off-heap */
+	public static final String CONF_OFF_HEAP = "hadooplab.ozone.station.offheap";
+	/** Configuration property: true to share the lookup between the tasks of a JVM (see load()) */
+	public static final String CONF_SHARED = "hadooplab.ozone.station.shared";
+	private static final int EXPECTED_STATION_COUNT = 1024;
+
+	// the lookup shared by the tasks of the JVM, and the version of the Station file it was loaded from
+	private static NAPSStationLookup _sharedLookup;
+	private static String _sharedFileVersion;
+
+	private final IntIntOpenHashMap _stationToLocationID;
+	private String[] _locationNames = new String[0];
+	private byte[][] _locationBytes = new byte[0][];
+
+	public NAPSStationLookup() {
+		this(false);
+	}
+
+	/**
+	 * @param offHeap true to allocate the StationID table outside of the Java heap
+	 */
+	public NAPSStationLookup(boolean offHeap) {
+		this._stationToLocationID = new IntIntOpenHashMap(EXPECTED_STATION_COUNT, offHeap);
+	}
+
+	/**
+	 * The lookup of the Station file for a task: a new one, or the one shared by the JVM with hadooplab.ozone.station.shared=true
+	 * The shared lookup is read-only, it is loaded again only when the file differs (path, length or modification time)
+	 *
+	 * @param fileName the LOCAL path of the Station file (CSV or NAPSStationIndex)
+	 */
+	public static NAPSStationLookup load(Configuration conf, File fileName) throws IOException {
+		boolean offHeap = conf.getBoolean(CONF_OFF_HEAP, false);
+		if (!conf.getBoolean(CONF_SHARED, false)) {
+			NAPSStationLookup lookup = new NAPSStationLookup(offHeap);
+			lookup.initialize(fileName);
+			return lookup;
+		}
+		String fileVersion = String.format("%s|%d|%d|%b", fileName.getCanonicalPath(), fileName.length(), fileName.lastModified(), offHeap);
+		synchronized (NAPSStationLookup.class) {
+			if (!fileVersion.equals(_sharedFileVersion)) {
+				NAPSStationLookup lookup = new NAPSStationLookup(offHeap);
+				lookup.initialize(fileName);
+				_sharedLookup = lookup;
+				_sharedFileVersion = fileVersion;
+			}
+			return _sharedLookup;
+		}
+	}
 
 	/**
 	 * Build a Map (StationID, StationLocation) for all the NAPS Stations
 	 * This Map will be used later as lookup table by a Reducer to substitute a StationID by StationLocation
 	 *
 	 * @param fileName the LOCAL path of the file containing the NAPS Station properties (StationID, StationName, Address, LatLong, etc.)
+	 *                 or the binary snapshot of this file (NAPSStationIndex)
 	 */
 	public void initialize(File fileName) throws IOException {
+		if (NAPSStationIndex.isIndexFile(fileName)) {
+			initialize(NAPSStationIndex.open(fileName));
+			return;
+		}
 		BufferedReader buffReader = null;
 		try {
 			buffReader = new BufferedReader(new FileReader(fileName));
 			//buffReader = new BufferedReader(new InputStreamReader(new FileInputStream(fileName)));
-			NAPSStationParser parser = new NAPSStationParser();
-			String line;
-			while ((line = buffReader.readLine()) != null) {
-				if (parser.parse(line)) {
-					_mapStationLocation.put(
-						parser.getStationID(),
-						String.format("%s\t%s", parser.getProvinceName(), parser.getCityName()));
-				}
-			}
+			initialize(buffReader);
 		} finally {
 			//IOUtils.closeStream(buffReader);
 			if (buffReader != null) buffReader.close();
 		}
 	}
 
+	/**
+	 * Same as initialize(File) from any source of the Station CSV lines, the reader is not closed
+	 */
+	public void initialize(BufferedReader buffReader) throws IOException {
+		// 1st pass: StationID -> Location name (the last line wins when a StationID is duplicated)
+		Map<Integer, String> stationLocations = new HashMap<Integer, String>();
+		NAPSStationParser parser = new NAPSStationParser();
+		String line;
+		while ((line = buffReader.readLine()) != null) {
+			if (parser.parse(line) && parser.getStationID() != null) {
+				stationLocations.put(
+					parser.getStationID(),
+					String.format("%s\t%s", parser.getProvinceName(), parser.getCityName()));
+			}
+		}
+
+		// 2nd pass: dictionary of the distinct Locations, in alphabetical order
+		SortedSet<String> distinctLocations = new TreeSet<String>();
+		for (String locationName : stationLocations.values()) {
+			if (locationName.trim().length() > 0) {
+				distinctLocations.add(locationName);
+			}
+		}
+		this._locationNames = distinctLocations.toArray(new String[distinctLocations.size()]);
+		this._locationBytes = new byte[this._locationNames.length][];
+		for (int locationID = 0; locationID < this._locationNames.length; locationID++) {
+			this._locationBytes[locationID] = this._locationNames[locationID].getBytes(StandardCharsets.UTF_8);
+		}
+
+		this._stationToLocationID.clear();
+		for (Map.Entry<Integer, String> entry : stationLocations.entrySet()) {
+			int locationID = Arrays.binarySearch(this._locationNames, entry.getValue());
+			if (locationID >= 0) { // blank Locations are not in the dictionary
+				this._stationToLocationID.put(entry.getKey(), locationID);
+			}
+		}
+	}
+
+	/**
+	 * Same as initialize(File) from the binary snapshot: the arrays are copied as they are, no parsing
+	 */
+	public void initialize(NAPSStationIndex index) {
+		this._locationNames = new String[index.getLocationCount()];
+		this._locationBytes = new byte[this._locationNames.length][];
+		for (int locationID = 0; locationID < this._locationNames.length; locationID++) {
+			this._locationBytes[locationID] = index.getLocationBytes(locationID);
+			this._locationNames[locationID] = new String(this._locationBytes[locationID], StandardCharsets.UTF_8);
+		}
+
+		this._stationToLocationID.clear();
+		for (int kk = 0; kk < index.getStationCount(); kk++) {
+			int locationID = index.getLocationID(kk);
+			if (locationID != NO_LOCATION) {
+				this._stationToLocationID.put(index.getStationID(kk), locationID);
+			}
+		}
+	}
+
 	public String getStationLocation(Integer stationID) {
-		String locationName = _mapStationLocation.get(stationID);
-		if (locationName == null || locationName.trim().length() == 0) {
+		int locationID = getLocationID(stationID);
+		if (locationID == NO_LOCATION) {
 			return stationID.toString(); // no match: fall back to ID
 		}
-		return locationName;
+		return this._locationNames[locationID];
+	}
+
+	/**
+	 * Allocation-free lookup
+	 *
+	 * @return the LocationID of the Station or NO_LOCATION when the StationID is unknown or has a blank Location
+	 */
+	public int getLocationID(int stationID) {
+		if (stationID == IntIntOpenHashMap.EMPTY_KEY) return NO_LOCATION;
+		return this._stationToLocationID.get(stationID, NO_LOCATION);
+	}
+
+	/**
+	 * @return "Province\tCity" (the same String instance for all the Stations of the Location)
+	 */
+	public String getLocationName(int locationID) {
+		return this._locationNames[locationID];
+	}
+
+	/**
+	 * The Location pre-encoded in UTF-8, ready to be copied in a re-used Text: text.set(lookup.getLocationBytes(id))
+	 * ATTENTION: the returned array is shared, it must not be modified
+	 */
+	public byte[] getLocationBytes(int locationID) {
+		return this._locationBytes[locationID];
+	}
+
+	/**
+	 * Number of distinct Locations, LocationIDs are 0 .. getLocationCount()-1
+	 */
+	public int getLocationCount() {
+		return this._locationNames.length;
 	}
 
 	public Map<Integer, String> getStationIDToLocationMap() {
-		return Collections.unmodifiableMap(_mapStationLocation);
+		Map<Integer, String> mapStationLocation = new HashMap<Integer, String>();
+		for (int slot = 0; slot < this._stationToLocationID.capacity(); slot++) {
+			if (this._stationToLocationID.isUsedSlot(slot)) {
+				mapStationLocation.put(this._stationToLocationID.keyAt(slot), this._locationNames[this._stationToLocationID.valueAt(slot)]);
+			}
+		}
+		return Collections.unmodifiableMap(mapStationLocation);
 	}
 }
@@ -4,16 +4,19 @@ package hadooplab.OzoneAnalysis;
  * Parse the CSV File containing the NAPS Station Properties
  * Here we are only interested by: StationID, ProvinceName, City
  *
+ * parse() only finds the columns of the line (CsvLineTokenizer, 1 pass, no regex), each getter decodes its column
+ * when it is called: the lookup which reads the StationID, Province and City never decodes the other columns
+ * The columns can be quoted (a comma inside the quotes is not a separator)
+ *
  * 2014-04-19 - Tri Nguyen
  */
 public class NAPSStationParser {
 	//each CSV record must have at least this number of columns to be considered as having a complete Station metadata
 	private static final int MINIMUM_COLUMN_COUNT = 16;
+	private static final int STATION_ID = 0, STATION_NAME = 1, ACTIVE = 3, PROVINCE_NAME = 6, STREET_ADDRESS = 7,
+			CITY_NAME = 8, POSTAL_CODE = 11, LATITUDE = 13, LONGITUDE = 14, ELEVATION = 15;
 
-	private String _stationName, _provinceName, _cityName, _postalCode, _streetAddr;
-	private Float _latitude, _longitude;
-	private Integer _stationID, _elevationMeter;
-	boolean _isActive;
+	private final CsvLineTokenizer _tokenizer = new CsvLineTokenizer();
 	private boolean _metReqColumnCount = false;
 
 	public boolean parse(String csvLine) {
@@ -25,85 +28,55 @@ public class NAPSStationParser {
 105602,OSOYOOS EC WEATHER STN,R,0,,N,BRITISH COLUMBIA,OSOYOOS EC WEAthER STN,OSOYOOS,CANADA,V0H,,-8,,,,,,,,,,,,,,,,,,,,,,,,,,,,,
 */
 
-		// splits the string on a delimiter defined as:
-		// zero or more whitespace, a literal comma, zero or more whitespace
-		// which will place the words into the list and collapse any whitespace between the words and commas.
-		//String[] elems = csvLine.split("\\s*,\\s*"); // IGNORE empty string betwseen delimiters
-		String[] elems = csvLine.split("\\s*,\\s*", -1); // KEEP empty string between delimiters
-
-		this._metReqColumnCount = elems.length >= MINIMUM_COLUMN_COUNT;
-
-		if (this._metReqColumnCount) {
-			_stationID = safeIntegerConverter(elems[0]); // (elems[0].length() > 0 ? Integer.parseInt(elems[0]) : 0);
-			_stationName = elems[1];
-			_isActive = (elems[3].equalsIgnoreCase("1"));
-			_provinceName = elems[6];
-			_streetAddr = elems[7];
-			_cityName = elems[8];
-			_postalCode = elems[11];
-			_latitude = safeFloatConverter(elems[13]);
-			_longitude = safeFloatConverter(elems[14]);
-			_elevationMeter = safeIntegerConverter(elems[15]);
-		}
-
+		// same columns as csvLine.split("\\s*,\\s*", -1): the whitespaces around the commas are ignored,
+		// the empty columns are kept
+		this._metReqColumnCount = this._tokenizer.tokenize(csvLine) >= MINIMUM_COLUMN_COUNT;
 		return this._metReqColumnCount;
 	}
 
 	public boolean isValidRecord() {
-		return (this._metReqColumnCount && this._stationID != null && this._stationName != null && this._provinceName != null && this._cityName != null);
+		// the String columns always exist when the line has enough columns
+		return (this._metReqColumnCount && getStationID() != null);
 	}
-	public Integer getStationID() { return this._stationID; }
-	public String getStationName() { return this._stationName; }
-	public String getProvinceName() { return this._provinceName; }
-	public String getCityName() { return this._cityName; }
-	public String getStreetAddress() { return this._streetAddr; }
-	public String getPostalCode() { return this._postalCode; }
-	public Float getLatitude() { return this._latitude; }
-	public Float getLongitude() { return this._longitude; }
-	public Integer getElevationMeter() { return this._elevationMeter; }
+	public Integer getStationID() { return getInteger(STATION_ID); }
+	public String getStationName() { return getString(STATION_NAME); }
+	public boolean isActive() { return this._metReqColumnCount && "1".equalsIgnoreCase(this._tokenizer.getString(ACTIVE)); }
+	public String getProvinceName() { return getString(PROVINCE_NAME); }
+	public String getCityName() { return getString(CITY_NAME); }
+	public String getStreetAddress() { return getString(STREET_ADDRESS); }
+	public String getPostalCode() { return getString(POSTAL_CODE); }
+	public Float getLatitude() { return getFloat(LATITUDE); }
+	public Float getLongitude() { return getFloat(LONGITUDE); }
+	public Integer getElevationMeter() { return getInteger(ELEVATION); }
 
 
 	/**
-	 * Convert a String -> Float with careful format checking to avoid NumberFormatException
-	 *
-	 * @param maybeFloatStr
+	 * @return NULL when the line has not enough columns
 	 */
-	private static Float safeFloatConverter(String maybeFloatStr) {
-		Float retval;
-		//remove all spaces and +
-		String cleanupStr = maybeFloatStr.replaceAll("[ \\+]+","");
-
-		if (cleanupStr.matches("^[\\-]*\\d+\\.*\\d+$"))
-			retval = Float.parseFloat(maybeFloatStr);
-		else
-			retval = null;
-
-		return retval;
+	private String getString(int column) {
+		return (this._metReqColumnCount ? this._tokenizer.getString(column) : null);
 	}
 
 	/**
-	 * The sloppy Java JDK is too lazy to make elementaty test on a string before Integer.parseInt()
-	 * Minor format like " 12", "+12", "-3.14" will raises java.lang.NumberFormatException
-	 * Here a failure to parse will return null instead of raising runtime error
+	 * Former safeFloatConverter(): NULL unless the column is a decimal number, ex. "-79.38333" or "43"
 	 */
-	private static Integer safeIntegerConverter(String candidateNumStr) {
-		try {
-			/*
-			Remove all EXCEPT: digits, minus symbol, period
-			"   ++12++   "   -> "12"
-			"   +V5M 3Z8+  " -> "538"
-			"   -3.14159   " -> "-3.14159]"
-			"HelloABC"       -> ""
-			"123-ABC"        -> "123-"
-			*/
-			//return Integer.parseInt(candidateNumStr.replaceAll("[^\\d\\.\\-]",""));
-
-			// remove spaces and +
-			return Integer.parseInt(candidateNumStr.replaceAll("[ \\+]+",""));
-		}
-		catch (NumberFormatException ex) {
+	private Float getFloat(int column) {
+		if (!this._metReqColumnCount) {
 			return null;
 		}
+		float value = this._tokenizer.parseFloat(column);
+		return (Float.isNaN(value) ? null : value);
 	}
 
+	/**
+	 * Former safeIntegerConverter(): the spaces and '+' are ignored, NULL instead of NumberFormatException
+	 * Minor format like " 12", "+12" are accepted, "-3.14", "HelloABC", "123-ABC" are NULL
+	 */
+	private Integer getInteger(int column) {
+		if (!this._metReqColumnCount) {
+			return null;
+		}
+		long value = this._tokenizer.parseInt(column);
+		return (value == CsvLineTokenizer.NOT_AN_INT ? null : (int) value);
+	}
 }
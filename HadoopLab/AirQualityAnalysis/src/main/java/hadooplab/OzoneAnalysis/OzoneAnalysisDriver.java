@@ -1,19 +1,16 @@
 package hadooplab.OzoneAnalysis;
 
-import org.apache.hadoop.conf.Configured;
-import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.*;
-import org.apache.hadoop.mapreduce.Job;
-import org.apache.hadoop.mapreduce.Mapper;
-import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.mapreduce.*;
 import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.SequenceFileRecordReader;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
-import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
 import org.apache.hadoop.util.ToolRunner;
 
 import java.io.IOException;
-import java.net.URI;
 
 /*
 HOW TO TEST:
@@ -42,6 +39,23 @@ Run the Java Program (ssh and run on Hadoop node)
    --Exec on HDFS (StationInfo added to DistribCache via API in MR Code)
    # yarn jar OzoneMR.jar hadooplab.OzoneAnalysis.OzoneAnalysisDriver
 
+   --No MapReduce at all when the input is not bigger than 512 MB (see LocalOzoneEngine)
+   # yarn jar OzoneMR.jar hadooplab.OzoneAnalysis.OzoneAnalysisDriver -D hadooplab.ozone.local.maxbytes=536870912
+
+   --Single job: the reducer of Job 1 makes the ranking (optional: only the 20 most polluted cities)
+   # yarn jar OzoneMR.jar hadooplab.OzoneAnalysis.OzoneAnalysisDriver -D hadooplab.ozone.ranking.singlepass=true -D hadooplab.ozone.ranking.top=20
+
+   --Several years of HLY files, Job 1 with 10 reducers (Job 2 has 1 reducer: the ranking is global)
+   # yarn jar OzoneMR.jar hadooplab.OzoneAnalysis.OzoneAnalysisDriver -D hadooplab.ozone.reducers=10 -D hadooplab.ozone.ranking.output=/user/tri/AirAnalysis/ranking "/user/tri/AirAnalysis/OzoneRawFL/20*O3.hly" /user/tri/AirAnalysis/output
+
+   --Job 2 with 10 reducers too: sampled total order, the part files concatenated are the ranking (see TotalOrderSampling)
+   # yarn jar OzoneMR.jar hadooplab.OzoneAnalysis.OzoneAnalysisDriver -D hadooplab.ozone.reducers=10 -D hadooplab.ozone.totalorder=true
+   # hdfs dfs -cat /user/tri/AirAnalysis/output2/part-r-*
+
+   --Compressed shuffle, Job 1 -> Job 2 as a block-compressed SequenceFile (see OzoneDriverBase for the codecs)
+   # yarn jar OzoneMR.jar hadooplab.OzoneAnalysis.OzoneAnalysisDriver -D hadooplab.ozone.map.output.codec=snappy -D hadooplab.ozone.intermediate.codec=snappy
+   # hdfs dfs -text /user/tri/AirAnalysis/output/part-r-*    (the output of Job 1 decoded)
+
 	--VERIF:
    # hdfs dfs -cat /user/tri/AirAnalysis/output2/part-r-00000
    # rm -f OzoneByCities_JavaMR.txt
@@ -56,22 +70,47 @@ Run the Java Program (ssh and run on Hadoop node)
  * It is IMPOSSIBLE to do that in 1 single MR job, even when using elaborate techniques such as
  * SecondarySort, custom writable class
  *
+ * UNLESS the ranking is made in memory: Job 2 only re-sorts a few hundred Locations, with
+ * hadooplab.ozone.ranking.singlepass=true the single reducer of Job 1 keeps all the (Location, MaxAvgOzone)
+ * and emits them ranked in cleanup() (see RankingReducer), directly in the output directory of Job 2
+ *
+ * With hadooplab.ozone.intermediate.codec, Job 1 writes (Location, MaxAvgOzone) as a SequenceFile compressed by blocks
+ * with this codec (class name or alias, ex. snappy) instead of text: Job 2 reads the Writables as they are
+ * (RankingSequenceFileInputFormat), no text to format and parse again, and less bytes written and read between the jobs
+ *
  * 2014-04-21 - Tri Nguyen
  */
-public class OzoneAnalysisDriver extends Configured implements Tool {
+public class OzoneAnalysisDriver extends OzoneDriverBase {
+	/** Configuration property: true to make the ranking in the reducer of Job 1, no Job 2 */
+	public static final String CONF_SINGLE_PASS = "hadooplab.ozone.ranking.singlepass";
+	/** Configuration property: output directory of the ranking (Job 2 or single pass) */
+	public static final String CONF_RANKING_OUTPUT = "hadooplab.ozone.ranking.output";
+	/** Configuration property: CompressionCodec class or alias of the SequenceFile from Job 1 to Job 2, text when not set */
+	public static final String CONF_INTERMEDIATE_CODEC = "hadooplab.ozone.intermediate.codec";
 	private static final String STATION_HDFS_FILENAME = "/user/tri/AirAnalysis/NAPSStation/Stations_v28012014.csv";
 	//private static final String NAPS_OZONE_INPUTFILE = "/user/tri/MiniOzoneSample.txt"; // path is on HDFS
 	private static final String NAPS_OZONE_INPUTFILE = "/user/tri/AirAnalysis/Ozone2012RawFL/2012O3.hly"; // path is on HDFS
 	private static final String REDUCER_OUTPUT_DIR = "/user/tri/AirAnalysis/output"; // path is on HDFS
 	private static final String REDUCER_OUTPUT_DIR2 = "/user/tri/AirAnalysis/output2"; // path is on HDFS
 
+	public OzoneAnalysisDriver() {
+		super(NAPS_OZONE_INPUTFILE, REDUCER_OUTPUT_DIR, STATION_HDFS_FILENAME);
+	}
+
 	@Override
 	public int run(String[] args) throws Exception {
-		if (args.length != 2) {
-			System.err.printf("Usage: %s [generic options] <input> <output>\n", getClass().getSimpleName());
-			ToolRunner.printGenericCommandUsage(System.err);
+		if (!parseArgs(args)) {
 			return -1;
 		}
+		Path rankingOutputPath = new Path(getConf().get(CONF_RANKING_OUTPUT, REDUCER_OUTPUT_DIR2));
+
+		boolean filtered = configureRecordFilter(); // predicates on the HLY records, see HLYRecordFilter
+
+		// Small input: the local engine makes the report directly, faster than the startup of the job
+		if (LocalOzoneMode.accepts(getConf(), getInputPaths())) {
+			return LocalOzoneMode.run(getConf(), getInputPaths(), getStationFileURI(), rankingOutputPath,
+					LocalOzoneEngine.Report.RANKING);
+		}
 
 		//------------------------------------------------
 		// Job 1:
@@ -80,38 +119,58 @@ public class OzoneAnalysisDriver extends Configured implements Tool {
 		// - Order by Location
 		//------------------------------------------------
 
-		Job job = org.apache.hadoop.mapreduce.Job.getInstance(getConf()); // getConf() comes from inherited parent class Configured
-		job.setJobName("hadooplab.OzoneAnalysis.OzoneAnalysisDriver #1 (GrpBy Location)");
-		job.setJarByClass(getClass());
+		// reducers, split size and output codec of the Configuration (see OzoneDriverBase)
+		Job job = newJob("hadooplab.OzoneAnalysis.OzoneAnalysisDriver #1 (GrpBy Location)");
 
 		// Delete automatically the output dir if its already exists
 		// Equivalent of:
 		// # hdfs dfs -rm -R -skipTrash /user/tri/AirAnalysis/output/
-		Path outputPath = new Path(args[1]); // output directory (contain reducer results)
-		System.out.printf("===^^^ Delete Output Directory: %s ^^^===\n", outputPath.toString());
-		FileSystem fs = FileSystem.get(new URI(outputPath.toString()), getConf());
-		fs.delete(outputPath, true); // true=recursive
-
-		FileInputFormat.addInputPath(job, new Path(args[0])); // input file for mapper
-		FileOutputFormat.setOutputPath(job, outputPath);
+		boolean singlePass = getConf().getBoolean(CONF_SINGLE_PASS, false);
+		Path outputPath = (singlePass ? rankingOutputPath : getOutputPath()); // output directory (contain reducer results)
+		setInput(job); // input files for mapper
+		setOutput(job, outputPath);
+		if (filtered) {
+			job.setInputFormatClass(HLYRecordFilter.FilteringTextInputFormat.class);
+		}
 		job.setMapperClass(LocationMapper.class);
 		job.setCombinerClass(MaxOzoneReducer.class);
-		job.setReducerClass(MaxOzoneReducer.class);
-		job.setOutputKeyClass(Text.class);
-		job.setOutputValueClass(IntWritable.class);
+		if (singlePass) {
+			// 1 reducer sees all the Locations: it can rank them, Job 2 is not needed
+			job.setJobName("hadooplab.OzoneAnalysis.OzoneAnalysisDriver (GrpBy Location + Ranking)");
+			job.setReducerClass(RankingReducer.class);
+			job.setNumReduceTasks(1);
+			job.setMapOutputKeyClass(Text.class);
+			job.setMapOutputValueClass(IntWritable.class);
+			job.setOutputKeyClass(IntWritable.class);
+			job.setOutputValueClass(Text.class);
+		} else {
+			job.setReducerClass(MaxOzoneReducer.class);
+			job.setOutputKeyClass(Text.class);
+			job.setOutputValueClass(IntWritable.class);
+		}
+		Class<? extends CompressionCodec> intermediateCodecClass = (singlePass ? null : getCodecClass(getConf(), CONF_INTERMEDIATE_CODEC));
+		if (intermediateCodecClass != null) {
+			// only read by Job 2: binary, compressed by blocks of records (still splittable), whatever hadooplab.ozone.output.codec
+			job.setOutputFormatClass(SequenceFileOutputFormat.class);
+			FileOutputFormat.setCompressOutput(job, true);
+			FileOutputFormat.setOutputCompressorClass(job, intermediateCodecClass);
+			SequenceFileOutputFormat.setOutputCompressionType(job, SequenceFile.CompressionType.BLOCK);
+		}
 
 		// Send the Station Info to Hadoop Distributed Cache via API
 		// equivalence of cmdline option -file hdfsFilename. Example:
 		// # yarn jar OzoneMR.jar CompositeKeyDriver -files /root/HadoopExo/Hive/Data/Stations_v28012014.csv
-		java.net.URI stationFileURI = java.net.URI.create(STATION_HDFS_FILENAME);
-		job.addCacheFile(stationFileURI);
+		job.addCacheFile(getStationCacheURI());
 
 		//Create a symlink to make the file available in the task working dir
 		//Ex: the file specified by the URI hdfs://namenode/foo/bar#MyFile is symlinked as MyFile in the task’s working directory
 		//NOTE: Files added to the distributed cache using GenericOptionsParser are automatically symlinked
 		//job.createSymlink(); // no needed in Hadoop 2.x
 
-		job.waitForCompletion(true);
+		boolean success = job.waitForCompletion(true);
+		if (singlePass || !success) {
+			return success ? 0 : 1;
+		}
 
 		//------------------------------------------------
 		// Job 2: (re-emit Job1 output with a different sorting)
@@ -120,19 +179,32 @@ public class OzoneAnalysisDriver extends Configured implements Tool {
 		//   NOTE: the reducer makes no calculation, it re-emit exactly the map input
 		//------------------------------------------------
 
-		Path outputPath2 = new Path(REDUCER_OUTPUT_DIR2); // output directory (contain reducer results)
-		fs.delete(outputPath2, true); // true=recursive
-
-		Job job2 = org.apache.hadoop.mapreduce.Job.getInstance(getConf()); // getConf() comes from inherited parent class Configured
-		FileInputFormat.addInputPath(job2, outputPath);
-		FileOutputFormat.setOutputPath(job2, outputPath2);
-		job2.setJobName("hadooplab.OzoneAnalysis.OzoneAnalysisDriver #2 (Order by MaxAvgOzone)");
-		job2.setJarByClass(getClass());
-		job2.setMapperClass(IdentityMapper.class);
+		Job job2 = newJob("hadooplab.OzoneAnalysis.OzoneAnalysisDriver #2 (Order by MaxAvgOzone)");
+		FileInputFormat.addInputPath(job2, outputPath); // all the part files of Job 1, compressed or not
+		setOutput(job2, rankingOutputPath); // output directory (contain reducer results)
+		if (intermediateCodecClass != null) {
+			// the records are already (MaxAvgOzone, Location): the Mapper of Hadoop re-emits them as they are
+			job2.setInputFormatClass(RankingSequenceFileInputFormat.class);
+			job2.setMapperClass(Mapper.class);
+		} else {
+			job2.setMapperClass(IdentityMapper.class);
+		}
 		job2.setReducerClass(IdentityReducer.class);
 		job2.setOutputKeyClass(IntWritable.class);
 		job2.setOutputValueClass(Text.class);
 		job2.setSortComparatorClass(DescendingIntComparator.class);
+		if (TotalOrderSampling.isEnabled(getConf())) {
+			// hadooplab.ozone.reducers reducers, each one gets a contiguous range of MaxAvgOzone (descending):
+			// part-r-00000, part-r-00001 ... concatenated are the ranking
+			Path partitionFile = new Path(outputPath, "_ranking_partitions");
+			if (intermediateCodecClass != null) {
+				TotalOrderSampling.configure(job2, new RankingSequenceFileInputFormat(), partitionFile);
+			} else {
+				TotalOrderSampling.configure(job2, new RankingKeyExtractor(), partitionFile);
+			}
+		} else {
+			job2.setNumReduceTasks(1); // the ranking is global: 1 sorted output file, whatever hadooplab.ozone.reducers
+		}
 
 		return job2.waitForCompletion(true) ? 0 : 1;
 	}
@@ -140,15 +212,81 @@ public class OzoneAnalysisDriver extends Configured implements Tool {
 	/**
 	 * Start Driver using Tool Runner allowing to pass args[] and custom Hadoop config and/or properties at the command line
 	 *
-	 * @param args arg1: HDFS path of the Ozone HLY File, arg2: HDFS path of directory where the Reducer will save output file
+	 * @param args arg1: HDFS path(s) of the Ozone HLY Files, arg2: HDFS path of directory where the Reducer will save output file
+	 *             (hadooplab.ozone.input / hadooplab.ozone.output or the default paths when not given, see OzoneDriverBase)
+	 *             The ranking is written in hadooplab.ozone.ranking.output (default /user/tri/AirAnalysis/output2)
 	 */
 	public static void main(String[] args) throws Exception {
-		int exitCode = ToolRunner.run(new OzoneAnalysisDriver(), new String[] {NAPS_OZONE_INPUTFILE, REDUCER_OUTPUT_DIR});
+		int exitCode = ToolRunner.run(new OzoneAnalysisDriver(), args);
 		System.exit(exitCode);
 	}
 
 
+	/**
+	 * The map output key of Job 2 (MaxAvgOzone) of a line of Job 1 output, decoded by IdentityMapper.parse()
+	 */
+	private static class RankingKeyExtractor implements TotalOrderSampling.KeyExtractor<IntWritable> {
+		private final Text _location = new Text();
+
+		@Override
+		public boolean extract(Text line, IntWritable key) {
+			try {
+				IdentityMapper.parse(line, key, this._location);
+				return true;
+			} catch (RuntimeException ex) {
+				return false; // skipped by IdentityMapper as well
+			}
+		}
+	}
+
+
+	/**
+	 * Input of Job 2 with hadooplab.ozone.intermediate.codec: the SequenceFile (Location, MaxAvgOzone) of Job 1
+	 * read as (MaxAvgOzone, Location), the map output of Job 2. The splits are the ones of a SequenceFile
+	 * (on its sync markers), the blocks are decompressed by SequenceFile.Reader
+	 */
+	public static class RankingSequenceFileInputFormat extends FileInputFormat<IntWritable, Text> {
+		@Override
+		public RecordReader<IntWritable, Text> createRecordReader(InputSplit split, TaskAttemptContext context) {
+			final SequenceFileRecordReader<Text, IntWritable> sequenceReader = new SequenceFileRecordReader<Text, IntWritable>();
+			return new RecordReader<IntWritable, Text>() {
+				@Override
+				public void initialize(InputSplit split, TaskAttemptContext context) throws IOException, InterruptedException {
+					sequenceReader.initialize(split, context);
+				}
+
+				@Override
+				public boolean nextKeyValue() throws IOException, InterruptedException {
+					return sequenceReader.nextKeyValue();
+				}
+
+				@Override
+				public IntWritable getCurrentKey() {
+					return sequenceReader.getCurrentValue();
+				}
+
+				@Override
+				public Text getCurrentValue() {
+					return sequenceReader.getCurrentKey();
+				}
+
+				@Override
+				public float getProgress() throws IOException {
+					return sequenceReader.getProgress();
+				}
+
+				@Override
+				public void close() throws IOException {
+					sequenceReader.close();
+				}
+			};
+		}
+	}
+
+
 	public static class MaxOzoneReducer extends Reducer<Text, IntWritable, Text, IntWritable> {
+		private IntWritable _maxValue = new IntWritable(); // re-used for every key
+
 		/**
 		 * Simple Reducer computing the max value
 		 *
@@ -163,7 +301,46 @@ public class OzoneAnalysisDriver extends Configured implements Tool {
 			for (IntWritable value : ozoneValues) {
 				maxValue = Math.max(maxValue, value.get());
 			}
-			context.write(locationName, new IntWritable(maxValue));
+			this._maxValue.set(maxValue);
+			context.write(locationName, this._maxValue);
+		}
+	}
+
+	/**
+	 * Reducer of the single pass mode (hadooplab.ozone.ranking.singlepass=true), must be the ONLY reducer of the job
+	 * Input : (LocationName, [avgOzoneValue or max of the combiner])
+	 * Output: (MaxAvgOzone, LocationName) ordered by MaxAvgOzone descending, same as Job 2
+	 *
+	 * reduce() computes the max of each Location and keeps it in memory, nothing is written before cleanup()
+	 */
+	public static class RankingReducer extends Reducer<Text, IntWritable, IntWritable, Text> {
+		private OzoneRanking _ranking;
+
+		@Override
+		protected void setup(Context context) throws IOException, InterruptedException {
+			this._ranking = new OzoneRanking(context.getConfiguration().getInt(OzoneRanking.CONF_TOP_N, 0));
+		}
+
+		@Override
+		public void reduce(Text locationName, Iterable<IntWritable> ozoneValues, Context context)
+				throws IOException, InterruptedException {
+
+			int maxValue = Integer.MIN_VALUE;
+			for (IntWritable value : ozoneValues) {
+				maxValue = Math.max(maxValue, value.get());
+			}
+			this._ranking.add(locationName.toString(), maxValue);
+		}
+
+		@Override
+		protected void cleanup(Context context) throws IOException, InterruptedException {
+			IntWritable maxAvgOzone = new IntWritable();
+			Text location = new Text();
+			for (OzoneRanking.Entry entry : this._ranking.getRanking()) {
+				maxAvgOzone.set(entry.getMaxOzone());
+				location.set(entry.getLocation());
+				context.write(maxAvgOzone, location);
+			}
 		}
 	}
 
@@ -175,6 +352,8 @@ public class OzoneAnalysisDriver extends Configured implements Tool {
 	 * 2014-04-20 - Tri Nguyen
 	 */
 	public static class IdentityMapper extends Mapper<LongWritable, Text, IntWritable, Text> {
+		private IntWritable _maxAvgOzone = new IntWritable(); // re-used for every output record
+		private Text _location = new Text(); // re-used for every output record
 
 		@Override
 		public void map(LongWritable key, Text value, Context context)
@@ -185,9 +364,8 @@ public class OzoneAnalysisDriver extends Configured implements Tool {
 				NUNAVUT	ALERT	32
 				ONTARIO	ALGOMA	82
 				 */
-				String[] elems = value.toString().split("\\t", -1); // KEEP empty string between delimiters
-
-				context.write(new IntWritable(Integer.parseInt(elems[2])), new Text(String.format("%s\t%s", elems[0], elems[1])));
+				parse(value, this._maxAvgOzone, this._location);
+				context.write(this._maxAvgOzone, this._location);
 			}
 			catch (Exception ex) {
 				// Display the error msg in the Console as a Map Status Msg, which will be displayed
@@ -204,6 +382,40 @@ public class OzoneAnalysisDriver extends Configured implements Tool {
 			}
 
 		}
+
+		/**
+		 * Fields found on the bytes of the Text, same as value.toString().split("\\t", -1)
+		 * key = 3rd field, value = "1st field\t2nd field"
+		 * Also used to sample the keys of Job 2 (see TotalOrderSampling)
+		 *
+		 * @throws ArrayIndexOutOfBoundsException when the line has less than 3 fields (as the former split())
+		 * @throws NumberFormatException when the 3rd field is not a number
+		 */
+		static void parse(Text value, IntWritable maxAvgOzone, Text location) {
+			byte[] bytes = value.getBytes();
+			int length = value.getLength();
+			int tab1 = indexOfTab(bytes, 0, length);
+			int tab2 = (tab1 < 0 ? -1 : indexOfTab(bytes, tab1 + 1, length));
+			if (tab2 < 0) {
+				throw new ArrayIndexOutOfBoundsException(String.format("Less than 3 fields in: %s", value));
+			}
+			int tab3 = indexOfTab(bytes, tab2 + 1, length);
+
+			maxAvgOzone.set(DecimalText.parse(bytes, tab2 + 1, tab3 < 0 ? length : tab3));
+			location.set(bytes, 0, tab2);
+		}
+
+		/**
+		 * @return the position of the 1st tab in [from, end), -1 if there is none
+		 */
+		private static int indexOfTab(byte[] bytes, int from, int end) {
+			for (int pos = from; pos < end; pos++) {
+				if (bytes[pos] == '\t') {
+					return pos;
+				}
+			}
+			return -1;
+		}
 	}
 
 
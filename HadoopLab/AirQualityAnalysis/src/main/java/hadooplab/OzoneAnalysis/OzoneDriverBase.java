@@ -0,0 +1,281 @@
+package hadooplab.OzoneAnalysis;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.MRJobConfig;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Common part of the drivers: the job parameters come from the command line / Configuration
+ * instead of the hard-coded HDFS paths, the constants of each driver are only the defaults
+ *
+ *	$ yarn jar OzoneMR.jar hadooplab.OzoneAnalysis.LocationDriver [generic options] [<input>[,<input>...] <output>]
+ *
+ * Input / output, by priority:
+ * 1. the 2 arguments of the command line
+ * 2. -D hadooplab.ozone.input=... -D hadooplab.ozone.output=...
+ * 3. the default paths given by the driver
+ * The input is a comma separated list of files, directories or globs (as FileInputFormat.addInputPaths), ex. a decade of files:
+ *	/user/tri/AirAnalysis/OzoneRawFL/20{0[3-9],1[0-2]}O3.hly  or  /user/tri/AirAnalysis/OzoneRawFL/20*O3.hly
+ *
+ * Job tuning, not changed when not set (= the Hadoop defaults, as before):
+ * - hadooplab.ozone.station.file: the NAPS Station file sent to the Distributed Cache
+ * - hadooplab.ozone.station.index=true: its binary snapshot is sent instead, compiled by the driver when the Station file
+ *   changed (see NAPSStationIndex), into hadooplab.ozone.station.index.file (default: the Station file + ".idx")
+ * - hadooplab.ozone.reducers: number of reduce tasks
+ * - hadooplab.ozone.split.minsize / hadooplab.ozone.split.maxsize: bytes per input split (more or less map tasks)
+ * - hadooplab.ozone.output.codec: CompressionCodec of the job output, ex. org.apache.hadoop.io.compress.GzipCodec
+ * - hadooplab.ozone.map.output.codec: CompressionCodec of the map output (shuffle), ex. snappy
+ * A codec is given by its class name or by the alias of CompressionCodecFactory: deflate, gzip, bzip2, snappy, lz4
+ * (snappy and lz4 need the Hadoop native library on the nodes, deflate runs in pure Java if it is missing,
+ * gzip too except in a SequenceFile)
+ *
+ * Each job of a driver gets these settings, a driver with chained jobs can use its own codec for the data
+ * passed from one job to the next (see OzoneAnalysisDriver, hadooplab.ozone.intermediate.codec)
+ *
+ * Predicates on the HLY records (hadooplab.ozone.filter.*, see HLYRecordFilter) are resolved by configureRecordFilter()
+ */
+public abstract class OzoneDriverBase extends Configured implements Tool {
+	/** Configuration property: input files/directories/globs, comma separated */
+	public static final String CONF_INPUT = "hadooplab.ozone.input";
+	/** Configuration property: output directory of the job */
+	public static final String CONF_OUTPUT = "hadooplab.ozone.output";
+	/** Configuration property: URI of the NAPS Station file */
+	public static final String CONF_STATION_FILE = "hadooplab.ozone.station.file";
+	/** Configuration property: true to send the binary snapshot of the Station file to the tasks */
+	public static final String CONF_STATION_INDEX = "hadooplab.ozone.station.index";
+	/** Configuration property: URI of the binary snapshot of the Station file */
+	public static final String CONF_STATION_INDEX_FILE = "hadooplab.ozone.station.index.file";
+	/** Configuration property: number of reduce tasks */
+	public static final String CONF_REDUCERS = "hadooplab.ozone.reducers";
+	/** Configuration property: min size of an input split in bytes */
+	public static final String CONF_SPLIT_MINSIZE = "hadooplab.ozone.split.minsize";
+	/** Configuration property: max size of an input split in bytes */
+	public static final String CONF_SPLIT_MAXSIZE = "hadooplab.ozone.split.maxsize";
+	/** Configuration property: CompressionCodec class of the job output, no compression when not set */
+	public static final String CONF_OUTPUT_CODEC = "hadooplab.ozone.output.codec";
+	/** Configuration property: CompressionCodec class or alias of the map output, the shuffle is not compressed when not set */
+	public static final String CONF_MAP_OUTPUT_CODEC = "hadooplab.ozone.map.output.codec";
+
+	private final String _defaultInput;
+	private final String _defaultOutput;
+	private final String _defaultStationFile;
+	private String _input;
+	private Path _outputPath;
+
+	/**
+	 * @param defaultStationFile NULL when the driver does not use the Station file
+	 */
+	protected OzoneDriverBase(String defaultInput, String defaultOutput, String defaultStationFile) {
+		this._defaultInput = defaultInput;
+		this._defaultOutput = defaultOutput;
+		this._defaultStationFile = defaultStationFile;
+	}
+
+	/**
+	 * To call first in run(): resolve the input / output from the arguments, then the Configuration, then the defaults
+	 *
+	 * @param args the arguments left by ToolRunner after the generic options: nothing or <input> <output>
+	 * @return false (after printing the usage) when the arguments are wrong
+	 */
+	protected boolean parseArgs(String[] args) {
+		if (args.length != 0 && args.length != 2) {
+			System.err.printf("Usage: %s [generic options] [<input>[,<input>...] <output>]\n", getClass().getSimpleName());
+			ToolRunner.printGenericCommandUsage(System.err);
+			return false;
+		}
+		Configuration conf = getConf();
+		this._input = (args.length == 2 ? args[0] : conf.get(CONF_INPUT, this._defaultInput));
+		this._outputPath = new Path(args.length == 2 ? args[1] : conf.get(CONF_OUTPUT, this._defaultOutput));
+		return true;
+	}
+
+	/**
+	 * @return the input as given: comma separated, may contain globs
+	 */
+	protected String getInput() {
+		return this._input;
+	}
+
+	/**
+	 * @return the input paths (globs not expanded)
+	 */
+	protected Path[] getInputPaths() {
+		return splitInput(this._input);
+	}
+
+	protected Path getOutputPath() {
+		return this._outputPath;
+	}
+
+	protected URI getStationFileURI() {
+		return URI.create(getConf().get(CONF_STATION_FILE, this._defaultStationFile));
+	}
+
+	/**
+	 * The Station file to add to the Distributed Cache: the CSV, or with hadooplab.ozone.station.index=true its binary
+	 * snapshot, compiled here once for all the tasks (again only when the CSV changed)
+	 * The tasks read both with NAPSStationLookup.load()
+	 */
+	protected URI getStationCacheURI() throws IOException {
+		URI stationFileURI = getStationFileURI();
+		Configuration conf = getConf();
+		if (!conf.getBoolean(CONF_STATION_INDEX, false)) {
+			return stationFileURI;
+		}
+		Path stationPath = new Path(stationFileURI);
+		String indexFile = conf.get(CONF_STATION_INDEX_FILE);
+		Path indexPath = (indexFile != null ? new Path(indexFile)
+				: new Path(stationPath.getParent(), stationPath.getName() + NAPSStationIndex.FILE_EXTENSION));
+		FileSystem fs = stationPath.getFileSystem(conf);
+		if (NAPSStationIndex.compileIfStale(fs, stationPath, indexPath)) {
+			System.out.printf("===^^^ Station index compiled: %s ^^^===\n", indexPath.toString());
+		}
+		return indexPath.toUri();
+	}
+
+	/**
+	 * A new Job with the tuning of the Configuration: reducers, split size, map output and output compression
+	 * The caller can still override the number of reducers (ex. 1 reducer for a global ranking)
+	 */
+	protected Job newJob(String jobName) throws IOException {
+		Job job = Job.getInstance(getConf()); // getConf() comes from inherited parent class Configured
+		job.setJobName(jobName);
+		job.setJarByClass(getClass());
+
+		Configuration conf = getConf();
+		int reducers = conf.getInt(CONF_REDUCERS, 0);
+		if (reducers > 0) {
+			job.setNumReduceTasks(reducers);
+		}
+		long minSplitSize = conf.getLong(CONF_SPLIT_MINSIZE, 0L);
+		if (minSplitSize > 0) {
+			FileInputFormat.setMinInputSplitSize(job, minSplitSize);
+		}
+		long maxSplitSize = conf.getLong(CONF_SPLIT_MAXSIZE, 0L);
+		if (maxSplitSize > 0) {
+			FileInputFormat.setMaxInputSplitSize(job, maxSplitSize);
+		}
+		Class<? extends CompressionCodec> codecClass = getOutputCodecClass(conf);
+		if (codecClass != null) {
+			FileOutputFormat.setCompressOutput(job, true);
+			FileOutputFormat.setOutputCompressorClass(job, codecClass);
+		}
+		// less bytes spilled, shuffled and merged: the map output is compressed by blocks, not visible by the reducer
+		Class<? extends CompressionCodec> mapCodecClass = getCodecClass(conf, CONF_MAP_OUTPUT_CODEC);
+		if (mapCodecClass != null) {
+			job.getConfiguration().setBoolean(MRJobConfig.MAP_OUTPUT_COMPRESS, true);
+			job.getConfiguration().setClass(MRJobConfig.MAP_OUTPUT_COMPRESS_CODEC, mapCodecClass, CompressionCodec.class);
+		}
+		return job;
+	}
+
+	/**
+	 * Resolve the predicates of HLYRecordFilter (the provinces are looked up in the Station file),
+	 * to be called before newJob(): the Job copies the Configuration
+	 *
+	 * @return true when the HLY records are filtered
+	 */
+	protected boolean configureRecordFilter() throws IOException {
+		if (!HLYRecordFilter.isEnabled(getConf())) {
+			return false;
+		}
+		if (getConf().get(HLYRecordFilter.CONF_PROVINCES) != null) {
+			if (getConf().get(CONF_STATION_FILE, this._defaultStationFile) == null) {
+				// a driver without Station file (SimpleDriver) cannot resolve the provinces by itself
+				throw new IllegalArgumentException(String.format("%s needs the Station file: set %s", HLYRecordFilter.CONF_PROVINCES, CONF_STATION_FILE));
+			}
+			HLYRecordFilter.configure(getConf(), getStationFileURI());
+		}
+		return true;
+	}
+
+	/**
+	 * Add the input of the command line / Configuration to the job
+	 */
+	protected void setInput(Job job) throws IOException {
+		FileInputFormat.addInputPaths(job, this._input); // input files for mapper
+	}
+
+	/**
+	 * Delete automatically the output dir if it already exists, then set it as the job output
+	 * Equivalent of:
+	 * # hdfs dfs -rm -R -skipTrash /user/tri/AirAnalysis/output/
+	 */
+	protected void setOutput(Job job, Path outputPath) throws IOException {
+		deleteOutput(outputPath);
+		FileOutputFormat.setOutputPath(job, outputPath); // output directory (contain reducer results)
+	}
+
+	protected void deleteOutput(Path outputPath) throws IOException {
+		System.out.printf("===^^^ Delete Output Directory: %s ^^^===\n", outputPath.toString());
+		FileSystem fs = outputPath.getFileSystem(getConf());
+		fs.delete(outputPath, true); // true=recursive
+	}
+
+	/**
+	 * Split on the commas which are not inside a glob {a,b}, same as FileInputFormat.addInputPaths()
+	 */
+	static Path[] splitInput(String input) {
+		List<Path> paths = new ArrayList<Path>();
+		int braceDepth = 0;
+		int start = 0;
+		for (int pos = 0; pos < input.length(); pos++) {
+			char ch = input.charAt(pos);
+			if (ch == '{') {
+				braceDepth++;
+			} else if (ch == '}' && braceDepth > 0) {
+				braceDepth--;
+			} else if (ch == ',' && braceDepth == 0) {
+				paths.add(new Path(input.substring(start, pos)));
+				start = pos + 1;
+			}
+		}
+		paths.add(new Path(input.substring(start)));
+		return paths.toArray(new Path[paths.size()]);
+	}
+
+	/**
+	 * @return the class set in hadooplab.ozone.output.codec, NULL when the output is not compressed
+	 */
+	static Class<? extends CompressionCodec> getOutputCodecClass(Configuration conf) {
+		return getCodecClass(conf, CONF_OUTPUT_CODEC);
+	}
+
+	/**
+	 * @param key property whose value is the class name of a CompressionCodec, or its alias (ex. snappy, deflate)
+	 * @return NULL when the property is not set
+	 * @throws IllegalArgumentException when the codec is unknown
+	 */
+	static Class<? extends CompressionCodec> getCodecClass(Configuration conf, String key) {
+		String name = conf.getTrimmed(key);
+		if (name == null || name.isEmpty()) {
+			return null;
+		}
+		// the codecs of io.compression.codecs and of the classpath, by class name, simple name or alias
+		Class<? extends CompressionCodec> codecClass = new CompressionCodecFactory(conf).getCodecClassByName(name);
+		if (codecClass == null) {
+			try {
+				codecClass = conf.getClassByName(name).asSubclass(CompressionCodec.class);
+			} catch (ClassNotFoundException ex) {
+				throw new IllegalArgumentException(String.format("Unknown compression codec in %s: %s", key, name), ex);
+			} catch (ClassCastException ex) {
+				throw new IllegalArgumentException(String.format("Not a compression codec in %s: %s", key, name), ex);
+			}
+		}
+		return codecClass;
+	}
+}
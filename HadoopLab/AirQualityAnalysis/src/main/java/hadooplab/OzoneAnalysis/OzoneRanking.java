@@ -0,0 +1,97 @@
+package hadooplab.OzoneAnalysis;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * In-memory ranking of the Locations by MaxAvgOzone descending: the report "Most polluted cities"
+ * Replaces the second MapReduce job of OzoneAnalysisDriver which only re-sorts a few hundred rows
+ *
+ * - topN = 0: full ranking, memory = 1 entry per Location (a few hundred)
+ * - topN > 0: bounded, a min-heap keeps only the N best entries seen so far
+ *
+ * Ties (same MaxAvgOzone) are ranked by Location ascending, so the report is deterministic
+ */
+public class OzoneRanking {
+	/** Configuration property: number of Locations kept in the report, 0 = all */
+	public static final String CONF_TOP_N = "hadooplab.ozone.ranking.top";
+
+	/** MaxAvgOzone descending, then Location ascending */
+	public static final Comparator<Entry> RANK_ORDER = new Comparator<Entry>() {
+		@Override
+		public int compare(Entry e1, Entry e2) {
+			if (e1._maxOzone != e2._maxOzone) {
+				return (e1._maxOzone > e2._maxOzone ? -1 : 1);
+			}
+			return e1._location.compareTo(e2._location);
+		}
+	};
+
+	public static final class Entry {
+		private final String _location;
+		private final int _maxOzone;
+
+		public Entry(String location, int maxOzone) {
+			this._location = location;
+			this._maxOzone = maxOzone;
+		}
+
+		public String getLocation() {
+			return this._location;
+		}
+
+		public int getMaxOzone() {
+			return this._maxOzone;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%d\t%s", this._maxOzone, this._location); // same line as the report
+		}
+	}
+
+	private final int _topN;
+	private final PriorityQueue<Entry> _entries; // head = the worst ranked entry
+
+	/**
+	 * @param topN number of Locations to keep, 0 = all
+	 */
+	public OzoneRanking(int topN) {
+		if (topN < 0) {
+			throw new IllegalArgumentException(String.format("topN must be >= 0: %d", topN));
+		}
+		this._topN = topN;
+		this._entries = new PriorityQueue<Entry>(topN > 0 ? topN + 1 : 256, Collections.reverseOrder(RANK_ORDER));
+	}
+
+	/**
+	 * @param location "Province\tCity", one call per Location
+	 */
+	public void add(String location, int maxOzone) {
+		if (this._topN > 0 && this._entries.size() == this._topN) {
+			Entry worst = this._entries.peek();
+			boolean better = (maxOzone != worst._maxOzone ? maxOzone > worst._maxOzone : location.compareTo(worst._location) < 0);
+			if (!better) {
+				return; // not better than the worst kept: the heap is unchanged
+			}
+			this._entries.poll();
+		}
+		this._entries.add(new Entry(location, maxOzone));
+	}
+
+	public int size() {
+		return this._entries.size();
+	}
+
+	/**
+	 * @return the entries, best ranked first
+	 */
+	public List<Entry> getRanking() {
+		List<Entry> ranking = new ArrayList<Entry>(this._entries);
+		Collections.sort(ranking, RANK_ORDER);
+		return ranking;
+	}
+}
@@ -0,0 +1,107 @@
+package hadooplab.OzoneAnalysis;
+
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.util.ToolRunner;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+
+/*
+HOW TO TEST:
+
+Data Preparation: all the HLY files of a year in 1 directory (see LocationDriver for the Station file)
+   $ scp ~/Documents/IntelliJProjects/BigDataLAB/13_AirQualityAnalysis/src/main/resources/NAPS-pollutant-codesV2014.csv root@hdpsbhv:/root/HadoopExo/
+   # hdfs dfs -mkdir -p /user/tri/AirAnalysis/NAPSPollutant/
+   # hdfs dfs -copyFromLocal -f /root/HadoopExo/NAPS-pollutant-codesV2014.csv /user/tri/AirAnalysis/NAPSPollutant/
+   # hdfs dfs -mkdir -p /user/tri/AirAnalysis/2012RawFL/
+   # hdfs dfs -copyFromLocal -f /root/HadoopExo/2012O3.hly /root/HadoopExo/2012NO2.hly /root/HadoopExo/2012SO2.hly /root/HadoopExo/2012PM25.hly /user/tri/AirAnalysis/2012RawFL/
+
+Run the Java Program (ssh and run on Hadoop node)
+   # yarn jar OzoneMR.jar hadooplab.OzoneAnalysis.PollutantLocationDriver
+
+   --A decade of all the pollutants in 1 scan
+   # yarn jar OzoneMR.jar hadooplab.OzoneAnalysis.PollutantLocationDriver -D hadooplab.ozone.reducers=10 "/user/tri/AirAnalysis/20*RawFL" /user/tri/AirAnalysis/outputPollutant
+
+	--VERIF:
+   # hdfs dfs -cat /user/tri/AirAnalysis/outputPollutant/part-r-00000
+*/
+
+/**
+ * All the pollutants in 1 job: the HLY files of O3, NO2, SO2, PM2.5 ... are read in a single scan
+ * instead of 1 job per pollutant file, the pollutant is part of the key (see PollutantLocationMapper)
+ * The end results is an output file (Formula, Unit, Location, Max of the day averages) sorted by PollutantCode then Location
+ *
+ * Example:
+ CO	ppm	ONTARIO	TORONTO	1.2
+ NO2	ppb	ONTARIO	TORONTO	48
+ O3	ppb	ONTARIO	TORONTO	25
+ *
+ * Both the Station file and the pollutant codes file are sent to the Distributed Cache,
+ * linked in the working folder of the tasks under fixed names (URI fragment)
+ */
+public class PollutantLocationDriver extends OzoneDriverBase {
+	/** Configuration property: URI of NAPS-pollutant-codesV2014.csv */
+	public static final String CONF_POLLUTANT_FILE = "hadooplab.ozone.pollutant.file";
+	static final String STATION_CACHE_LINK = "naps-stations.csv";
+	static final String POLLUTANT_CACHE_LINK = "naps-pollutant-codes.csv";
+
+	private static final String STATION_HDFS_FILENAME = "/user/tri/AirAnalysis/NAPSStation/Stations_v28012014.csv";
+	private static final String POLLUTANT_HDFS_FILENAME = "/user/tri/AirAnalysis/NAPSPollutant/NAPS-pollutant-codesV2014.csv";
+	private static final String NAPS_HLY_INPUTDIR = "/user/tri/AirAnalysis/2012RawFL"; // all the .hly files of 2012, path is on HDFS
+	private static final String REDUCER_OUTPUT_DIR = "/user/tri/AirAnalysis/outputPollutant"; // path is on HDFS
+
+	public PollutantLocationDriver() {
+		super(NAPS_HLY_INPUTDIR, REDUCER_OUTPUT_DIR, STATION_HDFS_FILENAME);
+	}
+
+	@Override
+	public int run(String[] args) throws Exception {
+		if (!parseArgs(args)) {
+			return -1;
+		}
+
+		boolean filtered = configureRecordFilter(); // same Stations / dates for all the pollutants, see HLYRecordFilter
+
+		// reducers, split size and output codec of the Configuration (see OzoneDriverBase)
+		Job job = newJob("hadooplab.OzoneAnalysis.PollutantLocationDriver");
+		setInput(job); // input files for mapper: the HLY files of all the pollutants
+		// Delete automatically the output dir if its already exists
+		setOutput(job, getOutputPath()); // output directory (contain reducer results)
+		if (filtered) {
+			job.setInputFormatClass(HLYRecordFilter.FilteringTextInputFormat.class);
+		}
+
+		job.setMapperClass(PollutantLocationMapper.class);
+		job.setMapOutputKeyClass(Text.class);
+		job.setMapOutputValueClass(IntWritable.class);
+		// max() is associative and the key is the same in and out: SimpleMaxAvgReducer is the Combiner
+		job.setCombinerClass(SimpleMaxAvgReducer.class);
+		job.setReducerClass(PollutantMaxReducer.class);
+		job.setOutputKeyClass(Text.class);
+		job.setOutputValueClass(Text.class);
+
+		// the fragment (#name) is the name of the link in the working folder of the task
+		job.addCacheFile(withLinkName(getStationCacheURI(), STATION_CACHE_LINK));
+		job.addCacheFile(withLinkName(URI.create(getConf().get(CONF_POLLUTANT_FILE, POLLUTANT_HDFS_FILENAME)), POLLUTANT_CACHE_LINK));
+
+		return job.waitForCompletion(true) ? 0 : 1;
+	}
+
+	/**
+	 * @return the URI with linkName as fragment (replacing the fragment given in the Configuration, if any)
+	 */
+	private static URI withLinkName(URI fileURI, String linkName) throws URISyntaxException {
+		return new URI(fileURI.getScheme(), fileURI.getSchemeSpecificPart(), linkName);
+	}
+
+	/**
+	 * @param args arg1: HDFS path(s) of the HLY Files of any pollutant, arg2: HDFS path of directory where the Reducer will save output file
+	 *             (hadooplab.ozone.input / hadooplab.ozone.output or the default paths when not given, see OzoneDriverBase)
+	 */
+	public static void main(String[] args) throws Exception {
+		int exitCode = ToolRunner.run(new PollutantLocationDriver(), args);
+		System.exit(exitCode);
+	}
+}
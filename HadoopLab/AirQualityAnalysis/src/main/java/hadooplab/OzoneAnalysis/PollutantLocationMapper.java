@@ -0,0 +1,153 @@
+package hadooplab.OzoneAnalysis;
+
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Mapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.EnumSet;
+
+/**
+ * Same as LocationMapper for the HLY files of all the pollutants at once (O3, NO2, SO2, PM2.5 ...):
+ * outputing ("PollutantCode\tProvince\tCity", DayAverage)
+ *
+ * The pollutant code comes from the first 3 columns of every HLY record, it is written with its 3 digits
+ * so that the keys are sorted by pollutant then Location. Ex: "007\tONTARIO\tTORONTO"
+ * PollutantMaxReducer replaces the code by the Formula and the Unit of NAPSPollutantCodes
+ *
+ * The Station file is read from the Distributed Cache, under the link name given by PollutantLocationDriver
+ *
+ * + Optional in-mapper combining (hadooplab.ozone.inmapper.combine=true, see InMapperMaxCombiner)
+ *   the (Pollutant, Location) pair is packed in the int key of the combiner:
+ *   bits 21..30 = PollutantCode, bit 20 = Station without Location, bits 0..19 = LocationID or StationID
+ */
+public class PollutantLocationMapper extends Mapper<LongWritable, Text, Text, IntWritable> {
+	private static final int CODE_SHIFT = 21;
+	private static final int NO_LOCATION_FLAG = 1 << 20; // StationIDs are 6 digits: < 2^20
+	private static final int ID_MASK = NO_LOCATION_FLAG - 1;
+
+	private HLYRecordParser _hlyParser = new HLYRecordParser();
+	private NAPSStationLookup _stationLookup;
+	private Text _pollutantLocationKey = new Text(); // re-used for every output record
+	private IntWritable _measureValue = new IntWritable(); // re-used for every output record
+	private byte[] _digits = new byte[DecimalText.MAX_INT_DIGITS];
+	private InMapperMaxCombiner _combiner; // null when the in-mapper combining is disabled
+
+	enum NAPS_HLYRecordQuality {
+		INVALID, // record too short, unreadable or contained corrupted data
+		MissingDayAverage, // -999 as average of the day
+		MissingLocation, // cannot resolve the LocationName via the StationID
+		UnknownPollutant // pollutant code which is not 0..999
+	}
+
+	@Override
+	protected void setup(Context context) throws IOException, InterruptedException {
+		this._hlyParser.setProjection(EnumSet.of(HLYRecordParser.Field.POLLUTANT_CODE, HLYRecordParser.Field.STATION_ID, HLYRecordParser.Field.DAY_STATS));
+		// early reject: a record of an unknown pollutant is not decoded beyond its first 3 chars
+		this._hlyParser.setKeyFilter(new HLYRecordParser.KeyFilter() {
+			@Override
+			public boolean accept(int pollutantCode, int stationID) {
+				return (pollutantCode >= 0 && pollutantCode <= NAPSPollutantCodes.MAX_CODE);
+			}
+		});
+		if (context.getConfiguration().getBoolean(InMapperMaxCombiner.CONF_ENABLED, false)) {
+			_combiner = new InMapperMaxCombiner(context.getConfiguration().getInt(InMapperMaxCombiner.CONF_MAX_ENTRIES, InMapperMaxCombiner.DEFAULT_MAX_ENTRIES));
+		}
+		// the Distributed Cache links the file in the working folder of the task under the name of the URI fragment
+		_stationLookup = NAPSStationLookup.load(context.getConfiguration(), new File(PollutantLocationDriver.STATION_CACHE_LINK));
+	}
+
+	@Override
+	public void map(LongWritable key, Text value, Context context)
+			throws IOException, InterruptedException {
+
+		try {
+			this._hlyParser.parse(value.getBytes(), 0, value.getLength()); // no String decoding of the Text bytes
+
+			if (this._hlyParser.isRejected()) {
+				context.getCounter(NAPS_HLYRecordQuality.UnknownPollutant).increment(1);
+				return;
+			}
+			if (!this._hlyParser.isValidRecord()) {
+				context.getCounter(NAPS_HLYRecordQuality.INVALID).increment(1);
+				return;
+			}
+			int pollutantCode = this._hlyParser.getPollutantCodeValue();
+			Integer dayAverage = this._hlyParser.getDayAverage();
+			if (dayAverage == null) {
+				context.getCounter(NAPS_HLYRecordQuality.MissingDayAverage).increment(1);
+				return;
+			}
+			int stationID = this._hlyParser.getStationIDValue();
+			int locationID = _stationLookup.getLocationID(stationID);
+			if (locationID == NAPSStationLookup.NO_LOCATION) {
+				context.getCounter(NAPS_HLYRecordQuality.MissingLocation).increment(1);
+			}
+
+			// (a StationID which does not fit in 20 bits cannot be packed: written directly, never in a real file)
+			if (this._combiner != null && (locationID != NAPSStationLookup.NO_LOCATION || (stationID & ~ID_MASK) == 0)) {
+				int combineKey = (pollutantCode << CODE_SHIFT)
+						| (locationID == NAPSStationLookup.NO_LOCATION ? NO_LOCATION_FLAG | stationID : locationID);
+				if (this._combiner.add(combineKey, dayAverage)) {
+					flush(context); // memory threshold reached
+				}
+				return;
+			}
+
+			setKey(pollutantCode, locationID, stationID);
+			this._measureValue.set(dayAverage);
+			context.write(this._pollutantLocationKey, this._measureValue);
+		}
+		catch (Exception ex) {
+			// same handling as LocationMapper: Map Status Msg + dynamic counter named after the exception
+			context.setStatus(String.format("FAILED Parsing Input Record, ERROR: %s, InputLength:%d, InputRecord: %s",
+					ex.getMessage(), value.toString().length(), value.toString()));
+			context.getCounter(getClass().getSimpleName(), ex.getClass().getSimpleName()).increment(1);
+		}
+	}
+
+	@Override
+	protected void cleanup(Context context) throws IOException, InterruptedException {
+		if (this._combiner != null) {
+			flush(context);
+		}
+	}
+
+	/**
+	 * "PPP\tProvince\tCity" or "PPP\tStationID" when the Station has no Location, built on the bytes of the re-used Text
+	 */
+	private void setKey(int pollutantCode, int locationID, int stationID) {
+		byte[] digits = this._digits;
+		digits[0] = (byte) ('0' + pollutantCode / 100);
+		digits[1] = (byte) ('0' + pollutantCode / 10 % 10);
+		digits[2] = (byte) ('0' + pollutantCode % 10);
+		digits[3] = '\t';
+		this._pollutantLocationKey.set(digits, 0, 4);
+		if (locationID == NAPSStationLookup.NO_LOCATION) {
+			int length = DecimalText.format(stationID, digits);
+			this._pollutantLocationKey.append(digits, 0, length);
+		} else {
+			byte[] locationBytes = _stationLookup.getLocationBytes(locationID);
+			this._pollutantLocationKey.append(locationBytes, 0, locationBytes.length);
+		}
+	}
+
+	/**
+	 * Emit the (Pollutant + Location, max) kept by the in-mapper combiner
+	 */
+	private void flush(final Context context) throws IOException, InterruptedException {
+		this._combiner.flush(new InMapperMaxCombiner.Emitter() {
+			@Override
+			public void emit(int combineKey, int maxValue) throws IOException, InterruptedException {
+				int pollutantCode = combineKey >>> CODE_SHIFT;
+				boolean noLocation = (combineKey & NO_LOCATION_FLAG) != 0;
+				int id = combineKey & ID_MASK;
+				setKey(pollutantCode, noLocation ? NAPSStationLookup.NO_LOCATION : id, id);
+				_measureValue.set(maxValue);
+				context.write(_pollutantLocationKey, _measureValue);
+			}
+		});
+	}
+}
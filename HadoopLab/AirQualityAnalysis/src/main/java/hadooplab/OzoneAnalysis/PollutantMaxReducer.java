@@ -0,0 +1,63 @@
+package hadooplab.OzoneAnalysis;
+
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Reducer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Max per (Pollutant, Location), the pollutant code is replaced by its Formula + Unit
+ * and the value is written in Unit with the precision of NAPS-pollutant-codesV2014.csv
+ *
+ * Input : "PPP\tProvince\tCity", (avg1, avg2, avg3)    ex. "005\tONTARIO\tTORONTO", (8, 12, 9)
+ * Output: "Formula\tUnit\tProvince\tCity", max          ex. "CO\tppm\tONTARIO\tTORONTO", 1.2
+ * A code which is not in the file is kept as the Formula, with an empty Unit and the raw value
+ *
+ * The combiner is SimpleMaxAvgReducer: the key is not changed before this reducer
+ */
+public class PollutantMaxReducer extends Reducer<Text, IntWritable, Text, Text> {
+	private static final int CODE_LENGTH = 3;
+
+	private NAPSPollutantCodes _pollutantCodes;
+	private Text _labelKey = new Text(); // re-used for every key
+	private Text _formattedValue = new Text(); // re-used for every key
+	// "Formula\tUnit\t" of every code, encoded once
+	private byte[][] _labelBytes = new byte[NAPSPollutantCodes.MAX_CODE + 1][];
+
+	@Override
+	protected void setup(Context context) throws IOException, InterruptedException {
+		_pollutantCodes = new NAPSPollutantCodes();
+		// the Distributed Cache links the file in the working folder of the task under the name of the URI fragment
+		_pollutantCodes.initialize(new File(PollutantLocationDriver.POLLUTANT_CACHE_LINK));
+	}
+
+	@Override
+	public void reduce(Text key, Iterable<IntWritable> values, Context context)
+			throws IOException, InterruptedException {
+
+		int maxValue = Integer.MIN_VALUE;
+		for (IntWritable value : values) {
+			maxValue = Math.max(maxValue, value.get());
+		}
+
+		byte[] keyBytes = key.getBytes();
+		int pollutantCode = DecimalText.parse(keyBytes, 0, CODE_LENGTH);
+		NAPSPollutantCodes.Pollutant pollutant = _pollutantCodes.getPollutant(pollutantCode);
+
+		byte[] label = this._labelBytes[pollutantCode];
+		if (label == null) {
+			String labelStr = (pollutant == null ? String.format("%03d\t\t", pollutantCode)
+					: String.format("%s\t%s\t", pollutant.getName(), pollutant.getUnit()));
+			label = labelStr.getBytes(StandardCharsets.UTF_8);
+			this._labelBytes[pollutantCode] = label;
+		}
+		this._labelKey.set(label);
+		this._labelKey.append(keyBytes, CODE_LENGTH + 1, key.getLength() - CODE_LENGTH - 1); // the Location after "PPP\t"
+
+		this._formattedValue.set(pollutant == null ? Integer.toString(maxValue) : pollutant.formatReading(maxValue));
+		context.write(this._labelKey, this._formattedValue);
+	}
+}
@@ -1,17 +1,9 @@
 package hadooplab.OzoneAnalysis;
 
-import org.apache.hadoop.conf.Configured;
-import org.apache.hadoop.fs.FileSystem;
-import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.*;
 import org.apache.hadoop.mapreduce.Job;
-import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
-import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
-import org.apache.hadoop.util.Tool;
 import org.apache.hadoop.util.ToolRunner;
 
-import java.net.URI;
-
 /*
 HOW TO TEST:
 
@@ -64,33 +56,34 @@ Run the Java Program (ssh and run on Hadoop node)
  *
  * 2014-04-19 - Tri Nguyen
  */
-public class SimpleDriver extends Configured implements Tool {
+public class SimpleDriver extends OzoneDriverBase {
 	private static final String NAPS_OZONE_INPUTFILE = "/user/tri/MiniOzoneSample.txt"; // path is on HDFS
 	//private static final String NAPS_OZONE_INPUTFILE = "/user/tri/AirAnalysis/Ozone2012RawFL/2012O3.hly"; // path is on HDFS
 	private static final String REDUCER_OUTPUT_DIR = "/user/tri/AirAnalysis/output"; // path is on HDFS
 
+	public SimpleDriver() {
+		super(NAPS_OZONE_INPUTFILE, REDUCER_OUTPUT_DIR, null);
+	}
+
 	@Override
 	public int run(String[] args) throws Exception {
-		if (args.length != 2) {
-			System.err.printf("Usage: %s [generic options] <input> <output>\n", getClass().getSimpleName());
-			ToolRunner.printGenericCommandUsage(System.err);
+		if (!parseArgs(args)) {
 			return -1;
 		}
 
-		Job job = org.apache.hadoop.mapreduce.Job.getInstance(getConf()); // getConf() comes from inherited parent class Configured
-		job.setJobName("NAPS (StationID, AvgOzone)");
-		job.setJarByClass(getClass());
+		boolean filtered = configureRecordFilter(); // predicates on the HLY records, see HLYRecordFilter
+
+		// reducers, split size and output codec of the Configuration (see OzoneDriverBase)
+		Job job = newJob("NAPS (StationID, AvgOzone)");
 
 		// Delete automatically the output dir if its already exists
 		// Equivalent of:
 		// # hdfs dfs -rm -R -skipTrash /user/tri/AirAnalysis/output/
-		System.out.printf("Delete Output Directory: %s\n", args[1]);
-		Path outputPath = new Path(args[1]); // output directory (contain reducer results)
-		FileSystem fs = FileSystem.get(new URI(args[1]), getConf());
-		fs.delete(outputPath, true); // true=recursive
-
-		FileInputFormat.addInputPath(job, new Path(args[0])); // input file for mapper
-		FileOutputFormat.setOutputPath(job, outputPath);
+		setInput(job); // input files for mapper
+		setOutput(job, getOutputPath()); // output directory (contain reducer results)
+		if (filtered) {
+			job.setInputFormatClass(HLYRecordFilter.FilteringTextInputFormat.class);
+		}
 
 		job.setMapperClass(SimpleStationMapper.class);
 		//job.setMapOutputKeyClass(Text.class);
@@ -108,10 +101,11 @@ public class SimpleDriver extends Configured implements Tool {
 	/**
 	 * Start Driver using Tool Runner allowing to pass args[] and custom Hadoop config and/or properties at the command line
 	 *
-	 * @param args arg1: HDFS path of the Ozone HLY File, arg2: HDFS path of directory where the Reducer will save output file
+	 * @param args arg1: HDFS path(s) of the Ozone HLY Files, arg2: HDFS path of directory where the Reducer will save output file
+	 *             (hadooplab.ozone.input / hadooplab.ozone.output or the default paths when not given, see OzoneDriverBase)
 	 */
 	public static void main(String[] args) throws Exception {
-		int exitCode = ToolRunner.run(new SimpleDriver(), new String[] {NAPS_OZONE_INPUTFILE, REDUCER_OUTPUT_DIR});
+		int exitCode = ToolRunner.run(new SimpleDriver(), args);
 		System.exit(exitCode);
 	}
 
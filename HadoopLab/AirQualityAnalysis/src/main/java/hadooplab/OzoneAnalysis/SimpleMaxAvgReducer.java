@@ -15,6 +15,8 @@ import java.io.IOException;
  * 2014-04-19 - Tri Nguyen
  */
 public class SimpleMaxAvgReducer extends Reducer<Text, IntWritable, Text, IntWritable> {
+	private IntWritable _maxValue = new IntWritable(); // re-used for every key
+
 	/**
 	 * Simple Reducer computing the max value
 	 *
@@ -29,6 +31,7 @@ public class SimpleMaxAvgReducer extends Reducer<Text, IntWritable, Text, IntWri
 		for (IntWritable value : values) {
 			maxValue = Math.max(maxValue, value.get());
 		}
-		context.write(keyStationID, new IntWritable(maxValue));
+		this._maxValue.set(maxValue);
+		context.write(keyStationID, this._maxValue);
 	}
 }
@@ -1,6 +1,7 @@
 package hadooplab.OzoneAnalysis;
 
 import java.io.IOException;
+import java.util.EnumSet;
 
 import org.apache.hadoop.io.*;
 import org.apache.hadoop.mapreduce.*;
@@ -15,10 +16,26 @@ import org.apache.hadoop.mapreduce.*;
  *    ssssss
  * s: StationID
  *
+ * Optional in-mapper combining (hadooplab.ozone.inmapper.combine=true, see InMapperMaxCombiner):
+ * the max per StationID is kept in memory and emitted in cleanup()
+ *
  * 2014-04-19 - Tri Nguyen
  */
 public class SimpleStationMapper extends Mapper<LongWritable, Text, Text, IntWritable> {
 	private HLYRecordParser _hlyParser = new HLYRecordParser();
+	private Text _stationKey = new Text(); // re-used for every output record
+	private IntWritable _ozoneValue = new IntWritable(); // re-used for every output record
+	private byte[] _digits = new byte[DecimalText.MAX_INT_DIGITS]; // StationID written in _stationKey without String
+	private InMapperMaxCombiner _combiner; // null when the in-mapper combining is disabled
+
+	@Override
+	protected void setup(Context context) throws IOException, InterruptedException {
+		// only the StationID and the DayAverage are decoded (plus the check of the 24 readings by isValidRecord())
+		this._hlyParser.setProjection(EnumSet.of(HLYRecordParser.Field.STATION_ID, HLYRecordParser.Field.DAY_STATS));
+		if (context.getConfiguration().getBoolean(InMapperMaxCombiner.CONF_ENABLED, false)) {
+			_combiner = new InMapperMaxCombiner(context.getConfiguration().getInt(InMapperMaxCombiner.CONF_MAX_ENTRIES, InMapperMaxCombiner.DEFAULT_MAX_ENTRIES));
+		}
+	}
 
 	/**
 	 * mapping of an input fed by the default "TextInputFormat"
@@ -30,12 +47,23 @@ public class SimpleStationMapper extends Mapper<LongWritable, Text, Text, IntWri
 	public void map(LongWritable key, Text value, Context context)
 			throws IOException, InterruptedException {
 
-		this._hlyParser.parse(value.toString());
+		this._hlyParser.parse(value.getBytes(), 0, value.getLength()); // no String decoding of the Text bytes
 
 		try {
 
 			if (this._hlyParser.isValidRecord()) {
-				context.write(new Text(this._hlyParser.getStationID().toString()), new IntWritable( Math.round(this._hlyParser.getDayAverage())));
+				int avgOzone = Math.round(this._hlyParser.getDayAverage());
+				if (this._combiner != null) {
+					if (this._combiner.add(this._hlyParser.getStationIDValue(), avgOzone)) {
+						flush(context); // memory threshold reached
+					}
+				}
+				else {
+					// same key as getStationID().toString(), written directly in the re-used Text
+					DecimalText.set(this._stationKey, this._hlyParser.getStationIDValue(), this._digits);
+					this._ozoneValue.set(avgOzone);
+					context.write(this._stationKey, this._ozoneValue);
+				}
 			}
 		}
 		catch (Exception ex) {
@@ -52,4 +80,25 @@ public class SimpleStationMapper extends Mapper<LongWritable, Text, Text, IntWri
 			context.getCounter(getClass().getSimpleName(), ex.getClass().getSimpleName()).increment(1);
 		}
 	}
+
+	@Override
+	protected void cleanup(Context context) throws IOException, InterruptedException {
+		if (this._combiner != null) {
+			flush(context);
+		}
+	}
+
+	/**
+	 * Emit the (StationID, max) kept by the in-mapper combiner
+	 */
+	private void flush(final Context context) throws IOException, InterruptedException {
+		this._combiner.flush(new InMapperMaxCombiner.Emitter() {
+			@Override
+			public void emit(int stationID, int max) throws IOException, InterruptedException {
+				DecimalText.set(_stationKey, stationID, _digits);
+				_ozoneValue.set(max);
+				context.write(_stationKey, _ozoneValue);
+			}
+		});
+	}
 }
@@ -0,0 +1,229 @@
+package hadooplab.OzoneAnalysis;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.*;
+import org.apache.hadoop.mapreduce.*;
+import org.apache.hadoop.mapreduce.lib.input.LineRecordReader;
+import org.apache.hadoop.mapreduce.lib.input.TextInputFormat;
+import org.apache.hadoop.mapreduce.lib.partition.InputSampler;
+import org.apache.hadoop.mapreduce.lib.partition.TotalOrderPartitioner;
+import org.apache.hadoop.util.ReflectionUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Total order over several reducers: each reducer receives a contiguous range of the sorted map output keys,
+ * the part files concatenated (part-r-00000, part-r-00001 ...) are the globally sorted result
+ *
+ * InputSampler can only sample the keys of the InputFormat (the byte offsets of TextInputFormat),
+ * here the lines of the job input are turned into the MAP OUTPUT keys by a KeyExtractor (the same decoding than the mapper)
+ * then sampled by InputSampler.RandomSampler. The split points are taken in the sorted sample, with the
+ * sort comparator of the job: a descending comparator gives descending ranges (part-r-00000 has the highest keys)
+ * When the job input is not text (ex. a SequenceFile), an InputFormat whose keys are the map output keys is sampled instead
+ *
+ * Enabled by hadooplab.ozone.totalorder=true, tuned by
+ * - hadooplab.ozone.totalorder.frequency: probability to keep a record in the sample (default 0.1)
+ * - hadooplab.ozone.totalorder.samples: max number of sampled keys (default 10000)
+ * - hadooplab.ozone.totalorder.maxsplits: max number of input splits read (default 10)
+ *
+ * The split points are distinct: when the sample has less distinct keys than reducers
+ * (ex. a few dozens distinct MaxAvgOzone values) the job gets less reducers, never an empty range
+ */
+public final class TotalOrderSampling {
+	/** Configuration property: true to sample the map output and use TotalOrderPartitioner */
+	public static final String CONF_ENABLED = "hadooplab.ozone.totalorder";
+	/** Configuration property: probability to keep a record in the sample */
+	public static final String CONF_FREQUENCY = "hadooplab.ozone.totalorder.frequency";
+	/** Configuration property: max number of sampled keys */
+	public static final String CONF_SAMPLES = "hadooplab.ozone.totalorder.samples";
+	/** Configuration property: max number of input splits read for the sample */
+	public static final String CONF_MAX_SPLITS = "hadooplab.ozone.totalorder.maxsplits";
+	public static final double DEFAULT_FREQUENCY = 0.1;
+	public static final int DEFAULT_SAMPLES = 10000;
+	public static final int DEFAULT_MAX_SPLITS = 10;
+
+	private TotalOrderSampling() {
+	}
+
+	/**
+	 * Decode the map output key of 1 line of the job input
+	 */
+	public interface KeyExtractor<K> {
+		/**
+		 * @param key re-used, to set
+		 * @return false when the mapper would not emit anything for this line
+		 */
+		boolean extract(Text line, K key) throws IOException;
+	}
+
+	public static boolean isEnabled(Configuration conf) {
+		return conf.getBoolean(CONF_ENABLED, false);
+	}
+
+	/**
+	 * Sample the input of the job (its input paths must be set, read as text lines), write the partition file
+	 * and set the TotalOrderPartitioner. The map output key class and the sort comparator must be set
+	 *
+	 * @param partitionFile written here, deleted when the FileSystem is closed (end of the driver)
+	 * @return the number of reducers of the job: at most job.getNumReduceTasks(), 1 when the sample is empty
+	 */
+	public static <K> int configure(Job job, KeyExtractor<K> extractor, Path partitionFile)
+			throws IOException, InterruptedException {
+		@SuppressWarnings("unchecked")
+		Class<K> keyClass = (Class<K>) job.getMapOutputKeyClass();
+		return configure(job, new KeyExtractingInputFormat<K>(keyClass, extractor), partitionFile);
+	}
+
+	/**
+	 * Same as configure(Job, KeyExtractor, Path), the sample is read by keyFormat
+	 *
+	 * @param keyFormat reads the job input (its input paths must be set), its keys are the map output keys of the records
+	 */
+	public static <K, V> int configure(Job job, InputFormat<K, V> keyFormat, Path partitionFile)
+			throws IOException, InterruptedException {
+		Configuration conf = job.getConfiguration();
+		@SuppressWarnings("unchecked")
+		Class<K> keyClass = (Class<K>) job.getMapOutputKeyClass();
+		K[] samples = sample(job, keyFormat);
+
+		@SuppressWarnings("unchecked")
+		RawComparator<K> comparator = (RawComparator<K>) job.getSortComparator();
+		List<K> splitPoints = selectSplitPoints(samples, comparator, job.getNumReduceTasks());
+		System.out.printf("===^^^ Total order: %d sampled keys, %d reducers ^^^===\n", samples.length, splitPoints.size() + 1);
+		if (splitPoints.isEmpty()) {
+			job.setNumReduceTasks(1);
+			return 1;
+		}
+
+		FileSystem fs = partitionFile.getFileSystem(conf);
+		fs.delete(partitionFile, false);
+		SequenceFile.Writer writer = SequenceFile.createWriter(conf, SequenceFile.Writer.file(partitionFile),
+				SequenceFile.Writer.keyClass(keyClass), SequenceFile.Writer.valueClass(NullWritable.class));
+		try {
+			for (K splitPoint : splitPoints) {
+				writer.append(splitPoint, NullWritable.get());
+			}
+		} finally {
+			writer.close();
+		}
+		fs.deleteOnExit(partitionFile);
+
+		job.setNumReduceTasks(splitPoints.size() + 1);
+		job.setPartitionerClass(TotalOrderPartitioner.class);
+		TotalOrderPartitioner.setPartitionFile(job.getConfiguration(), partitionFile);
+		return splitPoints.size() + 1;
+	}
+
+	/**
+	 * Random sample of the map output keys of the job (its input paths must be set, read as text lines)
+	 * with the settings hadooplab.ozone.totalorder.frequency, .samples and .maxsplits
+	 * Also used by other key distributions than the total order (ex. SkewAwareLocationPartitioner)
+	 *
+	 * @return the sampled keys, in the order of the sample. K is erased: the array is an Object[]
+	 */
+	public static <K> K[] sample(Job job, KeyExtractor<K> extractor) throws IOException, InterruptedException {
+		@SuppressWarnings("unchecked")
+		Class<K> keyClass = (Class<K>) job.getMapOutputKeyClass();
+		return sample(job, new KeyExtractingInputFormat<K>(keyClass, extractor));
+	}
+
+	/**
+	 * Random sample of the keys read by keyFormat, with the same settings
+	 */
+	public static <K, V> K[] sample(Job job, InputFormat<K, V> keyFormat) throws IOException, InterruptedException {
+		Configuration conf = job.getConfiguration();
+		InputSampler.Sampler<K, V> sampler = new InputSampler.RandomSampler<K, V>(
+				conf.getDouble(CONF_FREQUENCY, DEFAULT_FREQUENCY),
+				conf.getInt(CONF_SAMPLES, DEFAULT_SAMPLES),
+				conf.getInt(CONF_MAX_SPLITS, DEFAULT_MAX_SPLITS));
+		return sampler.getSample(keyFormat, job);
+	}
+
+	/**
+	 * The keys at the quantiles 1/reducers ... (reducers-1)/reducers of the sorted sample, without duplicates
+	 * (TotalOrderPartitioner rejects split points which are not strictly increasing)
+	 * and above the first key of the sample (the first range would be empty)
+	 */
+	public static <K> List<K> selectSplitPoints(K[] samples, RawComparator<K> comparator, int reducers) {
+		Arrays.sort(samples, comparator);
+		List<K> splitPoints = new ArrayList<K>();
+		for (int kk = 1; kk < reducers; kk++) {
+			int index = (int) ((long) samples.length * kk / reducers);
+			if (index >= samples.length) {
+				break;
+			}
+			K candidate = samples[index];
+			K previous = (splitPoints.isEmpty() ? samples[0] : splitPoints.get(splitPoints.size() - 1));
+			if (comparator.compare(previous, candidate) < 0) {
+				splitPoints.add(candidate);
+			}
+		}
+		return splitPoints;
+	}
+
+
+	/**
+	 * The splits of TextInputFormat, each line turned into (map output key, null) for the sampler
+	 */
+	private static class KeyExtractingInputFormat<K> extends InputFormat<K, NullWritable> {
+		private final Class<K> _keyClass;
+		private final KeyExtractor<K> _extractor;
+
+		KeyExtractingInputFormat(Class<K> keyClass, KeyExtractor<K> extractor) {
+			this._keyClass = keyClass;
+			this._extractor = extractor;
+		}
+
+		@Override
+		public List<InputSplit> getSplits(JobContext context) throws IOException {
+			return new TextInputFormat().getSplits(context);
+		}
+
+		@Override
+		public RecordReader<K, NullWritable> createRecordReader(InputSplit split, TaskAttemptContext context) {
+			final LineRecordReader lineReader = new LineRecordReader();
+			final K key = ReflectionUtils.newInstance(this._keyClass, null);
+			return new RecordReader<K, NullWritable>() {
+				@Override
+				public void initialize(InputSplit split, TaskAttemptContext context) throws IOException {
+					lineReader.initialize(split, context);
+				}
+
+				@Override
+				public boolean nextKeyValue() throws IOException {
+					while (lineReader.nextKeyValue()) {
+						if (_extractor.extract(lineReader.getCurrentValue(), key)) {
+							return true;
+						}
+					}
+					return false;
+				}
+
+				@Override
+				public K getCurrentKey() {
+					return key; // copied by the sampler
+				}
+
+				@Override
+				public NullWritable getCurrentValue() {
+					return NullWritable.get();
+				}
+
+				@Override
+				public float getProgress() throws IOException {
+					return lineReader.getProgress();
+				}
+
+				@Override
+				public void close() throws IOException {
+					lineReader.close();
+				}
+			};
+		}
+	}
+}
@@ -39,7 +39,8 @@ public class CheckOzoneFile {
 
 					if (hlyParser.isValidRecord()) validRecordCount++;
 
-					if (hlyParser.getCalcDayAverage() == null || hlyParser.getCalcDayMin() == null || hlyParser.getCalcDayMax() == null) {
+					// the 3 calculated values are NULL together: when there is no valid hour reading
+					if (hlyParser.getHourlyStats().getCount() == 0) {
 						NullFoundCount++;
 					}
 					//System.out.printf("%s -> %4d %4d %4d\n", currLine, Math.round(hlyParser.getCalcDayAverage()), hlyParser.getCalcDayMin(), hlyParser.getCalcDayMax());
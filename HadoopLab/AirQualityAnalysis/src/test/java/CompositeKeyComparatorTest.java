@@ -0,0 +1,75 @@
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.RawComparator;
+import org.apache.hadoop.io.WritableComparator;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit tests of the raw comparators of LocationMeasureCompoKey:
+ * comparing the serialized bytes must give the same result than comparing the deserialized keys
+ */
+public class CompositeKeyComparatorTest {
+	private LocationMeasureCompoKey[] keys;
+
+	@Before
+	public void setUp() {
+		keys = new LocationMeasureCompoKey[] {
+			new LocationMeasureCompoKey("ONTARIO\tTORONTO", 25),
+			new LocationMeasureCompoKey("ONTARIO\tTORONTO", 82),
+			new LocationMeasureCompoKey("ONTARIO\tALGOMA", 82),
+			new LocationMeasureCompoKey("ONTARIO\tALGOMA", 0),
+			new LocationMeasureCompoKey("ONTARIO", 40),
+			new LocationMeasureCompoKey("QUEBEC\tMONTRÉAL", 30),
+			new LocationMeasureCompoKey("QUEBEC\tMONTREAL", 30),
+			new LocationMeasureCompoKey("60419", 12)
+		};
+	}
+
+	@Test
+	public void testDefaultComparator() throws IOException {
+		RawComparator<?> comparator = WritableComparator.get(LocationMeasureCompoKey.class);
+		assertTrue("Registered raw comparator", comparator instanceof LocationMeasureCompoKey.Comparator);
+
+		for (LocationMeasureCompoKey k1 : keys) {
+			for (LocationMeasureCompoKey k2 : keys) {
+				assertEquals(k1 + " vs " + k2, Integer.signum(k1.compareTo(k2)), Integer.signum(compareRaw(comparator, k1, k2)));
+			}
+		}
+	}
+
+	@Test
+	public void testSortAndGroupComparators() throws IOException {
+		WritableComparator sortComparator = new CompositeKeyDriver.LocAvgKeyComparator();
+		WritableComparator groupComparator = new CompositeKeyDriver.GroupComparator();
+
+		for (LocationMeasureCompoKey k1 : keys) {
+			for (LocationMeasureCompoKey k2 : keys) {
+				assertEquals("Sort " + k1 + " vs " + k2,
+						Integer.signum(sortComparator.compare(k1, k2)), Integer.signum(compareRaw(sortComparator, k1, k2)));
+				assertEquals("Group " + k1 + " vs " + k2,
+						Integer.signum(k1.getLocation().compareTo(k2.getLocation())), Integer.signum(compareRaw(groupComparator, k1, k2)));
+			}
+		}
+
+		// AverageOzone descending within the same Location
+		assertTrue("Descending", sortComparator.compare(keys[1], keys[0]) < 0);
+	}
+
+	/**
+	 * Serialize both keys in the same buffer, with some junk before, like in the shuffle buffers
+	 */
+	private static int compareRaw(RawComparator<?> comparator, LocationMeasureCompoKey k1, LocationMeasureCompoKey k2) throws IOException {
+		DataOutputBuffer buffer = new DataOutputBuffer();
+		buffer.writeInt(-1);
+		int s1 = buffer.getLength();
+		k1.write(buffer);
+		int s2 = buffer.getLength();
+		k2.write(buffer);
+		int end = buffer.getLength();
+		return comparator.compare(buffer.getData(), s1, s2 - s1, buffer.getData(), s2, end - s2);
+	}
+}
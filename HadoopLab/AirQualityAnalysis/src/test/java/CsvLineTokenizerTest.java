@@ -0,0 +1,64 @@
+import hadooplab.OzoneAnalysis.CsvLineTokenizer;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit tests of hadooplab.OzoneAnalysis.CsvLineTokenizer: the same fields as split("\\s*,\\s*", -1),
+ * plus the quoted fields, and the numbers parsed without exception
+ */
+public class CsvLineTokenizerTest {
+	private final CsvLineTokenizer tokenizer = new CsvLineTokenizer();
+
+	@Test
+	public void testSameFieldsAsSplit() {
+		for (String line : new String[] {"", ",", " a , b ,c", "a,,  ,b ,", "  lead, trail  ", "1,2,3,,,,,,,,,,,,,,,,,,,,,,,,,,,,,,,,,,,,,,,,,,,,,,,,,,,,,,,,,,,,,,,,,,,,,,,,,,,,,,"}) {
+			String[] expected = line.split("\\s*,\\s*", -1);
+			assertEquals(line, expected.length, tokenizer.tokenize(line));
+			String[] fields = new String[tokenizer.getFieldCount()];
+			for (int kk = 0; kk < fields.length; kk++) {
+				fields[kk] = tokenizer.getString(kk);
+			}
+			assertEquals(line, Arrays.asList(expected), Arrays.asList(fields));
+		}
+	}
+
+	@Test
+	public void testQuoted() {
+		assertEquals(4, tokenizer.tokenize("1, \"MONTREAL, QC\" ,\"say \"\"hi\"\"\",\"unterminated, to the end"));
+		assertFalse(tokenizer.isQuoted(0));
+		assertEquals("MONTREAL, QC", tokenizer.getString(1));
+		assertTrue(tokenizer.isQuoted(1));
+		assertEquals("say \"hi\"", tokenizer.getString(2));
+		assertEquals("unterminated, to the end", tokenizer.getString(3));
+	}
+
+	@Test
+	public void testNumbers() {
+		tokenizer.tokenize("165, + 12 ,-5,,X,99999999999,-2147483648,2147483648,--5");
+		assertEquals(165, tokenizer.parseInt(0));
+		assertEquals("Spaces and + ignored", 12, tokenizer.parseInt(1));
+		assertEquals(-5, tokenizer.parseInt(2));
+		assertEquals("Empty", CsvLineTokenizer.NOT_AN_INT, tokenizer.parseInt(3));
+		assertEquals(CsvLineTokenizer.NOT_AN_INT, tokenizer.parseInt(4));
+		assertEquals("Overflow", CsvLineTokenizer.NOT_AN_INT, tokenizer.parseInt(5));
+		assertEquals(Integer.MIN_VALUE, tokenizer.parseInt(6));
+		assertEquals("Overflow", CsvLineTokenizer.NOT_AN_INT, tokenizer.parseInt(7));
+		assertEquals(CsvLineTokenizer.NOT_AN_INT, tokenizer.parseInt(8));
+
+		tokenizer.tokenize("43.61583,-79.6525,12,5,5.,.5,--5.0,1 .5,+0.5,,1e5");
+		assertEquals(43.61583f, tokenizer.parseFloat(0), 0.0f);
+		assertEquals(-79.6525f, tokenizer.parseFloat(1), 0.0f);
+		assertEquals(12.0f, tokenizer.parseFloat(2), 0.0f);
+		assertTrue("1 digit without decimal point", Float.isNaN(tokenizer.parseFloat(3)));
+		assertTrue(Float.isNaN(tokenizer.parseFloat(4)));
+		assertTrue(Float.isNaN(tokenizer.parseFloat(5)));
+		assertTrue(Float.isNaN(tokenizer.parseFloat(6)));
+		assertTrue(Float.isNaN(tokenizer.parseFloat(7)));
+		assertEquals(0.5f, tokenizer.parseFloat(8), 0.0f);
+		assertTrue("Empty", Float.isNaN(tokenizer.parseFloat(9)));
+		assertTrue(Float.isNaN(tokenizer.parseFloat(10)));
+	}
+}
@@ -0,0 +1,47 @@
+import hadooplab.OzoneAnalysis.DecimalText;
+import org.apache.hadoop.io.Text;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit tests of hadooplab.OzoneAnalysis.DecimalText: same results than Integer.toString() / Integer.parseInt()
+ */
+public class DecimalTextTest {
+
+	@Test
+	public void testFormat() throws Exception {
+		int[] values = {0, 7, -7, 10, 99, -100, 60419, 2012, Integer.MAX_VALUE, Integer.MIN_VALUE};
+		byte[] scratch = new byte[DecimalText.MAX_INT_DIGITS];
+		Text text = new Text("a longer previous content");
+		for (int value : values) {
+			DecimalText.set(text, value, scratch);
+			assertEquals("Digits of " + value, Integer.toString(value), text.toString());
+		}
+	}
+
+	@Test
+	public void testParse() throws Exception {
+		String[] numbers = {"0", "82", "-3", "+15", "007", "2147483647", "-2147483648"};
+		for (String number : numbers) {
+			byte[] bytes = ("\t" + number + "\t").getBytes(StandardCharsets.US_ASCII);
+			assertEquals("Parse of " + number, Integer.parseInt(number), DecimalText.parse(bytes, 1, bytes.length - 1));
+		}
+	}
+
+	@Test
+	public void testParseInvalid() throws Exception {
+		String[] invalids = {"", "-", "+", "12a", " 12", "1.5", "2147483648", "-2147483649", "99999999999"};
+		for (String invalid : invalids) {
+			byte[] bytes = invalid.getBytes(StandardCharsets.US_ASCII);
+			try {
+				DecimalText.parse(bytes, 0, bytes.length);
+				fail("NumberFormatException expected for: " + invalid);
+			} catch (NumberFormatException ex) {
+				// expected, as Integer.parseInt()
+			}
+		}
+	}
+}
@@ -0,0 +1,96 @@
+import hadooplab.HiveUtil.GenericDailyAverageStats;
+import org.apache.hadoop.hive.ql.exec.UDFArgumentTypeException;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.parse.SemanticException;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFEvaluator;
+import org.apache.hadoop.hive.serde2.io.DoubleWritable;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorFactory;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorUtils;
+import org.apache.hadoop.hive.serde2.objectinspector.StructObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfo;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoFactory;
+import org.apache.hadoop.io.LongWritable;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit tests of the UDAF daily_avg_stats: 1 pass (COMPLETE) and map-side partials merged (PARTIAL1 -> FINAL)
+ */
+public class GenericDailyAverageStatsTest {
+	private static final ObjectInspector JAVA_ARRAY_OI =
+			ObjectInspectorFactory.getStandardListObjectInspector(PrimitiveObjectInspectorFactory.javaIntObjectInspector);
+	private static final TypeInfo[] ARRAY_TYPE = {TypeInfoFactory.getListTypeInfo(TypeInfoFactory.intTypeInfo)};
+
+	// 1 row per day, daily averages: 20, 40, (no reading), 30
+	private static final List<List<Integer>> DAYS = Arrays.asList(
+			Arrays.asList(10, 20, 30),
+			Arrays.asList(40, null, 40),
+			Arrays.asList((Integer) null, null),
+			Arrays.asList(25, 35));
+
+	@Test
+	public void testComplete() throws HiveException {
+		GenericUDAFEvaluator evaluator = new GenericDailyAverageStats().getEvaluator(ARRAY_TYPE);
+		StructObjectInspector resultOI = (StructObjectInspector) evaluator.init(GenericUDAFEvaluator.Mode.COMPLETE, new ObjectInspector[] {JAVA_ARRAY_OI});
+		assertEquals("struct<max_avg:double,avg_avg:double,day_count:bigint>", resultOI.getTypeName());
+
+		GenericUDAFEvaluator.AbstractAggregationBuffer agg = (GenericUDAFEvaluator.AbstractAggregationBuffer) evaluator.getNewAggregationBuffer();
+		assertEquals("Estimable: 3 primitives", 24, agg.estimate());
+		for (List<Integer> day : DAYS) {
+			evaluator.iterate(agg, new Object[] {day});
+		}
+		evaluator.iterate(agg, new Object[] {null});
+		assertResult(resultOI, evaluator.terminate(agg), 40.0, 30.0, 3);
+
+		evaluator.reset(agg);
+		evaluator.iterate(agg, new Object[] {DAYS.get(2)});
+		assertNull("No reading in the group", evaluator.terminate(agg));
+	}
+
+	/**
+	 * As Hive runs it with map-side aggregation: each mapper PARTIAL1 on its rows, the reducer merges in FINAL
+	 */
+	@Test
+	public void testMergePartials() throws HiveException {
+		GenericDailyAverageStats resolver = new GenericDailyAverageStats();
+		GenericUDAFEvaluator mapEvaluator = resolver.getEvaluator(ARRAY_TYPE);
+		ObjectInspector partialOI = mapEvaluator.init(GenericUDAFEvaluator.Mode.PARTIAL1, new ObjectInspector[] {JAVA_ARRAY_OI});
+		GenericUDAFEvaluator reduceEvaluator = resolver.getEvaluator(ARRAY_TYPE);
+		StructObjectInspector resultOI = (StructObjectInspector) reduceEvaluator.init(GenericUDAFEvaluator.Mode.FINAL, new ObjectInspector[] {partialOI});
+
+		GenericUDAFEvaluator.AbstractAggregationBuffer finalAgg = (GenericUDAFEvaluator.AbstractAggregationBuffer) reduceEvaluator.getNewAggregationBuffer();
+		GenericUDAFEvaluator.AbstractAggregationBuffer mapAgg = (GenericUDAFEvaluator.AbstractAggregationBuffer) mapEvaluator.getNewAggregationBuffer();
+		for (int split = 0; split < DAYS.size(); split += 2) {
+			mapEvaluator.reset(mapAgg);
+			for (List<Integer> day : DAYS.subList(split, split + 2)) {
+				mapEvaluator.iterate(mapAgg, new Object[] {day});
+			}
+			// the partial is re-used by the evaluator: copied as it would be serialized to the reducer
+			Object partial = ObjectInspectorUtils.copyToStandardObject(mapEvaluator.terminatePartial(mapAgg), partialOI);
+			reduceEvaluator.merge(finalAgg, partial);
+		}
+		reduceEvaluator.merge(finalAgg, null);
+		assertResult(resultOI, reduceEvaluator.terminate(finalAgg), 40.0, 30.0, 3);
+	}
+
+	@Test(expected = UDFArgumentTypeException.class)
+	public void testArgumentType() throws SemanticException {
+		new GenericDailyAverageStats().getEvaluator(new TypeInfo[] {TypeInfoFactory.intTypeInfo});
+	}
+
+	private static void assertResult(StructObjectInspector resultOI, Object result, double maxAvg, double avgAvg, long dayCount) {
+		assertNotNull(result);
+		assertEquals("Max of the daily averages", maxAvg,
+				((DoubleWritable) resultOI.getStructFieldData(result, resultOI.getStructFieldRef("max_avg"))).get(), 1e-9);
+		assertEquals("Average of the daily averages", avgAvg,
+				((DoubleWritable) resultOI.getStructFieldData(result, resultOI.getStructFieldRef("avg_avg"))).get(), 1e-9);
+		assertEquals("Days without reading ignored", dayCount,
+				((LongWritable) resultOI.getStructFieldData(result, resultOI.getStructFieldRef("day_count"))).get());
+	}
+}
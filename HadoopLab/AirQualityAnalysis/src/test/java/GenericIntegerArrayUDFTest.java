@@ -0,0 +1,132 @@
+import hadooplab.HiveUtil.*;
+import org.apache.hadoop.hive.ql.exec.UDFArgumentException;
+import org.apache.hadoop.hive.ql.exec.UDFArgumentTypeException;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDF;
+import org.apache.hadoop.hive.serde2.io.DoubleWritable;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorFactory;
+import org.apache.hadoop.hive.serde2.objectinspector.StructObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory;
+import org.apache.hadoop.io.IntWritable;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit tests of the GenericUDF on ARRAY<int>: same results than the reflective UDF IntegerArrayAvg/Min/Max
+ */
+public class GenericIntegerArrayUDFTest {
+	// the array as stored in a table: a list of IntWritable
+	private static final ObjectInspector WRITABLE_ARRAY_OI =
+			ObjectInspectorFactory.getStandardListObjectInspector(PrimitiveObjectInspectorFactory.writableIntObjectInspector);
+
+	private static final Integer[][] ROWS = {
+		{28, 28, 29, 28, 33, 39, 38, 37, 37, 36, 36, 36, 36, 36, 36, 36, 35, 35, 36, 36, 36, 35, 31, 30},
+		{38, 26, 23, 26, 27, 27, 28, null, null, null, 28, 28, 28, 26, 26, 26, 28, 32, 33, 33, 34, 32, 32, 37},
+		{null, null, null},
+		{-3},
+		{}
+	};
+
+	@Test
+	public void testSameResultsThanReflectiveUDF() throws HiveException {
+		GenericIntegerArrayAvg avgUDF = new GenericIntegerArrayAvg();
+		GenericIntegerArrayMin minUDF = new GenericIntegerArrayMin();
+		GenericIntegerArrayMax maxUDF = new GenericIntegerArrayMax();
+		avgUDF.initialize(new ObjectInspector[] {WRITABLE_ARRAY_OI});
+		minUDF.initialize(new ObjectInspector[] {WRITABLE_ARRAY_OI});
+		maxUDF.initialize(new ObjectInspector[] {WRITABLE_ARRAY_OI});
+
+		for (Integer[] row : ROWS) {
+			ArrayList<Integer> javaRow = new ArrayList<Integer>(Arrays.asList(row));
+			List<IntWritable> writableRow = toWritables(row);
+			String msg = javaRow.toString();
+
+			DoubleWritable expectedAvg = new IntegerArrayAvg().evaluate(javaRow);
+			DoubleWritable actualAvg = (DoubleWritable) evaluate(avgUDF, writableRow);
+			if (expectedAvg == null) {
+				assertNull(msg, actualAvg);
+			} else {
+				// assertEquals(double, double, delta) and not equals(): NaN == NaN is false
+				assertEquals(msg, expectedAvg.get(), actualAvg.get(), 0.0);
+			}
+			assertEquals(msg, new IntegerArrayMin().evaluate(javaRow), evaluate(minUDF, writableRow));
+			assertEquals(msg, new IntegerArrayMax().evaluate(javaRow), evaluate(maxUDF, writableRow));
+		}
+
+		assertNull("NULL array", evaluate(avgUDF, null));
+		assertTrue("All NULL: NaN", Double.isNaN(((DoubleWritable) evaluate(avgUDF, toWritables(ROWS[2]))).get()));
+		assertEquals("avg_array(HourReadings)", avgUDF.getDisplayString(new String[] {"HourReadings"}));
+	}
+
+	@Test
+	public void testArrayStats() throws HiveException {
+		GenericIntegerArrayStats statsUDF = new GenericIntegerArrayStats();
+		StructObjectInspector structOI = (StructObjectInspector) statsUDF.initialize(new ObjectInspector[] {WRITABLE_ARRAY_OI});
+		assertEquals("struct<avg:double,min:int,max:int,count:int>", structOI.getTypeName());
+
+		Object stats = evaluate(statsUDF, toWritables(ROWS[1]));
+		assertEquals(new IntegerArrayAvg().evaluate(new ArrayList<Integer>(Arrays.asList(ROWS[1]))), field(structOI, stats, "avg"));
+		assertEquals(new IntWritable(23), field(structOI, stats, "min"));
+		assertEquals(new IntWritable(38), field(structOI, stats, "max"));
+		assertEquals("NULL readings not counted", new IntWritable(21), field(structOI, stats, "count"));
+
+		stats = evaluate(statsUDF, toWritables(ROWS[2]));
+		assertTrue(Double.isNaN(((DoubleWritable) field(structOI, stats, "avg")).get()));
+		assertNull(field(structOI, stats, "min"));
+		assertNull(field(structOI, stats, "max"));
+		assertEquals(new IntWritable(0), field(structOI, stats, "count"));
+
+		assertNull("Empty array", evaluate(statsUDF, toWritables(ROWS[4])));
+	}
+
+	/**
+	 * Other array inspectors: Java Integer elements, smallint elements, and the type check
+	 */
+	@Test
+	public void testArgumentTypes() throws HiveException {
+		GenericIntegerArrayMax maxUDF = new GenericIntegerArrayMax();
+		maxUDF.initialize(new ObjectInspector[] {
+				ObjectInspectorFactory.getStandardListObjectInspector(PrimitiveObjectInspectorFactory.javaIntObjectInspector)});
+		assertEquals(new IntWritable(38), evaluate(maxUDF, Arrays.asList(ROWS[1])));
+
+		maxUDF.initialize(new ObjectInspector[] {
+				ObjectInspectorFactory.getStandardListObjectInspector(PrimitiveObjectInspectorFactory.javaShortObjectInspector)});
+		assertEquals(new IntWritable(12), evaluate(maxUDF, Arrays.asList((short) 7, null, (short) 12)));
+
+		try {
+			maxUDF.initialize(new ObjectInspector[] {
+					ObjectInspectorFactory.getStandardListObjectInspector(PrimitiveObjectInspectorFactory.javaStringObjectInspector)});
+			fail("array<string> is not accepted");
+		} catch (UDFArgumentTypeException ex) {
+			assertEquals(0, ex.getArgumentId());
+		}
+		try {
+			maxUDF.initialize(new ObjectInspector[] {WRITABLE_ARRAY_OI, WRITABLE_ARRAY_OI});
+			fail("Only 1 argument");
+		} catch (UDFArgumentException ex) {
+			// expected
+		}
+	}
+
+	private static Object evaluate(GenericUDF udf, Object array) throws HiveException {
+		return udf.evaluate(new GenericUDF.DeferredObject[] {new GenericUDF.DeferredJavaObject(array)});
+	}
+
+	private static Object field(StructObjectInspector structOI, Object struct, String fieldName) {
+		return structOI.getStructFieldData(struct, structOI.getStructFieldRef(fieldName));
+	}
+
+	private static List<IntWritable> toWritables(Integer[] row) {
+		List<IntWritable> writables = new ArrayList<IntWritable>();
+		for (Integer value : row) {
+			writables.add(value == null ? null : new IntWritable(value));
+		}
+		return writables;
+	}
+}
@@ -0,0 +1,121 @@
+import hadooplab.OzoneAnalysis.HLYColumnarFile;
+import hadooplab.OzoneAnalysis.HLYRecordParser;
+import hadooplab.OzoneAnalysis.HLYRecordWritable;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.WritableUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit tests of hadooplab.OzoneAnalysis.HLYColumnarFile: write the valid records of MiniOzoneSample.txt
+ * in small blocks, read them back entirely, by columns and by splits
+ */
+public class HLYColumnarFileTest {
+	private static final int BLOCK_RECORDS = 7;
+
+	private Configuration conf;
+	private FileSystem fs;
+	private Path file;
+	private List<HLYRecordWritable> records;
+
+	@Before
+	public void setUp() throws IOException {
+		conf = new Configuration();
+		conf.setInt(HLYColumnarFile.CONF_BLOCK_RECORDS, BLOCK_RECORDS);
+		fs = FileSystem.getLocal(conf);
+		file = new Path(File.createTempFile("HLYColumnarFileTest", ".hlyc").getAbsolutePath());
+
+		records = new ArrayList<HLYRecordWritable>();
+		HLYRecordParser parser = new HLYRecordParser();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(getClass().getResourceAsStream("/MiniOzoneSample.txt"), "US-ASCII"));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				parser.parse(line);
+				if (parser.isValidRecord()) {
+					HLYRecordWritable record = new HLYRecordWritable();
+					record.setFrom(parser);
+					records.add(record);
+				}
+			}
+		} finally {
+			reader.close();
+		}
+
+		HLYColumnarFile.Writer writer = new HLYColumnarFile.Writer(conf, fs.create(file, true));
+		for (HLYRecordWritable record : records) {
+			writer.append(record);
+		}
+		writer.close();
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		fs.delete(file, false);
+	}
+
+	@Test
+	public void testReadAll() throws IOException {
+		List<HLYRecordWritable> readRecords = read(EnumSet.allOf(HLYColumnarFile.Column.class), 0, Long.MAX_VALUE);
+		assertTrue("Several blocks", records.size() > 3 * BLOCK_RECORDS);
+		assertEquals("Same records", records, readRecords);
+	}
+
+	@Test
+	public void testReadColumns() throws IOException {
+		List<HLYRecordWritable> readRecords = read(EnumSet.of(HLYColumnarFile.Column.STATION_ID, HLYColumnarFile.Column.DAY_AVERAGE), 0, Long.MAX_VALUE);
+		assertEquals("Record count", records.size(), readRecords.size());
+		for (int kk = 0; kk < records.size(); kk++) {
+			HLYRecordWritable expected = records.get(kk), actual = readRecords.get(kk);
+			assertEquals("StationID", expected.getStationIDValue(), actual.getStationIDValue());
+			assertEquals("DayAverage", expected.getDayAverage(), actual.getDayAverage());
+			assertEquals("Date not read", 0, actual.getDateValue());
+			assertEquals("DayMax not read", HLYRecordParser.INVALID_MEASURE, actual.getDayMaxValue());
+			assertEquals("Hours not read", 0, actual.getValidHourCount());
+		}
+	}
+
+	/**
+	 * Whatever the split boundaries, each record is read by exactly one split
+	 */
+	@Test
+	public void testSplits() throws IOException {
+		long fileLength = fs.getFileStatus(file).getLen();
+		for (int splitCount = 1; splitCount <= 9; splitCount++) {
+			List<HLYRecordWritable> readRecords = new ArrayList<HLYRecordWritable>();
+			long splitSize = fileLength / splitCount + 1;
+			for (long start = 0; start < fileLength; start += splitSize) {
+				readRecords.addAll(read(EnumSet.allOf(HLYColumnarFile.Column.class), start, Math.min(start + splitSize, fileLength)));
+			}
+			assertEquals(String.format("%d splits", splitCount), records, readRecords);
+		}
+	}
+
+	private List<HLYRecordWritable> read(EnumSet<HLYColumnarFile.Column> columns, long start, long end) throws IOException {
+		List<HLYRecordWritable> readRecords = new ArrayList<HLYRecordWritable>();
+		HLYColumnarFile.Reader reader = new HLYColumnarFile.Reader(conf, fs.open(file), fs.getFileStatus(file).getLen(), columns);
+		try {
+			reader.sync(start);
+			HLYRecordWritable record = new HLYRecordWritable();
+			while (reader.next(record, end)) {
+				readRecords.add(WritableUtils.clone(record, conf)); // the reader re-uses the record
+			}
+		} finally {
+			reader.close();
+		}
+		return readRecords;
+	}
+}
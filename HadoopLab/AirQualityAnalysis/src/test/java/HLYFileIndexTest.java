@@ -0,0 +1,228 @@
+import hadooplab.OzoneAnalysis.HLYFileIndex;
+import hadooplab.OzoneAnalysis.HLYIndexedReader;
+import hadooplab.OzoneAnalysis.HLYRecordParser;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit tests of HLYFileIndex and HLYIndexedReader: a query through the sparse index must return exactly
+ * the records a full scan of the file selects, whatever the interval of the index
+ */
+public class HLYFileIndexTest {
+	private Configuration conf;
+	private FileSystem fs;
+	private File dir;
+	private List<String> lines;
+
+	@Before
+	public void setUp() throws IOException {
+		conf = new Configuration();
+		fs = FileSystem.getLocal(conf);
+		dir = File.createTempFile("HLYFileIndexTest", "");
+		dir.delete();
+		dir.mkdirs();
+
+		lines = new ArrayList<String>();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(getClass().getResourceAsStream("/MiniOzoneSample.txt"), "US-ASCII"));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				lines.add(line);
+			}
+		} finally {
+			reader.close();
+		}
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		fs.delete(new Path(dir.getAbsolutePath()), true);
+	}
+
+	@Test
+	public void testQueries() throws Exception {
+		List<String> sorted = sortByKey(lines);
+		sorted.add(0, "0070604"); // unreadable keys, not indexed
+		sorted.add(sorted.size() / 2, "");
+		File hlyFile = write("sorted.hly", sorted);
+
+		Set<Integer> stationIDs = new TreeSet<Integer>();
+		HLYRecordParser parser = new HLYRecordParser();
+		for (String line : sorted) {
+			parser.parse(line);
+			stationIDs.add(parser.getStationIDValue());
+		}
+		stationIDs.remove(HLYRecordParser.UNREADABLE_MEASURE);
+		stationIDs.add(1); // before the first Station
+		stationIDs.add(64000); // between 2 Stations
+		stationIDs.add(999999); // after the last Station
+
+		int[][] ranges = {{0, Integer.MAX_VALUE}, {20120206, 20120206}, {20120101, 20120630}, {20120601, 20121231}, {20120811, 20120809}};
+		for (int interval : new int[] {1, 2, 3, 1000}) {
+			conf.setInt(HLYFileIndex.CONF_INTERVAL, interval);
+			assertTrue(HLYFileIndex.buildIfStale(conf, new Path(hlyFile.getAbsolutePath())));
+			HLYIndexedReader reader = HLYIndexedReader.open(hlyFile);
+			try {
+				int readable = sorted.size() - 2; // without the 2 unreadable keys
+				assertEquals("1 entry every interval records", (readable + interval - 1) / interval, reader.getIndex().getEntryCount());
+
+				int total = 0;
+				for (int stationID : stationIDs) {
+					for (int[] range : ranges) {
+						List<String> expected = scan(sorted, stationID, range[0], range[1]);
+						assertEquals(String.format("Station %d from %d to %d, interval %d", stationID, range[0], range[1], interval),
+								expected, query(reader, stationID, range[0], range[1]));
+						total += (range[1] == Integer.MAX_VALUE ? expected.size() : 0);
+					}
+				}
+				assertEquals("All the readable records", sorted.size() - 2, total);
+			} finally {
+				reader.close();
+			}
+			new File(dir, "sorted.hly" + HLYFileIndex.FILE_EXTENSION).delete();
+		}
+	}
+
+	@Test
+	public void testDuplicateKeys() throws Exception {
+		// the same (StationID, Date) on both sides of an entry
+		List<String> sorted = sortByKey(lines);
+		String line = sorted.get(10);
+		sorted.add(10, line);
+		sorted.add(10, line);
+		File hlyFile = write("duplicates.hly", sorted);
+		conf.setInt(HLYFileIndex.CONF_INTERVAL, 2);
+		HLYFileIndex.buildIfStale(conf, new Path(hlyFile.getAbsolutePath()));
+
+		HLYRecordParser parser = new HLYRecordParser();
+		parser.parse(line);
+		HLYIndexedReader reader = HLYIndexedReader.open(hlyFile);
+		try {
+			assertEquals(Arrays.asList(line, line, line), query(reader, parser.getStationIDValue(), parser.getDateValue(), parser.getDateValue()));
+		} finally {
+			reader.close();
+		}
+	}
+
+	@Test
+	public void testUnsortedAndStale() throws Exception {
+		File unsorted = write("unsorted.hly", lines);
+		try {
+			HLYFileIndex.buildIfStale(conf, new Path(unsorted.getAbsolutePath()));
+			fail("MiniOzoneSample is not sorted");
+		} catch (IOException ex) {
+			assertTrue(ex.getMessage().contains("not sorted"));
+		}
+		assertEquals("No index left behind", 0, dir.list(new FilenameFilter() {
+			@Override
+			public boolean accept(File dir, String name) {
+				return name.contains(HLYFileIndex.FILE_EXTENSION);
+			}
+		}).length);
+
+		List<String> sorted = sortByKey(lines);
+		File hlyFile = write("stale.hly", sorted);
+		Path hlyPath = new Path(hlyFile.getAbsolutePath());
+		assertTrue("Missing", HLYFileIndex.buildIfStale(conf, hlyPath));
+		assertFalse("Up to date", HLYFileIndex.buildIfStale(conf, hlyPath));
+
+		sorted.add(sorted.get(sorted.size() - 1));
+		write("stale.hly", sorted);
+		try {
+			HLYIndexedReader.open(hlyFile);
+			fail("The file changed after the index");
+		} catch (IOException ex) {
+			assertTrue(ex.getMessage().contains("Stale"));
+		}
+		assertTrue("Stale", HLYFileIndex.buildIfStale(conf, hlyPath));
+		HLYIndexedReader.open(hlyFile).close();
+
+		// rewritten with the same length (a corrected record): only the modification time tells
+		write("stale.hly", sorted);
+		assertTrue(hlyFile.setLastModified(hlyFile.lastModified() + 2000));
+		try {
+			HLYIndexedReader.open(hlyFile);
+			fail("The file was rewritten after the index");
+		} catch (IOException ex) {
+			assertTrue(ex.getMessage().contains("Stale"));
+		}
+		assertTrue("Stale", HLYFileIndex.buildIfStale(conf, hlyPath));
+		HLYIndexedReader.open(hlyFile).close();
+	}
+
+	/**
+	 * The lines with a readable key sorted by (StationID, Date), as the HLY files to index
+	 */
+	private static List<String> sortByKey(List<String> lines) {
+		final HLYRecordParser parser = new HLYRecordParser();
+		List<String> sorted = new ArrayList<String>();
+		for (String line : lines) {
+			parser.parse(line);
+			if (parser.getStationIDValue() != HLYRecordParser.UNREADABLE_MEASURE && parser.getDateValue() != HLYRecordParser.UNREADABLE_MEASURE) {
+				sorted.add(line);
+			}
+		}
+		Collections.sort(sorted, new Comparator<String>() {
+			@Override
+			public int compare(String s1, String s2) {
+				parser.parse(s1);
+				int station1 = parser.getStationIDValue(), date1 = parser.getDateValue();
+				parser.parse(s2);
+				int station2 = parser.getStationIDValue(), date2 = parser.getDateValue();
+				return (station1 != station2 ? Integer.compare(station1, station2) : Integer.compare(date1, date2));
+			}
+		});
+		return sorted;
+	}
+
+	/**
+	 * The expected answer: a full scan of the lines
+	 */
+	private static List<String> scan(List<String> lines, int stationID, int dateFrom, int dateTo) {
+		HLYRecordParser parser = new HLYRecordParser();
+		List<String> selected = new ArrayList<String>();
+		for (String line : lines) {
+			parser.parse(line);
+			int date = parser.getDateValue();
+			if (parser.getStationIDValue() == stationID && date != HLYRecordParser.UNREADABLE_MEASURE && date >= dateFrom && date <= dateTo) {
+				selected.add(line);
+			}
+		}
+		return selected;
+	}
+
+	private static List<String> query(HLYIndexedReader reader, int stationID, int dateFrom, int dateTo) throws IOException {
+		final List<String> selected = new ArrayList<String>();
+		int count = reader.query(stationID, dateFrom, dateTo, new HLYIndexedReader.RecordVisitor() {
+			@Override
+			public void visit(HLYRecordParser record, byte[] bytes, int offset, int length) {
+				selected.add(new String(bytes, offset, length, StandardCharsets.US_ASCII));
+			}
+		});
+		assertEquals(selected.size(), count);
+		return selected;
+	}
+
+	private File write(String name, List<String> lines) throws IOException {
+		File file = new File(dir, name);
+		Writer writer = new OutputStreamWriter(new FileOutputStream(file), "US-ASCII");
+		try {
+			for (String line : lines) {
+				writer.write(line + "\n");
+			}
+		} finally {
+			writer.close();
+		}
+		return file;
+	}
+}
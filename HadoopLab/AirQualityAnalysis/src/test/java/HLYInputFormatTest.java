@@ -0,0 +1,164 @@
+import hadooplab.OzoneAnalysis.HLYInputFormat;
+import hadooplab.OzoneAnalysis.HLYRecordParser;
+import hadooplab.OzoneAnalysis.HLYRecordWritable;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.hadoop.io.compress.GzipCodec;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
+import org.apache.hadoop.util.ReflectionUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit tests of HLYInputFormat: the records read split by split must be the valid records of the file, once each,
+ * with LF and CR-LF terminators, irregular lines, and a compressed file
+ */
+public class HLYInputFormatTest {
+	private Configuration conf;
+	private FileSystem fs;
+	private File dir;
+	private List<String> lines;
+
+	@Before
+	public void setUp() throws IOException {
+		conf = new Configuration();
+		conf.setInt(HLYInputFormat.CONF_BUFFER_SIZE, 1); // smallest buffer: many refills
+		fs = FileSystem.getLocal(conf);
+		dir = File.createTempFile("HLYInputFormatTest", "");
+		dir.delete();
+		dir.mkdirs();
+
+		lines = new ArrayList<String>();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(getClass().getResourceAsStream("/MiniOzoneSample.txt"), "US-ASCII"));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				lines.add(line);
+			}
+		} finally {
+			reader.close();
+		}
+		// 20 + LF + 104 chars: the 126th byte after the short line is an LF, as after a record,
+		// and the LF is in the DayAverage column, which isValidRecord() does not check
+		String record = lines.get(3);
+		lines.add(10, record.substring(0, 20));
+		lines.add(11, record.substring(0, 104));
+		lines.add(20, "");
+		lines.add(30, record + "   "); // longer line, valid for the parser
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		fs.delete(new Path(dir.getAbsolutePath()), true);
+	}
+
+	@Test
+	public void testSplitsLF() throws Exception {
+		Path file = write("lf.hly", "\n", false);
+		List<InputSplit> splits = getSplits(file, 1000);
+		assertTrue("Several splits", splits.size() > 5);
+		for (InputSplit split : splits) {
+			assertEquals("Split aligned on a record", 0, ((FileSplit) split).getStart() % HLYInputFormat.RECORD_STRIDE);
+		}
+		assertEquals(expectedRecords(), read(splits));
+	}
+
+	@Test
+	public void testSplitsCRLF() throws Exception {
+		Path file = write("crlf.hly", "\r\n", false);
+		List<InputSplit> splits = getSplits(file, 1000);
+		assertEquals("Split aligned on a record", 0, ((FileSplit) splits.get(1)).getStart() % (HLYInputFormat.RECORD_STRIDE + 1));
+		assertEquals(expectedRecords(), read(splits));
+
+		// any split size, aligned or not on the records
+		for (long splitSize : new long[] {127, 300, 4001}) {
+			assertEquals("Split size " + splitSize, expectedRecords(), read(getSplits(file, splitSize)));
+		}
+	}
+
+	@Test
+	public void testCompressed() throws Exception {
+		Path file = write("lf.hly.gz", "\n", true);
+		List<InputSplit> splits = getSplits(file, 1000);
+		assertEquals("Not splittable", 1, splits.size());
+		assertEquals(expectedRecords(), read(splits));
+	}
+
+	/**
+	 * The valid records, parsed line by line as the mappers do with TextInputFormat
+	 */
+	private List<HLYRecordWritable> expectedRecords() {
+		List<HLYRecordWritable> records = new ArrayList<HLYRecordWritable>();
+		HLYRecordParser parser = new HLYRecordParser();
+		for (String line : lines) {
+			parser.parse(line);
+			if (parser.isValidRecord()) {
+				HLYRecordWritable record = new HLYRecordWritable();
+				record.setFrom(parser);
+				records.add(record);
+			}
+		}
+		return records;
+	}
+
+	private Path write(String fileName, String terminator, boolean gzip) throws IOException {
+		Path file = new Path(new File(dir, fileName).getAbsolutePath());
+		OutputStream out = fs.create(file, true);
+		if (gzip) {
+			out = ReflectionUtils.newInstance(GzipCodec.class, conf).createOutputStream(out);
+		}
+		Writer writer = new OutputStreamWriter(out, "US-ASCII");
+		try {
+			for (int kk = 0; kk < lines.size(); kk++) {
+				writer.write(lines.get(kk));
+				if (kk < lines.size() - 1) {
+					writer.write(terminator); // no terminator after the last line
+				}
+			}
+		} finally {
+			writer.close();
+		}
+		return file;
+	}
+
+	private List<InputSplit> getSplits(Path file, long maxSplitSize) throws IOException {
+		Job job = Job.getInstance(conf);
+		FileInputFormat.setInputPaths(job, file);
+		FileInputFormat.setMaxInputSplitSize(job, maxSplitSize);
+		return new HLYInputFormat().getSplits(job);
+	}
+
+	private List<HLYRecordWritable> read(List<InputSplit> splits) throws Exception {
+		List<HLYRecordWritable> records = new ArrayList<HLYRecordWritable>();
+		for (InputSplit split : splits) {
+			TaskAttemptContext context = new TaskAttemptContextImpl(conf, new TaskAttemptID());
+			RecordReader<?, HLYRecordWritable> reader = new HLYInputFormat().createRecordReader(split, context);
+			reader.initialize(split, context);
+			try {
+				while (reader.nextKeyValue()) {
+					records.add(WritableUtils.clone(reader.getCurrentValue(), conf)); // the value is re-used
+				}
+				assertEquals(1.0f, reader.getProgress(), 0.0f);
+			} finally {
+				reader.close();
+			}
+		}
+		return records;
+	}
+}
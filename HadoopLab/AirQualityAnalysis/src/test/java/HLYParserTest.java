@@ -1,4 +1,5 @@
 import java.text.DecimalFormat;
+import java.util.EnumSet;
 
 import org.hamcrest.BaseMatcher;
 import org.hamcrest.Description;
@@ -56,6 +57,19 @@ public class HLYParserTest {
 		assertEquals("Record4", hlyParser4.getStationID(), new Integer(60419));
 	}
 
+	@Test
+	public void testPollutantCode() {
+		HLYRecordParser ozoneParser = new HLYRecordParser();
+		ozoneParser.parse("00701010220120105  23   5  29  26  25  25  28  28  27  29  28  26  26  26  27-999-999-999-999  23  26  24  22  16  10   8   5");
+		HLYRecordParser corruptedParser = new HLYRecordParser();
+		corruptedParser.parse("Corrupted Record");
+
+		assertEquals("NO2", hlyParser1.getPollutantCode(), new Integer(6));
+		assertEquals("O3", ozoneParser.getPollutantCode(), new Integer(7));
+		assertEquals("O3, no boxing", 7, ozoneParser.getPollutantCodeValue());
+		assertNull("Corrupted", corruptedParser.getPollutantCode());
+	}
+
 	@Test
 	public void testDate() {
 		assertEquals("Record1", hlyParser1.getDateString(), "20120413");
@@ -133,6 +147,104 @@ public class HLYParserTest {
 	}
 
 
+	/**
+	 * Parsing the bytes of a record (mapper hot path) must give the same results than parsing the String
+	 * The record is placed in the middle of a bigger buffer like in a re-used Text
+	 */
+	@Test
+	public void testParseBytes() throws Exception {
+		String[] records = {
+			"00610500120120413  40  31  45  33  31  33  35  35  35  35  35  36  38  40  41  42  44  45  45  45  43  45  44  43  42  42  40",
+			"00606070920120912-999-999-999-999-999-999-999-999-999-999-999-999-999-999-999-999-999-999-999-999-999-999-999-999-999-999-999",
+			"00606041920121024-999  23  35  34  35  29  23  25  25  26-999-999-999-999  28-999-999-999  31-999  32  33-999  34-999  35  35"
+		};
+		HLYRecordParser bytesParser = new HLYRecordParser();
+		HLYRecordParser stringParser = new HLYRecordParser();
+
+		for (String record : records) {
+			byte[] buffer = ("JUNK" + record + "\nJUNK").getBytes("US-ASCII");
+			bytesParser.parse(buffer, 4, record.length());
+			stringParser.parse(record);
+
+			assertEquals(record, stringParser.isValidRecord(), bytesParser.isValidRecord());
+			assertEquals(record, stringParser.getStationID(), bytesParser.getStationID());
+			assertEquals(record, stringParser.getDateString(), bytesParser.getDateString());
+			assertEquals(record, stringParser.getDayAverage(), bytesParser.getDayAverage());
+			assertEquals(record, stringParser.getCalcDayAverage(), bytesParser.getCalcDayAverage());
+			assertEquals(record, stringParser.getCalcDayMin(), bytesParser.getCalcDayMin());
+			assertEquals(record, stringParser.getCalcDayMax(), bytesParser.getCalcDayMax());
+		}
+
+		assertEquals("Date as int", 20121024, bytesParser.getDateValue());
+		assertEquals("Primitive StationID", 60419, bytesParser.getStationIDValue());
+		assertEquals("Missing reading", HLYRecordParser.INVALID_MEASURE, bytesParser.getHourReadingValue(9));
+		assertEquals("Valid readings", 14, bytesParser.getValidHourCount());
+	}
+
+	/**
+	 * A reading which is not a number makes the record invalid, without any exception
+	 */
+	@Test
+	public void testCorruptedReading() {
+		HLYRecordParser parser = new HLYRecordParser();
+		parser.parse("00610500120120413  40  31  45  33  31  33  35  35  35  35  35  36  38  40  41  42  44  45  45  45  43  45  44  43  42  4X  40");
+
+		assertFalse("Corrupted H23", parser.isValidRecord());
+		assertEquals("Corrupted H23", HLYRecordParser.UNREADABLE_MEASURE, parser.getHourReadingValue(22));
+		assertEquals("Other fields still decoded", new Integer(105001), parser.getStationID());
+	}
+
+	/**
+	 * With a projection, the fields outside the projection are decoded on demand: same values as the full parsing
+	 */
+	@Test
+	public void testProjection() {
+		String[] lines = {
+				"00612920220120207  32  28  37  33  32  31  31  31  32  33  36  37  36  35  34-999-999-999-999-999-999  28  29  30  31  30  29",
+				"00606070920120912-999-999-999-999-999-999-999-999-999-999-999-999-999-999-999-999-999-999-999-999-999-999-999-999-999-999-999",
+				"00610500120120413  40  31  45  33  31  33  35  35  35  35  35  36  38  40  41  42  44  45  45  45  43  45  44  43  42  4X  40",
+				"Corrupted Record"};
+		HLYRecordParser projected = new HLYRecordParser();
+		projected.setProjection(EnumSet.of(HLYRecordParser.Field.STATION_ID, HLYRecordParser.Field.DAY_STATS));
+		for (String line : lines) {
+			HLYRecordParser full = new HLYRecordParser();
+			full.parse(line);
+			projected.parse(line);
+			assertEquals(line, full.isValidRecord(), projected.isValidRecord());
+			assertEquals(line, full.hasUnreadableColumn(), projected.hasUnreadableColumn());
+			assertEquals(line, full.getDayAverage(), projected.getDayAverage());
+			assertEquals(line, full.getHourReadingValue(22), projected.getHourReadingValue(22)); // 1 hour alone
+			assertEquals(line, full.getDateString(), projected.getDateString());
+			assertEquals(line, full.getPollutantCode(), projected.getPollutantCode());
+			assertEquals(line, full.getValidHourCount(), projected.getValidHourCount());
+			assertEquals(line, full.getCalcDayAverage(), projected.getCalcDayAverage());
+			assertEquals(line, full.getHourlyStats().getPeakHour(), projected.getHourlyStats().getPeakHour());
+		}
+	}
+
+	/**
+	 * A record rejected on its key is not valid, the next record is parsed again from scratch
+	 */
+	@Test
+	public void testKeyFilter() {
+		HLYRecordParser parser = new HLYRecordParser();
+		parser.setKeyFilter(new HLYRecordParser.KeyFilter() {
+			@Override
+			public boolean accept(int pollutantCode, int stationID) {
+				return stationID == 60419;
+			}
+		});
+		parser.parse("00612920220120207  32  28  37  33  32  31  31  31  32  33  36  37  36  35  34-999-999-999-999-999-999  28  29  30  31  30  29");
+		assertTrue(parser.isRejected());
+		assertFalse(parser.isValidRecord());
+
+		parser.parse("00606041920121024-999  23  35  34  35  29  23  25  25  26-999-999-999-999  28-999-999-999  31-999  32  33-999  34-999  35  35");
+		assertFalse(parser.isRejected());
+		assertTrue(parser.isValidRecord());
+		assertEquals(20121024, parser.getDateValue());
+	}
+
+
 	/**
 	 * Custom Matcher to test lessThan()
 	 * Example:
@@ -0,0 +1,185 @@
+import hadooplab.OzoneAnalysis.HLYInputFormat;
+import hadooplab.OzoneAnalysis.HLYRecordFilter;
+import hadooplab.OzoneAnalysis.HLYRecordParser;
+import hadooplab.OzoneAnalysis.HLYRecordWritable;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.hadoop.mapreduce.InputFormat;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit tests of HLYRecordFilter: the raw byte checks must give the same answer as the parsed StationID and Date,
+ * and the RecordReaders must deliver exactly the records which match
+ */
+public class HLYRecordFilterTest {
+	private Configuration conf;
+	private FileSystem fs;
+	private File dir;
+	private List<String> lines;
+
+	@Before
+	public void setUp() throws IOException {
+		conf = new Configuration();
+		fs = FileSystem.getLocal(conf);
+		dir = File.createTempFile("HLYRecordFilterTest", "");
+		dir.delete();
+		dir.mkdirs();
+
+		lines = new ArrayList<String>();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(getClass().getResourceAsStream("/MiniOzoneSample.txt"), "US-ASCII"));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				lines.add(line);
+			}
+		} finally {
+			reader.close();
+		}
+		lines.add(3, "0070604"); // too short to hold the key
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		fs.delete(new Path(dir.getAbsolutePath()), true);
+	}
+
+	@Test
+	public void testPredicates() throws Exception {
+		assertNull("No predicate", HLYRecordFilter.get(conf));
+		conf.set(HLYRecordFilter.CONF_STATIONS, "60429, 61402");
+		conf.set(HLYRecordFilter.CONF_DATE_FROM, "20120601");
+		conf.set(HLYRecordFilter.CONF_DATE_TO, "20120810");
+		HLYRecordFilter filter = HLYRecordFilter.get(conf);
+
+		int accepted = 0;
+		HLYRecordParser parser = new HLYRecordParser();
+		for (String line : lines) {
+			parser.parse(line);
+			int stationID = parser.getStationIDValue();
+			int date = parser.getDateValue();
+			boolean expected = (stationID == 60429 || stationID == 61402) && date >= 20120601 && date <= 20120810;
+			byte[] bytes = ("  " + line).getBytes("US-ASCII");
+			assertEquals(line, expected, filter.accept(bytes, 2, line.length()));
+			assertEquals(line, expected, filter.accept(stationID, date));
+			accepted += (expected ? 1 : 0);
+		}
+		assertEquals("2 days of 61402, 3 days of 60429", 5, accepted);
+
+		conf.set(HLYRecordFilter.CONF_DATE_TO, "2012-08-10");
+		try {
+			HLYRecordFilter.get(conf);
+			fail("Not a date");
+		} catch (IllegalArgumentException ex) {
+			assertTrue(ex.getMessage().contains(HLYRecordFilter.CONF_DATE_TO));
+		}
+	}
+
+	@Test
+	public void testProvinces() throws Exception {
+		conf.set(HLYRecordFilter.CONF_PROVINCES, "ontario");
+		try {
+			HLYRecordFilter.get(conf);
+			fail("Provinces not resolved by the driver");
+		} catch (IOException ex) {
+			assertTrue(ex.getMessage().contains(HLYRecordFilter.CONF_PROVINCES));
+		}
+
+		HLYRecordFilter.configure(conf, getClass().getResource("/Stations_v28012014.csv").toURI());
+		HLYRecordFilter filter = HLYRecordFilter.get(conf);
+		assertTrue("CN TOWER, ONTARIO", filter.accept(60419, 20120101));
+		assertFalse("MEADOW PARK, BRITISH COLUMBIA", filter.accept(105001, 20120101));
+		assertFalse(filter.hasDateRange());
+
+		// provinces AND StationIDs
+		conf.set(HLYRecordFilter.CONF_STATIONS, "105001,60419");
+		conf.set(HLYRecordFilter.CONF_PROVINCES, "BRITISH COLUMBIA");
+		HLYRecordFilter.configure(conf, getClass().getResource("/Stations_v28012014.csv").toURI());
+		filter = HLYRecordFilter.get(conf);
+		assertTrue(filter.accept(105001, 20120101));
+		assertFalse(filter.accept(60419, 20120101));
+	}
+
+	@Test
+	public void testRecordReaders() throws Exception {
+		conf.set(HLYRecordFilter.CONF_STATIONS, "60429,61402,10102");
+		conf.set(HLYRecordFilter.CONF_DATE_TO, "20120810");
+		conf.setInt(HLYInputFormat.CONF_BUFFER_SIZE, 1);
+		HLYRecordFilter filter = HLYRecordFilter.get(conf);
+		Path file = new Path(new File(dir, "filter.hly").getAbsolutePath());
+		Writer writer = new OutputStreamWriter(fs.create(file, true), "US-ASCII");
+		try {
+			for (String line : lines) {
+				writer.write(line + "\n");
+			}
+		} finally {
+			writer.close();
+		}
+
+		List<String> expectedLines = new ArrayList<String>();
+		List<String> expectedKeys = new ArrayList<String>();
+		HLYRecordParser parser = new HLYRecordParser();
+		for (String line : lines) {
+			byte[] bytes = line.getBytes("US-ASCII");
+			if (filter.accept(bytes, 0, bytes.length)) {
+				expectedLines.add(line);
+				parser.parse(line);
+				if (parser.isValidRecord()) {
+					expectedKeys.add(parser.getStationIDValue() + "/" + parser.getDateValue());
+				}
+			}
+		}
+		assertTrue("Some lines filtered", expectedLines.size() > 3 && expectedLines.size() < lines.size() - 3);
+
+		List<String> textLines = new ArrayList<String>();
+		for (Object value : read(new HLYRecordFilter.FilteringTextInputFormat(), file)) {
+			textLines.add(value.toString());
+		}
+		assertEquals("TextInputFormat", expectedLines, textLines);
+
+		List<String> keys = new ArrayList<String>();
+		for (Object value : read(new HLYInputFormat(), file)) {
+			HLYRecordWritable record = (HLYRecordWritable) value;
+			keys.add(record.getStationIDValue() + "/" + record.getDateValue());
+		}
+		assertEquals("HLYInputFormat", expectedKeys, keys);
+	}
+
+	private List<Object> read(InputFormat<?, ?> inputFormat, Path file) throws Exception {
+		Job job = Job.getInstance(conf);
+		FileInputFormat.setInputPaths(job, file);
+		FileInputFormat.setMaxInputSplitSize(job, 1000);
+		List<Object> values = new ArrayList<Object>();
+		for (InputSplit split : inputFormat.getSplits(job)) {
+			TaskAttemptContext context = new TaskAttemptContextImpl(conf, new TaskAttemptID());
+			RecordReader<?, ?> reader = inputFormat.createRecordReader(split, context);
+			reader.initialize(split, context);
+			try {
+				while (reader.nextKeyValue()) {
+					Object value = reader.getCurrentValue(); // re-used by the reader
+					values.add(value instanceof Text ? value.toString() : WritableUtils.clone((HLYRecordWritable) value, conf));
+				}
+			} finally {
+				reader.close();
+			}
+		}
+		return values;
+	}
+}
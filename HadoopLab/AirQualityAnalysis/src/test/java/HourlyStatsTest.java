@@ -0,0 +1,110 @@
+import hadooplab.OzoneAnalysis.HLYRecordParser;
+import hadooplab.OzoneAnalysis.HLYRecordWritable;
+import hadooplab.OzoneAnalysis.HourlyStats;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit tests of the branch-free kernels of HourlyStats, against a plain loop with if
+ */
+public class HourlyStatsTest {
+	private static final int INVALID = HLYRecordParser.INVALID_MEASURE;
+	private static final int UNREADABLE = HLYRecordParser.UNREADABLE_MEASURE;
+
+	@Test
+	public void testIntKernel() {
+		HourlyStats stats = new HourlyStats();
+		int[] readings = {25, INVALID, 31, -3, 0, 9999, UNREADABLE, 31, INVALID, 9999, 7};
+		stats.compute(readings, readings.length);
+
+		assertEquals("Valid readings", 8, stats.getCount());
+		assertEquals("Corrupted readings", 1, stats.getUnreadableCount());
+		assertEquals(25 + 31 - 3 + 0 + 9999 + 31 + 9999 + 7, stats.getSum());
+		assertEquals("Negative reading", -3, stats.getMin());
+		assertEquals(9999, stats.getMax());
+		assertEquals("1st hour of the peak", 5, stats.getPeakHour());
+
+		// all missing: same "no value" as HLYRecordParser.getCalcDayXXX() returning NULL
+		stats.compute(new int[] {INVALID, INVALID, UNREADABLE}, 3);
+		assertEquals(0, stats.getCount());
+		assertTrue(Float.isNaN(stats.getAverage()));
+		assertTrue(Double.isNaN(stats.getVariance()));
+		assertEquals(-1, stats.getPeakHour());
+
+		// only the first length readings
+		stats.compute(new int[] {4, 4, 4, 100}, 3);
+		assertEquals(3, stats.getCount());
+		assertEquals(4, stats.getMax());
+		assertEquals("Constant readings", 0.0, stats.getVariance(), 0.0);
+	}
+
+	@Test
+	public void testRandomReadings() {
+		Random random = new Random(20261018L);
+		HourlyStats stats = new HourlyStats();
+		int[] readings = new int[HLYRecordParser.HOUR_COUNT];
+
+		for (int test = 0; test < 1000; test++) {
+			int count = 0, min = Integer.MAX_VALUE, max = Integer.MIN_VALUE, peakHour = -1;
+			long sum = 0, sumSquares = 0;
+			for (int hour = 0; hour < readings.length; hour++) {
+				int dice = random.nextInt(10);
+				readings[hour] = (dice == 0 ? INVALID : dice == 1 ? UNREADABLE : random.nextInt(11000) - 1000);
+				if (readings[hour] != INVALID && readings[hour] != UNREADABLE) {
+					count++;
+					sum += readings[hour];
+					sumSquares += (long) readings[hour] * readings[hour];
+					min = Math.min(min, readings[hour]);
+					if (readings[hour] > max) {
+						max = readings[hour];
+						peakHour = hour;
+					}
+				}
+			}
+			stats.compute(readings, readings.length);
+
+			assertEquals(count, stats.getCount());
+			assertEquals(sum, stats.getSum());
+			assertEquals(min, stats.getMin());
+			assertEquals(max, stats.getMax());
+			assertEquals(peakHour, stats.getPeakHour());
+			if (count > 0) {
+				double mean = (double) sum / count;
+				assertEquals((double) sumSquares / count - mean * mean, stats.getVariance(), 1e-6);
+			}
+		}
+	}
+
+	/**
+	 * Both kernels must agree: the int readings of the parser and the short readings + bitmap of HLYRecordWritable
+	 */
+	@Test
+	public void testShortKernel() {
+		HLYRecordParser parser = new HLYRecordParser();
+		parser.parse("00606041920121024-999  23  35  34  35  29  23  25  25  26-999-999-999-999  28-999-999-999  31-999  32  33-999  34-999  35  35");
+		HLYRecordWritable record = new HLYRecordWritable();
+		record.setFrom(parser);
+		HourlyStats parserStats = parser.getHourlyStats();
+		HourlyStats recordStats = new HourlyStats();
+		record.computeHourlyStats(recordStats);
+
+		assertEquals(14, recordStats.getCount());
+		assertEquals(parserStats.getCount(), recordStats.getCount());
+		assertEquals(parserStats.getSum(), recordStats.getSum());
+		assertEquals(parserStats.getMin(), recordStats.getMin());
+		assertEquals(parserStats.getMax(), recordStats.getMax());
+		assertEquals(parserStats.getVariance(), recordStats.getVariance(), 0.0);
+		assertEquals("H02 = 35, the 1st of the three 35", 1, recordStats.getPeakHour());
+		assertEquals(parserStats.getPeakHour(), recordStats.getPeakHour());
+		assertEquals(parser.getCalcDayAverage(), recordStats.getAverage(), 0.0f);
+
+		// a missing hour stored as 0 must not become the min
+		record.clear();
+		record.computeHourlyStats(recordStats);
+		assertEquals(0, recordStats.getCount());
+		assertEquals(Integer.MAX_VALUE, recordStats.getMin());
+	}
+}
@@ -0,0 +1,53 @@
+import hadooplab.OzoneAnalysis.InMapperMaxCombiner;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit tests of hadooplab.OzoneAnalysis.InMapperMaxCombiner
+ */
+public class InMapperMaxCombinerTest {
+
+	@Test
+	public void testMaxPerKey() throws Exception {
+		InMapperMaxCombiner combiner = new InMapperMaxCombiner(100);
+		combiner.add(7, 25);
+		combiner.add(7, 82);
+		combiner.add(7, 40);
+		combiner.add(~60419, -3); // Station without Location
+		combiner.add(3, 0);
+
+		Map<Integer, Integer> emitted = flush(combiner);
+		assertEquals("1 record per key", 3, emitted.size());
+		assertEquals("Max", Integer.valueOf(82), emitted.get(7));
+		assertEquals("Negative key and value", Integer.valueOf(-3), emitted.get(~60419));
+		assertEquals("Zero", Integer.valueOf(0), emitted.get(3));
+		assertEquals("Cleared by flush", 0, combiner.size());
+	}
+
+	@Test
+	public void testBounded() throws Exception {
+		InMapperMaxCombiner combiner = new InMapperMaxCombiner(3);
+		assertFalse(combiner.add(1, 10));
+		assertFalse(combiner.add(2, 10));
+		assertFalse("Existing key: same size", combiner.add(2, 11));
+		assertTrue("Full: must flush", combiner.add(3, 10));
+
+		assertEquals(3, flush(combiner).size());
+		assertFalse("Empty again", combiner.add(4, 10));
+	}
+
+	private static Map<Integer, Integer> flush(InMapperMaxCombiner combiner) throws Exception {
+		final Map<Integer, Integer> emitted = new HashMap<Integer, Integer>();
+		combiner.flush(new InMapperMaxCombiner.Emitter() {
+			@Override
+			public void emit(int key, int maxValue) {
+				assertNull("Key emitted once", emitted.put(key, maxValue));
+			}
+		});
+		return emitted;
+	}
+}
@@ -0,0 +1,104 @@
+import hadooplab.OzoneAnalysis.HLYRecordParser;
+import hadooplab.OzoneAnalysis.LocalOzoneEngine;
+import hadooplab.OzoneAnalysis.NAPSStationLookup;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.*;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit tests of hadooplab.OzoneAnalysis.LocalOzoneEngine: the results must be the same as a naive
+ * single-threaded loop doing what LocationMapper + SimpleMaxAvgReducer do
+ *
+ * MiniOzoneSample.txt is repeated to get a file of several chunks (8 MB each)
+ */
+public class LocalOzoneEngineTest {
+	private static final int REPEAT = 1000;
+
+	private NAPSStationLookup lookup;
+	private File hlyFile;
+	private Map<String, Integer> expectedMax = new TreeMap<String, Integer>();
+	private long expectedInvalid;
+
+	@Before
+	public void setUp() throws Exception {
+		lookup = new NAPSStationLookup();
+		lookup.initialize(new File(getClass().getResource("/Stations_v28012014.csv").toURI()));
+
+		hlyFile = File.createTempFile("LocalOzoneEngineTest", ".hly");
+		BufferedReader reader = new BufferedReader(new InputStreamReader(getClass().getResourceAsStream("/MiniOzoneSample.txt"), "US-ASCII"));
+		StringBuilder sample = new StringBuilder();
+		HLYRecordParser parser = new HLYRecordParser();
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				sample.append(line).append('\n');
+				parser.parse(line);
+				if (!parser.isValidRecord()) {
+					expectedInvalid += REPEAT;
+				} else if (parser.getDayAverage() != null) {
+					String location = lookup.getStationLocation(parser.getStationID());
+					Integer max = expectedMax.get(location);
+					expectedMax.put(location, max == null ? parser.getDayAverage() : Math.max(max, parser.getDayAverage()));
+				}
+			}
+		} finally {
+			reader.close();
+		}
+
+		Writer writer = new OutputStreamWriter(new BufferedOutputStream(new FileOutputStream(hlyFile)), "US-ASCII");
+		try {
+			for (int kk = 0; kk < REPEAT; kk++) {
+				writer.write(sample.toString());
+			}
+		} finally {
+			writer.close();
+		}
+	}
+
+	@After
+	public void tearDown() {
+		hlyFile.delete();
+	}
+
+	@Test
+	public void testByLocation() throws IOException {
+		LocalOzoneEngine.Result result = new LocalOzoneEngine(lookup, 4).run(hlyFile);
+
+		StringBuilder expected = new StringBuilder();
+		for (Map.Entry<String, Integer> entry : expectedMax.entrySet()) {
+			expected.append(entry.getKey()).append('\t').append(entry.getValue()).append('\n');
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		result.writeByLocation(out);
+
+		assertTrue("Several chunks", hlyFile.length() > 8 << 20);
+		assertEquals("Same as LocationDriver", expected.toString(), out.toString("UTF-8"));
+		assertEquals("INVALID records", expectedInvalid, result.getInvalidCount());
+		assertEquals("All records", 76L * REPEAT, result.getRecordCount());
+	}
+
+	@Test
+	public void testRanking() throws IOException {
+		LocalOzoneEngine.Result result = new LocalOzoneEngine(lookup, 2).run(hlyFile);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		result.writeRanking(out, 0);
+		String[] lines = out.toString("UTF-8").split("\n");
+
+		assertEquals("1 line per Location", expectedMax.size(), lines.length);
+		int previous = Integer.MAX_VALUE;
+		for (String line : lines) {
+			String[] fields = line.split("\t", 2);
+			int maxOzone = Integer.parseInt(fields[0]);
+			assertTrue("MaxAvgOzone descending", maxOzone <= previous);
+			assertEquals(line, expectedMax.get(fields[1]), Integer.valueOf(maxOzone));
+			previous = maxOzone;
+		}
+	}
+}
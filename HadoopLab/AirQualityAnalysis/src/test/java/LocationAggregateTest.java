@@ -0,0 +1,56 @@
+import hadooplab.OzoneAnalysis.LocationAggregate;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit tests of hadooplab.OzoneAnalysis.LocationAggregate, the state of the incremental LocationDriver
+ */
+public class LocationAggregateTest {
+	private static LocationAggregate aggregate(int... dayAverages) {
+		LocationAggregate aggregate = new LocationAggregate();
+		LocationAggregate day = new LocationAggregate();
+		for (int kk = 0; kk < dayAverages.length; kk++) {
+			if (kk == 0) {
+				aggregate.set(dayAverages[kk]);
+			} else {
+				day.set(dayAverages[kk]);
+				aggregate.merge(day);
+			}
+		}
+		return aggregate;
+	}
+
+	@Test
+	public void testMergeEqualsFullScan() {
+		// previous runs + new records == all the records at once
+		LocationAggregate state = aggregate(25, 31, 18);
+		state.merge(aggregate(40, 12));
+
+		LocationAggregate full = aggregate(25, 31, 18, 40, 12);
+		assertEquals(full.getMax(), state.getMax());
+		assertEquals(full.getMin(), state.getMin());
+		assertEquals(full.getSum(), state.getSum());
+		assertEquals(full.getCount(), state.getCount());
+		assertEquals("40\t12\t25.2\t5", state.toString());
+	}
+
+	@Test
+	public void testSerialization() throws IOException {
+		LocationAggregate state = aggregate(25, 31, 18);
+		DataOutputBuffer out = new DataOutputBuffer();
+		state.write(out);
+		assertTrue("VInts: a few bytes", out.getLength() <= 8);
+
+		DataInputBuffer in = new DataInputBuffer();
+		in.reset(out.getData(), out.getLength());
+		LocationAggregate readState = new LocationAggregate();
+		readState.readFields(in);
+		assertEquals(state.toString(), readState.toString());
+		assertEquals("24.7", readState.formatAverage());
+	}
+}
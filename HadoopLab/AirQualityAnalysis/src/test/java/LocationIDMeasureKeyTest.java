@@ -0,0 +1,112 @@
+import hadooplab.OzoneAnalysis.OzoneDriverBase;
+import hadooplab.OzoneAnalysis.TotalOrderSampling;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.RawComparator;
+import org.apache.hadoop.io.WritableComparator;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit tests of the compact key LocationIDMeasureKey: VInt serialization and raw comparators
+ */
+public class LocationIDMeasureKeyTest {
+	private LocationIDMeasureKey[] keys;
+
+	@Before
+	public void setUp() {
+		keys = new LocationIDMeasureKey[] {
+			new LocationIDMeasureKey(0, 25),
+			new LocationIDMeasureKey(0, 82),
+			new LocationIDMeasureKey(127, 0),
+			new LocationIDMeasureKey(128, 40), // 1st LocationID needing 2 bytes
+			new LocationIDMeasureKey(300, -3),
+			new LocationIDMeasureKey(LocationIDMeasureKey.stationKeyID(60419), 12),
+			new LocationIDMeasureKey(LocationIDMeasureKey.stationKeyID(100110), 12)
+		};
+	}
+
+	@Test
+	public void testSerialization() throws IOException {
+		DataOutputBuffer out = new DataOutputBuffer();
+		DataInputBuffer in = new DataInputBuffer();
+		LocationIDMeasureKey readKey = new LocationIDMeasureKey();
+		for (LocationIDMeasureKey key : keys) {
+			out.reset();
+			key.write(out);
+			in.reset(out.getData(), out.getLength());
+			readKey.readFields(in);
+			assertEquals(key, readKey);
+		}
+
+		out.reset();
+		new LocationIDMeasureKey(250, 45).write(out);
+		assertEquals("VInt LocationID + VInt ozone", 3, out.getLength());
+		out.reset();
+		new LocationMeasureCompoKey("ONTARIO\tTORONTO", 45).write(out);
+		assertTrue("Several times smaller than the Location String", out.getLength() > 5 * 3);
+
+		LocationIDMeasureKey stationKey = new LocationIDMeasureKey(LocationIDMeasureKey.stationKeyID(60419), 12);
+		assertFalse(stationKey.hasLocation());
+		assertEquals(60419, stationKey.getStationID());
+		assertTrue(keys[0].hasLocation());
+	}
+
+	@Test
+	public void testComparators() throws IOException {
+		RawComparator<?> defaultComparator = WritableComparator.get(LocationIDMeasureKey.class);
+		assertTrue("Registered raw comparator", defaultComparator instanceof LocationIDMeasureKey.Comparator);
+		WritableComparator sortComparator = new LocationIDMeasureKey.SortComparator();
+		WritableComparator groupComparator = new LocationIDMeasureKey.GroupComparator();
+
+		for (LocationIDMeasureKey k1 : keys) {
+			for (LocationIDMeasureKey k2 : keys) {
+				assertEquals("Default " + k1 + " vs " + k2,
+						Integer.signum(k1.compareTo(k2)), Integer.signum(compareRaw(defaultComparator, k1, k2)));
+				assertEquals("Sort " + k1 + " vs " + k2,
+						Integer.signum(sortComparator.compare(k1, k2)), Integer.signum(compareRaw(sortComparator, k1, k2)));
+				assertEquals("Group " + k1 + " vs " + k2,
+						Integer.signum(groupComparator.compare(k1, k2)), Integer.signum(compareRaw(groupComparator, k1, k2)));
+			}
+		}
+
+		// AverageOzone descending within the same Location, LocationIDs ascending
+		assertTrue("Descending", sortComparator.compare(keys[1], keys[0]) < 0);
+		assertTrue("Same group", groupComparator.compare(keys[1], keys[0]) == 0);
+		assertTrue("LocationID order", sortComparator.compare(keys[2], keys[3]) < 0);
+		assertTrue("Stations without Location first", sortComparator.compare(keys[5], keys[0]) < 0);
+	}
+
+	/**
+	 * Serialize both keys in the same buffer, with some junk before, like in the shuffle buffers
+	 */
+	private static int compareRaw(RawComparator<?> comparator, LocationIDMeasureKey k1, LocationIDMeasureKey k2) throws IOException {
+		DataOutputBuffer buffer = new DataOutputBuffer();
+		buffer.writeInt(-1);
+		int s1 = buffer.getLength();
+		k1.write(buffer);
+		int s2 = buffer.getLength();
+		k2.write(buffer);
+		int end = buffer.getLength();
+		return comparator.compare(buffer.getData(), s1, s2 - s1, buffer.getData(), s2, end - s2);
+	}
+
+	@Test
+	public void testDriverRejectsOrderedPartitioning() throws Exception {
+		// the compact key is hash partitioned only: no silent fallback when a sorted or balanced output is asked
+		for (String option : new String[] {TotalOrderSampling.CONF_ENABLED, SkewAwareLocationPartitioner.CONF_ENABLED}) {
+			Configuration conf = new Configuration(false);
+			conf.setBoolean(CompositeKeyDriver.CONF_COMPACT_KEY, true);
+			conf.setBoolean(option, true);
+			conf.setInt(OzoneDriverBase.CONF_REDUCERS, 4);
+			CompositeKeyDriver driver = new CompositeKeyDriver();
+			driver.setConf(conf);
+			assertEquals(option, -1, driver.run(new String[] {"/in/2012O3.hly", "/out/output"}));
+		}
+	}
+}
@@ -0,0 +1,46 @@
+import hadooplab.OzoneAnalysis.NAPSPollutantCodes;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.math.BigDecimal;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit tests of hadooplab.OzoneAnalysis.NAPSPollutantCodes, using NAPS-pollutant-codesV2014.csv of src/main/resources
+ */
+public class NAPSPollutantCodesTest {
+	private NAPSPollutantCodes codes;
+
+	@Before
+	public void setUp() throws Exception {
+		codes = new NAPSPollutantCodes();
+		codes.initialize(new File(getClass().getResource("/NAPS-pollutant-codesV2014.csv").toURI()));
+	}
+
+	@Test
+	public void testPollutant() {
+		NAPSPollutantCodes.Pollutant ozone = codes.getPollutant(7);
+		assertEquals("Formula", "O3", ozone.getFormula());
+		assertEquals("Name", "O3", ozone.getName());
+		assertEquals("Unit", "ppb", ozone.getUnit());
+		assertEquals("Precision", new BigDecimal("1"), ozone.getUnitPrecision());
+
+		NAPSPollutantCodes.Pollutant pm25 = codes.getPollutant(15);
+		assertEquals("No formula: Description as Name", "PM-2.5 SP (TEOM)", pm25.getName());
+		assertEquals("ISO-8859-1 micro sign", "µg/m3", pm25.getUnit());
+
+		assertNull("No precision", codes.getPollutant(21).getUnitPrecision());
+		assertNull("Unknown code", codes.getPollutant(999));
+		assertNull("Out of range", codes.getPollutant(-999));
+	}
+
+	@Test
+	public void testFormatReading() {
+		assertEquals("ppb, precision 1", "45", codes.getPollutant(7).formatReading(45));
+		assertEquals("CO, precision 0.1", "1.2", codes.getPollutant(5).formatReading(12));
+		assertEquals("Lead, precision 0.01", "0.07", codes.getPollutant(9).formatReading(7));
+		assertEquals("No precision: as read", "33", codes.getPollutant(21).formatReading(33));
+	}
+}
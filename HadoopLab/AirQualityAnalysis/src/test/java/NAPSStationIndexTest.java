@@ -0,0 +1,111 @@
+import hadooplab.OzoneAnalysis.NAPSStationIndex;
+import hadooplab.OzoneAnalysis.NAPSStationLookup;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit tests of hadooplab.OzoneAnalysis.NAPSStationIndex: the lookup loaded from the binary snapshot
+ * must be the lookup of the CSV, using the Station file of src/main/resources
+ */
+public class NAPSStationIndexTest {
+	private Configuration conf;
+	private FileSystem fs;
+	private File dir, stationFile, indexFile;
+
+	@Before
+	public void setUp() throws Exception {
+		conf = new Configuration(false);
+		fs = FileSystem.getLocal(conf);
+		dir = Files.createTempDirectory("NAPSStationIndexTest").toFile();
+		stationFile = new File(dir, "Stations_v28012014.csv");
+		Files.copy(new File(getClass().getResource("/Stations_v28012014.csv").toURI()).toPath(), stationFile.toPath(),
+				StandardCopyOption.REPLACE_EXISTING);
+		indexFile = new File(dir, "Stations_v28012014.csv" + NAPSStationIndex.FILE_EXTENSION);
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		fs.delete(new Path(dir.getAbsolutePath()), true);
+	}
+
+	@Test
+	public void testSameLookup() throws Exception {
+		assertTrue("Compiled", NAPSStationIndex.compileIfStale(fs, path(stationFile), path(indexFile)));
+		assertTrue(NAPSStationIndex.isIndexFile(indexFile));
+		assertFalse(NAPSStationIndex.isIndexFile(stationFile));
+
+		NAPSStationLookup csvLookup = new NAPSStationLookup();
+		csvLookup.initialize(stationFile);
+		NAPSStationLookup indexLookup = new NAPSStationLookup();
+		indexLookup.initialize(indexFile); // the format is detected
+
+		assertEquals("All stations", csvLookup.getStationIDToLocationMap(), indexLookup.getStationIDToLocationMap());
+		assertEquals("Dictionary", csvLookup.getLocationCount(), indexLookup.getLocationCount());
+		for (int id = 0; id < csvLookup.getLocationCount(); id++) {
+			assertEquals(csvLookup.getLocationName(id), indexLookup.getLocationName(id));
+			assertArrayEquals(csvLookup.getLocationBytes(id), indexLookup.getLocationBytes(id));
+		}
+		assertEquals("Same LocationID", csvLookup.getLocationID(60419), indexLookup.getLocationID(60419));
+		assertEquals("Unknown StationID", NAPSStationLookup.NO_LOCATION, indexLookup.getLocationID(999999));
+	}
+
+	@Test
+	public void testIndex() throws Exception {
+		NAPSStationIndex.compileIfStale(fs, path(stationFile), path(indexFile));
+		NAPSStationIndex index = NAPSStationIndex.open(indexFile);
+		assertEquals("Version of the CSV", stationFile.length(), index.getSourceLength());
+
+		// 60419,CN TOWER,C,0,,N,ONTARIO,CN TOWER,TORONTO,CANADA,M5H,,-5,43.65,-79.38333,108,...
+		int cnTower = index.indexOf(60419);
+		assertEquals(60419, index.getStationID(cnTower));
+		assertEquals(43.65f, index.getLatitude(cnTower), 0.0f);
+		assertEquals(-79.38333f, index.getLongitude(cnTower), 0.0f);
+		assertEquals("ONTARIO\tTORONTO", new String(index.getLocationBytes(index.getLocationID(cnTower)), "UTF-8"));
+		assertEquals("Not a Station", -1, index.indexOf(999999));
+		for (int kk = 1; kk < index.getStationCount(); kk++) {
+			assertTrue("Sorted StationIDs", index.getStationID(kk - 1) < index.getStationID(kk));
+		}
+	}
+
+	@Test
+	public void testStaleAndShared() throws Exception {
+		assertTrue(NAPSStationIndex.compileIfStale(fs, path(stationFile), path(indexFile)));
+		assertFalse("Up to date", NAPSStationIndex.compileIfStale(fs, path(stationFile), path(indexFile)));
+
+		conf.setBoolean(NAPSStationLookup.CONF_SHARED, true);
+		NAPSStationLookup shared = NAPSStationLookup.load(conf, indexFile);
+		assertSame("Shared by the tasks of the JVM", shared, NAPSStationLookup.load(conf, indexFile));
+
+		// a new Station: the index is compiled again, the shared lookup loaded again
+		OutputStream out = new FileOutputStream(stationFile, true);
+		try {
+			out.write("999999,NEW STATION,C,1,,N,NUNAVUT,MAIN ST,IQALUIT,CANADA,X0A,,-5,63.75,-68.52,30,,,,,,,,,,,,,,,,,,,,,,,,,,\n".getBytes("US-ASCII"));
+		} finally {
+			out.close();
+		}
+		assertTrue("Stale", NAPSStationIndex.compileIfStale(fs, path(stationFile), path(indexFile)));
+		NAPSStationLookup reloaded = NAPSStationLookup.load(conf, indexFile);
+		assertNotSame(shared, reloaded);
+		assertEquals("NUNAVUT\tIQALUIT", reloaded.getStationLocation(999999));
+
+		conf.setBoolean(NAPSStationLookup.CONF_SHARED, false);
+		assertNotSame("Not shared", reloaded, NAPSStationLookup.load(conf, indexFile));
+	}
+
+	private static Path path(File file) {
+		return new Path(file.getAbsolutePath());
+	}
+}
@@ -0,0 +1,129 @@
+import hadooplab.OzoneAnalysis.OzoneDriverBase;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.DeflateCodec;
+import org.apache.hadoop.io.compress.GzipCodec;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.MRJobConfig;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.junit.Test;
+
+import java.net.URI;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit tests of hadooplab.OzoneAnalysis.OzoneDriverBase: priority of the job parameters
+ * command line > Configuration > defaults of the driver
+ */
+public class OzoneDriverBaseTest {
+
+	@Test
+	public void testDefaults() throws Exception {
+		TestDriver driver = newDriver(new Configuration(false));
+		assertEquals("Parsed", 0, driver.run(new String[0]));
+
+		assertArrayEquals("Default input", new Path[] {new Path("/default/2012O3.hly")}, driver.inputPaths);
+		assertEquals("Default output", new Path("/default/output"), driver.outputPath);
+		assertEquals("Default Station file", URI.create("/default/Stations.csv"), driver.stationFileURI);
+		assertEquals("Hadoop default reducers", 1, driver.job.getNumReduceTasks());
+		assertFalse("Not compressed", FileOutputFormat.getCompressOutput(driver.job));
+		assertFalse("Shuffle not compressed", driver.job.getConfiguration().getBoolean(MRJobConfig.MAP_OUTPUT_COMPRESS, false));
+	}
+
+	@Test
+	public void testCompressionCodecs() throws Exception {
+		Configuration conf = new Configuration(false);
+		conf.set(OzoneDriverBase.CONF_OUTPUT_CODEC, "gzip");
+		conf.set(OzoneDriverBase.CONF_MAP_OUTPUT_CODEC, "deflate");
+
+		TestDriver driver = newDriver(conf);
+		assertEquals("Parsed", 0, driver.run(new String[0]));
+		assertEquals("Output codec alias", GzipCodec.class, FileOutputFormat.getOutputCompressorClass(driver.job, null));
+		assertTrue("Shuffle compressed", driver.job.getConfiguration().getBoolean(MRJobConfig.MAP_OUTPUT_COMPRESS, false));
+		assertEquals("Map output codec alias", DeflateCodec.class,
+				driver.job.getConfiguration().getClass(MRJobConfig.MAP_OUTPUT_COMPRESS_CODEC, null));
+
+		conf.set(OzoneDriverBase.CONF_MAP_OUTPUT_CODEC, "org.apache.hadoop.io.compress.NoSuchCodec");
+		try {
+			newDriver(conf).run(new String[0]);
+			fail("Unknown codec");
+		} catch (IllegalArgumentException ex) {
+			assertTrue(ex.getMessage(), ex.getMessage().contains(OzoneDriverBase.CONF_MAP_OUTPUT_CODEC));
+		}
+	}
+
+	@Test
+	public void testConfiguration() throws Exception {
+		Configuration conf = new Configuration(false);
+		conf.set(OzoneDriverBase.CONF_INPUT, "/data/20{0[3-9],1[0-2]}O3.hly,/data/extra");
+		conf.set(OzoneDriverBase.CONF_OUTPUT, "/conf/output");
+		conf.set(OzoneDriverBase.CONF_STATION_FILE, "hdfs://namenode/conf/Stations.csv");
+		conf.setInt(OzoneDriverBase.CONF_REDUCERS, 12);
+		conf.setLong(OzoneDriverBase.CONF_SPLIT_MAXSIZE, 64L << 20);
+		conf.setClass(OzoneDriverBase.CONF_OUTPUT_CODEC, GzipCodec.class, CompressionCodec.class);
+
+		TestDriver driver = newDriver(conf);
+		assertEquals("Parsed", 0, driver.run(new String[0]));
+
+		assertArrayEquals("Comma inside the glob kept", new Path[] {new Path("/data/20{0[3-9],1[0-2]}O3.hly"), new Path("/data/extra")},
+				driver.inputPaths);
+		assertEquals("Job input", 2, FileInputFormat.getInputPaths(driver.job).length);
+		assertEquals("Output", new Path("/conf/output"), driver.outputPath);
+		assertEquals("Station file", URI.create("hdfs://namenode/conf/Stations.csv"), driver.stationFileURI);
+		assertEquals("Reducers", 12, driver.job.getNumReduceTasks());
+		assertEquals("Split size", 64L << 20, FileInputFormat.getMaxSplitSize(driver.job));
+		assertTrue("Compressed", FileOutputFormat.getCompressOutput(driver.job));
+		assertEquals("Codec", GzipCodec.class, FileOutputFormat.getOutputCompressorClass(driver.job, null));
+	}
+
+	@Test
+	public void testArguments() throws Exception {
+		Configuration conf = new Configuration(false);
+		conf.set(OzoneDriverBase.CONF_INPUT, "/conf/input");
+		conf.set(OzoneDriverBase.CONF_OUTPUT, "/conf/output");
+
+		TestDriver driver = newDriver(conf);
+		assertEquals("Parsed", 0, driver.run(new String[] {"/args/2011O3.hly,/args/2012O3.hly", "/args/output"}));
+		assertArrayEquals("Input of the command line", new Path[] {new Path("/args/2011O3.hly"), new Path("/args/2012O3.hly")},
+				driver.inputPaths);
+		assertEquals("Output of the command line", new Path("/args/output"), driver.outputPath);
+
+		assertEquals("Only the input: usage", -1, newDriver(conf).run(new String[] {"/args/input"}));
+	}
+
+	private static TestDriver newDriver(Configuration conf) {
+		TestDriver driver = new TestDriver();
+		driver.setConf(conf);
+		return driver;
+	}
+
+	/**
+	 * Keeps what a real driver would give to its job
+	 */
+	private static class TestDriver extends OzoneDriverBase {
+		Path[] inputPaths;
+		Path outputPath;
+		URI stationFileURI;
+		Job job;
+
+		TestDriver() {
+			super("/default/2012O3.hly", "/default/output", "/default/Stations.csv");
+		}
+
+		@Override
+		public int run(String[] args) throws Exception {
+			if (!parseArgs(args)) {
+				return -1;
+			}
+			this.inputPaths = getInputPaths();
+			this.outputPath = getOutputPath();
+			this.stationFileURI = getStationFileURI();
+			this.job = newJob("OzoneDriverBaseTest");
+			setInput(this.job);
+			return 0;
+		}
+	}
+}
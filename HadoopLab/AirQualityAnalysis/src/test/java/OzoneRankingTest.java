@@ -0,0 +1,45 @@
+import hadooplab.OzoneAnalysis.OzoneRanking;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit tests of hadooplab.OzoneAnalysis.OzoneRanking
+ */
+public class OzoneRankingTest {
+	private static final String[] LOCATIONS = {
+		"ONTARIO\tTORONTO", "ONTARIO\tALGOMA", "QUEBEC\tSUTTON", "ONTARIO\tHAMILTON", "QUEBEC\tROUYN-NORANDA", "NUNAVUT\tALERT"
+	};
+	private static final int[] MAX_OZONE = {65, 82, 41, 70, 70, 32};
+
+	@Test
+	public void testFullRanking() {
+		OzoneRanking ranking = new OzoneRanking(0);
+		for (int kk = 0; kk < LOCATIONS.length; kk++) {
+			ranking.add(LOCATIONS[kk], MAX_OZONE[kk]);
+		}
+
+		List<OzoneRanking.Entry> entries = ranking.getRanking();
+		assertEquals("All the Locations", LOCATIONS.length, entries.size());
+		assertEquals("1st", "82\tONTARIO\tALGOMA", entries.get(0).toString());
+		assertEquals("Tie ordered by Location", "ONTARIO\tHAMILTON", entries.get(1).getLocation());
+		assertEquals("Tie ordered by Location", "QUEBEC\tROUYN-NORANDA", entries.get(2).getLocation());
+		assertEquals("Last", "32\tNUNAVUT\tALERT", entries.get(LOCATIONS.length - 1).toString());
+	}
+
+	@Test
+	public void testTopN() {
+		OzoneRanking ranking = new OzoneRanking(3);
+		for (int kk = 0; kk < LOCATIONS.length; kk++) {
+			ranking.add(LOCATIONS[kk], MAX_OZONE[kk]);
+		}
+
+		List<OzoneRanking.Entry> entries = ranking.getRanking();
+		assertEquals("Bounded", 3, ranking.size());
+		assertEquals("Same as the head of the full ranking", "82\tONTARIO\tALGOMA", entries.get(0).toString());
+		assertEquals("Same as the head of the full ranking", "70\tONTARIO\tHAMILTON", entries.get(1).toString());
+		assertEquals("Same as the head of the full ranking", "70\tQUEBEC\tROUYN-NORANDA", entries.get(2).toString());
+	}
+}
@@ -0,0 +1,85 @@
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.NullWritable;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit tests of SkewAwareLocationPartitioner and of the hash of CompositeKeyDriver.LocationPartitioner
+ */
+public class SkewAwareLocationPartitionerTest {
+	private static final String TORONTO = "ONTARIO\tTORONTO";
+	private static final String ALGOMA = "ONTARIO\tALGOMA";
+	private static final String SUTTON = "QUEBEC\tSUTTON";
+	// "polygenelubricants".hashCode() == Integer.MIN_VALUE: Math.abs() of it is negative
+	private static final String MIN_HASH_LOCATION = "polygenelubricants";
+
+	@Test
+	public void testComputeSplits() {
+		Map<String, Integer> sampleCounts = new HashMap<String, Integer>();
+		sampleCounts.put(TORONTO, 600);
+		sampleCounts.put(ALGOMA, 250);
+		sampleCounts.put(SUTTON, 150);
+
+		// 4 reducers: fair share = 250 records
+		Map<String, Integer> splits = SkewAwareLocationPartitioner.computeSplits(sampleCounts, 4, 1.0);
+		assertEquals("Only the Locations above the fair share", 1, splits.size());
+		assertEquals("600 / 250 rounded up", Integer.valueOf(3), splits.get(TORONTO));
+
+		assertTrue("Nothing to split with 1 reducer", SkewAwareLocationPartitioner.computeSplits(sampleCounts, 1, 1.0).isEmpty());
+		assertTrue("Nothing to split without sample", SkewAwareLocationPartitioner.computeSplits(new HashMap<String, Integer>(), 4, 1.0).isEmpty());
+	}
+
+	@Test
+	public void testSplitsInConfiguration() {
+		Map<String, Integer> splits = new HashMap<String, Integer>();
+		splits.put(TORONTO, 3);
+		splits.put("BRITISH COLUMBIA\tMETRO VAN", 2);
+		Configuration conf = new Configuration(false);
+		SkewAwareLocationPartitioner.setSplits(conf, splits);
+
+		assertEquals("The tab of the Locations is kept", splits, SkewAwareLocationPartitioner.getSplits(conf));
+		assertTrue(SkewAwareLocationPartitioner.getSplits(new Configuration(false)).isEmpty());
+	}
+
+	@Test
+	public void testPartitions() {
+		Map<String, Integer> splits = new HashMap<String, Integer>();
+		splits.put(TORONTO, 3);
+		Configuration conf = new Configuration(false);
+		SkewAwareLocationPartitioner.setSplits(conf, splits);
+		SkewAwareLocationPartitioner partitioner = new SkewAwareLocationPartitioner();
+		partitioner.setConf(conf);
+
+		Set<Integer> torontoPartitions = new HashSet<Integer>();
+		for (int avgOzone = 0; avgOzone < 60; avgOzone++) {
+			torontoPartitions.add(partitioner.getPartition(new LocationMeasureCompoKey(TORONTO, avgOzone), NullWritable.get(), 8));
+		}
+		assertEquals("The split Location is spread over 3 reducers", 3, torontoPartitions.size());
+
+		Set<Integer> algomaPartitions = new HashSet<Integer>();
+		for (int avgOzone = 0; avgOzone < 60; avgOzone++) {
+			algomaPartitions.add(partitioner.getPartition(new LocationMeasureCompoKey(ALGOMA, avgOzone), NullWritable.get(), 8));
+		}
+		assertEquals("The other Locations stay on 1 reducer", 1, algomaPartitions.size());
+	}
+
+	@Test
+	public void testMinValueHash() {
+		assertEquals(Integer.MIN_VALUE, MIN_HASH_LOCATION.hashCode());
+		LocationMeasureCompoKey key = new LocationMeasureCompoKey(MIN_HASH_LOCATION, 25);
+
+		int partition = new CompositeKeyDriver.LocationPartitioner().getPartition(key, NullWritable.get(), 7);
+		assertTrue("Valid partition", partition >= 0 && partition < 7);
+
+		SkewAwareLocationPartitioner partitioner = new SkewAwareLocationPartitioner();
+		partitioner.setConf(new Configuration(false));
+		assertEquals("Same partition than LocationPartitioner for a Location which is not split",
+				partition, partitioner.getPartition(key, NullWritable.get(), 7));
+	}
+}
@@ -0,0 +1,46 @@
+import hadooplab.OzoneAnalysis.NAPSStationLookup;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit tests of hadooplab.OzoneAnalysis.NAPSStationLookup, using the Station file of src/main/resources
+ */
+public class StationLookupTest {
+	private NAPSStationLookup lookup, offHeapLookup;
+
+	@Before
+	public void setUp() throws Exception {
+		File stationFile = new File(getClass().getResource("/Stations_v28012014.csv").toURI());
+		lookup = new NAPSStationLookup();
+		lookup.initialize(stationFile);
+		offHeapLookup = new NAPSStationLookup(true);
+		offHeapLookup.initialize(stationFile);
+	}
+
+	@Test
+	public void testStationLocation() {
+		assertEquals("CN Tower", "ONTARIO\tTORONTO", lookup.getStationLocation(60419));
+		assertEquals("Whistler", "BRITISH COLUMBIA\tWHISTLER", lookup.getStationLocation(105001));
+		assertEquals("Unknown StationID falls back to the ID", "999999", lookup.getStationLocation(999999));
+		assertEquals("All stations", 709, lookup.getStationIDToLocationMap().size());
+	}
+
+	@Test
+	public void testLocationID() {
+		int locationID = lookup.getLocationID(60419);
+		assertEquals("Name", "ONTARIO\tTORONTO", lookup.getLocationName(locationID));
+		assertArrayEquals("UTF-8 bytes", "ONTARIO\tTORONTO".getBytes(StandardCharsets.UTF_8), lookup.getLocationBytes(locationID));
+		assertEquals("Unknown StationID", NAPSStationLookup.NO_LOCATION, lookup.getLocationID(999999));
+		assertEquals("Off-heap table", locationID, offHeapLookup.getLocationID(60419));
+
+		// LocationIDs are in the alphabetical order of the Locations
+		for (int id = 1; id < lookup.getLocationCount(); id++) {
+			assertTrue(lookup.getLocationName(id), lookup.getLocationName(id - 1).compareTo(lookup.getLocationName(id)) < 0);
+		}
+	}
+}
@@ -97,4 +97,25 @@ public class StationParserTest {
 		assertNull("Long Record4", staParser4.getLongitude());
 		assertNull("Elev Record4", staParser4.getElevationMeter());
 	}
+
+	/**
+	 * A comma inside a quoted field does not shift the columns, "" is an escaped quote
+	 * A line too short leaves no value of the previous line
+	 */
+	@Test
+	public void testQuotedFields() {
+		NAPSStationParser parser = new NAPSStationParser();
+		parser.parse("63701,\"POINT BLAKE, \"\"CONSERVATION AREA\"\"\",C,1,,N,ONTARIO,\"HWY 21, COUNTY RD 83\",GRAND BEND,CANADA,N0M,,-5,43.33308,-81.74289,189,,,,,,,,,,,,,,,,,,,,,,,,,,");
+		assertTrue(parser.isValidRecord());
+		assertEquals(new Integer(63701), parser.getStationID());
+		assertEquals("POINT BLAKE, \"CONSERVATION AREA\"", parser.getStationName());
+		assertEquals("HWY 21, COUNTY RD 83", parser.getStreetAddress());
+		assertEquals("GRAND BEND", parser.getCityName());
+		assertEquals(new Integer(189), parser.getElevationMeter());
+
+		parser.parse("63702,TOO SHORT,C,1");
+		assertFalse(parser.isValidRecord());
+		assertNull(parser.getCityName());
+		assertNull(parser.getElevationMeter());
+	}
 }
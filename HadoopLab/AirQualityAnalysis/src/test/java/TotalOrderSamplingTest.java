@@ -0,0 +1,59 @@
+import hadooplab.OzoneAnalysis.OzoneAnalysisDriver;
+import hadooplab.OzoneAnalysis.TotalOrderSampling;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.RawComparator;
+import org.apache.hadoop.util.ReflectionUtils;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit tests of the split points of hadooplab.OzoneAnalysis.TotalOrderSampling
+ */
+public class TotalOrderSamplingTest {
+
+	@SuppressWarnings({"unchecked", "rawtypes"}) // WritableComparator implements the raw RawComparator
+	private static RawComparator<Object> comparator(Class<? extends RawComparator> comparatorClass) {
+		return ReflectionUtils.newInstance(comparatorClass, null); // as job.getSortComparator()
+	}
+
+	private static IntWritable[] sample(int... values) {
+		IntWritable[] samples = new IntWritable[values.length];
+		for (int kk = 0; kk < values.length; kk++) {
+			samples[kk] = new IntWritable(values[kk]);
+		}
+		return samples;
+	}
+
+	@Test
+	public void testDescendingSplitPoints() {
+		Object[] samples = sample(10, 80, 30, 70, 20, 60, 40, 50);
+		List<Object> splitPoints = TotalOrderSampling.selectSplitPoints(samples,
+				comparator(OzoneAnalysisDriver.DescendingIntComparator.class), 4);
+
+		assertEquals("reducers - 1 split points", 3, splitPoints.size());
+		assertEquals("Highest range first", 60, ((IntWritable) splitPoints.get(0)).get());
+		assertEquals(40, ((IntWritable) splitPoints.get(1)).get());
+		assertEquals(20, ((IntWritable) splitPoints.get(2)).get());
+	}
+
+	@Test
+	public void testDuplicatedKeys() {
+		// 2 distinct values for 4 reducers: the split points must stay strictly increasing
+		Object[] samples = sample(50, 50, 50, 50, 50, 50, 30, 30);
+		List<Object> splitPoints = TotalOrderSampling.selectSplitPoints(samples,
+				comparator(OzoneAnalysisDriver.DescendingIntComparator.class), 4);
+
+		assertEquals("1 split point: 2 reducers", 1, splitPoints.size());
+		assertEquals("No empty range before the highest key", 30, ((IntWritable) splitPoints.get(0)).get());
+	}
+
+	@Test
+	public void testEmptySample() {
+		List<Object> splitPoints = TotalOrderSampling.selectSplitPoints(new Object[0],
+				comparator(OzoneAnalysisDriver.DescendingIntComparator.class), 4);
+		assertTrue("No split point: 1 reducer", splitPoints.isEmpty());
+	}
+}